@@ -52,19 +52,10 @@ object CESettingsCacheService : CacheService("mopub-ce-cache") {
             return
         }
 
-        val cacheListener = object : DiskLruCacheListener {
-            override fun onGetComplete(key: String, content: ByteArray?) {
-                if (key != adUnitId) {
-                    return
-                }
-                val settingsFromCache = CreativeExperienceSettings.fromByteArray(content)
-                listener.onHashReceived(settingsFromCache?.hash ?: "0")
-            }
-        }
-
-        getFromDiskCacheAsync(
+        readFromDiskCacheAsync(
             adUnitId,
-            cacheListener,
+            { CreativeExperienceSettings.fromInputStream(it) },
+            { settingsFromCache -> listener.onHashReceived(settingsFromCache?.hash ?: "0") },
             supervisorJob,
             context
         )
@@ -91,20 +82,10 @@ object CESettingsCacheService : CacheService("mopub-ce-cache") {
             return
         }
 
-        val cacheListener = object : DiskLruCacheListener {
-            override fun onGetComplete(key: String, content: ByteArray?) {
-                if (key != adUnitId) {
-                    return
-                }
-
-                val settingsFromCache = CreativeExperienceSettings.fromByteArray(content)
-                listener.onSettingsReceived(settingsFromCache)
-            }
-        }
-
-        getFromDiskCacheAsync(
+        readFromDiskCacheAsync(
             adUnitId,
-            cacheListener,
+            { CreativeExperienceSettings.fromInputStream(it) },
+            { settingsFromCache -> listener.onSettingsReceived(settingsFromCache) },
             supervisorJob,
             context
         )
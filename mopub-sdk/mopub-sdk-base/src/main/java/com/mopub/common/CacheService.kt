@@ -17,6 +17,13 @@ import com.mopub.common.util.Utils
 import kotlinx.coroutines.*
 
 import java.io.*
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 
 abstract class CacheService(private val uniqueCacheName: String) {
 
@@ -24,8 +31,26 @@ abstract class CacheService(private val uniqueCacheName: String) {
         private const val APP_VERSION = 1
         private const val DISK_CACHE_INDEX = 0
         private const val VALUE_COUNT = 1  // Number of values per cache entry. Must be positive.
+        private const val MAX_IO_THREADS = 2
+        @VisibleForTesting
+        const val JOURNAL_FLUSH_DELAY_MS = 500L
+
+        /**
+         * Async cache operations for every cache share these threads instead of the unbounded
+         * Dispatchers.IO pool.
+         */
+        private val ioDispatcher: CoroutineDispatcher = ThreadPoolExecutor(
+            MAX_IO_THREADS,
+            MAX_IO_THREADS,
+            30L,
+            TimeUnit.SECONDS,
+            LinkedBlockingQueue<Runnable>()
+        ).apply { allowCoreThreadTimeOut(true) }.asCoroutineDispatcher()
     }
 
+    private val ioScope = CoroutineScope(SupervisorJob() + ioDispatcher)
+    private val journalFlushScheduled = AtomicBoolean(false)
+
     @Volatile
     @VisibleForTesting
     var diskLruCache: DiskLruCache? = null
@@ -49,8 +74,9 @@ abstract class CacheService(private val uniqueCacheName: String) {
         if (context == null) {
             return false
         }
-        // Double-checked locking to initialize.
-        diskLruCache ?: synchronized(CacheService::class) {
+        // Double-checked locking to initialize. Each cache locks on itself so that opening one
+        // cache does not wait on another.
+        diskLruCache ?: synchronized(this) {
             diskLruCache ?: run {
                 val cacheDirectory = getDiskCacheDirectory(context) ?: return false
                 val diskCacheSizeBytes = DeviceUtils.diskCacheSizeBytes(cacheDirectory)
@@ -132,8 +158,8 @@ abstract class CacheService(private val uniqueCacheName: String) {
                 flush()
                 close()
             }
-            diskLruCache?.flush()
             editor.commit()
+            scheduleJournalFlush()
         } catch (e: IOException) {
             MoPubLog.log(SdkLogEvent.CUSTOM, "Unable to put to DiskLruCache", e)
             try {
@@ -146,6 +172,64 @@ abstract class CacheService(private val uniqueCacheName: String) {
         return true
     }
 
+    /**
+     * Moves [file] into the cache instead of copying its bytes like [putToDiskCache]. [file]
+     * must be on the same filesystem as the cache, and no longer exists once this returns true.
+     */
+    @WorkerThread
+    fun putFileToDiskCache(key: String?, file: File?): Boolean {
+        if (diskLruCache == null || key.isNullOrEmpty() || file == null) {
+            return false
+        }
+        var editor: DiskLruCache.Editor? = null
+        try {
+            editor = diskLruCache?.edit(createValidDiskCacheKey(key)) ?:
+                    // another edit is in progress
+                    return false
+            editor.setFile(DISK_CACHE_INDEX, file)
+            editor.commit()
+            scheduleJournalFlush()
+        } catch (e: IOException) {
+            MoPubLog.log(SdkLogEvent.CUSTOM, "Unable to move file to DiskLruCache", e)
+            try {
+                editor?.abort()
+            } catch (ignore: IOException) {
+                // ignore
+            }
+            return false
+        }
+        return true
+    }
+
+    /**
+     * Trims the cache and flushes the journal once for all puts made within
+     * [JOURNAL_FLUSH_DELAY_MS], instead of once per put. The index is only rewritten once the
+     * journal has grown well past it.
+     */
+    @AnyThread
+    private fun scheduleJournalFlush() {
+        if (!journalFlushScheduled.compareAndSet(false, true)) {
+            return
+        }
+        ioScope.launch {
+            delay(JOURNAL_FLUSH_DELAY_MS)
+            flushJournal()
+        }
+    }
+
+    @WorkerThread
+    @VisibleForTesting
+    fun flushJournal() {
+        journalFlushScheduled.set(false)
+        try {
+            diskLruCache?.flushAndRefreshIndex()
+        } catch (e: IOException) {
+            MoPubLog.log(SdkLogEvent.CUSTOM, "Unable to flush DiskLruCache", e)
+        } catch (e: IllegalStateException) {
+            // The cache was closed before the flush ran
+        }
+    }
+
     @AnyThread
     fun putToDiskCacheAsync(
         key: String,
@@ -154,8 +238,8 @@ abstract class CacheService(private val uniqueCacheName: String) {
         supervisorJob: CompletableJob,
         context: Context
     ) {
-        CoroutineScope(supervisorJob + Dispatchers.IO).launch(
-            CoroutineExceptionHandler { coroutineContext, e ->
+        ioScope.launch(
+            supervisorJob + CoroutineExceptionHandler { coroutineContext, e ->
                 coroutineContext.cancel()
                 MoPubLog.log(SdkLogEvent.CUSTOM, "Exception in putToDiskCacheAsync", e)
                 listener?.onPutComplete(false)
@@ -178,31 +262,88 @@ abstract class CacheService(private val uniqueCacheName: String) {
     }
 
     @WorkerThread
-    fun getFromDiskCache(key: String?): ByteArray? {
+    fun getFromDiskCache(key: String?): ByteArray? =
+        readFromDiskCache(key) { channel, length ->
+            // Read straight into the result rather than through an intermediate stream buffer
+            val bytes = ByteArray(length.toInt())
+            val buffer = ByteBuffer.wrap(bytes)
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading
+            }
+            bytes
+        }
+
+    /**
+     * Reads an entry through a [FileChannel] over the cached file, without copying it onto the
+     * heap first. The channel belongs to a cache snapshot and is only valid inside [reader].
+     *
+     * @return the value returned by [reader], or null if the entry is missing or unreadable
+     */
+    @WorkerThread
+    fun <T> readFromDiskCache(key: String?, reader: (channel: FileChannel, length: Long) -> T?): T? {
         if (diskLruCache == null || key.isNullOrEmpty()) {
             return null
         }
-        var bytes: ByteArray? = null
         var snapshot: DiskLruCache.Snapshot? = null
         try {
             snapshot = diskLruCache?.get(createValidDiskCacheKey(key)) ?: return null
-            val inStream = snapshot.getInputStream(DISK_CACHE_INDEX)
-            inStream?.let {
-                bytes = ByteArray(snapshot.getLength(0).toInt())
-                val buffIn = BufferedInputStream(it)
-                try {
-                    Streams.readStream(buffIn, bytes)
-                } finally {
-                    Streams.closeStream(buffIn)
-                    it.close()
-                }
-            }
+            return reader(
+                snapshot.getChannel(DISK_CACHE_INDEX),
+                snapshot.getLength(DISK_CACHE_INDEX)
+            )
         } catch (e: IOException) {
             MoPubLog.log(SdkLogEvent.CUSTOM, "Unable to get from DiskLruCache", e)
         } finally {
             snapshot?.close()
         }
-        return bytes
+        return null
+    }
+
+    /**
+     * Maps an entry into memory, read-only. The mapping is backed by the page cache rather than
+     * the Java heap and stays valid after the cache snapshot is closed.
+     */
+    @WorkerThread
+    fun mapFromDiskCache(key: String?): ByteBuffer? =
+        readFromDiskCache(key) { channel, length ->
+            channel.map(FileChannel.MapMode.READ_ONLY, 0, length)
+        }
+
+    /**
+     * Async version of [readFromDiskCache] that hands [reader] a buffered stream over the cached
+     * file. [onComplete] is called on the main thread.
+     */
+    @AnyThread
+    fun <T> readFromDiskCacheAsync(
+        key: String,
+        reader: (InputStream) -> T?,
+        onComplete: (T?) -> Unit,
+        supervisorJob: CompletableJob,
+        context: Context
+    ) {
+        ioScope.launch(
+            supervisorJob + CoroutineExceptionHandler { coroutineContext, e ->
+                coroutineContext.cancel()
+                MoPubLog.log(SdkLogEvent.CUSTOM, "Exception in readFromDiskCacheAsync", e)
+                onComplete(null)
+            })
+        {
+            if (!initializeDiskCache(context)) {
+                // Failed to initialize cache
+                withContext(supervisorJob + Dispatchers.Main) {
+                    MoPubLog.log(SdkLogEvent.CUSTOM, "Failed to initialize cache.")
+                    onComplete(null)
+                }
+                return@launch
+            }
+
+            val result = readFromDiskCache(key) { channel, _ ->
+                reader(BufferedInputStream(Channels.newInputStream(channel)))
+            }
+            withContext(supervisorJob + Dispatchers.Main) {
+                onComplete(result)
+            }
+        }
     }
 
     @AnyThread
@@ -212,8 +353,8 @@ abstract class CacheService(private val uniqueCacheName: String) {
         supervisorJob: CompletableJob,
         context: Context
     ) {
-        CoroutineScope(supervisorJob + Dispatchers.IO).launch(
-            CoroutineExceptionHandler { coroutineContext, e ->
+        ioScope.launch(
+            supervisorJob + CoroutineExceptionHandler { coroutineContext, e ->
                 coroutineContext.cancel()
                 MoPubLog.log(SdkLogEvent.CUSTOM, "Exception in getFromDiskCacheAsync", e)
                 listener.onGetComplete(key, null)
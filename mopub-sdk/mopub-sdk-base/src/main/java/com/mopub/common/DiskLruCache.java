@@ -18,10 +18,15 @@ package com.mopub.common;
 
 import androidx.annotation.NonNull;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -31,7 +36,10 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -42,6 +50,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
 /**
  * A cache that uses a bounded amount of space on a filesystem. Each cache
@@ -91,8 +100,16 @@ public final class DiskLruCache implements Closeable {
   static final String JOURNAL_FILE = "journal";
   static final String JOURNAL_FILE_TEMP = "journal.tmp";
   static final String JOURNAL_FILE_BACKUP = "journal.bkp";
+  static final String INDEX_FILE = "journal.idx";
+  static final String INDEX_FILE_TEMP = "journal.idx.tmp";
   static final String MAGIC = "libcore.io.DiskLruCache";
   static final String VERSION_1 = "1";
+  static final String INDEX_MAGIC = "com.mopub.common.DiskLruCache.index";
+  static final int INDEX_VERSION = 1;
+  /** How much of the journal, ending at the indexed offset, the index checksums. */
+  static final int INDEX_JOURNAL_TAIL_BYTES = 4096;
+  /** How far the journal may grow past the index before a flush rewrites the index. */
+  static final long INDEX_REFRESH_JOURNAL_BYTES = 64 * 1024;
   static final long ANY_SEQUENCE_NUMBER = -1;
   static final Pattern LEGAL_KEY_PATTERN = Pattern.compile("[a-z0-9_-]{1,64}");
   private static final String CLEAN = "CLEAN";
@@ -138,12 +155,23 @@ public final class DiskLruCache implements Closeable {
      * occasionally be compacted by dropping redundant lines. A temporary file named
      * "journal.tmp" will be used during compaction; that file should be deleted if
      * it exists when the cache is opened.
+     *
+     * A binary index named "journal.idx" holds the entries as of a byte offset
+     * in the journal, along with a checksum of the journal bytes just before
+     * that offset. It is written when the cache is closed or its journal is
+     * compacted, and by flushes once the journal has grown
+     * INDEX_REFRESH_JOURNAL_BYTES past it. Between rewrites the appended
+     * journal lines are the records of what changed. On open, if the checksum still matches, the entries are loaded
+     * from the index and only the journal lines after the offset are replayed.
+     * Otherwise the whole journal is replayed.
      */
 
   private final File directory;
   private final File journalFile;
   private final File journalFileTmp;
   private final File journalFileBackup;
+  private final File indexFile;
+  private final File indexFileTmp;
   private final int appVersion;
   private long maxSize;
   private final int valueCount;
@@ -152,6 +180,8 @@ public final class DiskLruCache implements Closeable {
   private final LinkedHashMap<String, Entry> lruEntries =
       new LinkedHashMap<String, Entry>(0, 0.75f, true);
   private int redundantOpCount;
+  /** The journal offset the index on disk was written at, or 0 if there is none. */
+  private long indexedJournalOffset;
 
   /**
    * To differentiate between old and current snapshots, each entry is given
@@ -173,6 +203,7 @@ public final class DiskLruCache implements Closeable {
         if (journalRebuildRequired()) {
           rebuildJournal();
           redundantOpCount = 0;
+          writeIndex();
         }
       }
       return null;
@@ -185,6 +216,8 @@ public final class DiskLruCache implements Closeable {
     this.journalFile = new File(directory, JOURNAL_FILE);
     this.journalFileTmp = new File(directory, JOURNAL_FILE_TEMP);
     this.journalFileBackup = new File(directory, JOURNAL_FILE_BACKUP);
+    this.indexFile = new File(directory, INDEX_FILE);
+    this.indexFileTmp = new File(directory, INDEX_FILE_TEMP);
     this.valueCount = valueCount;
     this.maxSize = maxSize;
   }
@@ -223,7 +256,9 @@ public final class DiskLruCache implements Closeable {
     DiskLruCache cache = new DiskLruCache(directory, appVersion, valueCount, maxSize);
     if (cache.journalFile.exists()) {
       try {
-        cache.readJournal();
+        if (!cache.readIndex()) {
+          cache.readJournal();
+        }
         cache.processJournal();
         cache.journalWriter = new BufferedWriter(
             new OutputStreamWriter(new FileOutputStream(cache.journalFile, true), DiskLruCacheUtil.US_ASCII));
@@ -278,6 +313,139 @@ public final class DiskLruCache implements Closeable {
     }
   }
 
+  /**
+   * Restores the entries from the index written by {@link #writeIndex}, then
+   * replays the journal lines appended after it. Returns false, leaving the
+   * cache empty, if there is no index or it doesn't match the journal.
+   */
+  private boolean readIndex() throws IOException {
+    if (!indexFile.exists()) {
+      return false;
+    }
+
+    long journalOffset;
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+      if (!INDEX_MAGIC.equals(in.readUTF())
+          || in.readInt() != INDEX_VERSION
+          || in.readInt() != appVersion
+          || in.readInt() != valueCount) {
+        return false;
+      }
+      journalOffset = in.readLong();
+      long tailChecksum = in.readLong();
+      if (journalOffset > journalFile.length()
+          || tailChecksum != journalTailChecksum(journalFile, journalOffset)) {
+        return false;
+      }
+
+      int indexedRedundantOpCount = in.readInt();
+      int entryCount = in.readInt();
+      for (int i = 0; i < entryCount; i++) {
+        Entry entry = new Entry(in.readUTF());
+        entry.readable = in.readBoolean();
+        if (in.readBoolean()) {
+          entry.currentEditor = new Editor(entry);
+        }
+        for (int t = 0; t < valueCount; t++) {
+          entry.lengths[t] = in.readLong();
+        }
+        lruEntries.put(entry.key, entry);
+      }
+      redundantOpCount = indexedRedundantOpCount;
+      indexedJournalOffset = journalOffset;
+    } catch (IOException indexIsCorrupt) {
+      lruEntries.clear();
+      redundantOpCount = 0;
+      return false;
+    } finally {
+      DiskLruCacheUtil.closeQuietly(in);
+    }
+
+    // Errors in the journal itself are fatal, as they would be for a full replay.
+    FileInputStream journalIn = new FileInputStream(journalFile);
+    DiskLruCacheStrictLineReader reader =
+        new DiskLruCacheStrictLineReader(journalIn, DiskLruCacheUtil.US_ASCII);
+    try {
+      journalIn.getChannel().position(journalOffset);
+      while (true) {
+        try {
+          readJournalLine(reader.readLine());
+          redundantOpCount++;
+        } catch (EOFException endOfJournal) {
+          break;
+        }
+      }
+    } finally {
+      DiskLruCacheUtil.closeQuietly(reader);
+    }
+    return true;
+  }
+
+  /**
+   * Writes the entries to the index so that the next {@link #open} only has to
+   * replay the journal lines appended after this point.
+   */
+  synchronized void writeIndex() throws IOException {
+    checkNotClosed();
+    journalWriter.flush();
+    long journalOffset = journalFile.length();
+    long tailChecksum = journalTailChecksum(journalFile, journalOffset);
+
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(indexFileTmp)));
+    try {
+      out.writeUTF(INDEX_MAGIC);
+      out.writeInt(INDEX_VERSION);
+      out.writeInt(appVersion);
+      out.writeInt(valueCount);
+      out.writeLong(journalOffset);
+      out.writeLong(tailChecksum);
+      out.writeInt(redundantOpCount);
+      out.writeInt(lruEntries.size());
+      for (Entry entry : lruEntries.values()) {
+        out.writeUTF(entry.key);
+        out.writeBoolean(entry.readable);
+        out.writeBoolean(entry.currentEditor != null);
+        for (long length : entry.lengths) {
+          out.writeLong(length);
+        }
+      }
+    } finally {
+      out.close();
+    }
+    renameTo(indexFileTmp, indexFile, true);
+    indexedJournalOffset = journalOffset;
+  }
+
+  /**
+   * Flushes the journal like {@link #flush}, and rewrites the index only once
+   * the journal lines that {@link #open} would replay after it exceed
+   * INDEX_REFRESH_JOURNAL_BYTES.
+   */
+  synchronized void flushAndRefreshIndex() throws IOException {
+    flush();
+    if (journalFile.length() - indexedJournalOffset >= INDEX_REFRESH_JOURNAL_BYTES) {
+      writeIndex();
+    }
+  }
+
+  private static long journalTailChecksum(File journal, long journalOffset) throws IOException {
+    int tailLength = (int) Math.min(journalOffset, INDEX_JOURNAL_TAIL_BYTES);
+    byte[] tail = new byte[tailLength];
+    RandomAccessFile file = new RandomAccessFile(journal, "r");
+    try {
+      file.seek(journalOffset - tailLength);
+      file.readFully(tail);
+    } finally {
+      DiskLruCacheUtil.closeQuietly(file);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(tail, 0, tailLength);
+    return crc.getValue();
+  }
+
   private void readJournalLine(String line) throws IOException {
     int firstSpace = line.indexOf(' ');
     if (firstSpace == -1) {
@@ -323,6 +491,7 @@ public final class DiskLruCache implements Closeable {
    */
   private void processJournal() throws IOException {
     deleteIfExists(journalFileTmp);
+    deleteIfExists(indexFileTmp);
     for (Iterator<Entry> i = lruEntries.values().iterator(); i.hasNext(); ) {
       Entry entry = i.next();
       if (entry.currentEditor == null) {
@@ -348,6 +517,9 @@ public final class DiskLruCache implements Closeable {
     if (journalWriter != null) {
       journalWriter.close();
     }
+    // The index describes the journal being replaced.
+    deleteIfExists(indexFile);
+    indexedJournalOffset = 0;
 
     Writer writer = new BufferedWriter(
         new OutputStreamWriter(new FileOutputStream(journalFileTmp), DiskLruCacheUtil.US_ASCII));
@@ -635,6 +807,16 @@ public final class DiskLruCache implements Closeable {
       }
     }
     trimToSize();
+    if (journalRebuildRequired()) {
+      rebuildJournal();
+      redundantOpCount = 0;
+    }
+    try {
+      writeIndex();
+    } catch (IOException e) {
+      // The journal alone is enough to reopen the cache.
+      indexFile.delete();
+    }
     journalWriter.close();
     journalWriter = null;
   }
@@ -705,6 +887,30 @@ public final class DiskLruCache implements Closeable {
       return lengths[index];
     }
 
+    /**
+     * Returns a channel over the value for {@code index}. The channel shares the snapshot's
+     * stream and is closed along with the snapshot.
+     */
+    public FileChannel getChannel(int index) {
+      return ((FileInputStream) ins[index]).getChannel();
+    }
+
+    /**
+     * Returns the file descriptor of the value for {@code index}. It is valid until the snapshot
+     * is closed.
+     */
+    public FileDescriptor getFileDescriptor(int index) throws IOException {
+      return ((FileInputStream) ins[index]).getFD();
+    }
+
+    /**
+     * Maps the value for {@code index} into memory, read-only. Unlike the channel, the mapping
+     * stays valid after the snapshot is closed.
+     */
+    public MappedByteBuffer map(int index) throws IOException {
+      return getChannel(index).map(FileChannel.MapMode.READ_ONLY, 0, lengths[index]);
+    }
+
     public void close() {
       for (InputStream in : ins) {
         DiskLruCacheUtil.closeQuietly(in);
@@ -793,6 +999,23 @@ public final class DiskLruCache implements Closeable {
       }
     }
 
+    /**
+     * Sets the value at {@code index} to the contents of {@code file} by
+     * moving it into the cache rather than copying it. The file must be on
+     * the same filesystem as the cache directory.
+     */
+    public void setFile(int index, File file) throws IOException {
+      synchronized (DiskLruCache.this) {
+        if (entry.currentEditor != this) {
+          throw new IllegalStateException();
+        }
+        renameTo(file, entry.getDirtyFile(index), true);
+        if (!entry.readable) {
+          written[index] = true;
+        }
+      }
+    }
+
     /** Sets the value at {@code index} to {@code value}. */
     public void set(int index, String value) throws IOException {
       Writer writer = null;
@@ -18,6 +18,8 @@ import androidx.annotation.UiThread;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.privacy.PersonalInfoManager;
 import com.mopub.common.util.Reflection;
+import com.mopub.network.AdResponsePrefetcher;
+import com.mopub.network.MoPubRequestQueue;
 import com.mopub.network.Networking;
 import com.mopub.network.PlayServicesUrlRewriter;
 
@@ -230,7 +232,12 @@ public class MoPub {
 
         // Guarantees initialization of the request queue on the main thread.
         Networking.setUrlRewriter(new PlayServicesUrlRewriter());
-        Networking.getRequestQueue(context);
+        final MoPubRequestQueue requestQueue = Networking.getRequestQueue(context);
+        if (sdkConfiguration.getConnectionWarmUpEnabled()) {
+            requestQueue.warmUp(Constants.HOST);
+        }
+        AdResponsePrefetcher.getInstance()
+                .setMaxResponsesPerAdUnit(sdkConfiguration.getPrefetchedAdResponses());
 
         final InternalSdkInitializationListener internalSdkInitializationListener =
                 new InternalSdkInitializationListener(sdkInitializationListener);
@@ -0,0 +1,32 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.common
+
+import android.content.Context
+import androidx.annotation.WorkerThread
+
+/**
+ * Disk cache for the encoded native ad images, keyed by image url, so that images survive
+ * app restarts without being downloaded again.
+ */
+object NativeImageCacheService : CacheService("mopub-native-image-cache") {
+
+    @JvmStatic
+    @WorkerThread
+    fun initializeCache(context: Context?) = initializeDiskCache(context)
+
+    @JvmStatic
+    @WorkerThread
+    fun get(key: String?): ByteArray? = getFromDiskCache(key)
+
+    @JvmStatic
+    @WorkerThread
+    fun put(key: String?, content: ByteArray?): Boolean = putToDiskCache(key, content)
+
+    @JvmStatic
+    @WorkerThread
+    @VisibleForTesting
+    fun clearAndNullNativeImageCache() = clearAndNullCache()
+}
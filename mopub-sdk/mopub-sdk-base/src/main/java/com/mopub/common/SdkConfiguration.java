@@ -61,6 +61,16 @@ public class SdkConfiguration {
      */
     private final boolean mLegitimateInterestAllowed;
 
+    /**
+     * Whether or not to connect to the ad server while the SDK initializes.
+     */
+    private final boolean mConnectionWarmUpEnabled;
+
+    /**
+     * How many ad responses to prefetch and keep for each ad unit.
+     */
+    private final int mPrefetchedAdResponses;
+
     /**
      * Holds data for SDK initialization. Do not call this constructor directly; use the Builder.
      */
@@ -70,7 +80,9 @@ public class SdkConfiguration {
             @NonNull final LogLevel logLevel,
             @NonNull final Map<String, Map<String, String>> mediatedNetworkConfigurations,
             @NonNull final Map<String, Map<String, String>> moPubRequestOptions,
-            final boolean legitimateInterestAllowed) {
+            final boolean legitimateInterestAllowed,
+            final boolean connectionWarmUpEnabled,
+            final int prefetchedAdResponses) {
         Preconditions.checkNotNull(adUnitId);
         Preconditions.checkNotNull(adapterConfigurationClasses);
         Preconditions.checkNotNull(mediatedNetworkConfigurations);
@@ -83,6 +95,8 @@ public class SdkConfiguration {
         mMediatedNetworkConfigurations = mediatedNetworkConfigurations;
         mMoPubRequestOptions = moPubRequestOptions;
         mLegitimateInterestAllowed = legitimateInterestAllowed;
+        mConnectionWarmUpEnabled = connectionWarmUpEnabled;
+        mPrefetchedAdResponses = prefetchedAdResponses;
     }
 
     @NonNull
@@ -118,6 +132,14 @@ public class SdkConfiguration {
         return mLegitimateInterestAllowed;
     }
 
+    public boolean getConnectionWarmUpEnabled() {
+        return mConnectionWarmUpEnabled;
+    }
+
+    public int getPrefetchedAdResponses() {
+        return mPrefetchedAdResponses;
+    }
+
     public static class Builder {
         @NonNull private String adUnitId;
         @NonNull private final Set<String> adapterConfigurations;
@@ -126,6 +148,8 @@ public class SdkConfiguration {
         @NonNull private final Map<String, Map<String, String>> mediatedNetworkConfigurations;
         @NonNull private final Map<String, Map<String, String>> moPubRequestOptions;
         private boolean legitimateInterestAllowed;
+        private boolean connectionWarmUpEnabled;
+        private int prefetchedAdResponses;
 
         /**
          * Use this builder instead of creating a new SdkConfiguration. This Builder needs any ad
@@ -242,9 +266,37 @@ public class SdkConfiguration {
             return this;
         }
 
+        /**
+         * Sets whether or not the SDK resolves the ad server and opens a connection to it while
+         * it initializes, so that the first ad request does not wait for the DNS lookup and the
+         * TLS handshake. Off by default.
+         *
+         * @param connectionWarmUpEnabled should be true to warm up the connection.
+         * @return The builder.
+         */
+        public Builder withConnectionWarmUp(final boolean connectionWarmUpEnabled) {
+            this.connectionWarmUpEnabled = connectionWarmUpEnabled;
+            return this;
+        }
+
+        /**
+         * Sets how many ad responses the SDK requests ahead of time and keeps for each banner
+         * and interstitial ad unit. The next ad for the ad unit is requested while the current
+         * one renders, so that refreshing or reloading does not wait for the ad server. 0, the
+         * default, turns this off.
+         *
+         * @param prefetchedAdResponses the number of ad responses to keep for each ad unit.
+         * @return The builder.
+         */
+        public Builder withPrefetchedAdResponses(final int prefetchedAdResponses) {
+            this.prefetchedAdResponses = prefetchedAdResponses;
+            return this;
+        }
+
         public SdkConfiguration build() {
             return new SdkConfiguration(adUnitId, adapterConfigurations, mediationSettings,
-                    logLevel, mediatedNetworkConfigurations, moPubRequestOptions, legitimateInterestAllowed);
+                    logLevel, mediatedNetworkConfigurations, moPubRequestOptions, legitimateInterestAllowed,
+                    connectionWarmUpEnabled, prefetchedAdResponses);
         }
     }
 }
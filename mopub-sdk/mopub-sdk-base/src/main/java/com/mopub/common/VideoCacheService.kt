@@ -8,10 +8,18 @@ import android.content.Context
 import androidx.annotation.AnyThread
 import androidx.annotation.WorkerThread
 
+import java.io.File
 import java.io.InputStream
+import java.nio.ByteBuffer
 
 object VideoCacheService : CacheService("mopub-video-cache") {
 
+    private const val PARTIAL_DIRECTORY_NAME = "mopub-video-partial"
+    private const val PARTIAL_FILE_SUFFIX = ".partial"
+
+    // Disk keys of partial files that a download is writing, with the number of writers
+    private val partialFilesInUse = HashMap<String, Int>()
+
     @JvmStatic
     @WorkerThread
     fun initializeCache(context: Context?) = initializeDiskCache(context)
@@ -24,10 +32,89 @@ object VideoCacheService : CacheService("mopub-video-cache") {
     @WorkerThread
     fun get(key: String?): ByteArray? = getFromDiskCache(key)
 
+    /**
+     * Maps a cached video into memory instead of copying it onto the heap like [get].
+     */
+    @JvmStatic
+    @WorkerThread
+    fun map(key: String?): ByteBuffer? = mapFromDiskCache(key)
+
     @JvmStatic
     @AnyThread
     fun getFilePath(key: String?): String? = getFilePathDiskCache(key)
 
+    /**
+     * Returns the file that holds a partially downloaded video for the given key. Partial files
+     * live in their own directory next to the cache, outside the DiskLruCache size accounting,
+     * and are bounded by [purgePartialFiles] instead.
+     */
+    @JvmStatic
+    @AnyThread
+    fun getPartialFile(key: String?): File? {
+        if (key.isNullOrEmpty()) {
+            return null
+        }
+        return getPartialDirectory()?.let {
+            File(it, "${createValidDiskCacheKey(key)}$PARTIAL_FILE_SUFFIX")
+        }
+    }
+
+    /**
+     * Marks the partial file for the given key as being written, so that [purgePartialFiles]
+     * leaves it and its metadata alone until it is released.
+     */
+    @JvmStatic
+    @AnyThread
+    fun acquirePartialFile(key: String?) {
+        if (key.isNullOrEmpty()) {
+            return
+        }
+        val diskKey = createValidDiskCacheKey(key)
+        synchronized(partialFilesInUse) {
+            partialFilesInUse[diskKey] = (partialFilesInUse[diskKey] ?: 0) + 1
+        }
+    }
+
+    @JvmStatic
+    @AnyThread
+    fun releasePartialFile(key: String?) {
+        if (key.isNullOrEmpty()) {
+            return
+        }
+        val diskKey = createValidDiskCacheKey(key)
+        synchronized(partialFilesInUse) {
+            val count = partialFilesInUse[diskKey] ?: return
+            if (count > 1) {
+                partialFilesInUse[diskKey] = count - 1
+            } else {
+                partialFilesInUse.remove(diskKey)
+            }
+        }
+    }
+
+    /**
+     * Deletes partial downloads, and their metadata, that have not been touched for longer than
+     * [maxAgeMillis], then the least recently written ones until the rest fit in [maxSizeBytes].
+     * Files that an active download has acquired still count towards the size but are kept.
+     */
+    @JvmStatic
+    @WorkerThread
+    fun purgePartialFiles(maxAgeMillis: Long, maxSizeBytes: Long) {
+        val files = getPartialDirectory()?.listFiles() ?: return
+        val inUse = synchronized(partialFilesInUse) { partialFilesInUse.keys.toSet() }
+        val oldestAllowed = System.currentTimeMillis() - maxAgeMillis
+        var sizeBytes = 0L
+        files.sortedByDescending { it.lastModified() }.forEach { file ->
+            sizeBytes += file.length()
+            if (inUse.contains(file.name.substringBefore(PARTIAL_FILE_SUFFIX))) {
+                return@forEach
+            }
+            if (file.lastModified() < oldestAllowed || sizeBytes > maxSizeBytes) {
+                file.delete()
+            }
+        }
+    }
+
     @JvmStatic
     @WorkerThread
     fun put(key: String?, content: InputStream?): Boolean =
@@ -38,6 +125,18 @@ object VideoCacheService : CacheService("mopub-video-cache") {
     fun put(key: String?, content: ByteArray?): Boolean =
         putToDiskCache(key, content)
 
+    /**
+     * Moves a completed partial file into the cache without copying it.
+     */
+    @JvmStatic
+    @WorkerThread
+    fun putFile(key: String?, file: File?): Boolean =
+        putFileToDiskCache(key, file)
+
+    @AnyThread
+    private fun getPartialDirectory(): File? =
+        diskLruCache?.directory?.let { File(it.parentFile, PARTIAL_DIRECTORY_NAME) }
+
     // Testing
     @JvmStatic
     @VisibleForTesting
@@ -46,5 +145,9 @@ object VideoCacheService : CacheService("mopub-video-cache") {
     @JvmStatic
     @WorkerThread
     @VisibleForTesting
-    fun clearAndNullVideoCache() = clearAndNullCache()
+    fun clearAndNullVideoCache() {
+        getPartialDirectory()?.deleteRecursively()
+        synchronized(partialFilesInUse) { partialFilesInUse.clear() }
+        clearAndNullCache()
+    }
 }
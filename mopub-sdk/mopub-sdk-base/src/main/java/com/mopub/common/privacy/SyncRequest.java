@@ -15,6 +15,7 @@ import com.mopub.network.MoPubRequest;
 import com.mopub.network.MoPubRequestUtils;
 import com.mopub.network.MoPubResponse;
 import com.mopub.network.MoPubRetryPolicy;
+import com.mopub.network.RetryPolicyEngine;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -43,6 +44,7 @@ public class SyncRequest extends MoPubRequest<SyncResponse> {
                 0,
                 MoPubRetryPolicy.DEFAULT_BACKOFF_MULT);
         setRetryPolicy(retryPolicy);
+        setEndpoint(RetryPolicyEngine.Endpoint.SYNC);
         setShouldCache(false);
     }
 
@@ -38,6 +38,7 @@ import com.mopub.common.util.Reflection;
 import com.mopub.common.util.Utils;
 import com.mopub.network.AdLoader;
 import com.mopub.network.AdResponse;
+import com.mopub.network.AdResponsePrefetcher;
 import com.mopub.network.MoPubNetworkError;
 import com.mopub.network.MoPubNetworkResponse;
 import com.mopub.network.MoPubRequest;
@@ -204,6 +205,7 @@ public class AdViewController implements AdLifecycleListener.LoadListener, AdLif
         }
 
         scheduleRefreshTimerIfEnabled();
+        prefetchNextAd();
 
         final CESettingsCacheService.CESettingsCacheListener ceSettingsCacheListener =
                 new CESettingsCacheService.CESettingsCacheListener() {
@@ -624,6 +626,23 @@ public class AdViewController implements AdLifecycleListener.LoadListener, AdLif
         mActiveRequest = mAdLoader.loadNextAd(moPubError);
     }
 
+    /**
+     * Requests the next ad in the background while the current one renders, so that the next
+     * refresh or reload can use it without waiting for the network.
+     */
+    private void prefetchNextAd() {
+        final AdResponsePrefetcher prefetcher = AdResponsePrefetcher.getInstance();
+        final MoPubAd moPubAd = getMoPubAd();
+        if (!prefetcher.isEnabled() || moPubAd == null || mContext == null) {
+            return;
+        }
+
+        final String adUrl = generateAdUrl();
+        if (adUrl != null) {
+            prefetcher.prefetch(adUrl, moPubAd.getAdFormat(), mAdUnitId, mContext);
+        }
+    }
+
     void forceRefresh() {
         invalidateAdapter();
         setNotLoading();
@@ -5,6 +5,7 @@
 package com.mopub.mobileads
 
 import com.mopub.common.logging.MoPubLog
+import com.mopub.common.util.Streams
 
 import java.io.*
 
@@ -68,13 +69,18 @@ data class CreativeExperienceSettings(
             if (byteArray == null) {
                 return null
             }
+            return fromInputStream(ByteArrayInputStream(byteArray))
+        }
+
+        /**
+         * Deserializes settings written by [toByteArray]. The stream is closed when done.
+         */
+        @JvmStatic
+        fun fromInputStream(inputStream: InputStream): CreativeExperienceSettings? {
             try {
-                val byteArrayInputStream = ByteArrayInputStream(byteArray)
-                val objectInput = ObjectInputStream(byteArrayInputStream)
-                val result = objectInput.readObject() as CreativeExperienceSettings
-                objectInput.close()
-                byteArrayInputStream.close()
-                return result
+                ObjectInputStream(inputStream).use {
+                    return it.readObject() as CreativeExperienceSettings
+                }
             } catch (e: IOException) {
                 MoPubLog.log(
                     MoPubLog.SdkLogEvent.CUSTOM,
@@ -87,6 +93,8 @@ data class CreativeExperienceSettings(
                     "Unable to cast byte array to CreativeExperienceSettings.",
                     e
                 )
+            } finally {
+                Streams.closeStream(inputStream)
             }
             return null
         }
@@ -0,0 +1,100 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media2.common.DataSourceCallback;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VideoCacheService;
+import com.mopub.common.util.Streams;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Feeds the media player from a video file that is still being downloaded. Reads past the bytes
+ * on disk block until the download catches up, and fail once playback has stalled for longer than
+ * the configured timeout so that the player reports an error instead of hanging.
+ */
+class GrowingFileDataSource extends DataSourceCallback {
+    @NonNull private final ProgressiveVideoDownload mDownload;
+    @Nullable private RandomAccessFile mFile;
+
+    GrowingFileDataSource(@NonNull final ProgressiveVideoDownload download) {
+        Preconditions.checkNotNull(download);
+
+        mDownload = download;
+    }
+
+    @Override
+    public int readAt(final long position, @NonNull final byte[] buffer, final int offset,
+            final int size) throws IOException {
+        if (size == 0) {
+            return 0;
+        }
+
+        final ProgressiveVideoDownload.ReadState readState;
+        try {
+            readState = mDownload.awaitByte(position);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for video bytes");
+        }
+
+        switch (readState) {
+            case AVAILABLE:
+                break;
+            case END_OF_FILE:
+                return -1;
+            case STALLED:
+                throw new IOException("Video download stalled at byte " + position);
+            case FAILED:
+            default:
+                throw new IOException("Video download failed before byte " + position);
+        }
+
+        final RandomAccessFile file = openFile();
+        final long readable = Math.min(size, mDownload.getAvailableBytes() - position);
+        file.seek(position);
+        return file.read(buffer, offset, (int) readable);
+    }
+
+    @Override
+    public long getSize() {
+        return mDownload.getTotalBytes();
+    }
+
+    @Override
+    public synchronized void close() {
+        Streams.closeStream(mFile);
+        mFile = null;
+    }
+
+    /**
+     * Opens the partial file, or the cached video if the download already completed and the
+     * partial file has been moved into the cache.
+     */
+    @NonNull
+    private synchronized RandomAccessFile openFile() throws IOException {
+        if (mFile != null) {
+            return mFile;
+        }
+
+        File file = mDownload.getPartialFile();
+        if (!file.exists()) {
+            final String cachedPath = VideoCacheService.getFilePath(mDownload.getUrl());
+            if (cachedPath == null) {
+                throw new IOException("Video file is no longer available");
+            }
+            file = new File(cachedPath);
+        }
+        mFile = new RandomAccessFile(file, "r");
+        return mFile;
+    }
+}
@@ -0,0 +1,97 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+
+/**
+ * Settings for starting VAST video playback before the media file has finished downloading.
+ * Progressive playback is off unless settings are passed to
+ * {@link VastManager#setProgressivePlaybackSettings(ProgressivePlaybackSettings)}.
+ * <p/>
+ * The ad is reported ready once a prefix of the media file is on disk. The prefix is measured in
+ * seconds of media when the media file declares a bitrate, and in bytes otherwise.
+ */
+public class ProgressivePlaybackSettings {
+    public static final long DEFAULT_PREFIX_BYTES = 1024 * 1024; // 1 MiB
+    public static final int DEFAULT_PREFIX_SECONDS = 5;
+    public static final long DEFAULT_STALL_TIMEOUT_MILLIS = 10 * 1000;
+
+    private static final int BITS_PER_BYTE = 8;
+    private static final int BITS_PER_KILOBIT = 1000;
+
+    private final long mPrefixBytes;
+    private final int mPrefixSeconds;
+    private final long mStallTimeoutMillis;
+
+    private ProgressivePlaybackSettings(final long prefixBytes, final int prefixSeconds,
+            final long stallTimeoutMillis) {
+        mPrefixBytes = prefixBytes;
+        mPrefixSeconds = prefixSeconds;
+        mStallTimeoutMillis = stallTimeoutMillis;
+    }
+
+    /**
+     * @param bitrateKbps The media file's bitrate, if the VAST document declared one
+     * @return The number of bytes that must be on disk before the ad is reported ready
+     */
+    long getPrefixBytes(@Nullable final Integer bitrateKbps) {
+        if (mPrefixSeconds > 0 && bitrateKbps != null && bitrateKbps > 0) {
+            return (long) mPrefixSeconds * bitrateKbps * BITS_PER_KILOBIT / BITS_PER_BYTE;
+        }
+        return mPrefixBytes;
+    }
+
+    /**
+     * @return How long playback may wait for more bytes before it fails with an error
+     */
+    long getStallTimeoutMillis() {
+        return mStallTimeoutMillis;
+    }
+
+    public static class Builder {
+        private long prefixBytes = DEFAULT_PREFIX_BYTES;
+        private int prefixSeconds = DEFAULT_PREFIX_SECONDS;
+        private long stallTimeoutMillis = DEFAULT_STALL_TIMEOUT_MILLIS;
+
+        /**
+         * Bytes that must be downloaded before the ad is ready when the media file does not
+         * declare a bitrate.
+         */
+        @NonNull
+        public Builder withPrefixBytes(final long prefixBytes) {
+            Preconditions.checkArgument(prefixBytes > 0, "prefixBytes must be positive");
+            this.prefixBytes = prefixBytes;
+            return this;
+        }
+
+        /**
+         * Seconds of media that must be downloaded before the ad is ready. Pass 0 to always use
+         * {@link #withPrefixBytes(long)}.
+         */
+        @NonNull
+        public Builder withPrefixSeconds(final int prefixSeconds) {
+            Preconditions.checkArgument(prefixSeconds >= 0, "prefixSeconds cannot be negative");
+            this.prefixSeconds = prefixSeconds;
+            return this;
+        }
+
+        @NonNull
+        public Builder withStallTimeoutMillis(final long stallTimeoutMillis) {
+            Preconditions.checkArgument(stallTimeoutMillis > 0,
+                    "stallTimeoutMillis must be positive");
+            this.stallTimeoutMillis = stallTimeoutMillis;
+            return this;
+        }
+
+        @NonNull
+        public ProgressivePlaybackSettings build() {
+            return new ProgressivePlaybackSettings(prefixBytes, prefixSeconds, stallTimeoutMillis);
+        }
+    }
+}
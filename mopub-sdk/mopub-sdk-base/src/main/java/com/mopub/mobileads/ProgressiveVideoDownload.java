@@ -0,0 +1,352 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
+
+/**
+ * Tracks a video download that playback may start on before it completes. The download writes
+ * into a partial file; readers wait on this object for bytes that have not arrived yet.
+ * <p/>
+ * Each ad registers its own download under a unique key, carried to the fullscreen activity in
+ * the serialized {@link VastVideoConfig}, so that ads sharing a creative url do not replace or
+ * release each other's entries. Entries stay registered after the download finishes, so that
+ * playback keeps reading through this object, until the ad or playback
+ * {@link #release(String) releases} them.
+ * <p/>
+ * Startup latency and stall metrics are logged for comparison with full precaching.
+ */
+class ProgressiveVideoDownload implements ResumableVideoDownload.ProgressListener {
+
+    /**
+     * Notified on the main thread once the prefix is on disk.
+     */
+    interface PrefixListener {
+        void onPrefixAvailable();
+    }
+
+    /**
+     * Notified on the main thread once the download has ended.
+     */
+    interface FinishedListener {
+        void onFinished(boolean success);
+    }
+
+    enum ReadState {
+        AVAILABLE,
+        END_OF_FILE,
+        FAILED,
+        STALLED
+    }
+
+    private static final long UNKNOWN_LENGTH = -1;
+
+    @NonNull private static final Map<String, ProgressiveVideoDownload> sDownloads =
+            new HashMap<String, ProgressiveVideoDownload>();
+    @NonNull private static final AtomicLong sNextId = new AtomicLong();
+
+    @NonNull private final String mKey;
+    @NonNull private final String mUrl;
+    @NonNull private final File mPartialFile;
+    private final long mPrefixBytes;
+    private final long mStallTimeoutMillis;
+    // Dropped once notified or released so the registry does not keep the ad alive
+    @Nullable private PrefixListener mPrefixListener;
+    @NonNull private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    @NonNull private final List<FinishedListener> mFinishedListeners =
+            new ArrayList<FinishedListener>();
+
+    private long mAvailableBytes;
+    private long mTotalBytes = UNKNOWN_LENGTH;
+    private boolean mFinished;
+    private boolean mSucceeded;
+    private boolean mPrefixReported;
+
+    private final long mStartTimeMillis = SystemClock.elapsedRealtime();
+    private long mPrefixTimeMillis;
+    private int mStallCount;
+    private long mStalledMillis;
+
+    @VisibleForTesting
+    ProgressiveVideoDownload(@NonNull final String url, @NonNull final File partialFile,
+            final long prefixBytes, final long stallTimeoutMillis,
+            @NonNull final PrefixListener prefixListener) {
+        Preconditions.checkNotNull(url);
+        Preconditions.checkNotNull(partialFile);
+        Preconditions.checkNotNull(prefixListener);
+
+        mKey = url + "#" + sNextId.incrementAndGet();
+        mUrl = url;
+        mPartialFile = partialFile;
+        mPrefixBytes = prefixBytes;
+        mStallTimeoutMillis = stallTimeoutMillis;
+        mPrefixListener = prefixListener;
+    }
+
+    /**
+     * Registers a download so that playback can find it by its {@link #getKey() key}.
+     */
+    @NonNull
+    static ProgressiveVideoDownload register(@NonNull final String url,
+            @NonNull final File partialFile, final long prefixBytes,
+            final long stallTimeoutMillis, @NonNull final PrefixListener prefixListener) {
+        final ProgressiveVideoDownload download = new ProgressiveVideoDownload(url, partialFile,
+                prefixBytes, stallTimeoutMillis, prefixListener);
+        synchronized (sDownloads) {
+            sDownloads.put(download.mKey, download);
+        }
+        return download;
+    }
+
+    /**
+     * @return The download registered under this key, or {@code null} if the video was never
+     * downloaded progressively or the download has been released.
+     */
+    @Nullable
+    static ProgressiveVideoDownload get(@Nullable final String key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (sDownloads) {
+            return sDownloads.get(key);
+        }
+    }
+
+    /**
+     * Unregisters the download under this key once nothing will start reading from it. The
+     * download itself keeps running if it has not finished.
+     */
+    static void release(@Nullable final String key) {
+        if (key == null) {
+            return;
+        }
+        final ProgressiveVideoDownload download;
+        synchronized (sDownloads) {
+            download = sDownloads.remove(key);
+        }
+        if (download != null) {
+            download.clearPrefixListener();
+        }
+    }
+
+    /**
+     * Unregisters this download. See {@link #release(String)}.
+     */
+    void release() {
+        release(mKey);
+    }
+
+    @Override
+    public void onProgress(final long availableBytes, final long totalBytes) {
+        final boolean reportPrefix;
+        final PrefixListener prefixListener;
+        synchronized (this) {
+            mAvailableBytes = availableBytes;
+            mTotalBytes = totalBytes;
+            reportPrefix = !mPrefixReported && (availableBytes >= mPrefixBytes
+                    || (totalBytes != UNKNOWN_LENGTH && availableBytes >= totalBytes));
+            prefixListener = reportPrefix ? mPrefixListener : null;
+            if (reportPrefix) {
+                mPrefixReported = true;
+                mPrefixTimeMillis = SystemClock.elapsedRealtime();
+                mPrefixListener = null;
+            }
+            notifyAll();
+        }
+
+        if (reportPrefix) {
+            MoPubLog.log(CUSTOM, String.format("Progressive video ready after %d ms with %d " +
+                    "bytes on disk.", mPrefixTimeMillis - mStartTimeMillis, availableBytes));
+            if (prefixListener != null) {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        prefixListener.onPrefixAvailable();
+                    }
+                });
+            }
+        }
+    }
+
+    private synchronized void clearPrefixListener() {
+        mPrefixListener = null;
+    }
+
+    /**
+     * Called once the download has ended, successfully or not. Readers waiting for bytes and
+     * finished listeners are released. The download stays registered until {@link #release()}.
+     */
+    void onFinished(final boolean success) {
+        final long finishedTimeMillis = SystemClock.elapsedRealtime();
+        final List<FinishedListener> finishedListeners;
+        synchronized (this) {
+            mFinished = true;
+            mSucceeded = success;
+            finishedListeners = new ArrayList<FinishedListener>(mFinishedListeners);
+            mFinishedListeners.clear();
+            notifyAll();
+        }
+
+        for (final FinishedListener finishedListener : finishedListeners) {
+            postFinished(finishedListener, success);
+        }
+
+        if (success && mPrefixReported) {
+            MoPubLog.log(CUSTOM, String.format("Video fully cached after %d ms; progressive " +
+                            "playback was ready %d ms earlier.",
+                    finishedTimeMillis - mStartTimeMillis,
+                    finishedTimeMillis - mPrefixTimeMillis));
+        }
+    }
+
+    /**
+     * Notifies the listener on the main thread once the download has ended, or right away if it
+     * already has.
+     */
+    void addFinishedListener(@NonNull final FinishedListener finishedListener) {
+        Preconditions.checkNotNull(finishedListener);
+
+        final boolean succeeded;
+        synchronized (this) {
+            if (!mFinished) {
+                mFinishedListeners.add(finishedListener);
+                return;
+            }
+            succeeded = mSucceeded;
+        }
+        postFinished(finishedListener, succeeded);
+    }
+
+    private void postFinished(@NonNull final FinishedListener finishedListener,
+            final boolean success) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                finishedListener.onFinished(success);
+            }
+        });
+    }
+
+    /**
+     * Blocks until the byte at the given position is on disk, the download ends, or playback has
+     * waited longer than the stall timeout.
+     *
+     * @param position Offset of the byte to read
+     * @return {@link ReadState#AVAILABLE} if the byte can be read
+     */
+    @NonNull
+    synchronized ReadState awaitByte(final long position) throws InterruptedException {
+        if (position < mAvailableBytes) {
+            return ReadState.AVAILABLE;
+        }
+        if (mTotalBytes != UNKNOWN_LENGTH && position >= mTotalBytes) {
+            return ReadState.END_OF_FILE;
+        }
+
+        // wait() runs on wall time, so the deadline is tracked with System.nanoTime
+        final long stallStartNanos = System.nanoTime();
+        final long deadlineNanos = stallStartNanos
+                + TimeUnit.MILLISECONDS.toNanos(mStallTimeoutMillis);
+        mStallCount++;
+        try {
+            while (position >= mAvailableBytes && !mFinished) {
+                final long remainingMillis =
+                        TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    MoPubLog.log(CUSTOM, String.format("Progressive playback stalled at byte " +
+                            "%d for more than %d ms.", position, mStallTimeoutMillis));
+                    return ReadState.STALLED;
+                }
+                wait(remainingMillis);
+            }
+        } finally {
+            mStalledMillis += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stallStartNanos);
+        }
+
+        if (position < mAvailableBytes) {
+            return ReadState.AVAILABLE;
+        }
+        return mSucceeded ? ReadState.END_OF_FILE : ReadState.FAILED;
+    }
+
+    synchronized long getAvailableBytes() {
+        return mAvailableBytes;
+    }
+
+    /**
+     * @return The length of the video, or -1 if it is not known yet
+     */
+    synchronized long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    /**
+     * @return {@code true} if the download has ended without the whole video
+     */
+    synchronized boolean hasFailed() {
+        return mFinished && !mSucceeded;
+    }
+
+    /**
+     * @return {@code true} if the whole video has been moved into the video cache
+     */
+    synchronized boolean hasSucceeded() {
+        return mFinished && mSucceeded;
+    }
+
+    @NonNull
+    File getPartialFile() {
+        return mPartialFile;
+    }
+
+    /**
+     * @return The key this download is registered under, unique to the ad that started it
+     */
+    @NonNull
+    String getKey() {
+        return mKey;
+    }
+
+    @NonNull
+    String getUrl() {
+        return mUrl;
+    }
+
+    @VisibleForTesting
+    synchronized int getStallCount() {
+        return mStallCount;
+    }
+
+    @VisibleForTesting
+    synchronized long getStalledMillis() {
+        return mStalledMillis;
+    }
+
+    @VisibleForTesting
+    static void clearDownloads() {
+        synchronized (sDownloads) {
+            sDownloads.clear();
+        }
+    }
+}
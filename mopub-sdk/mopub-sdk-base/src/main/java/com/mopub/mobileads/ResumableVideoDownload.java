@@ -0,0 +1,436 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.MoPubHttpUrlConnection;
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.ResponseHeader;
+import com.mopub.common.util.Streams;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
+
+/**
+ * Downloads a video into a partial file with HTTP Range requests. Bytes are appended to the
+ * partial file as they arrive, so a download that fails or is cancelled can be resumed by a later
+ * instance for the same file, provided the server sent a strong ETag or a Last-Modified date to
+ * validate it with. The size cap is enforced on the bytes actually written rather than on the
+ * advertised Content-Length.
+ * <p/>
+ * Servers that ignore Range requests answer with the whole body, which is streamed from the start.
+ */
+class ResumableVideoDownload {
+    static final int CHUNK_SIZE_BYTES = 2 * 1024 * 1024; // 2 MiB
+    static final int MAX_RETRIES_WITHOUT_PROGRESS = 2;
+
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final int BUFFER_SIZE_BYTES = 16 * 1024;
+    private static final String METADATA_SUFFIX = ".meta";
+    private static final long UNKNOWN_LENGTH = -1;
+
+    // bytes <first>-<last>/<total> or bytes */<total>
+    private static final Pattern CONTENT_RANGE_PATTERN =
+            Pattern.compile("bytes\\s+(?:(\\d+)-(\\d+)|\\*)/(\\d+|\\*)");
+
+    /**
+     * Notified on the download thread as bytes are appended to the partial file.
+     */
+    interface ProgressListener {
+        /**
+         * @param availableBytes Number of bytes at the start of the partial file
+         * @param totalBytes     Length of the video, or -1 if the server has not reported it
+         */
+        void onProgress(long availableBytes, long totalBytes);
+    }
+
+    private enum ChunkResult {
+        CONTINUE,
+        COMPLETE,
+        FAILED
+    }
+
+    @NonNull private final String mUrl;
+    @NonNull private final File mPartialFile;
+    @NonNull private final File mMetadataFile;
+    private final long mMaxSizeBytes;
+
+    private long mOffset;
+    private long mTotalLength = UNKNOWN_LENGTH;
+    @Nullable private String mValidator;
+    @Nullable private ProgressListener mProgressListener;
+
+    ResumableVideoDownload(@NonNull final String url, @NonNull final File partialFile,
+            final long maxSizeBytes) {
+        Preconditions.checkNotNull(url);
+        Preconditions.checkNotNull(partialFile);
+
+        mUrl = url;
+        mPartialFile = partialFile;
+        mMetadataFile = new File(partialFile.getPath() + METADATA_SUFFIX);
+        mMaxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Downloads the remaining bytes of the video. A chunk that fails part way is retried from the
+     * last byte written; the download gives up once {@link #MAX_RETRIES_WITHOUT_PROGRESS}
+     * consecutive attempts make no progress.
+     *
+     * @return {@code true} once the partial file holds the whole video, {@code false} if the
+     * server rejected the request or the video is larger than the size cap
+     * @throws IOException if the connection kept failing. The partial file is kept for the next
+     *                     attempt.
+     */
+    boolean download() throws IOException {
+        restoreState();
+        notifyProgress();
+
+        int failuresWithoutProgress = 0;
+        while (mTotalLength == UNKNOWN_LENGTH || mOffset < mTotalLength) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Video download was cancelled");
+            }
+
+            final long offsetBeforeChunk = mOffset;
+            try {
+                final ChunkResult result = requestChunk();
+                if (result == ChunkResult.COMPLETE) {
+                    return true;
+                }
+                if (result == ChunkResult.FAILED) {
+                    return false;
+                }
+                failuresWithoutProgress = 0;
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                if (mOffset > offsetBeforeChunk) {
+                    failuresWithoutProgress = 0;
+                } else if (++failuresWithoutProgress > MAX_RETRIES_WITHOUT_PROGRESS) {
+                    throw e;
+                }
+                MoPubLog.log(CUSTOM, String.format("Video download interrupted at %d bytes, " +
+                        "retrying.", mOffset));
+            }
+        }
+
+        return true;
+    }
+
+    void setProgressListener(@Nullable final ProgressListener progressListener) {
+        mProgressListener = progressListener;
+    }
+
+    @NonNull
+    File getPartialFile() {
+        return mPartialFile;
+    }
+
+    /**
+     * Deletes the partial file and its metadata once the video has been moved into the cache.
+     * While the download runs, progressive playback may be reading the partial file, so failures
+     * truncate it instead.
+     */
+    void discard() {
+        mPartialFile.delete();
+        mMetadataFile.delete();
+        mOffset = 0;
+        mTotalLength = UNKNOWN_LENGTH;
+        mValidator = null;
+    }
+
+    /**
+     * Empties the partial file in place rather than deleting it, since progressive playback may
+     * still be reading it.
+     */
+    private void truncate() throws IOException {
+        new FileOutputStream(mPartialFile).close();
+        mMetadataFile.delete();
+        mOffset = 0;
+        mTotalLength = UNKNOWN_LENGTH;
+        mValidator = null;
+        notifyProgress();
+    }
+
+    @VisibleForTesting
+    long getOffset() {
+        return mOffset;
+    }
+
+    @NonNull
+    private ChunkResult requestChunk() throws IOException {
+        long lastByte = mOffset + CHUNK_SIZE_BYTES - 1;
+        if (mTotalLength != UNKNOWN_LENGTH) {
+            lastByte = Math.min(lastByte, mTotalLength - 1);
+        }
+
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        try {
+            urlConnection = MoPubHttpUrlConnection.getHttpUrlConnection(mUrl);
+            urlConnection.setRequestProperty(ResponseHeader.RANGE.getKey(),
+                    "bytes=" + mOffset + "-" + lastByte);
+            if (mOffset > 0 && mValidator != null) {
+                urlConnection.setRequestProperty(ResponseHeader.IF_RANGE.getKey(), mValidator);
+            }
+
+            final int statusCode = urlConnection.getResponseCode();
+            if (statusCode == HTTP_RANGE_NOT_SATISFIABLE) {
+                return onRangeNotSatisfiable(urlConnection);
+            }
+            if (statusCode != HttpURLConnection.HTTP_OK && statusCode != HTTP_PARTIAL_CONTENT) {
+                MoPubLog.log(CUSTOM, "VideoDownloader encountered unexpected statusCode: " +
+                        statusCode);
+                return ChunkResult.FAILED;
+            }
+
+            inputStream = new BufferedInputStream(urlConnection.getInputStream());
+            if (statusCode == HttpURLConnection.HTTP_OK) {
+                return onFullContent(urlConnection, inputStream);
+            }
+            return onPartialContent(urlConnection, inputStream, lastByte - mOffset + 1);
+        } finally {
+            Streams.closeStream(inputStream);
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * The server ignored the Range header, or the validator no longer matches, and sent the whole
+     * video. Restart the partial file and stream the entire body.
+     */
+    @NonNull
+    private ChunkResult onFullContent(@NonNull final HttpURLConnection urlConnection,
+            @NonNull final InputStream inputStream) throws IOException {
+        truncate();
+
+        final long contentLength = urlConnection.getContentLength();
+        if (isTooLarge(contentLength)) {
+            return ChunkResult.FAILED;
+        }
+        mTotalLength = contentLength < 0 ? UNKNOWN_LENGTH : contentLength;
+        saveMetadata(urlConnection);
+
+        if (!append(inputStream, Long.MAX_VALUE)) {
+            return ChunkResult.FAILED;
+        }
+        if (mTotalLength != UNKNOWN_LENGTH && mOffset < mTotalLength) {
+            throw new IOException("Connection closed before the video was complete");
+        }
+        mTotalLength = mOffset;
+        return ChunkResult.COMPLETE;
+    }
+
+    @NonNull
+    private ChunkResult onPartialContent(@NonNull final HttpURLConnection urlConnection,
+            @NonNull final InputStream inputStream, final long requestedBytes) throws IOException {
+        final Matcher contentRange = matchContentRange(urlConnection);
+        if (contentRange == null || contentRange.group(1) == null
+                || Long.parseLong(contentRange.group(1)) != mOffset) {
+            MoPubLog.log(CUSTOM, "VideoDownloader received an unexpected Content-Range.");
+            truncate();
+            return ChunkResult.FAILED;
+        }
+
+        final long expectedBytes = Long.parseLong(contentRange.group(2)) - mOffset + 1;
+        final String total = contentRange.group(3);
+        if (!"*".equals(total)) {
+            final long totalLength = Long.parseLong(total);
+            if (isTooLarge(totalLength)) {
+                truncate();
+                return ChunkResult.FAILED;
+            }
+            mTotalLength = totalLength;
+        }
+        if (mOffset == 0) {
+            saveMetadata(urlConnection);
+        }
+
+        if (!append(inputStream, expectedBytes)) {
+            return ChunkResult.FAILED;
+        }
+        if (mTotalLength != UNKNOWN_LENGTH && mOffset >= mTotalLength) {
+            return ChunkResult.COMPLETE;
+        }
+        if (expectedBytes < requestedBytes && mTotalLength == UNKNOWN_LENGTH) {
+            // A short range with no declared total is the end of the video
+            mTotalLength = mOffset;
+            return ChunkResult.COMPLETE;
+        }
+        return ChunkResult.CONTINUE;
+    }
+
+    /**
+     * The requested range starts at or after the end of the video. If the partial file holds
+     * exactly the advertised length it is complete, otherwise it is truncated.
+     */
+    @NonNull
+    private ChunkResult onRangeNotSatisfiable(@NonNull final HttpURLConnection urlConnection)
+            throws IOException {
+        final Matcher contentRange = matchContentRange(urlConnection);
+        if (contentRange != null && !"*".equals(contentRange.group(3))
+                && Long.parseLong(contentRange.group(3)) == mOffset && mOffset > 0) {
+            mTotalLength = mOffset;
+            return ChunkResult.COMPLETE;
+        }
+
+        truncate();
+        return ChunkResult.FAILED;
+    }
+
+    /**
+     * Appends up to maxBytes from the stream to the partial file, advancing the offset as bytes
+     * are written so that progress survives a dropped connection.
+     *
+     * @return {@code false} if the video grew past the size cap, in which case the partial file
+     * has been truncated
+     */
+    private boolean append(@NonNull final InputStream inputStream, final long maxBytes)
+            throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE_BYTES];
+        long remaining = maxBytes;
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(mPartialFile, true);
+            while (remaining > 0) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Video download was cancelled");
+                }
+
+                final int read = inputStream.read(buffer, 0,
+                        (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    break;
+                }
+                if (mOffset + read > mMaxSizeBytes) {
+                    Streams.closeStream(outputStream);
+                    outputStream = null;
+                    MoPubLog.log(CUSTOM, String.format("VideoDownloader streamed more than the " +
+                            "disk cap of %d bytes.", mMaxSizeBytes));
+                    truncate();
+                    return false;
+                }
+
+                outputStream.write(buffer, 0, read);
+                mOffset += read;
+                remaining -= read;
+                notifyProgress();
+            }
+        } finally {
+            Streams.closeStream(outputStream);
+        }
+
+        if (maxBytes != Long.MAX_VALUE && remaining > 0) {
+            throw new IOException("Connection closed after " + (maxBytes - remaining) +
+                    " of " + maxBytes + " bytes");
+        }
+        return true;
+    }
+
+    private void notifyProgress() {
+        if (mProgressListener != null) {
+            mProgressListener.onProgress(mOffset, mTotalLength);
+        }
+    }
+
+    private boolean isTooLarge(final long length) {
+        if (length > mMaxSizeBytes) {
+            MoPubLog.log(CUSTOM, String.format(
+                    "VideoDownloader encountered video larger than disk cap. " +
+                            "(%d bytes / %d maximum).",
+                    length,
+                    mMaxSizeBytes));
+            return true;
+        }
+        return false;
+    }
+
+    @Nullable
+    private static Matcher matchContentRange(@NonNull final HttpURLConnection urlConnection) {
+        final String contentRange =
+                urlConnection.getHeaderField(ResponseHeader.CONTENT_RANGE.getKey());
+        if (contentRange == null) {
+            return null;
+        }
+
+        final Matcher matcher = CONTENT_RANGE_PATTERN.matcher(contentRange.trim());
+        return matcher.matches() ? matcher : null;
+    }
+
+    /**
+     * Reads the offset from the partial file and the total length and validator saved by an
+     * earlier attempt. Partial files without metadata or without a validator cannot be checked
+     * against the current video and are restarted.
+     */
+    private void restoreState() throws IOException {
+        mOffset = mPartialFile.exists() ? mPartialFile.length() : 0;
+        mTotalLength = UNKNOWN_LENGTH;
+        mValidator = null;
+        if (mOffset == 0) {
+            return;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(mMetadataFile));
+            final String totalLength = reader.readLine();
+            final String validator = reader.readLine();
+            mTotalLength = totalLength == null ? UNKNOWN_LENGTH : Long.parseLong(totalLength);
+            mValidator = validator == null || validator.isEmpty() ? null : validator;
+        } catch (IOException | NumberFormatException e) {
+            truncate();
+            return;
+        } finally {
+            Streams.closeStream(reader);
+        }
+
+        if (mValidator == null || mOffset > mMaxSizeBytes
+                || (mTotalLength != UNKNOWN_LENGTH && mOffset > mTotalLength)) {
+            truncate();
+        }
+    }
+
+    private void saveMetadata(@NonNull final HttpURLConnection urlConnection) throws IOException {
+        String validator = urlConnection.getHeaderField(ResponseHeader.ETAG.getKey());
+        if (validator == null || validator.startsWith("W/")) {
+            // Weak validators cannot be used with If-Range
+            validator = urlConnection.getHeaderField(ResponseHeader.LAST_MODIFIED.getKey());
+        }
+        mValidator = validator;
+
+        Writer writer = null;
+        try {
+            writer = new FileWriter(mMetadataFile);
+            writer.write(Long.toString(mTotalLength));
+            writer.write('\n');
+            writer.write(validator == null ? "" : validator);
+            writer.write('\n');
+        } finally {
+            Streams.closeStream(writer);
+        }
+    }
+}
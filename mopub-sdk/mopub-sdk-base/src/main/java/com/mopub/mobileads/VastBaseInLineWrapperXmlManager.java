@@ -16,7 +16,7 @@ import org.w3c.dom.Node;
 import java.util.ArrayList;
 import java.util.List;
 
-abstract class VastBaseInLineWrapperXmlManager {
+abstract class VastBaseInLineWrapperXmlManager implements VastDocument.InLineWrapper {
 
     // Element Names
     private static final String IMPRESSION_TRACKER = "Impression";
@@ -41,8 +41,9 @@ abstract class VastBaseInLineWrapperXmlManager {
      *
      * @return List of URLs of impression trackers
      */
+    @Override
     @NonNull
-    List<VastTracker> getImpressionTrackers() {
+    public List<VastTracker> getImpressionTrackers() {
         final List<Node> impressionNodes = XmlUtils.getMatchingChildNodes(mNode, IMPRESSION_TRACKER);
 
         List<VastTracker> impressionTrackers = new ArrayList<VastTracker>();
@@ -61,8 +62,9 @@ abstract class VastBaseInLineWrapperXmlManager {
      *
      * @return The URL of the error tracker.
      */
+    @Override
     @NonNull
-    List<VastTracker> getErrorTrackers() {
+    public List<VastTracker> getErrorTrackers() {
         final List<VastTracker> errorTrackers = new ArrayList<VastTracker>();
         final List<Node> errorNodes = XmlUtils.getMatchingChildNodes(mNode, ERROR);
         if (errorNodes == null) {
@@ -83,8 +85,9 @@ abstract class VastBaseInLineWrapperXmlManager {
      *
      * @return The {@link VastLinearXmlManager}s or an empty list if there is no Linear child node.
      */
+    @Override
     @NonNull
-    List<VastLinearXmlManager> getLinearXmlManagers() {
+    public List<VastLinearXmlManager> getLinearXmlManagers() {
         final List<VastLinearXmlManager> linearXmlManagers = new ArrayList<VastLinearXmlManager>();
         final Node creativesNode = XmlUtils.getFirstMatchingChildNode(mNode, CREATIVES);
         if (creativesNode == null) {
@@ -114,8 +117,9 @@ abstract class VastBaseInLineWrapperXmlManager {
      * @return The {@link VastCompanionAdXmlManager}s or an empty list if there are no
      * CompanionAds or Companion child node.
      */
+    @Override
     @NonNull
-    List<VastCompanionAdXmlManager> getCompanionAdXmlManagers() {
+    public List<VastCompanionAdXmlManager> getCompanionAdXmlManagers() {
         final List<VastCompanionAdXmlManager> companionAdXmlManagers = new
                 ArrayList<VastCompanionAdXmlManager>();
         final Node creativesNode = XmlUtils.getFirstMatchingChildNode(mNode, CREATIVES);
@@ -0,0 +1,132 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * The parts of a VAST document that {@link VastXmlManagerAggregator} evaluates. Both the DOM
+ * managers starting at {@link VastXmlManager} and the {@link VastXmlPullParser} views implement
+ * these, so a document is evaluated the same way regardless of which parser read it.
+ */
+interface VastDocument {
+    @NonNull
+    List<? extends Ad> getAdXmlManagers();
+
+    @Nullable
+    VastTracker getErrorTracker();
+
+    @NonNull
+    List<VastTracker> getMoPubImpressionTrackers();
+
+    @Nullable
+    String getCustomCtaText();
+
+    @Nullable
+    String getCustomSkipText();
+
+    @Nullable
+    String getCustomCloseIconUrl();
+
+    /**
+     * An Ad element.
+     */
+    interface Ad {
+        @Nullable
+        String getSequence();
+
+        @Nullable
+        InLineWrapper getInLineXmlManager();
+
+        @Nullable
+        Wrapper getWrapperXmlManager();
+    }
+
+    /**
+     * The parts common to InLine and Wrapper elements.
+     */
+    interface InLineWrapper {
+        @NonNull
+        List<VastTracker> getImpressionTrackers();
+
+        @NonNull
+        List<VastTracker> getErrorTrackers();
+
+        @NonNull
+        List<? extends Linear> getLinearXmlManagers();
+
+        @NonNull
+        List<VastCompanionAdXmlManager> getCompanionAdXmlManagers();
+    }
+
+    /**
+     * A Wrapper element.
+     */
+    interface Wrapper extends InLineWrapper {
+        @Nullable
+        String getVastAdTagURI();
+    }
+
+    /**
+     * A Linear creative.
+     */
+    interface Linear {
+        @NonNull
+        List<VastFractionalProgressTracker> getFractionalProgressTrackers();
+
+        @NonNull
+        List<VastAbsoluteProgressTracker> getAbsoluteProgressTrackers();
+
+        @NonNull
+        List<VastTracker> getVideoCompleteTrackers();
+
+        @NonNull
+        List<VastTracker> getPauseTrackers();
+
+        @NonNull
+        List<VastTracker> getResumeTrackers();
+
+        @NonNull
+        List<VastTracker> getVideoCloseTrackers();
+
+        @NonNull
+        List<VastTracker> getVideoSkipTrackers();
+
+        @NonNull
+        List<VastTracker> getClickTrackers();
+
+        @Nullable
+        String getClickThroughUrl();
+
+        @NonNull
+        List<? extends MediaFile> getMediaXmlManagers();
+
+        @NonNull
+        List<VastIconXmlManager> getIconXmlManagers();
+    }
+
+    /**
+     * A MediaFile element.
+     */
+    interface MediaFile {
+        @Nullable
+        Integer getWidth();
+
+        @Nullable
+        Integer getHeight();
+
+        @Nullable
+        String getType();
+
+        @Nullable
+        String getMediaUrl();
+
+        @Nullable
+        Integer getBitrate();
+    }
+}
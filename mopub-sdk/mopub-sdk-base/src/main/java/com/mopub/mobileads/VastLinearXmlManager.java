@@ -23,7 +23,7 @@ import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
  * This XML manager handles the meta data around the video file. This includes video progress
  * trackers and click trackers. This also houses the manager for the actual media file.
  */
-class VastLinearXmlManager {
+class VastLinearXmlManager implements VastDocument.Linear {
 
     // Element names
     private static final String TRACKING_EVENTS = "TrackingEvents";
@@ -87,47 +87,10 @@ class VastLinearXmlManager {
      * </Tracking>
      * }
      */
+    @Override
     @NonNull
-    List<VastFractionalProgressTracker> getFractionalProgressTrackers() {
-        // Add all the quartile trackers from VAST 2.0:
-        List<VastFractionalProgressTracker> percentTrackers = new ArrayList<VastFractionalProgressTracker>();
-
-        addQuartileTrackerWithFraction(percentTrackers, getVideoTrackersByAttribute(FIRST_QUARTILE), FIRST_QUARTER_MARKER);
-        addQuartileTrackerWithFraction(percentTrackers, getVideoTrackersByAttribute(MIDPOINT), MID_POINT_MARKER);
-        addQuartileTrackerWithFraction(percentTrackers, getVideoTrackersByAttribute(THIRD_QUARTILE), THIRD_QUARTER_MARKER);
-
-        final Node trackingEvents = XmlUtils.getFirstMatchingChildNode(mLinearNode, TRACKING_EVENTS);
-        if (trackingEvents != null) {
-            // Get any other trackers with event="progress" offset="n%"
-            final List<Node> progressNodes = XmlUtils.getMatchingChildNodes(trackingEvents,
-                    VIDEO_TRACKER, EVENT, Collections.singletonList(PROGRESS));
-
-            for (Node progressNode : progressNodes) {
-                String offsetString = XmlUtils.getAttributeValue(progressNode, OFFSET);
-                if (offsetString == null) {
-                    continue;
-                }
-                offsetString = offsetString.trim();
-                if (VastFractionalProgressTracker.Companion.isPercentageTracker(offsetString)) {
-                    String trackingUrl = XmlUtils.getNodeValue(progressNode);
-                    try {
-                        final float trackingFraction =
-                                Float.parseFloat(offsetString.replace("%", "")) / 100f;
-                        if (trackingFraction >= 0) {
-                            percentTrackers.add(new VastFractionalProgressTracker.Builder(trackingUrl,
-                                    trackingFraction).build());
-                        }
-                    } catch (NumberFormatException e) {
-                        MoPubLog.log(CUSTOM, String.format("Failed to parse VAST progress tracker %s",
-                                offsetString));
-                    }
-                }
-            }
-        }
-
-        // Sort the list so we can quickly index it in the video progress runnable.
-        Collections.sort(percentTrackers);
-        return percentTrackers;
+    public List<VastFractionalProgressTracker> getFractionalProgressTrackers() {
+        return createFractionalProgressTrackers(getTrackingEvents());
     }
 
     /**
@@ -147,61 +110,10 @@ class VastLinearXmlManager {
      * </Tracking>
      * }
      */
+    @Override
     @NonNull
-    List<VastAbsoluteProgressTracker> getAbsoluteProgressTrackers() {
-        List<VastAbsoluteProgressTracker> trackers = new ArrayList<>();
-
-        // Start trackers are treated as absolute trackers set at 0 seconds
-        final List<String> startTrackers = getVideoTrackersByAttribute(START);
-        for (String url : startTrackers) {
-            trackers.add(
-                    new VastAbsoluteProgressTracker.Builder(url, START_TRACKER_THRESHOLD).build()
-            );
-        }
-
-        final Node trackingEvents = XmlUtils.getFirstMatchingChildNode(mLinearNode, TRACKING_EVENTS);
-        if (trackingEvents != null) {
-            // Parse progress trackers and extract the absolute offsets of the form "HH:MM:SS[.mmm]"
-
-            final List<Node> progressNodes = XmlUtils.getMatchingChildNodes(trackingEvents,
-                    VIDEO_TRACKER, EVENT, Collections.singletonList(PROGRESS));
-            for (Node progressNode : progressNodes) {
-                String offsetString = XmlUtils.getAttributeValue(progressNode, OFFSET);
-                if (offsetString == null) {
-                    continue;
-                }
-                offsetString = offsetString.trim();
-                if (VastAbsoluteProgressTracker.Companion.isAbsoluteTracker(offsetString)) {
-                    String trackingUrl = XmlUtils.getNodeValue(progressNode);
-                    try {
-                        Integer trackingMilliseconds = VastAbsoluteProgressTracker.Companion.parseAbsoluteOffset(offsetString);
-                        if (trackingMilliseconds != null && trackingMilliseconds >= 0) {
-                            trackers.add(new VastAbsoluteProgressTracker.Builder(trackingUrl, trackingMilliseconds).build());
-                        }
-                    } catch (NumberFormatException e) {
-                        MoPubLog.log(CUSTOM, String.format("Failed to parse VAST progress tracker %s",
-                                offsetString));
-                    }
-                }
-            }
-
-            // Parse creativeView trackers
-            final List<Node> creativeViewNodes = XmlUtils.getMatchingChildNodes(trackingEvents,
-                    VIDEO_TRACKER, EVENT, Collections.singletonList(CREATIVE_VIEW));
-            for (Node creativeViewNode : creativeViewNodes) {
-                final String creativeNodeValue = XmlUtils.getNodeValue(creativeViewNode);
-                if (creativeNodeValue != null) {
-                    trackers.add(
-                            new VastAbsoluteProgressTracker.Builder(creativeNodeValue,
-                                    CREATIVE_VIEW_TRACKER_THRESHOLD).build()
-                    );
-                }
-            }
-        }
-
-        // Sort the list so we can quickly index it in the video progress runnable.
-        Collections.sort(trackers);
-        return trackers;
+    public List<VastAbsoluteProgressTracker> getAbsoluteProgressTrackers() {
+        return createAbsoluteProgressTrackers(getTrackingEvents());
     }
 
     /**
@@ -209,9 +121,10 @@ class VastLinearXmlManager {
      *
      * @return List of String URLs of video complete trackers.
      */
+    @Override
     @NonNull
-    List<VastTracker> getVideoCompleteTrackers() {
-        return getVideoTrackersByAttributeAsVastTrackers(COMPLETE);
+    public List<VastTracker> getVideoCompleteTrackers() {
+        return createTrackers(getTrackingEvents(), false, COMPLETE);
     }
 
     /**
@@ -219,14 +132,10 @@ class VastLinearXmlManager {
      *
      * @return List of String URLs of pause trackers.
      */
+    @Override
     @NonNull
-    List<VastTracker> getPauseTrackers() {
-        List<String> trackers = getVideoTrackersByAttribute(PAUSE);
-        List<VastTracker> vastRepeatableTrackers = new ArrayList<VastTracker>();
-        for (String tracker : trackers) {
-            vastRepeatableTrackers.add(new VastTracker.Builder(tracker).isRepeatable(true).build());
-        }
-        return vastRepeatableTrackers;
+    public List<VastTracker> getPauseTrackers() {
+        return createTrackers(getTrackingEvents(), true, PAUSE);
     }
 
     /**
@@ -234,14 +143,10 @@ class VastLinearXmlManager {
      *
      * @return List of String URLs of resume trackers.
      */
+    @Override
     @NonNull
-    List<VastTracker> getResumeTrackers() {
-        List<String> trackers = getVideoTrackersByAttribute(RESUME);
-        List<VastTracker> vastRepeatableTrackers = new ArrayList<VastTracker>();
-        for (String tracker : trackers) {
-            vastRepeatableTrackers.add(new VastTracker.Builder(tracker).isRepeatable(true).build());
-        }
-        return vastRepeatableTrackers;
+    public List<VastTracker> getResumeTrackers() {
+        return createTrackers(getTrackingEvents(), true, RESUME);
     }
 
     /**
@@ -249,11 +154,10 @@ class VastLinearXmlManager {
      *
      * @return List of String URLs of video closes.
      */
+    @Override
     @NonNull
-    List<VastTracker> getVideoCloseTrackers() {
-        List<VastTracker> closeTrackers = getVideoTrackersByAttributeAsVastTrackers(CLOSE);
-        closeTrackers.addAll(getVideoTrackersByAttributeAsVastTrackers(CLOSE_LINEAR));
-        return closeTrackers;
+    public List<VastTracker> getVideoCloseTrackers() {
+        return createTrackers(getTrackingEvents(), false, CLOSE, CLOSE_LINEAR);
     }
 
     /**
@@ -261,9 +165,10 @@ class VastLinearXmlManager {
      *
      * @return List of String URLs of video skip trackers.
      */
+    @Override
     @NonNull
-    List<VastTracker> getVideoSkipTrackers() {
-        return getVideoTrackersByAttributeAsVastTrackers(SKIP);
+    public List<VastTracker> getVideoSkipTrackers() {
+        return createTrackers(getTrackingEvents(), false, SKIP);
     }
 
     /**
@@ -271,8 +176,9 @@ class VastLinearXmlManager {
      *
      * @return The clickthrough URL or {@code null} if there isn't one.
      */
+    @Override
     @Nullable
-    String getClickThroughUrl() {
+    public String getClickThroughUrl() {
         final Node videoClicks = XmlUtils.getFirstMatchingChildNode(mLinearNode, VIDEO_CLICKS);
         if (videoClicks == null) {
             return null;
@@ -285,8 +191,9 @@ class VastLinearXmlManager {
      *
      * @return List of String URLs of click trackers.
      */
+    @Override
     @NonNull
-    List<VastTracker> getClickTrackers() {
+    public List<VastTracker> getClickTrackers() {
         List<VastTracker> clickTrackers = new ArrayList<VastTracker>();
 
         final Node videoClicks = XmlUtils.getFirstMatchingChildNode(mLinearNode, VIDEO_CLICKS);
@@ -335,8 +242,9 @@ class VastLinearXmlManager {
      * @return The {@link VastMediaXmlManager}
      * or an empty list if there is no Media child node.
      */
+    @Override
     @NonNull
-    List<VastMediaXmlManager> getMediaXmlManagers() {
+    public List<VastMediaXmlManager> getMediaXmlManagers() {
         final List<VastMediaXmlManager> mediaXmlManagers = new ArrayList<VastMediaXmlManager>();
 
         final Node mediaFiles = XmlUtils.getFirstMatchingChildNode(mLinearNode, MEDIA_FILES);
@@ -352,8 +260,9 @@ class VastLinearXmlManager {
         return mediaXmlManagers;
     }
 
+    @Override
     @NonNull
-    List<VastIconXmlManager> getIconXmlManagers() {
+    public List<VastIconXmlManager> getIconXmlManagers() {
         final List<VastIconXmlManager> iconXmlManagers = new ArrayList<VastIconXmlManager>();
 
         final Node icons = XmlUtils.getFirstMatchingChildNode(mLinearNode, ICONS);
@@ -369,52 +278,169 @@ class VastLinearXmlManager {
         return iconXmlManagers;
     }
 
+    /**
+     * @return the Tracking elements of the first TrackingEvents node, in document order
+     */
     @NonNull
-    private List<VastTracker> getVideoTrackersByAttributeAsVastTrackers(
-            @NonNull final String attributeValue) {
-        List<String> trackers = getVideoTrackersByAttribute(attributeValue);
-        List<VastTracker> vastTrackers = new ArrayList<VastTracker>(trackers.size());
-        for (String tracker : trackers) {
-            vastTrackers.add(new VastTracker.Builder(tracker).build());
+    private List<TrackingEvent> getTrackingEvents() {
+        final List<TrackingEvent> trackingEvents = new ArrayList<TrackingEvent>();
+
+        final Node trackingEventsNode = XmlUtils.getFirstMatchingChildNode(mLinearNode,
+                TRACKING_EVENTS);
+        if (trackingEventsNode == null) {
+            return trackingEvents;
         }
-        return vastTrackers;
+
+        for (Node trackerNode : XmlUtils.getMatchingChildNodes(trackingEventsNode, VIDEO_TRACKER)) {
+            final String event = XmlUtils.getAttributeValue(trackerNode, EVENT);
+            if (event != null) {
+                trackingEvents.add(new TrackingEvent(event,
+                        XmlUtils.getAttributeValue(trackerNode, OFFSET),
+                        XmlUtils.getNodeValue(trackerNode)));
+            }
+        }
+        return trackingEvents;
     }
 
     /**
-     * This helper method makes it easy to get a tracking event with a specific name in a linear
-     * node. This returns an empty list if there isn't a tracker with that event name.
-     *
-     * @param attributeValue The name of the tracking event
-     * @return List of URLs with that tracker name or an empty list if none found.
+     * A Tracking element of a Linear creative. {@link VastXmlPullParser} collects these too, so
+     * both parsers turn them into trackers with the methods below.
+     */
+    static class TrackingEvent {
+        @NonNull final String mEvent;
+        @Nullable final String mOffset;
+        @Nullable final String mUrl;
+
+        TrackingEvent(@NonNull final String event, @Nullable final String offset,
+                @Nullable final String url) {
+            mEvent = event;
+            mOffset = offset;
+            mUrl = url;
+        }
+    }
+
+    /**
+     * @return the sorted quartile trackers and percent-based progress trackers
      */
     @NonNull
-    private List<String> getVideoTrackersByAttribute(@NonNull final String attributeValue) {
-        Preconditions.checkNotNull(attributeValue);
-        List<String> videoTrackers = new ArrayList<String>();
+    static List<VastFractionalProgressTracker> createFractionalProgressTrackers(
+            @NonNull final List<TrackingEvent> trackingEvents) {
+        // Add all the quartile trackers from VAST 2.0:
+        List<VastFractionalProgressTracker> percentTrackers = new ArrayList<VastFractionalProgressTracker>();
 
-        final Node trackingEvents = XmlUtils.getFirstMatchingChildNode(mLinearNode, TRACKING_EVENTS);
-        if (trackingEvents == null) {
-            return videoTrackers;
+        addQuartileTrackerWithFraction(percentTrackers, getUrls(trackingEvents, FIRST_QUARTILE), FIRST_QUARTER_MARKER);
+        addQuartileTrackerWithFraction(percentTrackers, getUrls(trackingEvents, MIDPOINT), MID_POINT_MARKER);
+        addQuartileTrackerWithFraction(percentTrackers, getUrls(trackingEvents, THIRD_QUARTILE), THIRD_QUARTER_MARKER);
+
+        // Get any other trackers with event="progress" offset="n%"
+        for (TrackingEvent trackingEvent : trackingEvents) {
+            if (!PROGRESS.equals(trackingEvent.mEvent) || trackingEvent.mOffset == null
+                    || trackingEvent.mUrl == null) {
+                continue;
+            }
+            final String offsetString = trackingEvent.mOffset.trim();
+            if (VastFractionalProgressTracker.Companion.isPercentageTracker(offsetString)) {
+                try {
+                    final float trackingFraction =
+                            Float.parseFloat(offsetString.replace("%", "")) / 100f;
+                    if (trackingFraction >= 0) {
+                        percentTrackers.add(new VastFractionalProgressTracker.Builder(
+                                trackingEvent.mUrl, trackingFraction).build());
+                    }
+                } catch (NumberFormatException e) {
+                    MoPubLog.log(CUSTOM, String.format("Failed to parse VAST progress tracker %s",
+                            offsetString));
+                }
+            }
         }
 
-        final List<Node> videoTrackerNodes = XmlUtils.getMatchingChildNodes(
-                trackingEvents,
-                VIDEO_TRACKER,
-                EVENT,
-                Collections.singletonList(attributeValue)
-        );
+        // Sort the list so we can quickly index it in the video progress runnable.
+        Collections.sort(percentTrackers);
+        return percentTrackers;
+    }
 
-        for (Node videoTrackerNode : videoTrackerNodes) {
-            String tracker = XmlUtils.getNodeValue(videoTrackerNode);
-            if (tracker != null) {
-                videoTrackers.add(tracker);
+    /**
+     * @return the sorted start, absolute progress and creativeView trackers
+     */
+    @NonNull
+    static List<VastAbsoluteProgressTracker> createAbsoluteProgressTrackers(
+            @NonNull final List<TrackingEvent> trackingEvents) {
+        List<VastAbsoluteProgressTracker> trackers = new ArrayList<>();
+
+        // Start trackers are treated as absolute trackers set at 0 seconds
+        for (String url : getUrls(trackingEvents, START)) {
+            trackers.add(
+                    new VastAbsoluteProgressTracker.Builder(url, START_TRACKER_THRESHOLD).build()
+            );
+        }
+
+        // Parse progress trackers and extract the absolute offsets of the form "HH:MM:SS[.mmm]"
+        for (TrackingEvent trackingEvent : trackingEvents) {
+            if (!PROGRESS.equals(trackingEvent.mEvent) || trackingEvent.mOffset == null
+                    || trackingEvent.mUrl == null) {
+                continue;
+            }
+            final String offsetString = trackingEvent.mOffset.trim();
+            if (VastAbsoluteProgressTracker.Companion.isAbsoluteTracker(offsetString)) {
+                try {
+                    Integer trackingMilliseconds = VastAbsoluteProgressTracker.Companion.parseAbsoluteOffset(offsetString);
+                    if (trackingMilliseconds != null && trackingMilliseconds >= 0) {
+                        trackers.add(new VastAbsoluteProgressTracker.Builder(trackingEvent.mUrl,
+                                trackingMilliseconds).build());
+                    }
+                } catch (NumberFormatException e) {
+                    MoPubLog.log(CUSTOM, String.format("Failed to parse VAST progress tracker %s",
+                            offsetString));
+                }
+            }
+        }
+
+        // Parse creativeView trackers
+        for (String url : getUrls(trackingEvents, CREATIVE_VIEW)) {
+            trackers.add(
+                    new VastAbsoluteProgressTracker.Builder(url,
+                            CREATIVE_VIEW_TRACKER_THRESHOLD).build()
+            );
+        }
+
+        // Sort the list so we can quickly index it in the video progress runnable.
+        Collections.sort(trackers);
+        return trackers;
+    }
+
+    /**
+     * @return trackers for the events, all the trackers of the first event first
+     */
+    @NonNull
+    static List<VastTracker> createTrackers(@NonNull final List<TrackingEvent> trackingEvents,
+            final boolean isRepeatable, @NonNull final String... events) {
+        List<VastTracker> vastTrackers = new ArrayList<VastTracker>();
+        for (String event : events) {
+            for (String url : getUrls(trackingEvents, event)) {
+                vastTrackers.add(new VastTracker.Builder(url).isRepeatable(isRepeatable).build());
             }
         }
+        return vastTrackers;
+    }
 
-        return videoTrackers;
+    /**
+     * @return the URLs of the trackers for the event. This returns an empty list if there isn't
+     * a tracker with that event name.
+     */
+    @NonNull
+    private static List<String> getUrls(@NonNull final List<TrackingEvent> trackingEvents,
+            @NonNull final String event) {
+        Preconditions.checkNotNull(event);
+        List<String> urls = new ArrayList<String>();
+        for (TrackingEvent trackingEvent : trackingEvents) {
+            if (event.equals(trackingEvent.mEvent) && trackingEvent.mUrl != null) {
+                urls.add(trackingEvent.mUrl);
+            }
+        }
+        return urls;
     }
 
-    private void addQuartileTrackerWithFraction(
+    private static void addQuartileTrackerWithFraction(
             @NonNull final List<VastFractionalProgressTracker> trackers,
             @NonNull final List<String> urls, float fraction) {
         Preconditions.checkNotNull(trackers, "trackers cannot be null");
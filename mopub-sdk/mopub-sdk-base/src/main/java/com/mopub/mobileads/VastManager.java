@@ -19,6 +19,8 @@ import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.util.AsyncTasks;
 import com.mopub.mobileads.VideoDownloader.VideoDownloaderListener;
 
+import java.io.File;
+
 import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
 import static com.mopub.common.logging.MoPubLog.SdkLogEvent.ERROR_WITH_THROWABLE;
 
@@ -45,12 +47,20 @@ public class VastManager implements VastXmlManagerAggregator.VastXmlManagerAggre
         void onVastVideoConfigurationPrepared(@Nullable final VastVideoConfig vastVideoConfig);
     }
 
+    @Nullable
+    private static volatile ProgressivePlaybackSettings sProgressivePlaybackSettings;
+
     @Nullable
     private VastManagerListener mVastManagerListener;
     @Nullable
     private VastXmlManagerAggregator mVastXmlManagerAggregator;
     @Nullable
+    private ProgressiveVideoDownload mProgressiveVideoDownload;
+    @Nullable
     private String mDspCreativeId;
+    @Nullable
+    private String mAdUnitId;
+    private long mExpirationTimeMillis = VideoDownloadScheduler.NO_EXPIRATION;
     private double mScreenAspectRatio;
     private int mScreenWidthDp;
 
@@ -61,6 +71,31 @@ public class VastManager implements VastXmlManagerAggregator.VastXmlManagerAggre
         mShouldPreCacheVideo = shouldPreCacheVideo;
     }
 
+    /**
+     * Lets VAST videos start playing once a prefix of the media file has downloaded instead of
+     * waiting for the whole file. Only affects ads that precache their video.
+     *
+     * @param progressivePlaybackSettings The prefix and stall settings, or {@code null} to wait
+     *                                    for the full video (the default).
+     */
+    public static void setProgressivePlaybackSettings(
+            @Nullable final ProgressivePlaybackSettings progressivePlaybackSettings) {
+        sProgressivePlaybackSettings = progressivePlaybackSettings;
+    }
+
+    /**
+     * Sets what the video download is ranked by when several ads are precaching at once.
+     *
+     * @param adUnitId             The ad unit this VAST document was loaded for
+     * @param expirationTimeMillis When the ad expires, in
+     *                             {@link android.os.SystemClock#elapsedRealtime()} time
+     */
+    public void setVideoDownloadPriority(@Nullable final String adUnitId,
+            final long expirationTimeMillis) {
+        mAdUnitId = adUnitId;
+        mExpirationTimeMillis = expirationTimeMillis;
+    }
+
     /**
      * Creates and starts an async task that parses the VAST xml document.
      *
@@ -93,13 +128,18 @@ public class VastManager implements VastXmlManagerAggregator.VastXmlManagerAggre
     }
 
     /**
-     * Stops the VAST aggregator from continuing to follow wrapper redirects.
+     * Stops the VAST aggregator from continuing to follow wrapper redirects and releases the
+     * progressive download, if any, so that it no longer holds on to this ad.
      */
     public void cancel() {
         if (mVastXmlManagerAggregator != null) {
             mVastXmlManagerAggregator.cancel(true);
             mVastXmlManagerAggregator = null;
         }
+        if (mProgressiveVideoDownload != null) {
+            mProgressiveVideoDownload.release();
+            mProgressiveVideoDownload = null;
+        }
     }
 
     @Override
@@ -125,9 +165,76 @@ public class VastManager implements VastXmlManagerAggregator.VastXmlManagerAggre
             return;
         }
 
+        final ProgressivePlaybackSettings settings = sProgressivePlaybackSettings;
+        if (settings != null) {
+            cacheProgressively(vastVideoConfig, settings);
+            return;
+        }
+
+        final VideoDownloaderListener videoDownloaderListener = new VideoDownloaderListener() {
+            @Override
+            public void onComplete(boolean success) {
+                if (success && updateDiskMediaFileUrl(vastVideoConfig)) {
+                    mVastManagerListener.onVastVideoConfigurationPrepared(vastVideoConfig);
+                } else {
+                    MoPubLog.log(CUSTOM, "Failed to download VAST video.");
+                    mVastManagerListener.onVastVideoConfigurationPrepared(null);
+                }
+            }
+        };
+
+        VideoDownloader.cache(vastVideoConfig.getNetworkMediaFileUrl(), videoDownloaderListener,
+                null, mAdUnitId, mExpirationTimeMillis);
+    }
+
+    /**
+     * Downloads the video and reports the configuration as prepared once the prefix is on disk.
+     * Until the video is cached, the disk url is the network url: the player reads the partial
+     * file through {@link GrowingFileDataSource} while the download registered under the
+     * config's progressive download key is around, and streams the video otherwise.
+     */
+    private void cacheProgressively(@NonNull final VastVideoConfig vastVideoConfig,
+            @NonNull final ProgressivePlaybackSettings settings) {
+        final String networkMediaFileUrl = vastVideoConfig.getNetworkMediaFileUrl();
+        final File partialFile = VideoCacheService.getPartialFile(networkMediaFileUrl);
+        if (networkMediaFileUrl == null || partialFile == null) {
+            MoPubLog.log(CUSTOM, "Failed to download VAST video.");
+            mVastManagerListener.onVastVideoConfigurationPrepared(null);
+            return;
+        }
+
+        final boolean[] prepared = new boolean[1];
+        final ProgressiveVideoDownload download = ProgressiveVideoDownload.register(
+                networkMediaFileUrl,
+                partialFile,
+                settings.getPrefixBytes(vastVideoConfig.getNetworkMediaFileBitrateKbps()),
+                settings.getStallTimeoutMillis(),
+                new ProgressiveVideoDownload.PrefixListener() {
+                    @Override
+                    public void onPrefixAvailable() {
+                        if (prepared[0]) {
+                            return;
+                        }
+                        prepared[0] = true;
+                        vastVideoConfig.setDiskMediaFileUrl(networkMediaFileUrl);
+                        vastVideoConfig.setProgressiveDownloadKey(download.getKey());
+                        mVastManagerListener.onVastVideoConfigurationPrepared(vastVideoConfig);
+                    }
+                });
+        mProgressiveVideoDownload = download;
+
         final VideoDownloaderListener videoDownloaderListener = new VideoDownloaderListener() {
             @Override
             public void onComplete(boolean success) {
+                download.onFinished(success);
+                if (prepared[0]) {
+                    // Playback keeps reading through the registered download, and streams the
+                    // network url instead if the download failed
+                    return;
+                }
+                prepared[0] = true;
+                // Playback never started on the partial file, so nothing reads through it
+                download.release();
                 if (success && updateDiskMediaFileUrl(vastVideoConfig)) {
                     mVastManagerListener.onVastVideoConfigurationPrepared(vastVideoConfig);
                 } else {
@@ -137,7 +244,8 @@ public class VastManager implements VastXmlManagerAggregator.VastXmlManagerAggre
             }
         };
 
-        VideoDownloader.cache(vastVideoConfig.getNetworkMediaFileUrl(), videoDownloaderListener);
+        VideoDownloader.cache(networkMediaFileUrl, videoDownloaderListener, download, mAdUnitId,
+                mExpirationTimeMillis);
     }
 
     /**
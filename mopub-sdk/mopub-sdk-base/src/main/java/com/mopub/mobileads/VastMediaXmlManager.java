@@ -15,7 +15,7 @@ import org.w3c.dom.Node;
 /**
  * This XML manager handles the actual video.
  */
-class VastMediaXmlManager {
+class VastMediaXmlManager implements VastDocument.MediaFile {
 
     // Attribute names
     private static final String WIDTH = "width";
@@ -51,8 +51,9 @@ class VastMediaXmlManager {
      *
      * @return Integer width of video or {@code null}
      */
+    @Override
     @Nullable
-    Integer getWidth() {
+    public Integer getWidth() {
         return XmlUtils.getAttributeValueAsInt(mMediaNode, WIDTH);
     }
 
@@ -62,8 +63,9 @@ class VastMediaXmlManager {
      *
      * @return Integer height of video or {@code null}
      */
+    @Override
     @Nullable
-    Integer getHeight() {
+    public Integer getHeight() {
         return XmlUtils.getAttributeValueAsInt(mMediaNode, HEIGHT);
     }
 
@@ -73,8 +75,9 @@ class VastMediaXmlManager {
      *
      * @return The String type or {@code null}
      */
+    @Override
     @Nullable
-    String getType() {
+    public String getType() {
         return XmlUtils.getAttributeValue(mMediaNode, VIDEO_TYPE);
     }
 
@@ -83,8 +86,9 @@ class VastMediaXmlManager {
      *
      * @return String url of video or {@code null}
      */
+    @Override
     @Nullable
-    String getMediaUrl() {
+    public String getMediaUrl() {
         return XmlUtils.getNodeValue(mMediaNode);
     }
 
@@ -93,8 +97,9 @@ class VastMediaXmlManager {
      *
      * @return Integer representation of the video in kbps or {@code null}
      */
+    @Override
     @Nullable
-    Integer getBitrate() {
+    public Integer getBitrate() {
         // the "bitrate" attribute is the average across the entire video:
         final Integer bitrate = XmlUtils.getAttributeValueAsInt(mMediaNode, BITRATE);
 
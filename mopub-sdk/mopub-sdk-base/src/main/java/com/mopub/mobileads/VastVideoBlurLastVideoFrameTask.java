@@ -12,6 +12,7 @@ import android.widget.ImageView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.mopub.common.BitmapBudgetManager;
 import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.util.ImageUtils;
@@ -29,11 +30,30 @@ public class VastVideoBlurLastVideoFrameTask extends AsyncTask<String, Void, Boo
      */
     private static final int OFFSET_IN_MICROSECONDS = 200000;
 
+    /**
+     * The blurred frame is not shrunk below this many pixels on its short side when memory is low.
+     */
+    private static final int MIN_SHRUNK_FRAME_SIDE = 32;
+
     @NonNull private final MediaMetadataRetriever mMediaMetadataRetriever;
     @NonNull private final ImageView mBlurredLastVideoFrameImageView;
     private int mVideoDuration;
     @Nullable private Bitmap mLastVideoFrame;
     @Nullable private Bitmap mBlurredLastVideoFrame;
+    @NonNull private final BitmapBudgetManager.Consumer mBudgetConsumer =
+            new BitmapBudgetManager.Consumer() {
+                @Override
+                public int getSizeBytes() {
+                    final Bitmap blurredLastVideoFrame = mBlurredLastVideoFrame;
+                    return blurredLastVideoFrame == null
+                            ? 0 : blurredLastVideoFrame.getAllocationByteCount();
+                }
+
+                @Override
+                public void trimToSize(final int maxSizeBytes) {
+                    shrinkBlurredLastVideoFrame(maxSizeBytes);
+                }
+            };
 
     public VastVideoBlurLastVideoFrameTask(
             @NonNull final MediaMetadataRetriever mediaMetadataRetriever,
@@ -86,9 +106,47 @@ public class VastVideoBlurLastVideoFrameTask extends AsyncTask<String, Void, Boo
             mBlurredLastVideoFrameImageView.setImageBitmap(mBlurredLastVideoFrame);
             mBlurredLastVideoFrameImageView.setImageAlpha(DrawableConstants.BlurredLastVideoFrame
                     .ALPHA);
+            final BitmapBudgetManager bitmapBudgetManager = BitmapBudgetManager.getInstance(
+                    mBlurredLastVideoFrameImageView.getContext());
+            bitmapBudgetManager.register("vast-blurred-last-frame",
+                    BitmapBudgetManager.Priority.HIGH, mBudgetConsumer);
+            bitmapBudgetManager.enforceBudget();
         }
     }
 
+    /**
+     * Stops counting the blurred frame against the bitmap budget. Call this once the frame is no
+     * longer shown.
+     */
+    public void release() {
+        BitmapBudgetManager.getInstance(mBlurredLastVideoFrameImageView.getContext())
+                .unregister(mBudgetConsumer);
+    }
+
+    /**
+     * Replaces the shown frame with a smaller copy. The frame is blurred, so it looks much the same
+     * when scaled back up.
+     */
+    private void shrinkBlurredLastVideoFrame(final int maxSizeBytes) {
+        final Bitmap blurredLastVideoFrame = mBlurredLastVideoFrame;
+        if (blurredLastVideoFrame == null) {
+            return;
+        }
+
+        final int width = blurredLastVideoFrame.getWidth();
+        final int height = blurredLastVideoFrame.getHeight();
+        final double scale = Math.max(
+                Math.sqrt((double) maxSizeBytes / blurredLastVideoFrame.getAllocationByteCount()),
+                (double) MIN_SHRUNK_FRAME_SIDE / Math.min(width, height));
+        if (scale >= 1) {
+            return;
+        }
+
+        mBlurredLastVideoFrame = Bitmap.createScaledBitmap(blurredLastVideoFrame,
+                Math.max(1, (int) (width * scale)), Math.max(1, (int) (height * scale)), true);
+        mBlurredLastVideoFrameImageView.setImageBitmap(mBlurredLastVideoFrame);
+    }
+
     @Override
     protected void onCancelled() {
         MoPubLog.log(CUSTOM, "VastVideoBlurLastVideoFrameTask was cancelled.");
@@ -142,8 +142,18 @@ class VastVideoConfig : Serializable {
     @SerializedName(Constants.VAST_URL_NETWORK_MEDIA_FILE)
     var networkMediaFileUrl: String? = null
     @Expose
+    @SerializedName(Constants.VAST_MEDIA_FILE_BITRATE)
+    var networkMediaFileBitrateKbps: Int? = null
+    @Expose
     @SerializedName(Constants.VAST_URL_DISK_MEDIA_FILE)
     var diskMediaFileUrl: String? = null
+    /**
+     * Finds the [ProgressiveVideoDownload] that playback reads the partial file through, if the
+     * video was prepared before it finished downloading.
+     */
+    @Expose
+    @SerializedName(Constants.VAST_PROGRESSIVE_DOWNLOAD_KEY)
+    var progressiveDownloadKey: String? = null
 
     @Expose
     @SerializedName(Constants.VAST_COMPANION_ADS)
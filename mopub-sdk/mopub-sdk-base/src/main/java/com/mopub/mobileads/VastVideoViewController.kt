@@ -28,6 +28,8 @@ import androidx.annotation.RequiresApi
 import androidx.core.content.ContextCompat
 import androidx.core.view.isVisible
 import androidx.media.AudioAttributesCompat
+import androidx.media2.common.CallbackMediaItem
+import androidx.media2.common.MediaItem
 import androidx.media2.common.SessionPlayer
 import androidx.media2.common.SessionPlayer.*
 import androidx.media2.common.UriMediaItem
@@ -125,6 +127,7 @@ class VastVideoViewController(
     var showCountdownTimer: Boolean = true
 
     var videoError: Boolean = false
+    private var isDestroyed: Boolean = false
     val networkMediaFileUrl get() = vastVideoConfig.networkMediaFileUrl
 
     lateinit var creativeExperienceSettings: CreativeExperienceSettings
@@ -162,7 +165,7 @@ class VastVideoViewController(
 
         vastCompanionAdConfigs = vastVideoConfig.vastCompanionAdConfigs
         if (vastCompanionAdConfigs.isEmpty()) {
-            vastVideoConfig.diskMediaFileUrl?.let {
+            getCachedVideoPath()?.let {
                 val vastResource = VastResource(
                     it,
                     VastResource.Type.BLURRED_LAST_FRAME,
@@ -358,9 +361,7 @@ class VastVideoViewController(
         tempVideoView.setOnTouchListener(clickThroughListener)
 
         mediaPlayer.run {
-            setMediaItem(
-                UriMediaItem.Builder(Uri.parse(vastVideoConfig.diskMediaFileUrl)).build()
-            )
+            setMediaItem(createMediaItem())
             prepare().addListener(
                 Runnable {
                     // Called when media source is ready for playback
@@ -386,10 +387,7 @@ class VastVideoViewController(
                     )
                     isCalibrationDone = true
 
-                    baseVideoViewControllerListener.onCompanionAdReady(
-                        selectedVastCompanionAd,
-                        duration.toInt()
-                    )
+                    notifyCompanionAdReady(selectedVastCompanionAd, duration.toInt())
                 },
                 executor
             )
@@ -398,6 +396,65 @@ class VastVideoViewController(
         return tempVideoView
     }
 
+    /**
+     * Plays through the progressive download while it is registered, streams the video if that
+     * download failed, and plays the disk url otherwise.
+     */
+    private fun createMediaItem(): MediaItem {
+        val download = ProgressiveVideoDownload.get(vastVideoConfig.progressiveDownloadKey)
+        if (download != null && !download.hasFailed()) {
+            return CallbackMediaItem.Builder(GrowingFileDataSource(download)).build()
+        }
+        val url = if (download != null) {
+            vastVideoConfig.networkMediaFileUrl
+        } else {
+            vastVideoConfig.diskMediaFileUrl
+        }
+        return UriMediaItem.Builder(Uri.parse(url)).build()
+    }
+
+    /**
+     * @return Where the whole video is cached, or will be once a progressive download succeeds,
+     * or null if the video is streamed.
+     */
+    private fun getCachedVideoPath(): String? {
+        val networkMediaFileUrl = vastVideoConfig.networkMediaFileUrl
+        if (vastVideoConfig.diskMediaFileUrl != networkMediaFileUrl) {
+            return vastVideoConfig.diskMediaFileUrl
+        }
+        return ProgressiveVideoDownload.get(vastVideoConfig.progressiveDownloadKey)?.let {
+            VideoCacheService.getFilePath(networkMediaFileUrl)
+        }
+    }
+
+    /**
+     * A blurred last frame is read from the cached video, so while a progressive download is
+     * still running it is only handed over once the download has cached the whole video.
+     */
+    private fun notifyCompanionAdReady(
+        selectedVastCompanionAd: VastCompanionAdConfig?,
+        videoDurationMs: Int
+    ) {
+        val download = ProgressiveVideoDownload.get(vastVideoConfig.progressiveDownloadKey)
+        if (download == null ||
+            selectedVastCompanionAd?.vastResource?.type != VastResource.Type.BLURRED_LAST_FRAME
+        ) {
+            baseVideoViewControllerListener.onCompanionAdReady(
+                selectedVastCompanionAd,
+                videoDurationMs
+            )
+            return
+        }
+        download.addFinishedListener { success ->
+            if (!isDestroyed) {
+                baseVideoViewControllerListener.onCompanionAdReady(
+                    if (success) selectedVastCompanionAd else null,
+                    videoDurationMs
+                )
+            }
+        }
+    }
+
     private fun selectVastCompanionAd(): VastCompanionAdConfig? {
         val displayMetrics: DisplayMetrics = activity.resources.displayMetrics
         val widthPixels = displayMetrics.widthPixels
@@ -485,8 +542,10 @@ class VastVideoViewController(
     }
 
     override fun onDestroy() {
+        isDestroyed = true
         stopRunnables()
         externalViewabilitySessionManager.endSession()
+        ProgressiveVideoDownload.release(vastVideoConfig.progressiveDownloadKey)
     }
 
     override fun onSaveInstanceState(outState: Bundle) {
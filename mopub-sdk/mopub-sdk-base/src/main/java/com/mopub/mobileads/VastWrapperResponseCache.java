@@ -0,0 +1,108 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Short-lived in-memory cache of VAST wrapper responses keyed by the wrapper's VASTAdTagURI.
+ * Rewarded and interstitial reloads often walk the same tag chain within a few seconds, so
+ * keeping the responses briefly lets {@link VastXmlManagerAggregator} skip those round trips.
+ * The cache holds a small number of entries and evicts the least recently used one when full.
+ */
+class VastWrapperResponseCache {
+    static final long DEFAULT_TTL_MILLIS = 60 * 1000;
+    static final int DEFAULT_MAX_ENTRIES = 16;
+
+    @NonNull private static final VastWrapperResponseCache sInstance =
+            new VastWrapperResponseCache(DEFAULT_TTL_MILLIS, DEFAULT_MAX_ENTRIES);
+
+    private final long mTtlMillis;
+    @NonNull private final LinkedHashMap<String, Entry> mEntries;
+
+    @VisibleForTesting
+    VastWrapperResponseCache(final long ttlMillis, final int maxEntries) {
+        Preconditions.checkArgument(maxEntries > 0, "maxEntries must be positive");
+
+        mTtlMillis = ttlMillis;
+        mEntries = new LinkedHashMap<String, Entry>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @NonNull
+    static VastWrapperResponseCache getInstance() {
+        return sInstance;
+    }
+
+    @Nullable
+    String get(@NonNull final String url) {
+        return get(url, SystemClock.elapsedRealtime());
+    }
+
+    @VisibleForTesting
+    @Nullable
+    synchronized String get(@NonNull final String url, final long nowMillis) {
+        Preconditions.checkNotNull(url);
+
+        final Entry entry = mEntries.get(url);
+        if (entry == null) {
+            return null;
+        }
+        if (nowMillis >= entry.mExpirationMillis) {
+            mEntries.remove(url);
+            return null;
+        }
+        return entry.mResponse;
+    }
+
+    void put(@NonNull final String url, @NonNull final String response) {
+        put(url, response, SystemClock.elapsedRealtime());
+    }
+
+    @VisibleForTesting
+    synchronized void put(@NonNull final String url, @NonNull final String response,
+            final long nowMillis) {
+        Preconditions.checkNotNull(url);
+        Preconditions.checkNotNull(response);
+
+        if (response.isEmpty()) {
+            return;
+        }
+        mEntries.put(url, new Entry(response, nowMillis + mTtlMillis));
+    }
+
+    @VisibleForTesting
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    @VisibleForTesting
+    synchronized void clear() {
+        mEntries.clear();
+    }
+
+    private static final class Entry {
+        @NonNull final String mResponse;
+        final long mExpirationMillis;
+
+        Entry(@NonNull final String response, final long expirationMillis) {
+            mResponse = response;
+            mExpirationMillis = expirationMillis;
+        }
+    }
+}
@@ -7,6 +7,7 @@ package com.mopub.mobileads;
 import android.content.Context;
 import android.graphics.Point;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.view.Display;
 import android.view.WindowManager;
@@ -34,10 +35,20 @@ import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.mopub.common.logging.MoPubLog.SdkLogEvent.ERROR_WITH_THROWABLE;
 import static com.mopub.network.TrackingRequest.makeVastTrackingHttpRequest;
@@ -77,6 +88,9 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
 
     // More than reasonable number of nested VAST urls to follow
     static final int MAX_TIMES_TO_FOLLOW_VAST_REDIRECT = 10;
+    // Upper bound on resolving the whole wrapper chain, including speculative fetches
+    static final long WRAPPER_RESOLUTION_DEADLINE_MILLIS = 30 * 1000;
+    private static final int MAX_PARALLEL_WRAPPER_FETCHES = 4;
     private static final String MIME_TYPE_MP4 = "video/mp4";
     private static final String MIME_TYPE_3GPP = "video/3gpp";
     private static final List<String> VIDEO_MIME_TYPES =
@@ -97,6 +111,32 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
      */
     private int mTimesFollowedVastRedirect;
 
+    /**
+     * Wrapper responses that were requested ahead of time for sibling Ad elements, keyed by
+     * VASTAdTagURI. Like the redirect count, this is only accessed on the background thread.
+     */
+    @NonNull private final Map<String, Future<String>> mPrefetchedVastRedirects =
+            new HashMap<String, Future<String>>();
+
+    /**
+     * VASTAdTagURIs already followed while resolving this document. A URI that comes back in the
+     * same chain is fetched again instead of being served from the cache.
+     */
+    @NonNull private final Set<String> mFollowedVastRedirectUrls = new HashSet<String>();
+
+    /**
+     * {@link SystemClock#elapsedRealtime()} after which no more redirects are followed.
+     */
+    private long mResolutionDeadlineMillis = Long.MAX_VALUE;
+
+    @NonNull private static ExecutorService sWrapperFetchExecutor = createWrapperFetchExecutor();
+
+    /**
+     * Whether documents are read with {@link VastXmlPullParser} before falling back to the DOM
+     * based {@link VastXmlManager}.
+     */
+    private boolean mStreamingParserEnabled = true;
+
     VastXmlManagerAggregator(@NonNull final VastXmlManagerAggregatorListener vastXmlManagerAggregatorListener,
                              final double screenAspectRatio,
                              final int screenWidthDp,
@@ -125,12 +165,16 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
             return null;
         }
 
+        mResolutionDeadlineMillis = SystemClock.elapsedRealtime()
+                + WRAPPER_RESOLUTION_DEADLINE_MILLIS;
         try {
             final String vastXml = strings[0];
             return evaluateVastXmlManager(vastXml, new ArrayList<VastTracker>());
         } catch (Exception e) {
             MoPubLog.log(ERROR_WITH_THROWABLE, "Unable to generate VastVideoConfig.", e);
             return null;
+        } finally {
+            cancelPrefetchedVastRedirects();
         }
     }
 
@@ -175,49 +219,64 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
         Preconditions.checkNotNull(vastXml, "vastXml cannot be null");
         Preconditions.checkNotNull(errorTrackers, "errorTrackers cannot be null");
 
-        final VastXmlManager xmlManager = new VastXmlManager();
-        try {
-            xmlManager.parseVastXml(vastXml);
-        } catch (Exception e) {
-            MoPubLog.log(ERROR_WITH_THROWABLE, "Failed to parse VAST XML", e);
-            makeVastTrackingHttpRequest(errorTrackers, VastErrorCode.XML_PARSING_ERROR, null,
-                    null, mContext);
-            return null;
+        VastDocument document = pullParseVastXml(vastXml);
+        if (document == null) {
+            final VastXmlManager xmlManager = new VastXmlManager();
+            try {
+                xmlManager.parseVastXml(vastXml);
+            } catch (Exception e) {
+                MoPubLog.log(ERROR_WITH_THROWABLE, "Failed to parse VAST XML", e);
+                makeVastTrackingHttpRequest(errorTrackers, VastErrorCode.XML_PARSING_ERROR, null,
+                        null, mContext);
+                return null;
+            }
+            document = xmlManager;
         }
 
-        final List<VastAdXmlManager> vastAdXmlManagers = xmlManager.getAdXmlManagers();
+        final List<? extends VastDocument.Ad> vastAdXmlManagers = document.getAdXmlManagers();
 
         // If there are no ads, fire the error trackers
-        if (fireErrorTrackerIfNoAds(vastAdXmlManagers, xmlManager, mContext)) {
+        if (fireErrorTrackerIfNoAds(vastAdXmlManagers, document, mContext)) {
             return null;
         }
 
-        for (VastAdXmlManager vastAdXmlManager : vastAdXmlManagers) {
+        final List<String> wrapperAdTagUris = new ArrayList<String>();
+        for (VastDocument.Ad vastAdXmlManager : vastAdXmlManagers) {
+            final VastDocument.Wrapper vastWrapperXmlManager =
+                    vastAdXmlManager.getWrapperXmlManager();
+            if (vastWrapperXmlManager != null
+                    && isValidSequenceNumber(vastAdXmlManager.getSequence())) {
+                wrapperAdTagUris.add(vastWrapperXmlManager.getVastAdTagURI());
+            }
+        }
+        prefetchVastRedirects(wrapperAdTagUris);
+
+        for (VastDocument.Ad vastAdXmlManager : vastAdXmlManagers) {
             if (!isValidSequenceNumber(vastAdXmlManager.getSequence())) {
                 continue;
             }
 
             // InLine evaluation
-            final VastInLineXmlManager vastInLineXmlManager =
+            final VastDocument.InLineWrapper vastInLineXmlManager =
                     vastAdXmlManager.getInLineXmlManager();
             if (vastInLineXmlManager != null) {
                 final VastVideoConfig vastVideoConfig = evaluateInLineXmlManager(
                         vastInLineXmlManager, errorTrackers);
                 // If the vastVideoConfig is non null, it means we found a valid media file
                 if (vastVideoConfig != null) {
-                    populateMoPubCustomElements(xmlManager, vastVideoConfig);
+                    populateMoPubCustomElements(document, vastVideoConfig);
                     return vastVideoConfig;
                 }
             }
 
             // Wrapper evaluation
-            final VastWrapperXmlManager vastWrapperXmlManager
+            final VastDocument.Wrapper vastWrapperXmlManager
                     = vastAdXmlManager.getWrapperXmlManager();
             if (vastWrapperXmlManager != null) {
                 final List<VastTracker> wrapperErrorTrackers = new ArrayList<VastTracker>(errorTrackers);
                 wrapperErrorTrackers.addAll(vastWrapperXmlManager.getErrorTrackers());
-                final String vastRedirectXml = evaluateWrapperRedirect(vastWrapperXmlManager,
-                        wrapperErrorTrackers);
+                final String vastRedirectXml = evaluateWrapperRedirect(
+                        vastWrapperXmlManager.getVastAdTagURI(), wrapperErrorTrackers);
                 if (vastRedirectXml == null) {
                     continue;
                 }
@@ -237,14 +296,12 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
                 // in one of Wrapper redirects. Therefore, aggregate all trackers in the wrapper
                 vastVideoConfig.addImpressionTrackers(
                         vastWrapperXmlManager.getImpressionTrackers());
-                final List<VastLinearXmlManager> linearXmlManagers =
+                final List<? extends VastDocument.Linear> linearXmlManagers =
                         vastWrapperXmlManager.getLinearXmlManagers();
-                for (VastLinearXmlManager linearXmlManager : linearXmlManagers) {
+                for (VastDocument.Linear linearXmlManager : linearXmlManagers) {
                     populateLinearTrackersAndIcon(linearXmlManager, vastVideoConfig);
                 }
-                populateVideoViewabilityTracker(vastWrapperXmlManager, vastVideoConfig);
-                populateViewabilityMetadata(vastWrapperXmlManager, vastVideoConfig);
-                populateAdVerificationsOmid(vastWrapperXmlManager.mNode, vastVideoConfig);
+                populateExtensionsAndAdVerifications(vastWrapperXmlManager, vastVideoConfig);
 
                 final List<VastCompanionAdXmlManager> companionAdXmlManagers =
                         vastWrapperXmlManager.getCompanionAdXmlManagers();
@@ -268,7 +325,7 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
                     }
                 }
 
-                populateMoPubCustomElements(xmlManager, vastVideoConfig);
+                populateMoPubCustomElements(document, vastVideoConfig);
 
                 return vastVideoConfig;
             }
@@ -277,6 +334,27 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
         return null;
     }
 
+    /**
+     * Reads the document with {@link VastXmlPullParser}. Malformed documents and documents using
+     * elements the streaming parser does not handle return {@code null} so that the DOM path can
+     * evaluate them and report errors as before.
+     *
+     * @param vastXml The xml to parse
+     * @return The streamed document or {@code null} to fall back to {@link VastXmlManager}
+     */
+    @Nullable
+    private VastXmlPullParser.Document pullParseVastXml(@NonNull final String vastXml) {
+        if (!mStreamingParserEnabled) {
+            return null;
+        }
+
+        try {
+            return VastXmlPullParser.parse(vastXml);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     /**
      * Parses and evaluates an InLine element looking for a valid media file. InLine elements are
      * evaluated in order and the first valid media file found is used. If a media file is
@@ -290,15 +368,15 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
      */
     @Nullable
     private VastVideoConfig evaluateInLineXmlManager(
-            @NonNull final VastInLineXmlManager vastInLineXmlManager,
+            @NonNull final VastDocument.InLineWrapper vastInLineXmlManager,
             @NonNull final List<VastTracker> errorTrackers) {
         Preconditions.checkNotNull(vastInLineXmlManager);
         Preconditions.checkNotNull(errorTrackers);
 
-        final List<VastLinearXmlManager> linearXmlManagers
+        final List<? extends VastDocument.Linear> linearXmlManagers
                 = vastInLineXmlManager.getLinearXmlManagers();
 
-        for (VastLinearXmlManager linearXmlManager : linearXmlManagers) {
+        for (VastDocument.Linear linearXmlManager : linearXmlManagers) {
             String bestMediaFileUrl = getBestMediaFileUrl(linearXmlManager.getMediaXmlManagers());
             if (bestMediaFileUrl != null) {
                 // Create vast video configuration and populate initial trackers
@@ -311,6 +389,8 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
                 // a Wrapper element.
                 vastVideoConfig.setClickThroughUrl(linearXmlManager.getClickThroughUrl());
                 vastVideoConfig.setNetworkMediaFileUrl(bestMediaFileUrl);
+                vastVideoConfig.setNetworkMediaFileBitrateKbps(getMediaFileBitrate(
+                        linearXmlManager.getMediaXmlManagers(), bestMediaFileUrl));
 
                 final List<VastCompanionAdXmlManager> companionAdXmlManagers =
                         vastInLineXmlManager.getCompanionAdXmlManagers();
@@ -318,9 +398,7 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
                 vastVideoConfig.addVastCompanionAdConfigs(getAllCompanionAds(companionAdXmlManagers));
                 errorTrackers.addAll(vastInLineXmlManager.getErrorTrackers());
                 vastVideoConfig.addErrorTrackers(errorTrackers);
-                populateVideoViewabilityTracker(vastInLineXmlManager, vastVideoConfig);
-                populateViewabilityMetadata(vastInLineXmlManager, vastVideoConfig);
-                populateAdVerificationsOmid(vastInLineXmlManager.mNode, vastVideoConfig);
+                populateExtensionsAndAdVerifications(vastInLineXmlManager, vastVideoConfig);
 
                 return vastVideoConfig;
             }
@@ -329,6 +407,28 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
         return null;
     }
 
+    /**
+     * Populates the MoPub viewability tracker and the viewability vendors. Only DOM documents
+     * can have Extensions and AdVerifications, since {@link VastXmlPullParser} leaves documents
+     * that use them to {@link VastXmlManager}.
+     *
+     * @param inLineWrapperXmlManager the InLine or Wrapper element to read
+     * @param vastVideoConfig modified in this method to store the viewability configuration
+     */
+    private void populateExtensionsAndAdVerifications(
+            @NonNull final VastDocument.InLineWrapper inLineWrapperXmlManager,
+            @NonNull final VastVideoConfig vastVideoConfig) {
+        if (!(inLineWrapperXmlManager instanceof VastBaseInLineWrapperXmlManager)) {
+            return;
+        }
+
+        final VastBaseInLineWrapperXmlManager xmlManager =
+                (VastBaseInLineWrapperXmlManager) inLineWrapperXmlManager;
+        populateVideoViewabilityTracker(xmlManager, vastVideoConfig);
+        populateViewabilityMetadata(xmlManager, vastVideoConfig);
+        populateAdVerificationsOmid(xmlManager.mNode, vastVideoConfig);
+    }
+
     private void populateVideoViewabilityTracker(
             @NonNull final VastBaseInLineWrapperXmlManager vastInLineXmlManager,
             @NonNull VastVideoConfig vastVideoConfig) {
@@ -378,23 +478,22 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
     }
 
     /**
-     * Retrieves the Wrapper's redirect uri and follows it to return the next VAST xml String.
+     * Follows the Wrapper's redirect uri to return the next VAST xml String.
      *
-     * @param vastWrapperXmlManager used to get the redirect uri
-     * @param wrapperErrorTrackers  Error trackers to hit if something goes wrong
+     * @param vastAdTagUri         the Wrapper's redirect uri
+     * @param wrapperErrorTrackers Error trackers to hit if something goes wrong
      * @return the next VAST xml String or {@code null} if it could not be resolved
      */
     @Nullable
-    private String evaluateWrapperRedirect(@NonNull VastWrapperXmlManager vastWrapperXmlManager,
+    private String evaluateWrapperRedirect(@Nullable final String vastAdTagUri,
             @NonNull List<VastTracker> wrapperErrorTrackers) {
-        final String vastAdTagUri = vastWrapperXmlManager.getVastAdTagURI();
         if (vastAdTagUri == null) {
             return null;
         }
 
         String vastRedirectXml = null;
         try {
-            vastRedirectXml = followVastRedirect(vastAdTagUri);
+            vastRedirectXml = resolveVastRedirect(vastAdTagUri);
         } catch (Exception e) {
             MoPubLog.log(ERROR_WITH_THROWABLE, "Failed to follow VAST redirect", e);
             if (!wrapperErrorTrackers.isEmpty()) {
@@ -414,7 +513,7 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
      * @param linearXmlManager used to retrieve trackers, and assets
      * @param vastVideoConfig modified in this method to store trackers and assets
      */
-    private void populateLinearTrackersAndIcon(@NonNull final VastLinearXmlManager linearXmlManager,
+    private void populateLinearTrackersAndIcon(@NonNull final VastDocument.Linear linearXmlManager,
             @NonNull final VastVideoConfig vastVideoConfig) {
         Preconditions.checkNotNull(linearXmlManager, "linearXmlManager cannot be null");
         Preconditions.checkNotNull(vastVideoConfig, "vastVideoConfig cannot be null");
@@ -444,7 +543,7 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
      * @param vastVideoConfig modified in this method to store custom extensions and
      *                               impression trackers
      */
-    private void populateMoPubCustomElements(@NonNull final VastXmlManager xmlManager,
+    private void populateMoPubCustomElements(@NonNull final VastDocument xmlManager,
             @NonNull final VastVideoConfig vastVideoConfig) {
         Preconditions.checkNotNull(xmlManager, "xmlManager cannot be null");
         Preconditions.checkNotNull(vastVideoConfig, "vastVideoConfig cannot be null");
@@ -476,51 +575,44 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
      * not fired.
      */
     private boolean fireErrorTrackerIfNoAds(
-            @NonNull final List<VastAdXmlManager> vastAdXmlManagers,
-            @NonNull final VastXmlManager xmlManager, @NonNull Context context) {
+            @NonNull final List<? extends VastDocument.Ad> vastAdXmlManagers,
+            @NonNull final VastDocument xmlManager, @NonNull Context context) {
         // When there is no <Ad> tag and when there is an error tracker
         if (vastAdXmlManagers.isEmpty() && xmlManager.getErrorTracker() != null ) {
-            // Only use NO_ADS_VAST_RESPONSE if we've followed one or more wrappers
-            makeVastTrackingHttpRequest(
-                    Collections.singletonList(xmlManager.getErrorTracker()),
-                    mTimesFollowedVastRedirect > 0
-                            ? VastErrorCode.NO_ADS_VAST_RESPONSE
-                            : VastErrorCode.UNDEFINED_ERROR,
-                    null, null, context);
+            fireNoAdsErrorTracker(xmlManager.getErrorTracker(), context);
             return true;
         }
         return false;
     }
 
+    private void fireNoAdsErrorTracker(@NonNull final VastTracker errorTracker,
+            @NonNull final Context context) {
+        // Only use NO_ADS_VAST_RESPONSE if we've followed one or more wrappers
+        makeVastTrackingHttpRequest(
+                Collections.singletonList(errorTracker),
+                mTimesFollowedVastRedirect > 0
+                        ? VastErrorCode.NO_ADS_VAST_RESPONSE
+                        : VastErrorCode.UNDEFINED_ERROR,
+                null, null, context);
+    }
+
     @VisibleForTesting
     @Nullable
-    String getBestMediaFileUrl(@NonNull final List<VastMediaXmlManager> managers) {
+    String getBestMediaFileUrl(@NonNull final List<? extends VastDocument.MediaFile> managers) {
         Preconditions.checkNotNull(managers, "managers cannot be null");
-        final List<VastMediaXmlManager> mediaXmlManagers = new ArrayList<VastMediaXmlManager>(managers);
         double bestMediaFitness = Double.NEGATIVE_INFINITY;
         String bestMediaFileUrl = null;
 
-        final Iterator<VastMediaXmlManager> xmlManagerIterator = mediaXmlManagers.iterator();
-        while (xmlManagerIterator.hasNext()) {
-            final VastMediaXmlManager mediaXmlManager = xmlManagerIterator.next();
-
+        for (final VastDocument.MediaFile mediaXmlManager : managers) {
             final String mediaType = mediaXmlManager.getType();
             final String mediaUrl = mediaXmlManager.getMediaUrl();
             if (!VIDEO_MIME_TYPES.contains(mediaType) || mediaUrl == null) {
-                xmlManagerIterator.remove();
                 continue;
             }
 
-            final Integer mediaWidth = mediaXmlManager.getWidth();
-            final Integer mediaHeight = mediaXmlManager.getHeight();
-            final Integer mediaBitrate = mediaXmlManager.getBitrate();
-            if (mediaWidth == null || mediaWidth <= 0 || mediaHeight == null || mediaHeight <= 0) {
-                continue;
-            }
-
-            final double mediaFitness = calculateFitness(mediaWidth,
-                    mediaHeight,
-                    mediaBitrate,
+            final double mediaFitness = calculateMediaFitness(mediaXmlManager.getWidth(),
+                    mediaXmlManager.getHeight(),
+                    mediaXmlManager.getBitrate(),
                     mediaType);
             if (mediaFitness > bestMediaFitness) {
                 bestMediaFitness = mediaFitness;
@@ -531,6 +623,37 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
         return bestMediaFileUrl;
     }
 
+    /**
+     * @return the declared bitrate of the media file with the given url, if any. Progressive
+     * playback uses it to size the prefix that must be downloaded before the ad is ready.
+     */
+    @Nullable
+    private static Integer getMediaFileBitrate(
+            @NonNull final List<? extends VastDocument.MediaFile> managers,
+            @NonNull final String mediaUrl) {
+        for (final VastDocument.MediaFile mediaXmlManager : managers) {
+            if (mediaUrl.equals(mediaXmlManager.getMediaUrl())) {
+                return mediaXmlManager.getBitrate();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the fitness of a media file, or {@link Double#NEGATIVE_INFINITY} if it is missing
+     * valid dimensions.
+     */
+    private double calculateMediaFitness(@Nullable final Integer mediaWidth,
+                                         @Nullable final Integer mediaHeight,
+                                         @Nullable final Integer mediaBitrate,
+                                         @Nullable final String mediaType) {
+        if (mediaWidth == null || mediaWidth <= 0 || mediaHeight == null || mediaHeight <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        return calculateFitness(mediaWidth, mediaHeight, mediaBitrate, mediaType);
+    }
+
     @VisibleForTesting
     @NonNull
     Set<VastCompanionAdConfig> getAllCompanionAds(
@@ -783,29 +906,173 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
         }
     }
 
+    /**
+     * Returns the VAST xml behind a Wrapper's redirect uri. The response comes from the wrapper
+     * response cache, a prefetch started for a sibling Ad element, or a new request, in that
+     * order. Every call counts towards {@link #MAX_TIMES_TO_FOLLOW_VAST_REDIRECT}, so cached
+     * responses cannot be used to follow more redirects than a network-only chain would.
+     *
+     * @param redirectUrl The Wrapper's VASTAdTagURI
+     * @return The next VAST xml String or {@code null} if the redirect limit has been reached
+     * @throws IOException if the request failed or the resolution deadline has passed
+     */
     @Nullable
-    private String followVastRedirect(@NonNull final String redirectUrl) throws IOException {
+    private String resolveVastRedirect(@NonNull final String redirectUrl) throws IOException {
         Preconditions.checkNotNull(redirectUrl);
 
-        if (mTimesFollowedVastRedirect < MAX_TIMES_TO_FOLLOW_VAST_REDIRECT) {
-            mTimesFollowedVastRedirect++;
+        if (mTimesFollowedVastRedirect >= MAX_TIMES_TO_FOLLOW_VAST_REDIRECT) {
+            return null;
+        }
+        mTimesFollowedVastRedirect++;
 
-            HttpURLConnection urlConnection = null;
-            InputStream inputStream = null;
-            try {
-                urlConnection = MoPubHttpUrlConnection.getHttpUrlConnection(redirectUrl);
-                inputStream = new BufferedInputStream(urlConnection.getInputStream());
-
-                return Strings.fromStream(inputStream);
-            } finally {
-                Streams.closeStream(inputStream);
-                if (urlConnection != null) {
-                    urlConnection.disconnect();
+        if (SystemClock.elapsedRealtime() >= mResolutionDeadlineMillis) {
+            throw new IOException("VAST wrapper resolution deadline exceeded");
+        }
+
+        final boolean firstVisit = mFollowedVastRedirectUrls.add(redirectUrl);
+        final Future<String> prefetchedRedirect = mPrefetchedVastRedirects.remove(redirectUrl);
+        if (firstVisit) {
+            final String cachedXml = VastWrapperResponseCache.getInstance().get(redirectUrl);
+            if (cachedXml != null) {
+                if (prefetchedRedirect != null) {
+                    prefetchedRedirect.cancel(true);
                 }
+                return cachedXml;
             }
+            if (prefetchedRedirect != null) {
+                return awaitPrefetchedVastRedirect(prefetchedRedirect);
+            }
+        } else if (prefetchedRedirect != null) {
+            prefetchedRedirect.cancel(true);
         }
 
-        return null;
+        final String vastRedirectXml = followVastRedirect(redirectUrl);
+        if (vastRedirectXml != null) {
+            VastWrapperResponseCache.getInstance().put(redirectUrl, vastRedirectXml);
+        }
+        return vastRedirectXml;
+    }
+
+    /**
+     * Starts fetching the redirect uris of a document's Wrapper elements in parallel. The results
+     * are only consumed by {@link #resolveVastRedirect(String)} as the Ad elements are evaluated
+     * in document order, so the first valid ad still wins. Documents with a single Wrapper are
+     * resolved serially as before.
+     *
+     * @param vastAdTagUris The VASTAdTagURIs of the document's Wrapper elements, in document order
+     */
+    private void prefetchVastRedirects(@NonNull final List<String> vastAdTagUris) {
+        if (vastAdTagUris.size() < 2) {
+            return;
+        }
+
+        // Speculative requests share the budget of redirects that are left to follow
+        int remainingFetches = MAX_TIMES_TO_FOLLOW_VAST_REDIRECT - mTimesFollowedVastRedirect
+                - mPrefetchedVastRedirects.size();
+        for (final String vastAdTagUri : vastAdTagUris) {
+            if (remainingFetches <= 0) {
+                return;
+            }
+            if (vastAdTagUri == null
+                    || mPrefetchedVastRedirects.containsKey(vastAdTagUri)
+                    || mFollowedVastRedirectUrls.contains(vastAdTagUri)
+                    || VastWrapperResponseCache.getInstance().get(vastAdTagUri) != null) {
+                continue;
+            }
+
+            mPrefetchedVastRedirects.put(vastAdTagUri,
+                    sWrapperFetchExecutor.submit(new Callable<String>() {
+                        @Override
+                        public String call() throws IOException {
+                            final String vastRedirectXml = followVastRedirect(vastAdTagUri);
+                            if (vastRedirectXml != null) {
+                                VastWrapperResponseCache.getInstance().put(vastAdTagUri,
+                                        vastRedirectXml);
+                            }
+                            return vastRedirectXml;
+                        }
+                    }));
+            remainingFetches--;
+        }
+    }
+
+    @Nullable
+    private String awaitPrefetchedVastRedirect(@NonNull final Future<String> prefetchedRedirect)
+            throws IOException {
+        final long remainingMillis = mResolutionDeadlineMillis - SystemClock.elapsedRealtime();
+        try {
+            return prefetchedRedirect.get(Math.max(0, remainingMillis), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (TimeoutException e) {
+            prefetchedRedirect.cancel(true);
+            throw new IOException("VAST wrapper resolution deadline exceeded");
+        } catch (InterruptedException e) {
+            prefetchedRedirect.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private void cancelPrefetchedVastRedirects() {
+        for (final Future<String> prefetchedRedirect : mPrefetchedVastRedirects.values()) {
+            prefetchedRedirect.cancel(true);
+        }
+        mPrefetchedVastRedirects.clear();
+    }
+
+    @Nullable
+    private static String followVastRedirect(@NonNull final String redirectUrl)
+            throws IOException {
+        Preconditions.checkNotNull(redirectUrl);
+
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        try {
+            urlConnection = MoPubHttpUrlConnection.getHttpUrlConnection(redirectUrl);
+            inputStream = new BufferedInputStream(urlConnection.getInputStream());
+
+            return Strings.fromStream(inputStream);
+        } finally {
+            Streams.closeStream(inputStream);
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    @NonNull
+    private static ExecutorService createWrapperFetchExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PARALLEL_WRAPPER_FETCHES,
+                MAX_PARALLEL_WRAPPER_FETCHES, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @VisibleForTesting
+    static void setWrapperFetchExecutor(@NonNull final ExecutorService executorService) {
+        Preconditions.checkNotNull(executorService);
+        sWrapperFetchExecutor = executorService;
+    }
+
+    @VisibleForTesting
+    public static void clearWrapperResponseCache() {
+        VastWrapperResponseCache.getInstance().clear();
+    }
+
+    @VisibleForTesting
+    void setResolutionDeadlineMillis(final long resolutionDeadlineMillis) {
+        mResolutionDeadlineMillis = resolutionDeadlineMillis;
+    }
+
+    @VisibleForTesting
+    void setStreamingParserEnabled(final boolean streamingParserEnabled) {
+        mStreamingParserEnabled = streamingParserEnabled;
     }
 
     @VisibleForTesting
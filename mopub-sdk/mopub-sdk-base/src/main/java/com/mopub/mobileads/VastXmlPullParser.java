@@ -0,0 +1,701 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import android.text.TextUtils;
+import android.util.Xml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Single pass, streaming alternative to {@link VastXmlManager}. This reads the VAST document with
+ * an {@link XmlPullParser} and keeps only the values {@link VastXmlManagerAggregator} needs to
+ * build a {@link VastVideoConfig}, instead of materializing a full DOM.
+ * <p>
+ * Only the common subset of VAST is handled here: Ad, InLine, Wrapper, Impression, Error,
+ * VASTAdTagURI, Linear creatives and the MoPub custom elements. Documents with Icons,
+ * CompanionAds, Extensions or AdVerifications are rejected by returning {@code null} from
+ * {@link #parse(String)} so the caller can fall back to the DOM based managers.
+ */
+class VastXmlPullParser {
+    private static final String ROOT_TAG = "MPMoVideoXMLDocRoot";
+    private static final String XML_DECLARATION_START = "<?xml";
+    private static final String XML_DECLARATION_END = "?>";
+
+    // Element names
+    private static final String AD = "Ad";
+    private static final String INLINE = "InLine";
+    private static final String WRAPPER = "Wrapper";
+    private static final String IMPRESSION = "Impression";
+    private static final String ERROR = "Error";
+    private static final String VAST_AD_TAG = "VASTAdTagURI";
+    private static final String CREATIVES = "Creatives";
+    private static final String CREATIVE = "Creative";
+    private static final String LINEAR = "Linear";
+    private static final String TRACKING_EVENTS = "TrackingEvents";
+    private static final String TRACKING = "Tracking";
+    private static final String VIDEO_CLICKS = "VideoClicks";
+    private static final String CLICK_THROUGH = "ClickThrough";
+    private static final String CLICK_TRACKING = "ClickTracking";
+    private static final String MEDIA_FILES = "MediaFiles";
+    private static final String MEDIA_FILE = "MediaFile";
+
+    // Elements that only the DOM managers understand
+    private static final String ICONS = "Icons";
+    private static final String COMPANION_ADS = "CompanionAds";
+    private static final String EXTENSIONS = "Extensions";
+    private static final String AD_VERIFICATIONS = "AdVerifications";
+
+    // Custom element names for VAST 3.0 extensions
+    private static final String MP_IMPRESSION_TRACKER = "MP_TRACKING_URL";
+    private static final String CUSTOM_CTA_TEXT = "MoPubCtaText";
+    private static final String CUSTOM_SKIP_TEXT = "MoPubSkipText";
+    private static final String CUSTOM_CLOSE_ICON = "MoPubCloseIcon";
+
+    // Attribute names
+    private static final String SEQUENCE = "sequence";
+    private static final String EVENT = "event";
+    private static final String OFFSET = "offset";
+    private static final String WIDTH = "width";
+    private static final String HEIGHT = "height";
+    private static final String VIDEO_TYPE = "type";
+    private static final String BITRATE = "bitrate";
+    private static final String BITRATE_MIN = "minBitrate";
+    private static final String BITRATE_MAX = "maxBitrate";
+
+    // Tracking event values
+    private static final String COMPLETE = "complete";
+    private static final String PAUSE = "pause";
+    private static final String RESUME = "resume";
+    private static final String CLOSE = "close";
+    private static final String CLOSE_LINEAR = "closeLinear";
+    private static final String SKIP = "skip";
+
+    // Constants for custom extensions
+    private static final int MAX_CTA_TEXT_LENGTH = 15;
+    private static final int MAX_SKIP_TEXT_LENGTH = 8;
+
+    @NonNull private final XmlPullParser mParser;
+    @NonNull private final Document mDocument = new Document();
+
+    // Open element names and the text seen directly inside each one before its first child
+    @NonNull private final List<String> mElementStack = new ArrayList<>();
+    @NonNull private final List<StringBuilder> mTextStack = new ArrayList<>();
+    @NonNull private final List<Boolean> mHasChildStack = new ArrayList<>();
+
+    @Nullable private Ad mCurrentAd;
+    @Nullable private AdBody mCurrentBody;
+    @Nullable private Linear mCurrentLinear;
+    private boolean mCurrentCreativeHasLinear;
+    @Nullable private String mPendingTrackingEvent;
+    @Nullable private String mPendingTrackingOffset;
+    @Nullable private MediaFile mPendingMediaFile;
+
+    private VastXmlPullParser(@NonNull final XmlPullParser parser) {
+        mParser = parser;
+    }
+
+    /**
+     * Parses the VAST XML in a single pass.
+     *
+     * @param xmlString The XML to parse
+     * @return The parsed document, or {@code null} if the document uses elements this parser
+     * does not handle and should be parsed with {@link VastXmlManager} instead.
+     * @throws XmlPullParserException If the XML is poorly formatted
+     * @throws IOException            If we can't read the document for any reason
+     */
+    @Nullable
+    static Document parse(@NonNull final String xmlString) throws XmlPullParserException,
+            IOException {
+        Preconditions.checkNotNull(xmlString, "xmlString cannot be null");
+
+        final XmlPullParser parser = Xml.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+        parser.setInput(new RootWrappingReader(xmlString));
+
+        return new VastXmlPullParser(parser).parseDocument();
+    }
+
+    @Nullable
+    private Document parseDocument() throws XmlPullParserException, IOException {
+        int eventType = mParser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            switch (eventType) {
+                case XmlPullParser.START_TAG:
+                    final String name = mParser.getName();
+                    if (!mHasChildStack.isEmpty()) {
+                        mHasChildStack.set(mHasChildStack.size() - 1, true);
+                    }
+                    if (!onStartTag(name, getParentName())) {
+                        return null;
+                    }
+                    mElementStack.add(name);
+                    mTextStack.add(null);
+                    mHasChildStack.add(false);
+                    break;
+                case XmlPullParser.TEXT:
+                    appendText(mParser.getText());
+                    break;
+                case XmlPullParser.END_TAG:
+                    final int top = mElementStack.size() - 1;
+                    final StringBuilder text = mTextStack.remove(top);
+                    mHasChildStack.remove(top);
+                    final String endName = mElementStack.remove(top);
+                    onEndTag(endName, getParentName(), text == null ? null : text.toString().trim());
+                    break;
+                default:
+                    break;
+            }
+            eventType = mParser.next();
+        }
+        return mDocument;
+    }
+
+    @Nullable
+    private String getParentName() {
+        return mElementStack.isEmpty() ? null : mElementStack.get(mElementStack.size() - 1);
+    }
+
+    /**
+     * Mirrors {@link com.mopub.mobileads.util.XmlUtils#getNodeValue}, which only looks at the
+     * first child of an element. Text after a child element is ignored.
+     */
+    private void appendText(@Nullable final String text) {
+        final int top = mTextStack.size() - 1;
+        if (top < 0 || text == null || mHasChildStack.get(top)) {
+            return;
+        }
+        StringBuilder builder = mTextStack.get(top);
+        if (builder == null) {
+            builder = new StringBuilder(text.length());
+            mTextStack.set(top, builder);
+        }
+        builder.append(text);
+    }
+
+    /**
+     * @return {@code false} if the document needs the DOM based parser.
+     */
+    private boolean onStartTag(@NonNull final String name, @Nullable final String parent) {
+        if (AD.equals(name)) {
+            if (mCurrentAd != null) {
+                return false;
+            }
+            mCurrentAd = new Ad(mParser.getAttributeValue(null, SEQUENCE));
+            mDocument.mAds.add(mCurrentAd);
+        } else if (mCurrentAd != null && AD.equals(parent)
+                && (INLINE.equals(name) || WRAPPER.equals(name))) {
+            final boolean isWrapper = WRAPPER.equals(name);
+            if ((isWrapper ? mCurrentAd.mWrapper : mCurrentAd.mInLine) != null) {
+                return false;
+            }
+            mCurrentBody = new AdBody();
+            if (isWrapper) {
+                mCurrentAd.mWrapper = mCurrentBody;
+            } else {
+                mCurrentAd.mInLine = mCurrentBody;
+            }
+        } else if (mCurrentBody != null && isBody(parent)) {
+            if (EXTENSIONS.equals(name) || AD_VERIFICATIONS.equals(name)) {
+                return false;
+            }
+            if (CREATIVES.equals(name)) {
+                if (mCurrentBody.mHasCreatives) {
+                    return false;
+                }
+                mCurrentBody.mHasCreatives = true;
+            }
+        } else if (mCurrentBody != null && CREATIVES.equals(parent) && CREATIVE.equals(name)) {
+            mCurrentCreativeHasLinear = false;
+        } else if (mCurrentBody != null && CREATIVE.equals(parent)) {
+            if (COMPANION_ADS.equals(name)) {
+                return false;
+            }
+            if (LINEAR.equals(name)) {
+                if (mCurrentCreativeHasLinear) {
+                    return false;
+                }
+                mCurrentCreativeHasLinear = true;
+                mCurrentLinear = new Linear();
+                mCurrentBody.mLinears.add(mCurrentLinear);
+            }
+        } else if (mCurrentLinear != null && LINEAR.equals(parent)) {
+            if (ICONS.equals(name)) {
+                return false;
+            }
+            if (TRACKING_EVENTS.equals(name) || VIDEO_CLICKS.equals(name)
+                    || MEDIA_FILES.equals(name)) {
+                // The DOM managers only read the first of each of these
+                if (!mCurrentLinear.mSeenSections.add(name)) {
+                    return false;
+                }
+            }
+        } else if (mCurrentLinear != null && TRACKING_EVENTS.equals(parent)
+                && TRACKING.equals(name)) {
+            mPendingTrackingEvent = mParser.getAttributeValue(null, EVENT);
+            mPendingTrackingOffset = mParser.getAttributeValue(null, OFFSET);
+        } else if (mCurrentLinear != null && MEDIA_FILES.equals(parent)
+                && MEDIA_FILE.equals(name)) {
+            mPendingMediaFile = new MediaFile(
+                    mParser.getAttributeValue(null, VIDEO_TYPE),
+                    parseInt(mParser.getAttributeValue(null, WIDTH)),
+                    parseInt(mParser.getAttributeValue(null, HEIGHT)),
+                    parseBitrate());
+        }
+        return true;
+    }
+
+    private void onEndTag(@NonNull final String name, @Nullable final String parent,
+            @Nullable final String value) {
+        // Document wide elements, matched anywhere like Document.getElementsByTagName
+        if (ERROR.equals(name) && mDocument.mErrorTracker == null) {
+            mDocument.mErrorTracker = value;
+        } else if (MP_IMPRESSION_TRACKER.equals(name) && value != null) {
+            mDocument.mMoPubImpressionTrackers.add(value);
+        } else if (CUSTOM_CTA_TEXT.equals(name) && mDocument.mCustomCtaText == null) {
+            mDocument.mCustomCtaText = value;
+        } else if (CUSTOM_SKIP_TEXT.equals(name) && mDocument.mCustomSkipText == null) {
+            mDocument.mCustomSkipText = value;
+        } else if (CUSTOM_CLOSE_ICON.equals(name) && mDocument.mCustomCloseIconUrl == null) {
+            mDocument.mCustomCloseIconUrl = value;
+        }
+
+        if (AD.equals(name)) {
+            mCurrentAd = null;
+        } else if (mCurrentBody != null && AD.equals(parent)
+                && (INLINE.equals(name) || WRAPPER.equals(name))) {
+            mCurrentBody = null;
+        } else if (mCurrentBody != null && isBody(parent)) {
+            if (IMPRESSION.equals(name) && !TextUtils.isEmpty(value)) {
+                mCurrentBody.mImpressionTrackers.add(value);
+            } else if (ERROR.equals(name) && !TextUtils.isEmpty(value)) {
+                mCurrentBody.mErrorTrackers.add(value);
+            } else if (VAST_AD_TAG.equals(name) && !mCurrentBody.mHasVastAdTagUri) {
+                mCurrentBody.mHasVastAdTagUri = true;
+                mCurrentBody.mVastAdTagUri = value;
+            }
+        } else if (mCurrentLinear != null && CREATIVE.equals(parent) && LINEAR.equals(name)) {
+            mCurrentLinear = null;
+        } else if (mCurrentLinear != null && TRACKING_EVENTS.equals(parent)
+                && TRACKING.equals(name)) {
+            if (mPendingTrackingEvent != null) {
+                mCurrentLinear.mTrackingEvents.add(
+                        new VastLinearXmlManager.TrackingEvent(mPendingTrackingEvent,
+                                mPendingTrackingOffset, value));
+            }
+            mPendingTrackingEvent = null;
+            mPendingTrackingOffset = null;
+        } else if (mCurrentLinear != null && VIDEO_CLICKS.equals(parent)) {
+            if (CLICK_THROUGH.equals(name) && !mCurrentLinear.mHasClickThrough) {
+                mCurrentLinear.mHasClickThrough = true;
+                mCurrentLinear.mClickThroughUrl = value;
+            } else if (CLICK_TRACKING.equals(name) && value != null) {
+                mCurrentLinear.mClickTrackers.add(value);
+            }
+        } else if (mCurrentLinear != null && MEDIA_FILES.equals(parent)
+                && MEDIA_FILE.equals(name) && mPendingMediaFile != null) {
+            mPendingMediaFile.mMediaUrl = value;
+            mCurrentLinear.mMediaFiles.add(mPendingMediaFile);
+            mPendingMediaFile = null;
+        }
+    }
+
+    private static boolean isBody(@Nullable final String name) {
+        return INLINE.equals(name) || WRAPPER.equals(name);
+    }
+
+    /**
+     * Same fallback order as {@link VastMediaXmlManager#getBitrate()}.
+     */
+    @Nullable
+    private Integer parseBitrate() {
+        final Integer bitrate = parseInt(mParser.getAttributeValue(null, BITRATE));
+        if (bitrate != null) {
+            return bitrate;
+        }
+
+        final Integer minBitrate = parseInt(mParser.getAttributeValue(null, BITRATE_MIN));
+        final Integer maxBitrate = parseInt(mParser.getAttributeValue(null, BITRATE_MAX));
+        if (minBitrate != null && maxBitrate != null) {
+            return (minBitrate + maxBitrate) / 2;
+        }
+        if (minBitrate != null) {
+            return minBitrate;
+        }
+        return maxBitrate;
+    }
+
+    @Nullable
+    private static Integer parseInt(@Nullable final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The values read from one VAST document. Equivalent to {@link VastXmlManager}.
+     */
+    static class Document implements VastDocument {
+        @NonNull final List<Ad> mAds = new ArrayList<>();
+        @NonNull final List<String> mMoPubImpressionTrackers = new ArrayList<>();
+        @Nullable String mErrorTracker;
+        @Nullable String mCustomCtaText;
+        @Nullable String mCustomSkipText;
+        @Nullable String mCustomCloseIconUrl;
+
+        @Override
+        @NonNull
+        public List<Ad> getAdXmlManagers() {
+            return mAds;
+        }
+
+        @Override
+        @Nullable
+        public VastTracker getErrorTracker() {
+            if (TextUtils.isEmpty(mErrorTracker)) {
+                return null;
+            }
+            return new VastTracker.Builder(mErrorTracker).build();
+        }
+
+        @Override
+        @NonNull
+        public List<VastTracker> getMoPubImpressionTrackers() {
+            return toTrackers(mMoPubImpressionTrackers, false);
+        }
+
+        @Override
+        @Nullable
+        public String getCustomCtaText() {
+            if (mCustomCtaText != null && mCustomCtaText.length() <= MAX_CTA_TEXT_LENGTH) {
+                return mCustomCtaText;
+            }
+            return null;
+        }
+
+        @Override
+        @Nullable
+        public String getCustomSkipText() {
+            if (mCustomSkipText != null && mCustomSkipText.length() <= MAX_SKIP_TEXT_LENGTH) {
+                return mCustomSkipText;
+            }
+            return null;
+        }
+
+        @Override
+        @Nullable
+        public String getCustomCloseIconUrl() {
+            return mCustomCloseIconUrl;
+        }
+    }
+
+    /**
+     * Equivalent to {@link VastAdXmlManager}.
+     */
+    static class Ad implements VastDocument.Ad {
+        @Nullable final String mSequence;
+        @Nullable AdBody mInLine;
+        @Nullable AdBody mWrapper;
+
+        Ad(@Nullable final String sequence) {
+            mSequence = sequence;
+        }
+
+        @Override
+        @Nullable
+        public String getSequence() {
+            return mSequence;
+        }
+
+        @Override
+        @Nullable
+        public AdBody getInLineXmlManager() {
+            return mInLine;
+        }
+
+        @Override
+        @Nullable
+        public AdBody getWrapperXmlManager() {
+            return mWrapper;
+        }
+    }
+
+    /**
+     * Equivalent to {@link VastInLineXmlManager} and {@link VastWrapperXmlManager}.
+     */
+    static class AdBody implements VastDocument.Wrapper {
+        @NonNull final List<String> mImpressionTrackers = new ArrayList<>();
+        @NonNull final List<String> mErrorTrackers = new ArrayList<>();
+        @NonNull final List<Linear> mLinears = new ArrayList<>();
+        @Nullable String mVastAdTagUri;
+        boolean mHasVastAdTagUri;
+        boolean mHasCreatives;
+
+        @Override
+        @NonNull
+        public List<VastTracker> getImpressionTrackers() {
+            return toTrackers(mImpressionTrackers, false);
+        }
+
+        @Override
+        @NonNull
+        public List<VastTracker> getErrorTrackers() {
+            return toTrackers(mErrorTrackers, true);
+        }
+
+        @Override
+        @NonNull
+        public List<Linear> getLinearXmlManagers() {
+            return mLinears;
+        }
+
+        /**
+         * Documents with companion ads are left to the DOM path, so there are never any here.
+         */
+        @Override
+        @NonNull
+        public List<VastCompanionAdXmlManager> getCompanionAdXmlManagers() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        @Nullable
+        public String getVastAdTagURI() {
+            return mVastAdTagUri;
+        }
+    }
+
+    /**
+     * Equivalent to {@link VastLinearXmlManager}. Trackers are derived from the Tracking
+     * elements by the same code as on the DOM path.
+     */
+    static class Linear implements VastDocument.Linear {
+        @NonNull final List<VastLinearXmlManager.TrackingEvent> mTrackingEvents = new ArrayList<>();
+        @NonNull final List<String> mClickTrackers = new ArrayList<>();
+        @NonNull final List<MediaFile> mMediaFiles = new ArrayList<>();
+        @NonNull final Set<String> mSeenSections = new HashSet<>(4);
+        @Nullable String mClickThroughUrl;
+        boolean mHasClickThrough;
+
+        @Override
+        @NonNull
+        public List<VastFractionalProgressTracker> getFractionalProgressTrackers() {
+            return VastLinearXmlManager.createFractionalProgressTrackers(mTrackingEvents);
+        }
+
+        @Override
+        @NonNull
+        public List<VastAbsoluteProgressTracker> getAbsoluteProgressTrackers() {
+            return VastLinearXmlManager.createAbsoluteProgressTrackers(mTrackingEvents);
+        }
+
+        @Override
+        @NonNull
+        public List<VastTracker> getVideoCompleteTrackers() {
+            return VastLinearXmlManager.createTrackers(mTrackingEvents, false, COMPLETE);
+        }
+
+        @Override
+        @NonNull
+        public List<VastTracker> getPauseTrackers() {
+            return VastLinearXmlManager.createTrackers(mTrackingEvents, true, PAUSE);
+        }
+
+        @Override
+        @NonNull
+        public List<VastTracker> getResumeTrackers() {
+            return VastLinearXmlManager.createTrackers(mTrackingEvents, true, RESUME);
+        }
+
+        @Override
+        @NonNull
+        public List<VastTracker> getVideoCloseTrackers() {
+            return VastLinearXmlManager.createTrackers(mTrackingEvents, false, CLOSE,
+                    CLOSE_LINEAR);
+        }
+
+        @Override
+        @NonNull
+        public List<VastTracker> getVideoSkipTrackers() {
+            return VastLinearXmlManager.createTrackers(mTrackingEvents, false, SKIP);
+        }
+
+        @Override
+        @NonNull
+        public List<VastTracker> getClickTrackers() {
+            return toTrackers(mClickTrackers, false);
+        }
+
+        @Override
+        @Nullable
+        public String getClickThroughUrl() {
+            return mClickThroughUrl;
+        }
+
+        @Override
+        @NonNull
+        public List<MediaFile> getMediaXmlManagers() {
+            return mMediaFiles;
+        }
+
+        /**
+         * Documents with icons are left to the DOM path, so there are never any here.
+         */
+        @Override
+        @NonNull
+        public List<VastIconXmlManager> getIconXmlManagers() {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Equivalent to {@link VastMediaXmlManager}.
+     */
+    static class MediaFile implements VastDocument.MediaFile {
+        @Nullable final String mType;
+        @Nullable final Integer mWidth;
+        @Nullable final Integer mHeight;
+        @Nullable final Integer mBitrate;
+        @Nullable String mMediaUrl;
+
+        MediaFile(@Nullable final String type, @Nullable final Integer width,
+                @Nullable final Integer height, @Nullable final Integer bitrate) {
+            mType = type;
+            mWidth = width;
+            mHeight = height;
+            mBitrate = bitrate;
+        }
+
+        @Override
+        @Nullable
+        public Integer getWidth() {
+            return mWidth;
+        }
+
+        @Override
+        @Nullable
+        public Integer getHeight() {
+            return mHeight;
+        }
+
+        @Override
+        @Nullable
+        public String getType() {
+            return mType;
+        }
+
+        @Override
+        @Nullable
+        public String getMediaUrl() {
+            return mMediaUrl;
+        }
+
+        @Override
+        @Nullable
+        public Integer getBitrate() {
+            return mBitrate;
+        }
+    }
+
+    @NonNull
+    private static List<VastTracker> toTrackers(@NonNull final List<String> urls,
+            final boolean isRepeatable) {
+        final List<VastTracker> trackers = new ArrayList<>(urls.size());
+        for (final String url : urls) {
+            trackers.add(new VastTracker.Builder(url).isRepeatable(isRepeatable).build());
+        }
+        return trackers;
+    }
+
+    /**
+     * Presents the document wrapped in a synthetic root element, since the ad server may send
+     * MoPub trackers as siblings of the VAST element. A leading XML declaration is skipped. This
+     * avoids the string concatenation and regex that {@link VastXmlManager} uses for the same job.
+     */
+    private static class RootWrappingReader extends Reader {
+        private static final String ROOT_TAG_OPEN = "<" + ROOT_TAG + ">";
+        private static final String ROOT_TAG_CLOSE = "</" + ROOT_TAG + ">";
+
+        @NonNull private final String mXml;
+        private final int mTotalLength;
+        private int mPosition;
+        private final int mXmlStart;
+
+        RootWrappingReader(@NonNull final String xml) {
+            mXml = xml;
+            mXmlStart = findContentStart(xml);
+            mTotalLength = ROOT_TAG_OPEN.length() + (xml.length() - mXmlStart)
+                    + ROOT_TAG_CLOSE.length();
+        }
+
+        private static int findContentStart(@NonNull final String xml) {
+            int start = 0;
+            while (start < xml.length() && (Character.isWhitespace(xml.charAt(start))
+                    || xml.charAt(start) == '\uFEFF')) {
+                start++;
+            }
+            if (xml.startsWith(XML_DECLARATION_START, start)) {
+                final int end = xml.indexOf(XML_DECLARATION_END, start);
+                if (end >= 0) {
+                    return end + XML_DECLARATION_END.length();
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public int read(@NonNull final char[] buffer, final int offset, final int length) {
+            if (mPosition >= mTotalLength) {
+                return -1;
+            }
+
+            int written = 0;
+            while (written < length && mPosition < mTotalLength) {
+                final int openEnd = ROOT_TAG_OPEN.length();
+                final int xmlEnd = openEnd + mXml.length() - mXmlStart;
+                final int count;
+                if (mPosition < openEnd) {
+                    count = Math.min(length - written, openEnd - mPosition);
+                    ROOT_TAG_OPEN.getChars(mPosition, mPosition + count, buffer, offset + written);
+                } else if (mPosition < xmlEnd) {
+                    count = Math.min(length - written, xmlEnd - mPosition);
+                    final int xmlPosition = mXmlStart + mPosition - openEnd;
+                    mXml.getChars(xmlPosition, xmlPosition + count, buffer, offset + written);
+                } else {
+                    count = Math.min(length - written, mTotalLength - mPosition);
+                    final int closePosition = mPosition - xmlEnd;
+                    ROOT_TAG_CLOSE.getChars(closePosition, closePosition + count, buffer,
+                            offset + written);
+                }
+                written += count;
+                mPosition += count;
+            }
+            return written;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,404 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.mobileads.VideoDownloader.VideoDownloaderListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
+import static com.mopub.common.logging.MoPubLog.SdkLogEvent.ERROR_WITH_THROWABLE;
+
+/**
+ * Runs video downloads on their own threads with a global and a per-host concurrency limit.
+ * <p/>
+ * Waiting downloads start in priority order: ad unit priority first, then the earliest ad
+ * expiration, then request order. Requests for a url that is already queued or downloading join
+ * that download instead of starting a second transfer, including a download that was cancelled
+ * but has not stopped yet. All state is guarded by this object's monitor; a download's slot is
+ * released under it as soon as the download returns. Listeners are called on the callback
+ * executor.
+ */
+class VideoDownloadScheduler {
+    static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 3;
+    static final int DEFAULT_MAX_DOWNLOADS_PER_HOST = 2;
+    static final int DEFAULT_AD_UNIT_PRIORITY = 0;
+    static final long NO_EXPIRATION = Long.MAX_VALUE;
+
+    interface Downloader {
+        /**
+         * Downloads the video into the video cache. Called on a download thread, which is
+         * interrupted if the download is cancelled.
+         *
+         * @return true if the video is in the cache
+         */
+        boolean download(@NonNull String url,
+                @NonNull ResumableVideoDownload.ProgressListener progressListener) throws Exception;
+    }
+
+    private static final Comparator<Job> JOB_ORDER = new Comparator<Job>() {
+        @Override
+        public int compare(final Job first, final Job second) {
+            if (first.mPriority != second.mPriority) {
+                return Integer.compare(second.mPriority, first.mPriority);
+            }
+            if (first.mExpirationMillis != second.mExpirationMillis) {
+                return Long.compare(first.mExpirationMillis, second.mExpirationMillis);
+            }
+            return Long.compare(first.mSequence, second.mSequence);
+        }
+    };
+
+    @NonNull private final Downloader mDownloader;
+    @NonNull private final Executor mDownloadExecutor;
+    @NonNull private final Executor mCallbackExecutor;
+    private final int mMaxConcurrentDownloads;
+    private final int mMaxDownloadsPerHost;
+
+    @NonNull private final Map<String, Job> mJobs = new HashMap<String, Job>();
+    @NonNull private final List<Job> mPendingJobs = new ArrayList<Job>();
+    @NonNull private final Map<String, Integer> mRunningJobsPerHost = new HashMap<String, Integer>();
+    @NonNull private final List<Request> mRequests = new ArrayList<Request>();
+    @NonNull private final Map<String, Integer> mAdUnitPriorities = new HashMap<String, Integer>();
+    private int mRunningJobCount;
+    private long mNextSequence;
+
+    VideoDownloadScheduler(@NonNull final Downloader downloader,
+            @NonNull final Executor downloadExecutor,
+            @NonNull final Executor callbackExecutor,
+            final int maxConcurrentDownloads,
+            final int maxDownloadsPerHost) {
+        Preconditions.checkNotNull(downloader);
+        Preconditions.checkNotNull(downloadExecutor);
+        Preconditions.checkNotNull(callbackExecutor);
+        Preconditions.checkArgument(maxConcurrentDownloads > 0,
+                "maxConcurrentDownloads must be positive");
+        Preconditions.checkArgument(maxDownloadsPerHost > 0,
+                "maxDownloadsPerHost must be positive");
+
+        mDownloader = downloader;
+        mDownloadExecutor = downloadExecutor;
+        mCallbackExecutor = callbackExecutor;
+        mMaxConcurrentDownloads = maxConcurrentDownloads;
+        mMaxDownloadsPerHost = maxDownloadsPerHost;
+    }
+
+    /**
+     * Ad units with a higher priority download ahead of ad units with a lower one.
+     */
+    synchronized void setAdUnitPriority(@NonNull final String adUnitId, final int priority) {
+        Preconditions.checkNotNull(adUnitId);
+
+        mAdUnitPriorities.put(adUnitId, priority);
+    }
+
+    /**
+     * Queues a download, or joins the download already in flight for the same url.
+     *
+     * @param expirationTimeMillis When the ad expires, in
+     *                             {@link android.os.SystemClock#elapsedRealtime()} time, or
+     *                             {@link #NO_EXPIRATION}
+     */
+    void enqueue(@NonNull final String url,
+            @NonNull final VideoDownloaderListener listener,
+            @Nullable final ResumableVideoDownload.ProgressListener progressListener,
+            @Nullable final String adUnitId,
+            final long expirationTimeMillis) {
+        Preconditions.checkNotNull(url);
+        Preconditions.checkNotNull(listener);
+
+        final long availableBytes;
+        final long totalBytes;
+        synchronized (this) {
+            final Integer adUnitPriority =
+                    adUnitId == null ? null : mAdUnitPriorities.get(adUnitId);
+            final Request request = new Request(listener, progressListener,
+                    adUnitPriority == null ? DEFAULT_AD_UNIT_PRIORITY : adUnitPriority,
+                    expirationTimeMillis, mNextSequence++);
+
+            Job job = mJobs.get(url);
+            if (job == null) {
+                job = new Job(url);
+                mJobs.put(url, job);
+                mPendingJobs.add(job);
+            } else {
+                MoPubLog.log(CUSTOM, "Joining in-flight download for video: " + url);
+                // A cancelled download that has not stopped yet carries on for this request
+                job.mCancelled = false;
+            }
+            request.mJob = job;
+            job.mRequests.add(request);
+            job.updatePriority();
+            mRequests.add(request);
+            availableBytes = job.mAvailableBytes;
+            totalBytes = job.mTotalBytes;
+
+            startPendingJobs();
+        }
+
+        // Catch a joining request up with the bytes already on disk
+        if (progressListener != null && availableBytes > 0) {
+            progressListener.onProgress(availableBytes, totalBytes);
+        }
+    }
+
+    /**
+     * Cancels every request. Downloads that no longer have any requests are stopped.
+     */
+    void cancelAll() {
+        final List<Request> requests;
+        synchronized (this) {
+            requests = new ArrayList<Request>(mRequests);
+        }
+        for (final Request request : requests) {
+            cancel(request);
+        }
+    }
+
+    /**
+     * Cancels the most recent request that is still waiting.
+     */
+    void cancelLast() {
+        final Request request;
+        synchronized (this) {
+            if (mRequests.isEmpty()) {
+                return;
+            }
+            request = mRequests.get(mRequests.size() - 1);
+        }
+        cancel(request);
+    }
+
+    private void cancel(@NonNull final Request request) {
+        synchronized (this) {
+            if (!mRequests.remove(request)) {
+                return;
+            }
+            final Job job = request.mJob;
+            job.mRequests.remove(request);
+            if (job.mRequests.isEmpty()) {
+                if (job.mRunning) {
+                    // The job is unregistered once its thread has stopped
+                    job.mCancelled = true;
+                    if (job.mThread != null) {
+                        job.mInterrupted = true;
+                        job.mThread.interrupt();
+                    }
+                } else {
+                    mPendingJobs.remove(job);
+                    mJobs.remove(job.mUrl);
+                }
+            } else {
+                job.updatePriority();
+            }
+        }
+
+        MoPubLog.log(CUSTOM, "VideoDownloader task was cancelled.");
+        notifyComplete(request, false);
+    }
+
+    @VisibleForTesting
+    synchronized int getRequestCount() {
+        return mRequests.size();
+    }
+
+    @VisibleForTesting
+    synchronized int getRunningJobCount() {
+        return mRunningJobCount;
+    }
+
+    @VisibleForTesting
+    synchronized int getPendingJobCount() {
+        return mPendingJobs.size();
+    }
+
+    /**
+     * Starts the best pending jobs whose hosts are below the per-host limit, until the global
+     * limit is reached.
+     */
+    private void startPendingJobs() {
+        while (mRunningJobCount < mMaxConcurrentDownloads) {
+            final Job next = nextStartableJob();
+            if (next == null) {
+                return;
+            }
+
+            mPendingJobs.remove(next);
+            next.mRunning = true;
+            next.mCancelled = false;
+            mRunningJobCount++;
+            final Integer hostCount = mRunningJobsPerHost.get(next.mHost);
+            mRunningJobsPerHost.put(next.mHost, hostCount == null ? 1 : hostCount + 1);
+            try {
+                mDownloadExecutor.execute(next);
+            } catch (RejectedExecutionException e) {
+                MoPubLog.log(ERROR_WITH_THROWABLE, "Unable to start video download.", e);
+                onJobFinished(next, false);
+            }
+        }
+    }
+
+    @Nullable
+    private Job nextStartableJob() {
+        Job best = null;
+        for (final Job job : mPendingJobs) {
+            final Integer hostCount = mRunningJobsPerHost.get(job.mHost);
+            if (hostCount != null && hostCount >= mMaxDownloadsPerHost) {
+                continue;
+            }
+            if (best == null || JOB_ORDER.compare(job, best) < 0) {
+                best = job;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Releases the job's slot and completes its requests. A download that was interrupted while
+     * requests joined it is queued again and resumes from its partial file.
+     */
+    private synchronized void onJobFinished(@NonNull final Job job, final boolean success) {
+        job.mRunning = false;
+        job.mThread = null;
+        mRunningJobCount--;
+        final Integer hostCount = mRunningJobsPerHost.get(job.mHost);
+        if (hostCount == null || hostCount <= 1) {
+            mRunningJobsPerHost.remove(job.mHost);
+        } else {
+            mRunningJobsPerHost.put(job.mHost, hostCount - 1);
+        }
+
+        final boolean interrupted = job.mInterrupted;
+        job.mInterrupted = false;
+        if (!success && interrupted && !job.mRequests.isEmpty()) {
+            MoPubLog.log(CUSTOM, "Resuming cancelled download for video: " + job.mUrl);
+            mPendingJobs.add(job);
+        } else {
+            final List<Request> finishedRequests = new ArrayList<Request>(job.mRequests);
+            job.mRequests.clear();
+            mRequests.removeAll(finishedRequests);
+            mJobs.remove(job.mUrl);
+            for (final Request request : finishedRequests) {
+                notifyComplete(request, success);
+            }
+        }
+
+        startPendingJobs();
+    }
+
+    private void notifyComplete(@NonNull final Request request, final boolean success) {
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                request.mListener.onComplete(success);
+            }
+        });
+    }
+
+    private static final class Request {
+        @NonNull final VideoDownloaderListener mListener;
+        @Nullable final ResumableVideoDownload.ProgressListener mProgressListener;
+        final int mPriority;
+        final long mExpirationMillis;
+        final long mSequence;
+        Job mJob;
+
+        Request(@NonNull final VideoDownloaderListener listener,
+                @Nullable final ResumableVideoDownload.ProgressListener progressListener,
+                final int priority,
+                final long expirationMillis,
+                final long sequence) {
+            mListener = listener;
+            mProgressListener = progressListener;
+            mPriority = priority;
+            mExpirationMillis = expirationMillis;
+            mSequence = sequence;
+        }
+    }
+
+    private final class Job implements Runnable, ResumableVideoDownload.ProgressListener {
+        @NonNull final String mUrl;
+        @NonNull final String mHost;
+        @NonNull final List<Request> mRequests = new ArrayList<Request>();
+        // Ordering key: the most urgent request waiting on this job
+        int mPriority;
+        long mExpirationMillis;
+        long mSequence;
+        boolean mRunning;
+        boolean mCancelled;
+        boolean mInterrupted;
+        @Nullable Thread mThread;
+        long mAvailableBytes;
+        long mTotalBytes = -1;
+
+        Job(@NonNull final String url) {
+            mUrl = url;
+            final String host = Uri.parse(url).getHost();
+            mHost = host == null ? "" : host;
+        }
+
+        void updatePriority() {
+            mPriority = Integer.MIN_VALUE;
+            mExpirationMillis = NO_EXPIRATION;
+            mSequence = Long.MAX_VALUE;
+            for (final Request request : mRequests) {
+                mPriority = Math.max(mPriority, request.mPriority);
+                mExpirationMillis = Math.min(mExpirationMillis, request.mExpirationMillis);
+                mSequence = Math.min(mSequence, request.mSequence);
+            }
+        }
+
+        @Override
+        public void run() {
+            final boolean cancelled;
+            synchronized (VideoDownloadScheduler.this) {
+                cancelled = mCancelled;
+                mThread = cancelled ? null : Thread.currentThread();
+            }
+
+            boolean success = false;
+            try {
+                if (!cancelled) {
+                    success = mDownloader.download(mUrl, this);
+                }
+            } catch (Exception e) {
+                MoPubLog.log(ERROR_WITH_THROWABLE, "VideoDownloader task threw an internal exception.", e);
+            } finally {
+                onJobFinished(this, success);
+                // Clear a cancellation that arrived after the download returned
+                Thread.interrupted();
+            }
+        }
+
+        @Override
+        public void onProgress(final long availableBytes, final long totalBytes) {
+            final List<Request> requests;
+            synchronized (VideoDownloadScheduler.this) {
+                mAvailableBytes = availableBytes;
+                mTotalBytes = totalBytes;
+                requests = new ArrayList<Request>(mRequests);
+            }
+            for (final Request request : requests) {
+                if (request.mProgressListener != null) {
+                    request.mProgressListener.onProgress(availableBytes, totalBytes);
+                }
+            }
+        }
+    }
+}
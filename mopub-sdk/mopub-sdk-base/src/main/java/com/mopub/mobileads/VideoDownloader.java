@@ -4,33 +4,38 @@
 
 package com.mopub.mobileads;
 
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.mopub.common.MoPubHttpUrlConnection;
 import com.mopub.common.Preconditions;
 import com.mopub.common.VideoCacheService;
 import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
-import com.mopub.common.util.AsyncTasks;
-import com.mopub.common.util.Streams;
 
-import java.io.BufferedInputStream;
-import java.io.InputStream;
-import java.lang.ref.WeakReference;
-import java.net.HttpURLConnection;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.io.File;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
-import static com.mopub.common.logging.MoPubLog.SdkLogEvent.ERROR_WITH_THROWABLE;
 
+/**
+ * Precaches VAST videos. Downloads run on a {@link VideoDownloadScheduler} with their own threads
+ * so that they do not compete with VAST parsing and url resolution on the shared AsyncTask pool.
+ */
 public class VideoDownloader {
     private static final int MAX_VIDEO_SIZE = 25 * 1024 * 1024; // 25 MiB
-    private static final Deque<WeakReference<VideoDownloaderTask>> sDownloaderTasks =
-            new ArrayDeque<WeakReference<VideoDownloaderTask>>();
+    // Partial downloads that have not been resumed within a day are discarded
+    private static final long MAX_PARTIAL_FILE_AGE_MS = 24 * 60 * 60 * 1000;
+    // Room for every download that can be in flight at once
+    private static final long MAX_PARTIAL_FILES_SIZE =
+            (long) MAX_VIDEO_SIZE * VideoDownloadScheduler.DEFAULT_MAX_CONCURRENT_DOWNLOADS;
+
+    @NonNull private static VideoDownloadScheduler sScheduler = createScheduler();
 
     interface VideoDownloaderListener {
         void onComplete(boolean success);
@@ -40,6 +45,34 @@ public class VideoDownloader {
 
     public static void cache(@Nullable final String url,
             @NonNull final VideoDownloaderListener listener) {
+        cache(url, listener, null);
+    }
+
+    /**
+     * Same as {@link #cache(String, VideoDownloaderListener)}, but also reports the bytes written
+     * to the partial file so that playback can start before the download completes.
+     *
+     * @param progressListener Notified on the download thread as bytes arrive
+     */
+    static void cache(@Nullable final String url,
+            @NonNull final VideoDownloaderListener listener,
+            @Nullable final ResumableVideoDownload.ProgressListener progressListener) {
+        cache(url, listener, progressListener, null, VideoDownloadScheduler.NO_EXPIRATION);
+    }
+
+    /**
+     * Queues a download. Downloads for ad units with a higher priority, then for ads that expire
+     * sooner, start first. A download already in flight for the same url is shared.
+     *
+     * @param adUnitId             The ad unit the video belongs to, if known
+     * @param expirationTimeMillis When the ad expires, in
+     *                             {@link android.os.SystemClock#elapsedRealtime()} time
+     */
+    static void cache(@Nullable final String url,
+            @NonNull final VideoDownloaderListener listener,
+            @Nullable final ResumableVideoDownload.ProgressListener progressListener,
+            @Nullable final String adUnitId,
+            final long expirationTimeMillis) {
         Preconditions.checkNotNull(listener);
 
         if (url == null) {
@@ -48,144 +81,116 @@ public class VideoDownloader {
             return;
         }
 
-        final VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(listener);
-        try {
-            AsyncTasks.safeExecuteOnExecutor(videoDownloaderTask, url);
-        } catch (Exception e) {
-            listener.onComplete(false);
-        }
+        sScheduler.enqueue(url, listener, progressListener, adUnitId, expirationTimeMillis);
     }
 
+    /**
+     * Lets videos for the given ad unit download ahead of videos for ad units with a lower
+     * priority. Ad units default to a priority of 0.
+     */
+    public static void setAdUnitPriority(@NonNull final String adUnitId, final int priority) {
+        Preconditions.checkNotNull(adUnitId);
 
-    public static void cancelAllDownloaderTasks() {
-        for (final WeakReference<VideoDownloaderTask> weakDownloaderTask : sDownloaderTasks) {
-            cancelOneTask(weakDownloaderTask);
-        }
+        sScheduler.setAdUnitPriority(adUnitId, priority);
+    }
 
-        sDownloaderTasks.clear();
+    public static void cancelAllDownloaderTasks() {
+        sScheduler.cancelAll();
     }
 
     public static void cancelLastDownloadTask() {
-        if (sDownloaderTasks.isEmpty()) {
-            return;
-        }
-
-        cancelOneTask(sDownloaderTasks.peekLast());
-        sDownloaderTasks.removeLast();
+        sScheduler.cancelLast();
     }
 
     /**
-     * @param weakDownloaderTask A weak reference to an in-flight VideoDownloaderTask
-     * @return  <tt>false</tt> if weakDownloaderTask is null, has a null referent, or if the task has
-     *          already been completed
-     *          <tt>true</tt> otherwise
+     * Downloads the video into a partial file and moves it into the video cache once complete.
+     * Runs on a download thread.
+     *
+     * @return true if the video is in the cache
      */
-    private static boolean cancelOneTask(
-            @Nullable final WeakReference<VideoDownloaderTask> weakDownloaderTask) {
-        if (weakDownloaderTask == null) {
+    @VisibleForTesting
+    static boolean downloadToCache(@Nullable final String videoUrl,
+            @Nullable final ResumableVideoDownload.ProgressListener progressListener)
+            throws Exception {
+        if (videoUrl == null) {
+            MoPubLog.log(CUSTOM, "VideoDownloader task tried to execute null or empty url.");
             return false;
         }
 
-        final VideoDownloaderTask downloaderTask = weakDownloaderTask.get();
-        if (downloaderTask == null) {
+        final File partialFile = VideoCacheService.getPartialFile(videoUrl);
+        if (partialFile == null) {
+            MoPubLog.log(CUSTOM, "VideoDownloader could not find the video cache.");
             return false;
         }
 
-        return downloaderTask.cancel(true);
-    }
-
-    @VisibleForTesting
-    static class VideoDownloaderTask extends AsyncTask<String, Void, Boolean> {
-        @NonNull private final VideoDownloaderListener mListener;
-        @NonNull private final WeakReference<VideoDownloaderTask> mWeakSelf;
-
-        @VisibleForTesting
-        VideoDownloaderTask(@NonNull final VideoDownloaderListener listener) {
-            mListener = listener;
-            mWeakSelf = new WeakReference<VideoDownloaderTask>(this);
-            sDownloaderTasks.add(mWeakSelf);
-        }
-
-        @Override
-        protected Boolean doInBackground(final String... params) {
-            if (params == null || params.length == 0 || params[0] == null) {
-                MoPubLog.log(CUSTOM, "VideoDownloader task tried to execute null or empty url.");
+        // Acquired before purging so that another download's purge cannot delete the file
+        // this download, and any progressive playback reading it, is working on
+        VideoCacheService.acquirePartialFile(videoUrl);
+        try {
+            VideoCacheService.purgePartialFiles(MAX_PARTIAL_FILE_AGE_MS, MAX_PARTIAL_FILES_SIZE);
+            final File partialDirectory = partialFile.getParentFile();
+            if (partialDirectory != null && !partialDirectory.isDirectory()
+                    && !partialDirectory.mkdirs()) {
+                MoPubLog.log(CUSTOM,
+                        "VideoDownloader could not create the partial file directory.");
                 return false;
             }
 
-            final String videoUrl = params[0];
-            HttpURLConnection urlConnection = null;
-            InputStream inputStream = null;
-            try {
-                urlConnection = MoPubHttpUrlConnection.getHttpUrlConnection(videoUrl);
-                inputStream = new BufferedInputStream(urlConnection.getInputStream());
-
-                // Check status code range
-                int statusCode = urlConnection.getResponseCode();
-                if (statusCode < HttpURLConnection.HTTP_OK
-                        || statusCode >= HttpURLConnection.HTTP_MULT_CHOICE) {
-                    MoPubLog.log(CUSTOM, "VideoDownloader encountered unexpected statusCode: " +
-                            statusCode);
-                    return false;
-                }
-
-                // Check video size below maximum
-                int contentLength = urlConnection.getContentLength();
-                if (contentLength > MAX_VIDEO_SIZE) {
-                    MoPubLog.log(CUSTOM, String.format(
-                            "VideoDownloader encountered video larger than disk cap. " +
-                                    "(%d bytes / %d maximum).",
-                            contentLength,
-                            MAX_VIDEO_SIZE));
-                    return false;
-                }
-
-                return VideoCacheService.put(videoUrl, inputStream);
-            } catch (Exception e) {
-                MoPubLog.log(ERROR_WITH_THROWABLE, "VideoDownloader task threw an internal exception.", e);
+            final ResumableVideoDownload download =
+                    new ResumableVideoDownload(videoUrl, partialFile, MAX_VIDEO_SIZE);
+            download.setProgressListener(progressListener);
+            if (!download.download()) {
                 return false;
-            } finally {
-                Streams.closeStream(inputStream);
-                if (urlConnection != null) {
-                    urlConnection.disconnect();
-                }
-            }
-        }
-
-        @Override
-        protected void onPostExecute(final Boolean success) {
-            if (isCancelled()) {
-                onCancelled();
-                return;
             }
 
-            sDownloaderTasks.remove(mWeakSelf);
-
-            if (success == null) {
-                mListener.onComplete(false);
-                return;
+            final boolean success = VideoCacheService.putFile(videoUrl, partialFile);
+            if (success) {
+                download.discard();
             }
-
-            mListener.onComplete(success);
+            return success;
+        } finally {
+            VideoCacheService.releasePartialFile(videoUrl);
         }
+    }
 
-        @Override
-        protected void onCancelled() {
-            MoPubLog.log(CUSTOM, "VideoDownloader task was cancelled.");
-            sDownloaderTasks.remove(mWeakSelf);
-            mListener.onComplete(false);
-        }
+    @NonNull
+    private static VideoDownloadScheduler createScheduler() {
+        final ThreadPoolExecutor downloadExecutor = new ThreadPoolExecutor(
+                VideoDownloadScheduler.DEFAULT_MAX_CONCURRENT_DOWNLOADS,
+                VideoDownloadScheduler.DEFAULT_MAX_CONCURRENT_DOWNLOADS, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        downloadExecutor.allowCoreThreadTimeOut(true);
+        return createScheduler(downloadExecutor);
     }
 
-    @Deprecated
-    @VisibleForTesting
-    public static Deque<WeakReference<VideoDownloaderTask>> getDownloaderTasks() {
-        return sDownloaderTasks;
+    @NonNull
+    private static VideoDownloadScheduler createScheduler(@NonNull final Executor downloadExecutor) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        final Executor mainThreadExecutor = new Executor() {
+            @Override
+            public void execute(@NonNull final Runnable runnable) {
+                mainHandler.post(runnable);
+            }
+        };
+
+        return new VideoDownloadScheduler(new VideoDownloadScheduler.Downloader() {
+            @Override
+            public boolean download(@NonNull final String url,
+                    @NonNull final ResumableVideoDownload.ProgressListener progressListener)
+                    throws Exception {
+                return downloadToCache(url, progressListener);
+            }
+        }, downloadExecutor, mainThreadExecutor,
+                VideoDownloadScheduler.DEFAULT_MAX_CONCURRENT_DOWNLOADS,
+                VideoDownloadScheduler.DEFAULT_MAX_DOWNLOADS_PER_HOST);
     }
 
+    /**
+     * Replaces the scheduler with one that runs downloads on the given executor.
+     */
     @Deprecated
     @VisibleForTesting
-    public static void clearDownloaderTasks() {
-        sDownloaderTasks.clear();
+    public static void setDownloadExecutor(@NonNull final Executor downloadExecutor) {
+        sScheduler = createScheduler(downloadExecutor);
     }
 }
@@ -155,7 +155,22 @@ public class AdLoader {
 
             // not running and not failed: start it for the first time
             if (mMultiAdResponse == null) {
-                if (RequestRateTracker.getInstance().isBlockedByRateLimit(mMultiAdRequest.mAdUnitId)) {
+                final MultiAdResponse prefetchedResponse =
+                        AdResponsePrefetcher.getInstance().take(mMultiAdRequest);
+                if (prefetchedResponse != null) {
+                    MoPubLog.log(MoPubLog.SdkLogEvent.CUSTOM, "Using a prefetched ad response for " + mMultiAdRequest.mAdUnitId);
+                    mMultiAdResponse = prefetchedResponse;
+                    final AdResponse adResponse = prefetchedResponse.next();
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            deliverResponse(adResponse);
+                        }
+                    });
+                    return mMultiAdRequest;
+                }
+
+                if (!RequestRateTracker.getInstance().tryAcquire(mMultiAdRequest.mAdUnitId)) {
                     // report no fill
                     MoPubLog.log(MoPubLog.SdkLogEvent.CUSTOM, mMultiAdRequest.mAdUnitId + " is blocked by request rate limiting.");
                     mFailed = true;
@@ -280,9 +295,8 @@ public class AdLoader {
         MoPubLog.log(REQUESTED, request.getOriginalUrl(), bodyString);
 
         mRunning = true;
-        MoPubRequestQueue requestQueue = Networking.getRequestQueue(context);
         mMultiAdRequest = request;
-        requestQueue.add(request);
+        AdRequestCoalescer.getInstance().add(request, context);
         return request;
     }
 
@@ -0,0 +1,186 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network;
+
+import android.content.Context;
+import android.net.Uri;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.AdFormat;
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
+
+/**
+ * Sends one ad request for several identical ad requests made at the same time. Requests are
+ * identical when they are for the same ad unit and format with the same targeting. The first
+ * request is sent, and the others wait for its response. The ads in the response are then dealt
+ * out to the waiting requests in turn. A request that gets no ads this way is sent on its own.
+ */
+public class AdRequestCoalescer {
+    /**
+     * Ad responses usually hold a few ads, so larger groups would leave requests without one.
+     */
+    static final int MAX_REQUESTS_PER_GROUP = 3;
+
+    /**
+     * Query parameters that change between requests without changing which ads are returned.
+     */
+    private static final Set<String> VOLATILE_PARAMS = new HashSet<>(Arrays.asList(
+            "llf", "backoff_ms", "backoff_reason"));
+
+    @Nullable private static volatile AdRequestCoalescer sInstance;
+
+    private final Map<String, List<MultiAdRequest>> mInFlightGroups = new HashMap<>();
+
+    @VisibleForTesting
+    AdRequestCoalescer() {
+    }
+
+    @NonNull
+    public static AdRequestCoalescer getInstance() {
+        AdRequestCoalescer instance = sInstance;
+        if (instance == null) {
+            synchronized (AdRequestCoalescer.class) {
+                instance = sInstance;
+                if (instance == null) {
+                    instance = new AdRequestCoalescer();
+                    sInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Sends the request, or has it wait for an identical request that is in flight. Either way,
+     * the request's listener hears about the outcome.
+     */
+    void add(@NonNull final MultiAdRequest request, @NonNull final Context context) {
+        Preconditions.checkNotNull(request);
+        Preconditions.checkNotNull(context);
+
+        final String key = getKey(request);
+        if (key == null) {
+            Networking.getRequestQueue(context).add(request);
+            return;
+        }
+
+        final List<MultiAdRequest> group;
+        synchronized (this) {
+            final List<MultiAdRequest> inFlightGroup = mInFlightGroups.get(key);
+            if (inFlightGroup != null && inFlightGroup.size() < MAX_REQUESTS_PER_GROUP) {
+                inFlightGroup.add(request);
+                MoPubLog.log(CUSTOM, "Waiting for an identical ad request for ad unit "
+                        + request.mAdUnitId);
+                return;
+            }
+            group = new ArrayList<>(MAX_REQUESTS_PER_GROUP);
+            group.add(request);
+            mInFlightGroups.put(key, group);
+        }
+
+        Networking.getRequestQueue(context).add(new MultiAdRequest(request.getOriginalUrl(),
+                request.mAdFormat, request.mAdUnitId, context, new MultiAdRequest.Listener() {
+            @Override
+            public void onResponse(@NonNull final MultiAdResponse response) {
+                final List<MultiAdRequest> waitingRequests = finish(key, group);
+                if (waitingRequests.isEmpty()) {
+                    return;
+                }
+                final List<MultiAdResponse> responses = response.split(waitingRequests.size());
+                for (int i = 0; i < waitingRequests.size(); i++) {
+                    final MultiAdRequest waitingRequest = waitingRequests.get(i);
+                    if (responses.get(i).hasNext()) {
+                        waitingRequest.mListener.onResponse(responses.get(i));
+                    } else {
+                        Networking.getRequestQueue(context).add(waitingRequest);
+                    }
+                }
+            }
+
+            @Override
+            public void onErrorResponse(@NonNull final MoPubNetworkError networkError) {
+                for (final MultiAdRequest waitingRequest : finish(key, group)) {
+                    waitingRequest.mListener.onErrorResponse(networkError);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Stops other requests from joining the group.
+     *
+     * @return the requests in the group that have not been canceled
+     */
+    @NonNull
+    private List<MultiAdRequest> finish(@NonNull final String key,
+            @NonNull final List<MultiAdRequest> group) {
+        final List<MultiAdRequest> waitingRequests = new ArrayList<>(group.size());
+        synchronized (this) {
+            if (mInFlightGroups.get(key) == group) {
+                mInFlightGroups.remove(key);
+            }
+            for (final MultiAdRequest request : group) {
+                if (!request.isCanceled()) {
+                    waitingRequests.add(request);
+                }
+            }
+        }
+        return waitingRequests;
+    }
+
+    /**
+     * @return the ad unit, the format and the targeting of the request, or null if it should not
+     * wait for other requests
+     */
+    @Nullable
+    @VisibleForTesting
+    static String getKey(@NonNull final MultiAdRequest request) {
+        return getKey(request.getOriginalUrl(), request.mAdFormat, request.mAdUnitId);
+    }
+
+    /**
+     * @return the ad unit, the format and the targeting of an ad request for the url, or null if
+     * it is not a MoPub ad request
+     */
+    @Nullable
+    static String getKey(@Nullable final String url,
+            @NonNull final AdFormat adFormat,
+            @Nullable final String adUnitId) {
+        if (TextUtils.isEmpty(adUnitId) || TextUtils.isEmpty(url)
+                || !MoPubRequestUtils.isMoPubRequest(url)) {
+            return null;
+        }
+
+        final Uri uri = Uri.parse(url);
+        final Map<String, String> params = new TreeMap<>();
+        for (final String name : uri.getQueryParameterNames()) {
+            if (!VOLATILE_PARAMS.contains(name)) {
+                params.put(name, uri.getQueryParameter(name));
+            }
+        }
+        return adUnitId + " " + adFormat + " " + uri.getPath() + " " + params;
+    }
+
+    @VisibleForTesting
+    public static void clearForTesting() {
+        sInstance = null;
+    }
+}
@@ -0,0 +1,238 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.AdFormat;
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.DateAndTime;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
+
+/**
+ * Keeps ad responses that have not been rendered yet, per ad request. While a creative renders,
+ * the next {@link MultiAdRequest} for its ad unit is sent in the background, and the next
+ * {@link AdLoader} for the same ad unit, format and targeting takes its response instead of going
+ * to the network. Requests are matched the way {@link AdRequestCoalescer} matches them. Responses
+ * are dropped once they are older than the TTL, or once the ads in them expire if that is sooner.
+ * Prefetching is off until {@link #setMaxResponsesPerAdUnit(int)} is called with a positive value.
+ */
+public class AdResponsePrefetcher {
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000;
+
+    @Nullable private static volatile AdResponsePrefetcher sInstance;
+
+    private final Map<String, ArrayDeque<Entry>> mEntries = new HashMap<String, ArrayDeque<Entry>>();
+    private final Set<String> mKeysInFlight = new HashSet<String>();
+    private int mMaxResponsesPerAdUnit;
+    private long mTtlMillis = DEFAULT_TTL_MILLIS;
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    private static class Entry {
+        @NonNull final MultiAdResponse response;
+        final long fetchedAtMillis;
+
+        Entry(@NonNull final MultiAdResponse response, final long fetchedAtMillis) {
+            this.response = response;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+    }
+
+    @VisibleForTesting
+    AdResponsePrefetcher() {
+    }
+
+    @NonNull
+    public static AdResponsePrefetcher getInstance() {
+        AdResponsePrefetcher instance = sInstance;
+        if (instance == null) {
+            synchronized (AdResponsePrefetcher.class) {
+                instance = sInstance;
+                if (instance == null) {
+                    instance = new AdResponsePrefetcher();
+                    sInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param maxResponsesPerAdUnit how many responses to keep ready for each ad unit and
+     *                              targeting. 0 turns prefetching off and drops the
+     *                              responses already kept.
+     */
+    public synchronized void setMaxResponsesPerAdUnit(final int maxResponsesPerAdUnit) {
+        mMaxResponsesPerAdUnit = Math.max(0, maxResponsesPerAdUnit);
+        if (mMaxResponsesPerAdUnit == 0) {
+            mEntries.clear();
+        }
+    }
+
+    /**
+     * @param ttlMillis how long a response is kept. Responses are never kept past the expiration
+     *                  of the ads in them.
+     */
+    public synchronized void setTtlMillis(final long ttlMillis) {
+        mTtlMillis = Math.max(0, ttlMillis);
+    }
+
+    public synchronized boolean isEnabled() {
+        return mMaxResponsesPerAdUnit > 0;
+    }
+
+    /**
+     * Takes the oldest response that has not expired for the same ad unit, format and targeting
+     * as the request, and counts a hit or a miss.
+     *
+     * @return the response, or null if none is ready or prefetching is off
+     */
+    @Nullable
+    synchronized MultiAdResponse take(@NonNull final MultiAdRequest request) {
+        Preconditions.checkNotNull(request);
+
+        final String key = AdRequestCoalescer.getKey(request);
+        if (!isEnabled() || key == null) {
+            return null;
+        }
+
+        final ArrayDeque<Entry> entries = mEntries.get(key);
+        if (entries != null) {
+            evictExpired(entries);
+            final Entry entry = entries.poll();
+            if (entries.isEmpty()) {
+                mEntries.remove(key);
+            }
+            if (entry != null) {
+                mHitCount.incrementAndGet();
+                return entry.response;
+            }
+        }
+        mMissCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Sends an ad request for the url in the background, unless enough responses are already
+     * kept or requested for it, or its ad unit's requests are rate limited.
+     */
+    public void prefetch(@NonNull final String url,
+            @NonNull final AdFormat adFormat,
+            @Nullable final String adUnitId,
+            @NonNull final Context context) {
+        Preconditions.checkNotNull(url);
+        Preconditions.checkNotNull(adFormat);
+        Preconditions.checkNotNull(context);
+
+        final String key = AdRequestCoalescer.getKey(url, adFormat, adUnitId);
+        if (key == null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!isEnabled() || mKeysInFlight.contains(key)) {
+                return;
+            }
+            final ArrayDeque<Entry> entries = mEntries.get(key);
+            if (entries != null) {
+                evictExpired(entries);
+                if (entries.size() >= mMaxResponsesPerAdUnit) {
+                    return;
+                }
+            }
+            if (!RequestRateTracker.getInstance().tryAcquire(adUnitId)) {
+                return;
+            }
+            mKeysInFlight.add(key);
+        }
+
+        MoPubLog.log(CUSTOM, "Prefetching an ad response for ad unit " + adUnitId);
+        Networking.getRequestQueue(context).add(new MultiAdRequest(url, adFormat, adUnitId,
+                context, new MultiAdRequest.Listener() {
+            @Override
+            public void onResponse(@NonNull final MultiAdResponse response) {
+                put(key, response);
+            }
+
+            @Override
+            public void onErrorResponse(@NonNull final MoPubNetworkError networkError) {
+                MoPubLog.log(CUSTOM, "Unable to prefetch an ad response for ad unit "
+                        + adUnitId + ": " + networkError.getMessage());
+                synchronized (AdResponsePrefetcher.this) {
+                    mKeysInFlight.remove(key);
+                }
+            }
+        }));
+    }
+
+    private synchronized void put(@NonNull final String key,
+            @NonNull final MultiAdResponse response) {
+        mKeysInFlight.remove(key);
+        if (!isEnabled() || !response.hasNext()) {
+            return;
+        }
+
+        ArrayDeque<Entry> entries = mEntries.get(key);
+        if (entries == null) {
+            entries = new ArrayDeque<Entry>();
+            mEntries.put(key, entries);
+        }
+        evictExpired(entries);
+        if (entries.size() < mMaxResponsesPerAdUnit) {
+            entries.add(new Entry(response, DateAndTime.now().getTime()));
+        }
+    }
+
+    private void evictExpired(@NonNull final ArrayDeque<Entry> entries) {
+        final long now = DateAndTime.now().getTime();
+        final Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            final long expiresAtMillis = Math.min(entry.fetchedAtMillis + mTtlMillis,
+                    entry.response.getExpirationTimeMillis());
+            if (now >= expiresAtMillis) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * @return the share of ad loads that took a prefetched response, or 0 before any ad load
+     */
+    public double getHitRate() {
+        final long hits = mHitCount.get();
+        final long total = hits + mMissCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @VisibleForTesting
+    public static void clearForTesting() {
+        sInstance = null;
+    }
+}
@@ -6,6 +6,8 @@ package com.mopub.network;
 
 import android.content.Context;
 import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -20,7 +22,9 @@ import com.mopub.common.FullAdType;
 import com.mopub.common.MoPub;
 import com.mopub.common.Preconditions;
 import com.mopub.common.ViewabilityVendor;
+import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.DateAndTime;
 import com.mopub.common.util.Json;
 import com.mopub.common.util.ResponseHeader;
 import com.mopub.mobileads.AdTypeTranslator;
@@ -30,12 +34,23 @@ import com.mopub.mobileads.CreativeExperienceSettingsParser;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import static com.mopub.common.DataKeys.ADM_KEY;
@@ -64,8 +79,50 @@ public class MultiAdResponse implements Iterator<AdResponse> {
 
     private static final String EMPTY_JSON_ARRAY = "[]";
 
+    /**
+     * The top level fields that are read from the body. Any other field is skipped unread.
+     */
+    private static final Set<String> TOP_LEVEL_HEADERS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(
+                    ResponseHeader.FAIL_URL.getKey(),
+                    ResponseHeader.ADUNIT_FORMAT.getKey(),
+                    ResponseHeader.REQUEST_ID.getKey(),
+                    ResponseHeader.BACKOFF_MS.getKey(),
+                    ResponseHeader.BACKOFF_REASON.getKey(),
+                    ResponseHeader.INVALIDATE_CONSENT.getKey(),
+                    ResponseHeader.FORCE_EXPLICIT_NO.getKey(),
+                    ResponseHeader.REACQUIRE_CONSENT.getKey(),
+                    ResponseHeader.CONSENT_CHANGE_REASON.getKey(),
+                    ResponseHeader.FORCE_GDPR_APPLIES.getKey(),
+                    ResponseHeader.ENABLE_DEBUG_LOGGING.getKey(),
+                    ResponseHeader.REWARDED.getKey(),
+                    ResponseHeader.CREATIVE_EXPERIENCE_SETTINGS.getKey())));
+
+    @NonNull
+    private final Context mAppContext;
+    @NonNull
+    private final MoPubNetworkResponse mNetworkResponse;
+    @NonNull
+    private final AdFormat mAdFormat;
+    @Nullable
+    private final String mAdUnitId;
+    @NonNull
+    private final String mAdUnitFormat;
+    @Nullable
+    private final String mRequestId;
+    private final boolean mIsRewarded;
+    @Nullable
+    private final JSONObject mCreativeExperienceSettings;
+    private final long mExpirationTimeMillis;
+
+    /**
+     * Ad response items that have not been turned into {@link AdResponse}s yet. Items are
+     * removed as they are decoded, so that only the rest of the waterfall is kept.
+     */
     @NonNull
-    private final Iterator<AdResponse> mResponseIterator;
+    private final ArrayDeque<JSONObject> mPendingItems;
+    @Nullable
+    private AdResponse mNextResponse;
 
     @NonNull
     private String mFailUrl;
@@ -75,10 +132,22 @@ public class MultiAdResponse implements Iterator<AdResponse> {
         return mFailUrl;
     }
 
+    /**
+     * @return when the ads in this response expire, {@link Constants#AD_EXPIRATION_DELAY} after
+     * it was received
+     */
+    public long getExpirationTimeMillis() {
+        return mExpirationTimeMillis;
+    }
+
     @Nullable
     private static ServerOverrideListener sServerOverrideListener;
 
     /**
+     * The body is read in one pass with a streaming reader, without decoding it into a string
+     * first. Only the top level headers and the content and metadata of each ad response are
+     * kept; other fields, and the items after a 'clear' item, are skipped without being decoded.
+     * Each item becomes an {@link AdResponse} only when the waterfall gets to it.
      *
      * @param appContext application context
      * @param networkResponse {@link MoPubNetworkResponse} to be parsed
@@ -92,10 +161,9 @@ public class MultiAdResponse implements Iterator<AdResponse> {
                            @NonNull final AdFormat adFormat,
                            @Nullable final String adUnitId) throws JSONException, MoPubNetworkError {
 
-        // Response Body encoding / decoding
-        final String responseBody = parseStringBody(networkResponse);
+        final JSONObject jsonObject = new JSONObject();
+        final List<Object> adResponses = readBody(networkResponse, jsonObject);
 
-        JSONObject jsonObject = new JSONObject(responseBody);
         mFailUrl = jsonObject.optString(ResponseHeader.FAIL_URL.getKey());
         final String adUnitFormat = jsonObject.optString(ResponseHeader.ADUNIT_FORMAT.getKey());
         String requestId = jsonObject.optString(ResponseHeader.REQUEST_ID.getKey());
@@ -139,29 +207,37 @@ public class MultiAdResponse implements Iterator<AdResponse> {
 
         JSONObject creativeExperienceSettings = extractJsonObjectHeader(jsonObject,
                 ResponseHeader.CREATIVE_EXPERIENCE_SETTINGS);
-        
-        JSONArray adResponses = jsonObject.getJSONArray(ResponseHeader.AD_RESPONSES.getKey());
-        int ADS_PER_RESPONSE = 3;
-        List<AdResponse> list = new ArrayList<>(ADS_PER_RESPONSE);
+
+        mAppContext = appContext;
+        // Items are decoded from their JSON objects, so the body itself is not kept
+        mNetworkResponse = new MoPubNetworkResponse(networkResponse.getStatusCode(), null,
+                networkResponse.getHeaders());
+        mAdFormat = adFormat;
+        mAdUnitId = adUnitId;
+        mAdUnitFormat = adUnitFormat;
+        mRequestId = requestId;
+        mIsRewarded = isRewarded;
+        mCreativeExperienceSettings = creativeExperienceSettings;
+        mExpirationTimeMillis = DateAndTime.now().getTime() + Constants.AD_EXPIRATION_DELAY;
+
+        mPendingItems = new ArrayDeque<>(adResponses.size());
         AdResponse adResponseClear = null;
-        for (int i = 0; i < adResponses.length(); i++) {
-            try {
-                JSONObject item = adResponses.getJSONObject(i);
-                AdResponse singleAdResponse = parseSingleAdResponse(appContext,
-                        networkResponse,
-                        item,
-                        adUnitId,
-                        adFormat,
-                        adUnitFormat,
-                        requestId,
-                        isRewarded,
-                        creativeExperienceSettings);
-                if (!AdType.CLEAR.equals(singleAdResponse.getAdType())) {
-                    list.add(singleAdResponse);
-                    continue;
-                }
+        for (final Object adResponse : adResponses) {
+            if (!(adResponse instanceof JSONObject)) {
+                MoPubLog.log(CUSTOM, "Invalid response item: " + adResponse);
+                continue;
+            }
 
+            final JSONObject item = (JSONObject) adResponse;
+            if (!AdType.CLEAR.equals(extractHeader(item.optJSONObject(ResponseHeader.METADATA.getKey()),
+                    ResponseHeader.AD_TYPE))) {
+                mPendingItems.add(item);
+                continue;
+            }
+
+            try {
                 // received message 'clear'
+                final AdResponse singleAdResponse = parseSingleAdResponse(item);
                 mFailUrl = "";
                 adResponseClear = singleAdResponse;
                 if (extractWarmup(item)) {
@@ -174,7 +250,7 @@ public class MultiAdResponse implements Iterator<AdResponse> {
 
             } catch (JSONException ex) {
                 // don't break everything because of single item parsing error
-                MoPubLog.log(CUSTOM, "Invalid response item. Body: " + responseBody);
+                MoPubLog.log(CUSTOM, "Invalid response item: " + item);
             } catch (MoPubNetworkError ex) {
                 if (ex.getReason() == MoPubNetworkError.Reason.WARMING_UP) {
                     throw ex;
@@ -184,10 +260,9 @@ public class MultiAdResponse implements Iterator<AdResponse> {
                 MoPubLog.log(CUSTOM, "Unexpected error parsing response item. " + ex.getMessage());
             }
         }
-        mResponseIterator = list.iterator();
 
         // validate if there is any valid ad response
-        if (!mResponseIterator.hasNext()) {
+        if (!hasNext()) {
             Integer refreshTimeMilliseconds = Constants.THIRTY_SECONDS_MILLIS;
             if (adResponseClear != null) {
                 refreshTimeMilliseconds = adResponseClear.getRefreshTimeMillis();
@@ -199,15 +274,95 @@ public class MultiAdResponse implements Iterator<AdResponse> {
         }
     }
 
+    /**
+     * Holds part of another response's waterfall.
+     */
+    private MultiAdResponse(@NonNull final MultiAdResponse source,
+                            @NonNull final String failUrl,
+                            @Nullable final AdResponse nextResponse,
+                            @NonNull final ArrayDeque<JSONObject> pendingItems) {
+        mAppContext = source.mAppContext;
+        mNetworkResponse = source.mNetworkResponse;
+        mAdFormat = source.mAdFormat;
+        mAdUnitId = source.mAdUnitId;
+        mAdUnitFormat = source.mAdUnitFormat;
+        mRequestId = source.mRequestId;
+        mIsRewarded = source.mIsRewarded;
+        mCreativeExperienceSettings = source.mCreativeExperienceSettings;
+        mExpirationTimeMillis = source.mExpirationTimeMillis;
+        mFailUrl = failUrl;
+        mNextResponse = nextResponse;
+        mPendingItems = pendingItems;
+    }
+
+    /**
+     * Deals the rest of the waterfall out to several consumers of this response, one ad at a
+     * time in waterfall order. Every part keeps the fail URL, so that each consumer can go on
+     * with the rest of the waterfall on the server once its ads run out. This response is empty
+     * afterwards.
+     *
+     * @param parts the number of consumers
+     */
+    @NonNull
+    synchronized List<MultiAdResponse> split(final int parts) {
+        Preconditions.checkArgument(parts > 0);
+
+        final List<Object> entries = new ArrayList<>(mPendingItems.size() + 1);
+        if (mNextResponse != null) {
+            entries.add(mNextResponse);
+        }
+        entries.addAll(mPendingItems);
+        mNextResponse = null;
+        mPendingItems.clear();
+
+        final List<MultiAdResponse> responses = new ArrayList<>(parts);
+        for (int part = 0; part < parts; part++) {
+            AdResponse nextResponse = null;
+            final ArrayDeque<JSONObject> pendingItems = new ArrayDeque<>();
+            for (int i = part; i < entries.size(); i += parts) {
+                final Object entry = entries.get(i);
+                if (entry instanceof AdResponse) {
+                    nextResponse = (AdResponse) entry;
+                } else {
+                    pendingItems.add((JSONObject) entry);
+                }
+            }
+            responses.add(new MultiAdResponse(this, mFailUrl, nextResponse, pendingItems));
+        }
+        mFailUrl = "";
+        return responses;
+    }
+
+    /**
+     * Decodes pending items until one of them is a valid {@link AdResponse}.
+     */
     @Override
-    public boolean hasNext() {
-        return mResponseIterator.hasNext();
+    public synchronized boolean hasNext() {
+        while (mNextResponse == null && !mPendingItems.isEmpty()) {
+            final JSONObject item = mPendingItems.poll();
+            try {
+                mNextResponse = parseSingleAdResponse(item);
+            } catch (JSONException ex) {
+                // don't break everything because of single item parsing error
+                MoPubLog.log(CUSTOM, "Invalid response item: " + item);
+            } catch (MoPubNetworkError ex) {
+                MoPubLog.log(CUSTOM, "Invalid response item. Error: " + ex.getReason());
+            } catch (Exception ex) {
+                MoPubLog.log(CUSTOM, "Unexpected error parsing response item. " + ex.getMessage());
+            }
+        }
+        return mNextResponse != null;
     }
 
     @NonNull
     @Override
-    public AdResponse next() {
-        return mResponseIterator.next();
+    public synchronized AdResponse next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final AdResponse adResponse = mNextResponse;
+        mNextResponse = null;
+        return adResponse;
     }
 
     boolean isWaterfallFinished() {
@@ -219,6 +374,20 @@ public class MultiAdResponse implements Iterator<AdResponse> {
         sServerOverrideListener = serverOverrideListener;
     }
 
+    @NonNull
+    private AdResponse parseSingleAdResponse(@NonNull final JSONObject item)
+            throws JSONException, MoPubNetworkError {
+        return parseSingleAdResponse(mAppContext,
+                mNetworkResponse,
+                item,
+                mAdUnitId,
+                mAdFormat,
+                mAdUnitFormat,
+                mRequestId,
+                mIsRewarded,
+                mCreativeExperienceSettings);
+    }
+
     /**
      * Parse single object {@link AdResponse} from JSON
      *
@@ -524,18 +693,148 @@ public class MultiAdResponse implements Iterator<AdResponse> {
         return extractBooleanHeader(jsonHeaders, ResponseHeader.WARMUP, false);
     }
 
-    // Based on Volley's StringResponse class.
-    private static String parseStringBody(@NonNull final MoPubNetworkResponse response) {
+    /**
+     * Reads the body in one pass. The {@link #TOP_LEVEL_HEADERS} are put into
+     * {@code topLevelHeaders} and the ad responses array is returned. Each ad response object is
+     * reduced to its content and metadata, and the array is not read past a 'clear' item, since
+     * nothing after it is used. Values that are not read are skipped without being decoded.
+     *
+     * @throws JSONException when the body is not a JSON object or has no ad responses array
+     */
+    @NonNull
+    private static List<Object> readBody(@NonNull final MoPubNetworkResponse response,
+                                         @NonNull final JSONObject topLevelHeaders) throws JSONException {
         Preconditions.checkNotNull(response);
+        Preconditions.checkNotNull(topLevelHeaders);
+
+        final byte[] data = response.getData();
+        if (data == null) {
+            throw new JSONException("Empty response body");
+        }
 
-        String parsed;
+        // Based on Volley's StringResponse class.
+        final InputStream body = new ByteArrayInputStream(data);
+        Reader reader;
         try {
-            parsed = new String(response.getData(),
+            reader = new InputStreamReader(body,
                     MoPubNetworkUtils.parseCharsetFromContentType(response.getHeaders()));
         } catch (UnsupportedEncodingException e) {
-            parsed = new String(response.getData());
+            reader = new InputStreamReader(body);
+        }
+
+        final JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        List<Object> adResponses = null;
+        try {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                final String name = jsonReader.nextName();
+                if (ResponseHeader.AD_RESPONSES.getKey().equals(name)
+                        && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                    adResponses = readAdResponses(jsonReader);
+                } else if (TOP_LEVEL_HEADERS.contains(name)) {
+                    topLevelHeaders.put(name, readValue(jsonReader));
+                } else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new JSONException("Invalid response body: " + e.getMessage());
         }
-        return parsed;
+
+        if (adResponses == null) {
+            throw new JSONException("No value for " + ResponseHeader.AD_RESPONSES.getKey());
+        }
+        return adResponses;
+    }
+
+    /**
+     * @return the items of the ad responses array, up to and including the first 'clear' item.
+     * Ad responses are {@link JSONObject}s holding only their content and metadata; other items
+     * are kept as they are so that they can be reported as invalid.
+     */
+    @NonNull
+    private static List<Object> readAdResponses(@NonNull final JsonReader jsonReader)
+            throws IOException, JSONException {
+        final List<Object> adResponses = new ArrayList<>();
+        boolean cleared = false;
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            if (cleared || jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+                if (cleared) {
+                    jsonReader.skipValue();
+                } else {
+                    adResponses.add(readValue(jsonReader));
+                }
+                continue;
+            }
+
+            final JSONObject item = new JSONObject();
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                final String name = jsonReader.nextName();
+                if (ResponseHeader.CONTENT.getKey().equals(name)
+                        || ResponseHeader.METADATA.getKey().equals(name)) {
+                    item.put(name, readValue(jsonReader));
+                } else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+            adResponses.add(item);
+            cleared = AdType.CLEAR.equals(extractHeader(
+                    item.optJSONObject(ResponseHeader.METADATA.getKey()), ResponseHeader.AD_TYPE));
+        }
+        jsonReader.endArray();
+        return adResponses;
+    }
+
+    /**
+     * @return the next value, as it would be in a {@link JSONObject}
+     */
+    @NonNull
+    private static Object readValue(@NonNull final JsonReader jsonReader)
+            throws IOException, JSONException {
+        switch (jsonReader.peek()) {
+            case BEGIN_OBJECT:
+                final JSONObject jsonObject = new JSONObject();
+                jsonReader.beginObject();
+                while (jsonReader.hasNext()) {
+                    jsonObject.put(jsonReader.nextName(), readValue(jsonReader));
+                }
+                jsonReader.endObject();
+                return jsonObject;
+            case BEGIN_ARRAY:
+                final JSONArray jsonArray = new JSONArray();
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    jsonArray.put(readValue(jsonReader));
+                }
+                jsonReader.endArray();
+                return jsonArray;
+            case NUMBER:
+                // Keep the number type that JSONObject would have chosen
+                return new JSONTokener(jsonReader.nextString()).nextValue();
+            case BOOLEAN:
+                return jsonReader.nextBoolean();
+            case NULL:
+                jsonReader.nextNull();
+                return JSONObject.NULL;
+            case STRING:
+                return jsonReader.nextString();
+            default:
+                throw new JSONException("Unexpected " + jsonReader.peek());
+        }
+    }
+
+    /**
+     * @return the ad response items that have not been turned into {@link AdResponse}s yet
+     */
+    @NonNull
+    @VisibleForTesting
+    synchronized List<JSONObject> getPendingItems() {
+        return new ArrayList<>(mPendingItems);
     }
 
     private static boolean eventDataIsInResponseBody(@Nullable final String adType,
@@ -7,6 +7,7 @@ package com.mopub.network;
 import android.net.Uri;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.mopub.common.ClientMetadata;
 import com.mopub.common.MoPub;
@@ -25,6 +26,8 @@ public class PlayServicesUrlRewriter implements MoPubUrlRewriter {
     public static final String DO_NOT_TRACK_TEMPLATE = "mp_tmpl_do_not_track";
     public static final String MOPUB_ID_TEMPLATE = "mp_tmpl_mopub_id";
     public static final String TAS_TEMPLATE = "mp_tmpl_tas";
+    private static final String TEMPLATE_PREFIX = "mp_tmpl_";
+    private static final String IFA_KEY = "ifa";
 
     public PlayServicesUrlRewriter() {
     }
@@ -50,4 +53,34 @@ public class PlayServicesUrlRewriter implements MoPubUrlRewriter {
         toReturn = toReturn.replace(MOPUB_ID_TEMPLATE,  Uri.encode(info.getIdentifier(false)));
         return toReturn;
     }
+
+    /**
+     * Substitutes the templates anywhere in the value, the same as {@link #rewriteUrl}, without
+     * url-encoding the identifiers since the value has already been decoded. Values without a
+     * template are returned without looking up the advertising info.
+     */
+    @Nullable
+    @Override
+    public String rewriteParam(@NonNull final String key, @NonNull final String value) {
+        if (!value.contains(TEMPLATE_PREFIX)) {
+            return value;
+        }
+        ClientMetadata clientMetadata = ClientMetadata.getInstance();
+        if (clientMetadata == null) {
+            return value;
+        }
+        AdvertisingId info = clientMetadata.getMoPubIdentifier().getAdvertisingInfo();
+        String toReturn = value.replace(DO_NOT_TRACK_TEMPLATE, info.isDoNotTrack() ? "1" : "0");
+        toReturn = toReturn.replace(TAS_TEMPLATE, info.isDoNotTrack() ? TAS_DENIED : TAS_AUTHORIZED);
+
+        if (MoPub.canCollectPersonalInformation() && !info.isDoNotTrack()) {
+            toReturn = toReturn.replace(IFA_TEMPLATE, info.getIdentifier(true));
+        } else if (IFA_KEY.equals(key) && IFA_TEMPLATE.equals(toReturn)) {
+            // rewriteUrl removes "&ifa=" + IFA_TEMPLATE
+            return null;
+        }
+
+        toReturn = toReturn.replace(MOPUB_ID_TEMPLATE, info.getIdentifier(false));
+        return toReturn;
+    }
 }
@@ -9,16 +9,24 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import android.text.TextUtils;
 
+import com.mopub.common.DoubleTimeTracker;
 import com.mopub.common.VisibleForTesting;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Singleton to cache ad request rate limit time interval and reason.
+ * Singleton to cache ad request rate limit time interval and reason, and to limit ad requests on
+ * the client. Each ad unit has a token bucket, and all ad units share a global one. A server
+ * rate limit blocks the ad unit and also empties its bucket, so requests resume slowly once the
+ * limit ends.
  */
 public class RequestRateTracker {
+    static final int AD_UNIT_BUCKET_CAPACITY = 5;
+    static final long AD_UNIT_REFILL_INTERVAL_MS = 1000;
+    static final int GLOBAL_BUCKET_CAPACITY = 20;
+    static final long GLOBAL_REFILL_INTERVAL_MS = 100;
 
     public static class TimeRecord {
         final long mBlockStartTime;
@@ -26,8 +34,8 @@ public class RequestRateTracker {
         @NonNull
         public final String mReason;
 
-        TimeRecord(int interval, @Nullable final String reason) {
-            mBlockStartTime = currentTimeMs();
+        TimeRecord(long blockStartTime, int interval, @Nullable final String reason) {
+            mBlockStartTime = blockStartTime;
             mBlockIntervalMs = interval;
             mReason = reason == null ? "unknown" : reason;
         }
@@ -37,8 +45,61 @@ public class RequestRateTracker {
         }
     }
 
+    /**
+     * Token bucket stored as the time at which it is full again, so that taking a token is a
+     * single compare-and-set.
+     */
+    static class TokenBucket {
+        private final int mCapacity;
+        private final long mRefillIntervalMs;
+        @NonNull
+        private final AtomicLong mFullAtMs = new AtomicLong();
+
+        TokenBucket(final int capacity, final long refillIntervalMs) {
+            mCapacity = capacity;
+            mRefillIntervalMs = refillIntervalMs;
+        }
+
+        boolean tryAcquire(final long nowMs) {
+            while (true) {
+                final long fullAtMs = mFullAtMs.get();
+                final long newFullAtMs = Math.max(fullAtMs, nowMs) + mRefillIntervalMs;
+                if (newFullAtMs - nowMs > mCapacity * mRefillIntervalMs) {
+                    return false;
+                }
+                if (mFullAtMs.compareAndSet(fullAtMs, newFullAtMs)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            mFullAtMs.addAndGet(-mRefillIntervalMs);
+        }
+
+        /**
+         * Takes every token until {@code untilMs}, when one token is available again.
+         */
+        void drainUntil(final long untilMs) {
+            final long drainedFullAtMs = untilMs + (mCapacity - 1) * mRefillIntervalMs;
+            while (true) {
+                final long fullAtMs = mFullAtMs.get();
+                if (fullAtMs >= drainedFullAtMs
+                        || mFullAtMs.compareAndSet(fullAtMs, drainedFullAtMs)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @NonNull
+    private final ConcurrentMap<String, TimeRecord> mTimeRecordMap;
     @NonNull
-    private Map<String, TimeRecord> mTimeRecordMap;
+    private final ConcurrentMap<String, TokenBucket> mTokenBuckets;
+    @NonNull
+    private final TokenBucket mGlobalTokenBucket;
+    @NonNull
+    private final DoubleTimeTracker.Clock mClock;
 
     private static class Helper {
         @NonNull
@@ -46,7 +107,20 @@ public class RequestRateTracker {
     }
 
     RequestRateTracker() {
-        mTimeRecordMap = Collections.synchronizedMap(new HashMap<String, TimeRecord>());
+        this(new DoubleTimeTracker.Clock() {
+            @Override
+            public long elapsedRealTime() {
+                return SystemClock.elapsedRealtime();
+            }
+        });
+    }
+
+    @VisibleForTesting
+    RequestRateTracker(@NonNull final DoubleTimeTracker.Clock clock) {
+        mTimeRecordMap = new ConcurrentHashMap<>();
+        mTokenBuckets = new ConcurrentHashMap<>();
+        mGlobalTokenBucket = new TokenBucket(GLOBAL_BUCKET_CAPACITY, GLOBAL_REFILL_INTERVAL_MS);
+        mClock = clock;
     }
 
     @NonNull
@@ -60,7 +134,9 @@ public class RequestRateTracker {
         }
 
         if (blockIntervalMs != null && blockIntervalMs > 0) {
-            mTimeRecordMap.put(adUnit, new TimeRecord(blockIntervalMs, reason));
+            final long nowMs = mClock.elapsedRealTime();
+            mTimeRecordMap.put(adUnit, new TimeRecord(nowMs, blockIntervalMs, reason));
+            getTokenBucket(adUnit).drainUntil(nowMs + blockIntervalMs);
         } else {
             mTimeRecordMap.remove(adUnit);
         }
@@ -70,22 +146,67 @@ public class RequestRateTracker {
         return getTimeUntilLimitEnds(adUnitId) > 0;
     }
 
+    /**
+     * Takes a token for an ad request without blocking. Fails while the server rate limits the
+     * ad unit, or when the ad unit or all ad units together have made too many requests lately.
+     *
+     * @return true if the request can be made
+     */
+    boolean tryAcquire(@Nullable final String adUnitId) {
+        if (isBlockedByRateLimit(adUnitId)) {
+            return false;
+        }
+
+        final long nowMs = mClock.elapsedRealTime();
+        if (TextUtils.isEmpty(adUnitId)) {
+            return mGlobalTokenBucket.tryAcquire(nowMs);
+        }
+
+        final TokenBucket tokenBucket = getTokenBucket(adUnitId);
+        if (!tokenBucket.tryAcquire(nowMs)) {
+            return false;
+        }
+        if (!mGlobalTokenBucket.tryAcquire(nowMs)) {
+            tokenBucket.release();
+            return false;
+        }
+        return true;
+    }
+
     @Nullable
     public TimeRecord getRecordForAdUnit(@Nullable final String adUnitId) {
+        if (TextUtils.isEmpty(adUnitId)) {
+            return null;
+        }
         return mTimeRecordMap.get(adUnitId);
     }
 
+    @NonNull
+    private TokenBucket getTokenBucket(@NonNull final String adUnitId) {
+        TokenBucket tokenBucket = mTokenBuckets.get(adUnitId);
+        if (tokenBucket == null) {
+            final TokenBucket newTokenBucket = new TokenBucket(AD_UNIT_BUCKET_CAPACITY,
+                    AD_UNIT_REFILL_INTERVAL_MS);
+            tokenBucket = mTokenBuckets.putIfAbsent(adUnitId, newTokenBucket);
+            if (tokenBucket == null) {
+                tokenBucket = newTokenBucket;
+            }
+        }
+        return tokenBucket;
+    }
+
     private long getTimeUntilLimitEnds(@Nullable final String adUnitId) {
-        final TimeRecord record = mTimeRecordMap.get(adUnitId);
+        final TimeRecord record = getRecordForAdUnit(adUnitId);
         if (record == null) {
             return 0;
         }
 
-        return record.getTargetTime() - currentTimeMs();
+        return record.getTargetTime() - mClock.elapsedRealTime();
     }
 
-    private static long currentTimeMs() {
-        return SystemClock.elapsedRealtime();
+    @VisibleForTesting
+    public static void clearForTesting() {
+        Helper.sInstance = new RequestRateTracker();
     }
 
     @Deprecated
@@ -0,0 +1,124 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.Streams;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
+
+/**
+ * A small append-only file of tracking beacons that could not be sent. Each line holds the time
+ * the beacon was first fired and its url. All methods do disk I/O.
+ */
+class TrackingBeaconStore {
+    static final String FILE_NAME = "mopub-tracking-beacons";
+    // About 200 beacons of typical length
+    static final long MAX_FILE_SIZE_BYTES = 64 * 1024;
+    static final long MAX_BEACON_AGE_MS = 24 * 60 * 60 * 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static class PersistedBeacon {
+        @NonNull final String url;
+        final long createdAtMillis;
+
+        PersistedBeacon(@NonNull final String url, final long createdAtMillis) {
+            this.url = url;
+            this.createdAtMillis = createdAtMillis;
+        }
+    }
+
+    @NonNull private final File mFile;
+
+    TrackingBeaconStore(@NonNull final File file) {
+        Preconditions.checkNotNull(file);
+
+        mFile = file;
+    }
+
+    /**
+     * @return true if the beacon was written, false if the store is full or the write failed
+     */
+    @WorkerThread
+    synchronized boolean add(@NonNull final String url, final long createdAtMillis) {
+        Preconditions.checkNotNull(url);
+
+        if (url.indexOf('\n') != -1 || url.indexOf('\r') != -1
+                || mFile.length() >= MAX_FILE_SIZE_BYTES) {
+            return false;
+        }
+
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(mFile, true);
+            outputStream.write((createdAtMillis + " " + url + "\n").getBytes(UTF_8));
+            return true;
+        } catch (IOException e) {
+            MoPubLog.log(CUSTOM, "Unable to persist tracking beacon.", e);
+            return false;
+        } finally {
+            Streams.closeStream(outputStream);
+        }
+    }
+
+    /**
+     * Removes and returns every beacon fired within {@link #MAX_BEACON_AGE_MS}. Older beacons
+     * are discarded.
+     */
+    @WorkerThread
+    @NonNull
+    synchronized List<PersistedBeacon> drain(final long nowMillis) {
+        final List<PersistedBeacon> beacons = new ArrayList<PersistedBeacon>();
+        if (!mFile.exists()) {
+            return beacons;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(mFile), UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.indexOf(' ');
+                if (separator <= 0 || separator == line.length() - 1) {
+                    continue;
+                }
+                final long createdAtMillis;
+                try {
+                    createdAtMillis = Long.parseLong(line.substring(0, separator));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (nowMillis - createdAtMillis < MAX_BEACON_AGE_MS) {
+                    beacons.add(new PersistedBeacon(line.substring(separator + 1),
+                            createdAtMillis));
+                }
+            }
+        } catch (IOException e) {
+            MoPubLog.log(CUSTOM, "Unable to read persisted tracking beacons.", e);
+        } finally {
+            Streams.closeStream(reader);
+            if (!mFile.delete()) {
+                MoPubLog.log(CUSTOM, "Unable to delete persisted tracking beacons.");
+            }
+        }
+        return beacons;
+    }
+}
@@ -0,0 +1,389 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.DateAndTime;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
+
+/**
+ * Sends tracking beacons. At most {@link #MAX_REQUESTS_PER_HOST} beacons are in flight per host.
+ * Beacons that fail without a response, with a 5xx or with a 429 are retried with the delays
+ * chosen by {@link RetryPolicyEngine}. Beacons that still fail are kept in a {@link TrackingBeaconStore} and sent
+ * again on the next launch, or once another beacon gets through. Listeners are notified on the
+ * main thread, never while the dispatcher's lock is held.
+ */
+public class TrackingDispatcher {
+    static final int MAX_REQUESTS_PER_HOST = 6;
+    static final int MAX_QUEUED_BEACONS = 200;
+    static final int MAX_ATTEMPTS = 3;
+
+    interface Sender {
+        void send(@NonNull String url, @NonNull TrackingRequest.Listener listener);
+    }
+
+    @Nullable private static volatile TrackingDispatcher sInstance;
+
+    @NonNull private final Sender mSender;
+    @NonNull private final TrackingBeaconStore mStore;
+    @NonNull private final Executor mStoreExecutor;
+    @NonNull private final Handler mHandler;
+    @NonNull private final RetryPolicyEngine mRetryPolicyEngine;
+
+    private final ArrayDeque<Beacon> mPendingBeacons = new ArrayDeque<Beacon>();
+    private final Map<String, Integer> mRunningCountPerHost = new HashMap<String, Integer>();
+    private int mScheduledRetryCount;
+    private boolean mLaunchDrainPending = true;
+    private boolean mHasPersistedBeacons;
+    private boolean mDraining;
+
+    private final AtomicLong mSentCount = new AtomicLong();
+    private final AtomicLong mRetriedCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mPersistedCount = new AtomicLong();
+
+    private static class Beacon {
+        @NonNull final String url;
+        @NonNull final String host;
+        @Nullable final TrackingRequest.Listener listener;
+        final long createdAtMillis;
+        int attempts;
+
+        Beacon(@NonNull final String url,
+                @Nullable final TrackingRequest.Listener listener,
+                final long createdAtMillis) {
+            this.url = url;
+            final String host = Uri.parse(url).getHost();
+            this.host = host == null ? "" : host;
+            this.listener = listener;
+            this.createdAtMillis = createdAtMillis;
+        }
+    }
+
+    @VisibleForTesting
+    TrackingDispatcher(@NonNull final Sender sender,
+            @NonNull final TrackingBeaconStore store,
+            @NonNull final Executor storeExecutor,
+            @NonNull final Handler handler,
+            @NonNull final RetryPolicyEngine retryPolicyEngine) {
+        Preconditions.checkNotNull(sender);
+        Preconditions.checkNotNull(store);
+        Preconditions.checkNotNull(storeExecutor);
+        Preconditions.checkNotNull(handler);
+        Preconditions.checkNotNull(retryPolicyEngine);
+
+        mSender = sender;
+        mStore = store;
+        mStoreExecutor = storeExecutor;
+        mHandler = handler;
+        mRetryPolicyEngine = retryPolicyEngine;
+    }
+
+    @NonNull
+    public static TrackingDispatcher getInstance(@NonNull final Context context) {
+        Preconditions.checkNotNull(context);
+
+        TrackingDispatcher instance = sInstance;
+        if (instance == null) {
+            synchronized (TrackingDispatcher.class) {
+                instance = sInstance;
+                if (instance == null) {
+                    instance = create(context.getApplicationContext());
+                    sInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    @NonNull
+    private static TrackingDispatcher create(@NonNull final Context appContext) {
+        final ThreadPoolExecutor storeExecutor = new ThreadPoolExecutor(0, 1, 60L,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        return new TrackingDispatcher(new Sender() {
+            @Override
+            public void send(@NonNull final String url,
+                    @NonNull final TrackingRequest.Listener listener) {
+                Networking.getRequestQueue(appContext)
+                        .add(new TrackingRequest(appContext, url, listener));
+            }
+        },
+                new TrackingBeaconStore(new File(appContext.getCacheDir(),
+                        TrackingBeaconStore.FILE_NAME)),
+                storeExecutor,
+                new Handler(Looper.getMainLooper()),
+                RetryPolicyEngine.getInstance());
+    }
+
+    /**
+     * Queues a beacon. The listener, if any, hears about the final outcome only. Beacons with a
+     * listener are not persisted, since the listener would not survive a relaunch.
+     */
+    void dispatch(@NonNull final String url, @Nullable final TrackingRequest.Listener listener) {
+        Preconditions.checkNotNull(url);
+
+        final List<Beacon> toSend;
+        final List<Runnable> callbacks = new ArrayList<Runnable>();
+        synchronized (this) {
+            if (mLaunchDrainPending && !mDraining) {
+                mLaunchDrainPending = false;
+                drainStore();
+            }
+            enqueue(new Beacon(url, listener, DateAndTime.now().getTime()), callbacks);
+            toSend = takeSendableBeacons();
+        }
+        deliver(callbacks);
+        send(toSend);
+    }
+
+    public long getSentCount() {
+        return mSentCount.get();
+    }
+
+    public long getRetriedCount() {
+        return mRetriedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    public long getPersistedCount() {
+        return mPersistedCount.get();
+    }
+
+    private void enqueue(@NonNull final Beacon beacon, @NonNull final List<Runnable> callbacks) {
+        if (mPendingBeacons.size() + mScheduledRetryCount >= MAX_QUEUED_BEACONS) {
+            giveUp(beacon, null, callbacks);
+            return;
+        }
+        mPendingBeacons.add(beacon);
+    }
+
+    @NonNull
+    private List<Beacon> takeSendableBeacons() {
+        final List<Beacon> toSend = new ArrayList<Beacon>();
+        final Iterator<Beacon> iterator = mPendingBeacons.iterator();
+        while (iterator.hasNext()) {
+            final Beacon beacon = iterator.next();
+            final int runningCount = getRunningCount(beacon.host);
+            if (runningCount >= MAX_REQUESTS_PER_HOST) {
+                continue;
+            }
+            iterator.remove();
+            mRunningCountPerHost.put(beacon.host, runningCount + 1);
+            toSend.add(beacon);
+        }
+        return toSend;
+    }
+
+    private void send(@NonNull final List<Beacon> beacons) {
+        for (final Beacon beacon : beacons) {
+            beacon.attempts++;
+            mSender.send(beacon.url, new TrackingRequest.Listener() {
+                @Override
+                public void onResponse(@NonNull final String response) {
+                    onBeaconFinished(beacon, null);
+                }
+
+                @Override
+                public void onErrorResponse(@NonNull final MoPubNetworkError networkError) {
+                    onBeaconFinished(beacon, networkError);
+                }
+            });
+        }
+    }
+
+    private void onBeaconFinished(@NonNull final Beacon beacon,
+            @Nullable final MoPubNetworkError networkError) {
+        final List<Beacon> toSend;
+        final List<Runnable> callbacks = new ArrayList<Runnable>();
+        synchronized (this) {
+            final int runningCount = getRunningCount(beacon.host) - 1;
+            if (runningCount > 0) {
+                mRunningCountPerHost.put(beacon.host, runningCount);
+            } else {
+                mRunningCountPerHost.remove(beacon.host);
+            }
+
+            if (networkError == null) {
+                MoPubLog.log(CUSTOM, "Successfully hit tracking endpoint: " + beacon.url);
+                mSentCount.incrementAndGet();
+                final TrackingRequest.Listener listener = beacon.listener;
+                if (listener != null) {
+                    callbacks.add(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onResponse(beacon.url);
+                        }
+                    });
+                }
+                // The network is back, so send what failed earlier
+                if (mHasPersistedBeacons && !mDraining) {
+                    mHasPersistedBeacons = false;
+                    drainStore();
+                }
+            } else if (isRetryable(networkError) && beacon.attempts < MAX_ATTEMPTS) {
+                scheduleRetry(beacon);
+            } else {
+                MoPubLog.log(CUSTOM, "Failed to hit tracking endpoint: " + beacon.url);
+                giveUp(beacon, networkError, callbacks);
+            }
+            toSend = takeSendableBeacons();
+        }
+        deliver(callbacks);
+        send(toSend);
+    }
+
+    private void scheduleRetry(@NonNull final Beacon beacon) {
+        mRetriedCount.incrementAndGet();
+        mScheduledRetryCount++;
+        final long delayMs = mRetryPolicyEngine.getRetryDelayMs(RetryPolicyEngine.Endpoint.TRACKING,
+                beacon.attempts - 1);
+        mHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                final List<Beacon> toSend;
+                final List<Runnable> callbacks = new ArrayList<Runnable>();
+                synchronized (TrackingDispatcher.this) {
+                    mScheduledRetryCount--;
+                    enqueue(beacon, callbacks);
+                    toSend = takeSendableBeacons();
+                }
+                deliver(callbacks);
+                send(toSend);
+            }
+        }, delayMs);
+    }
+
+    /**
+     * Persists a beacon that can be retried later, otherwise drops it. A listener is notified
+     * through callbacks, which the caller delivers once it has released the lock.
+     */
+    private void giveUp(@NonNull final Beacon beacon,
+            @Nullable final MoPubNetworkError networkError,
+            @NonNull final List<Runnable> callbacks) {
+        final TrackingRequest.Listener listener = beacon.listener;
+        if (listener != null) {
+            mDroppedCount.incrementAndGet();
+            final MoPubNetworkError error = networkError != null
+                    ? networkError
+                    : new MoPubNetworkError.Builder("Too many queued tracking beacons.")
+                            .reason(MoPubNetworkError.Reason.TRACKING_FAILURE)
+                            .build();
+            callbacks.add(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onErrorResponse(error);
+                }
+            });
+            return;
+        }
+        if (networkError != null && !isRetryable(networkError)) {
+            mDroppedCount.incrementAndGet();
+            return;
+        }
+
+        mHasPersistedBeacons = true;
+        mStoreExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mStore.add(beacon.url, beacon.createdAtMillis)) {
+                    mPersistedCount.incrementAndGet();
+                } else {
+                    mDroppedCount.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    private void drainStore() {
+        mDraining = true;
+        mStoreExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<TrackingBeaconStore.PersistedBeacon> persistedBeacons =
+                        mStore.drain(DateAndTime.now().getTime());
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        final List<Beacon> toSend;
+                        final List<Runnable> callbacks = new ArrayList<Runnable>();
+                        synchronized (TrackingDispatcher.this) {
+                            mDraining = false;
+                            for (final TrackingBeaconStore.PersistedBeacon persistedBeacon
+                                    : persistedBeacons) {
+                                enqueue(new Beacon(persistedBeacon.url, null,
+                                        persistedBeacon.createdAtMillis), callbacks);
+                            }
+                            toSend = takeSendableBeacons();
+                        }
+                        deliver(callbacks);
+                        send(toSend);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Posts listener callbacks collected under the lock to the main thread, as Volley delivers
+     * responses.
+     */
+    private void deliver(@NonNull final List<Runnable> callbacks) {
+        for (final Runnable callback : callbacks) {
+            mHandler.post(callback);
+        }
+    }
+
+    private int getRunningCount(@NonNull final String host) {
+        final Integer runningCount = mRunningCountPerHost.get(host);
+        return runningCount == null ? 0 : runningCount;
+    }
+
+    private static boolean isRetryable(@NonNull final MoPubNetworkError networkError) {
+        final MoPubNetworkResponse networkResponse = networkError.getNetworkResponse();
+        if (networkResponse == null) {
+            return true;
+        }
+        final int statusCode = networkResponse.getStatusCode();
+        return statusCode >= 500 || statusCode == 429;
+    }
+
+    @Deprecated
+    @VisibleForTesting
+    public static void clearForTesting() {
+        sInstance = null;
+    }
+
+    @VisibleForTesting
+    static void setInstanceForTesting(@Nullable final TrackingDispatcher dispatcher) {
+        sInstance = dispatcher;
+    }
+}
@@ -10,7 +10,6 @@ import androidx.annotation.Nullable;
 import android.text.TextUtils;
 
 import com.mopub.common.Preconditions;
-import com.mopub.common.logging.MoPubLog;
 import com.mopub.mobileads.VastErrorCode;
 import com.mopub.mobileads.VastMacroHelper;
 import com.mopub.mobileads.VastTracker;
@@ -20,18 +19,17 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
-import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
-
 public class TrackingRequest extends MoPubRequest<String> {
 
-    // Retrying may cause duplicate impressions
+    // Retrying may cause duplicate impressions. TrackingDispatcher retries a few times, and
+    // only after failures without a response or after server errors.
     private static final int ZERO_RETRIES = 0;
 
     public interface Listener extends MoPubResponse.Listener<String> {}
 
     @Nullable private final Listener mListener;
 
-    private TrackingRequest(
+    TrackingRequest(
             @NonNull final Context context,
             @NonNull final String url,
             @Nullable final Listener listener) {
@@ -46,6 +44,7 @@ public class TrackingRequest extends MoPubRequest<String> {
                 MoPubRetryPolicy.DEFAULT_TIMEOUT_MS,
                 ZERO_RETRIES,
                 MoPubRetryPolicy.DEFAULT_BACKOFF_MULT));
+        setEndpoint(RetryPolicyEngine.Endpoint.TRACKING);
     }
 
     @Nullable
@@ -73,6 +72,7 @@ public class TrackingRequest extends MoPubRequest<String> {
                     new MoPubNetworkError.Builder("Failed to log tracking request. Response code: "
                             + networkResponse.getStatusCode() + " for url: " + getUrl())
                             .reason(MoPubNetworkError.Reason.TRACKING_FAILURE)
+                            .networkResponse(networkResponse)
                             .build());
         }
         return MoPubResponse.success(Integer.toString(networkResponse.getStatusCode()), networkResponse);
@@ -126,31 +126,12 @@ public class TrackingRequest extends MoPubRequest<String> {
             return;
         }
 
-        final MoPubRequestQueue requestQueue = Networking.getRequestQueue(context);
+        final TrackingDispatcher dispatcher = TrackingDispatcher.getInstance(context);
         for (final String url : urls) {
             if (TextUtils.isEmpty(url)) {
                 continue;
             }
-
-            final TrackingRequest.Listener internalListener = new TrackingRequest.Listener() {
-                @Override
-                public void onResponse(@NonNull String url) {
-                    MoPubLog.log(CUSTOM, "Successfully hit tracking endpoint: " + url);
-                    if (listener != null) {
-                        listener.onResponse(url);
-                    }
-                }
-
-                @Override
-                public void onErrorResponse(@NonNull final MoPubNetworkError networkError) {
-                    MoPubLog.log(CUSTOM, "Failed to hit tracking endpoint: " + url);
-                    if (listener != null) {
-                        listener.onErrorResponse(networkError);
-                    }
-                }
-            };
-            final TrackingRequest trackingRequest = new TrackingRequest(context, url, internalListener);
-            requestQueue.add(trackingRequest);
+            dispatcher.dispatch(url, listener);
         }
     }
 
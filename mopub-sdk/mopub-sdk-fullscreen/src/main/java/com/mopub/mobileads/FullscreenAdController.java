@@ -587,6 +587,7 @@ public class FullscreenAdController implements BaseVideoViewController.BaseVideo
         stopRunnables();
         if (mBlurLastVideoFrameTask != null) {
             mBlurLastVideoFrameTask.cancel(true);
+            mBlurLastVideoFrameTask.release();
         }
         broadcastAction(mActivity, mAdData.getBroadcastIdentifier(), ACTION_FULLSCREEN_DISMISS);
     }
@@ -182,6 +182,10 @@ public class MoPubFullscreen extends BaseAd implements VastManager.VastManagerLi
 
         if (FullAdType.VAST.equals(mAdData.getFullAdType())) {
             mVastManager = VastManagerFactory.create(mContext);
+            // The ad only starts expiring once it is ready, so the download is ranked by ad
+            // unit priority and request order alone
+            mVastManager.setVideoDownloadPriority(mAdData.getAdUnit(),
+                    VideoDownloadScheduler.NO_EXPIRATION);
             mVastManager.prepareVastVideoConfiguration(mAdData.getAdPayload(), this,
                     mAdData.getDspCreativeId(), mContext);
         } else if (FullAdType.JSON.equals(mAdData.getFullAdType())) {
@@ -14,6 +14,7 @@ import com.mopub.network.MoPubRequest;
 import com.mopub.network.MoPubRequestUtils;
 import com.mopub.network.MoPubResponse;
 import com.mopub.network.MoPubRetryPolicy;
+import com.mopub.network.RetryPolicyEngine;
 
 import java.util.Map;
 
@@ -39,6 +40,8 @@ public class RewardedAdCompletionRequest extends MoPubRequest<Integer> {
                 MoPubRequestUtils.chooseMethod(url),
                 listener);
         setShouldCache(false);
+        // Records latency only. The handler chooses the timeout, so set its policy afterwards.
+        setEndpoint(RetryPolicyEngine.Endpoint.REWARDED_COMPLETION);
         setRetryPolicy(retryPolicy);
         mListener = listener;
     }
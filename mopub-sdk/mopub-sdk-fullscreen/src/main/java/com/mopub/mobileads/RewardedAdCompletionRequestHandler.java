@@ -20,6 +20,7 @@ import com.mopub.network.MoPubNetworkError;
 import com.mopub.network.MoPubRequestQueue;
 import com.mopub.network.MoPubRetryPolicy;
 import com.mopub.network.Networking;
+import com.mopub.network.RetryPolicyEngine;
 
 import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
 
@@ -30,14 +31,8 @@ public class RewardedAdCompletionRequestHandler implements
         RewardedAdCompletionRequest.RewardedAdCompletionRequestListener {
 
     /**
-     * Request timeouts. Use the last value if the current retry is higher than the number of values
-     * in this list.
-     */
-    static final int[] RETRY_TIMES = {5000, 10000, 20000, 40000, 60000};
-
-    /**
-     * The actual request should take a little shorter to have the runnable run at the set time and
-     * have the previous request finish.
+     * The actual request should take a little shorter than the retry delay to have the runnable
+     * run at the set time and have the previous request finish.
      */
     static final int REQUEST_TIMEOUT_DELAY = 1000;
 
@@ -97,15 +92,26 @@ public class RewardedAdCompletionRequestHandler implements
             return;
         }
 
+        final RetryPolicyEngine retryPolicyEngine = RetryPolicyEngine.getInstance();
+        int timeoutMs = retryPolicyEngine.getTimeoutMs(Uri.parse(mUrl).getHost(),
+                RetryPolicyEngine.Endpoint.REWARDED_COMPLETION);
+        final boolean shouldRetry = mRetryCount < MAX_RETRIES;
+        long retryDelayMs = 0;
+        if (shouldRetry) {
+            retryDelayMs = retryPolicyEngine.getRetryDelayMs(
+                    RetryPolicyEngine.Endpoint.REWARDED_COMPLETION, mRetryCount);
+            timeoutMs = (int) Math.min(timeoutMs, retryDelayMs - REQUEST_TIMEOUT_DELAY);
+        }
+
         final RewardedAdCompletionRequest rewardedAdCompletionRequest =
                 new RewardedAdCompletionRequest(mContext,
                         mUrl,
-                        new MoPubRetryPolicy(getTimeout(mRetryCount) - REQUEST_TIMEOUT_DELAY, 0, 0f),
+                        new MoPubRetryPolicy(timeoutMs, 0, 0f),
                         this);
         rewardedAdCompletionRequest.setTag(mUrl);
         mRequestQueue.add(rewardedAdCompletionRequest);
 
-        if (mRetryCount >= MAX_RETRIES) {
+        if (!shouldRetry) {
             MoPubLog.log(CUSTOM, "Exceeded number of retries for rewarded video completion request.");
             return;
         }
@@ -115,7 +121,7 @@ public class RewardedAdCompletionRequestHandler implements
             public void run() {
                 makeRewardedAdCompletionRequest();
             }
-        }, getTimeout(mRetryCount));
+        }, retryDelayMs);
         mRetryCount++;
     }
 
@@ -153,14 +159,6 @@ public class RewardedAdCompletionRequestHandler implements
                 .makeRewardedAdCompletionRequest();
     }
 
-    static int getTimeout(int retryCount) {
-        if (retryCount >= 0 && retryCount < RETRY_TIMES.length) {
-            return RETRY_TIMES[retryCount];
-        } else {
-            return RETRY_TIMES[RETRY_TIMES.length - 1];
-        }
-    }
-
     private static String appendParameters(@NonNull final String url,
             @Nullable final String customerId,
             @NonNull final String rewardName,
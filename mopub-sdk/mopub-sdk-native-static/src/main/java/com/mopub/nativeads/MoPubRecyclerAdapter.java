@@ -7,7 +7,9 @@ package com.mopub.nativeads;
 import android.app.Activity;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 import android.view.View;
@@ -37,6 +39,7 @@ public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerVie
     }
 
     @NonNull private final RecyclerView.AdapterDataObserver mAdapterDataObserver;
+    @NonNull private final ListUpdateCallback mListUpdateCallback;
     @Nullable private RecyclerView mRecyclerView;
     @NonNull private final MoPubStreamAdPlacer mStreamAdPlacer;
     @NonNull private final RecyclerView.Adapter mOriginalAdapter;
@@ -70,6 +73,7 @@ public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerVie
             @NonNull final RecyclerView.Adapter originalAdapter,
             @NonNull final VisibilityTracker visibilityTracker) {
         mViewPositionMap = new WeakHashMap<>();
+        mListUpdateCallback = new AdapterListUpdateCallback(this);
         mOriginalAdapter = originalAdapter;
         mVisibilityTracker = visibilityTracker;
         mVisibilityTracker.setVisibilityTrackerListener(new VisibilityTracker.VisibilityTrackerListener() {
@@ -120,7 +124,9 @@ public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerVie
                 if (KEEP_ADS_FIXED == mStrategy
                         || (INSERT_AT_END == mStrategy
                         && addingToEnd)) {
-                    notifyDataSetChanged();
+                    // Ads keep their positions, so the content flows past them.
+                    PlacementDiff.dispatchItemRangeInserted(mStreamAdPlacer.getPlacedAdPositions(),
+                            newOriginalCount, positionStart, itemCount, mListUpdateCallback);
                 } else {
                     for (int i = 0; i < itemCount; i++) {
                         // We insert itemCount items at the original position, moving ads downstream.
@@ -139,7 +145,8 @@ public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerVie
                 if (KEEP_ADS_FIXED == mStrategy
                         || (INSERT_AT_END == mStrategy
                         && removingFromEnd)) {
-                    notifyDataSetChanged();
+                    PlacementDiff.dispatchItemRangeRemoved(mStreamAdPlacer.getPlacedAdPositions(),
+                            newOriginalCount, positionStart, itemsRemoved, mListUpdateCallback);
                 } else {
                     final int oldAdjustedCount = mStreamAdPlacer.getAdjustedCount(newOriginalCount + itemsRemoved);
                     for (int i = 0; i < itemsRemoved; i++) {
@@ -157,7 +164,14 @@ public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerVie
             @Override
             public void onItemRangeMoved(final int fromPosition, final int toPosition,
                     final int itemCount) {
-                notifyDataSetChanged();
+                // RecyclerView only moves one item at a time.
+                if (itemCount != 1) {
+                    notifyDataSetChanged();
+                    return;
+                }
+                PlacementDiff.dispatchItemMoved(mStreamAdPlacer.getPlacedAdPositions(),
+                        mOriginalAdapter.getItemCount(), fromPosition, toPosition,
+                        mListUpdateCallback);
             }
         };
 
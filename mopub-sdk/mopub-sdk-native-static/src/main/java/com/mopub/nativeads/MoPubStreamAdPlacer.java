@@ -62,6 +62,7 @@ public class MoPubStreamAdPlacer {
     @NonNull private final Runnable mPlacementRunnable;
     @NonNull private final PositioningSource mPositioningSource;
     @NonNull private final NativeAdSource mAdSource;
+    @NonNull private final NativeImageLoader.Session mImageLoadSession;
 
     @NonNull private final HashMap<NativeAd, WeakReference<View>> mViewMap;
     @NonNull private final WeakHashMap<View, NativeAd> mNativeAdMap;
@@ -143,6 +144,7 @@ public class MoPubStreamAdPlacer {
         mPositioningSource = positioningSource;
         mAdSource = adSource;
         mPlacementData = PlacementData.empty();
+        mImageLoadSession = NativeImageLoader.openSession();
 
         mNativeAdMap = new WeakHashMap<>();
         mViewMap = new HashMap<>();
@@ -202,6 +204,18 @@ public class MoPubStreamAdPlacer {
         mAdLoadedListener = (listener == null) ? EMPTY_NATIVE_AD_LOADED_LISTENER : listener;
     }
 
+    /**
+     * Sets the largest number of ads to keep ready while the user scrolls quickly through your
+     * stream. The ad placer caches a single ad when the user is not scrolling, and more as they
+     * scroll faster. Larger values fill more ad positions during fast scrolling, at the cost of
+     * more ad requests.
+     *
+     * @param maxCachedAds The largest number of ads to cache, at least 1.
+     */
+    public void setMaxCachedAds(final int maxCachedAds) {
+        mAdSource.setMaxCacheSize(maxCachedAds);
+    }
+
     /**
      * Start loading ads from the MoPub server.
      *
@@ -329,6 +343,7 @@ public class MoPubStreamAdPlacer {
     public void placeAdsInRange(final int startPosition, final int endPosition) {
         mVisibleRangeStart = startPosition;
         mVisibleRangeEnd = Math.min(endPosition, startPosition + MAX_VISIBLE_RANGE);
+        mAdSource.onScroll(startPosition);
         notifyNeedsPlacement();
     }
 
@@ -368,11 +383,15 @@ public class MoPubStreamAdPlacer {
      * is counterpoint to the method you used to create the adapter. For example, if you created the
      * adapter in {@code Fragment#onCreateView} you should destroy it in {code
      * Fragment#onDestroyView}.
+     *
+     * This also logs how well the native image cache served the image loads made while this
+     * placer was alive.
      */
     public void destroy() {
         mPlacementHandler.removeMessages(0);
         mAdSource.clear();
         mPlacementData.clearAds();
+        mImageLoadSession.close();
     }
 
     /**
@@ -390,6 +409,15 @@ public class MoPubStreamAdPlacer {
         return mPlacementData.getPlacedAd(position);
     }
 
+    /**
+     * Returns the positions of the placed ads in ascending order, including ads that are not
+     * followed by any content yet.
+     */
+    @NonNull
+    int[] getPlacedAdPositions() {
+        return mPlacementData.getPlacedAdPositions();
+    }
+
     /**
      * Gets the ad at the given position, or {@code null} if there is no ad at the given position.
      *
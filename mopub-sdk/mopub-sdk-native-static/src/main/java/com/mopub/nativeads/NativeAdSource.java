@@ -11,7 +11,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.mopub.common.VisibleForTesting;
+import com.mopub.network.RetryPolicyEngine;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,8 +28,10 @@ import static com.mopub.nativeads.MoPubNative.MoPubNativeNetworkListener;
  * a queue, so that the first ad loaded from the server will be the first ad available for dequeue.
  * To take an ad out of the cache, call {@link #dequeueAd}.
  *
- * The cache size may be automatically adjusted by the MoPub server based on an app's usage and
- * ad fill rate. Cached ads have a maximum TTL of 4 hours before which they expire.
+ * The cache grows while the user scrolls quickly, up to a maximum size, and is filled by several
+ * ad requests at once. Cached ads have a maximum TTL of 4 hours before which they expire. Ads
+ * that are about to expire are removed ahead of time, so that fresh ads can replace them before
+ * they are needed.
  *
  * The ad source also takes care of retrying failed ad requests, with a reasonable back-off to
  * avoid spamming the server.
@@ -36,29 +40,133 @@ import static com.mopub.nativeads.MoPubNative.MoPubNativeNetworkListener;
  */
 class NativeAdSource {
     /**
-     * Number of ads to cache
+     * Number of ads to cache when the user is not scrolling
      */
-    private static final int CACHE_LIMIT = 1;
+    @VisibleForTesting static final int MIN_CACHE_SIZE = 1;
+    @VisibleForTesting static final int DEFAULT_MAX_CACHE_SIZE = 5;
+    @VisibleForTesting static final int MAX_REQUESTS_IN_FLIGHT = 3;
+
+    /**
+     * Each time the user scrolls this many items per second, one more ad is cached.
+     */
+    @VisibleForTesting static final int ITEMS_PER_SECOND_PER_CACHED_AD = 4;
+    private static final int SCROLL_RATE_WINDOW_MILLISECONDS = 2000;
 
     private static final int EXPIRATION_TIME_MILLISECONDS = AD_EXPIRATION_DELAY;
-    private static final int MAXIMUM_RETRY_TIME_MILLISECONDS = 5 * 60 * 1000; // 5 minutes.
-    @VisibleForTesting static final int[] RETRY_TIME_ARRAY_MILLISECONDS = new int[]{1000, 3000, 5000, 25000, 60000, MAXIMUM_RETRY_TIME_MILLISECONDS};
+    @VisibleForTesting static final int EXPIRATION_MARGIN_MILLISECONDS = 15 * 60 * 1000;
+    @VisibleForTesting static final int MAX_RETRIES = 5;
+
+    /**
+     * Creates the {@link MoPubNative} for each of the concurrent ad requests.
+     */
+    interface MoPubNativeFactory {
+        @NonNull
+        MoPubNative create(@NonNull MoPubNativeNetworkListener moPubNativeNetworkListener);
+    }
+
+    /**
+     * Fills the cache one ad at a time with its own {@link MoPubNative}.
+     */
+    private class AdFiller implements MoPubNativeNetworkListener {
+        @Nullable private MoPubNative mMoPubNative;
+        private boolean mRequestInFlight;
+
+        void makeRequest() {
+            if (mMoPubNative == null) {
+                return;
+            }
+            mRequestInFlight = true;
+            mRequestsInFlight++;
+            mMoPubNative.makeRequest(mRequestParameters, mSequenceNumber + mRequestsInFlight - 1);
+        }
+
+        void destroy() {
+            if (mMoPubNative != null) {
+                mMoPubNative.destroy();
+                mMoPubNative = null;
+            }
+            mRequestInFlight = false;
+        }
+
+        private void finishRequest() {
+            if (mRequestInFlight) {
+                mRequestInFlight = false;
+                mRequestsInFlight--;
+            }
+        }
+
+        @Override
+        public void onNativeLoad(@NonNull final NativeAd nativeAd) {
+            // This can be null if the ad source was cleared as the AsyncTask is posting
+            // back to the UI handler. Drop this response.
+            if (mMoPubNative == null) {
+                return;
+            }
+
+            finishRequest();
+            mSequenceNumber++;
+            resetRetryTime();
+
+            mNativeAdCache.add(new TimestampWrapper<NativeAd>(nativeAd));
+            if (mNativeAdCache.size() == 1) {
+                scheduleEviction();
+                if (mAdSourceListener != null) {
+                    mAdSourceListener.onAdsAvailable();
+                }
+            }
+
+            replenishCache();
+        }
 
-    @NonNull private final List<TimestampWrapper<NativeAd>> mNativeAdCache;
+        @Override
+        public void onNativeFail(final NativeErrorCode errorCode) {
+            finishRequest();
+
+            // Stopping requests after the max retry count prevents us from using battery when
+            // the user is not interacting with the stream, eg. the app is backgrounded.
+            if (mCurrentRetries >= MAX_RETRIES) {
+                resetRetryTime();
+                return;
+            }
+
+            // The other requests in flight wait for the same retry.
+            if (mRetryInFlight) {
+                return;
+            }
+
+            // The first retry waits the initial delay; later ones back off from there.
+            final long retryDelayMs = RetryPolicyEngine.getInstance().getRetryDelayMs(
+                    RetryPolicyEngine.Endpoint.AD_REQUEST, mCurrentRetries);
+            updateRetryTime();
+            mRetryInFlight = true;
+            mReplenishCacheHandler.postDelayed(mReplenishCacheRunnable, retryDelayMs);
+        }
+    }
+
+    @NonNull private final ArrayDeque<TimestampWrapper<NativeAd>> mNativeAdCache;
     @NonNull private final Handler mReplenishCacheHandler;
     @NonNull private final Runnable mReplenishCacheRunnable;
-    @NonNull private final MoPubNativeNetworkListener mMoPubNativeNetworkListener;
+    @NonNull private final Runnable mEvictionRunnable;
+    @NonNull private final AdFiller mPrimaryAdFiller;
+    @NonNull private final List<AdFiller> mAdFillers;
 
-    @VisibleForTesting boolean mRequestInFlight;
+    @VisibleForTesting int mRequestsInFlight;
     @VisibleForTesting boolean mRetryInFlight;
     @VisibleForTesting int mSequenceNumber;
     @VisibleForTesting int mCurrentRetries;
 
+    @VisibleForTesting int mTargetCacheSize;
+    private int mMaxCacheSize;
+    @VisibleForTesting double mItemsPerSecond;
+    private boolean mHasScrollPosition;
+    private int mLastScrollPosition;
+    private long mLastScrollTimeMillis;
+
     @Nullable private AdSourceListener mAdSourceListener;
 
     // We will need collections of these when we support multiple ad units.
     @Nullable private RequestParameters mRequestParameters;
-    @Nullable private MoPubNative mMoPubNative;
+    @Nullable private MoPubNativeFactory mMoPubNativeFactory;
 
     @NonNull private final AdRendererRegistry mAdRendererRegistry;
 
@@ -73,13 +181,13 @@ class NativeAdSource {
     }
 
     NativeAdSource() {
-        this(new ArrayList<TimestampWrapper<NativeAd>>(CACHE_LIMIT),
+        this(new ArrayDeque<TimestampWrapper<NativeAd>>(DEFAULT_MAX_CACHE_SIZE),
                 new Handler(),
                 new AdRendererRegistry());
     }
 
     @VisibleForTesting
-    NativeAdSource(@NonNull final List<TimestampWrapper<NativeAd>> nativeAdCache,
+    NativeAdSource(@NonNull final ArrayDeque<TimestampWrapper<NativeAd>> nativeAdCache,
             @NonNull final Handler replenishCacheHandler,
             @NonNull AdRendererRegistry adRendererRegistry) {
         mNativeAdCache = nativeAdCache;
@@ -91,49 +199,23 @@ class NativeAdSource {
                 replenishCache();
             }
         };
-
-        mAdRendererRegistry = adRendererRegistry;
-
-        // Construct native URL and start filling the cache
-        mMoPubNativeNetworkListener = new MoPubNativeNetworkListener() {
+        mEvictionRunnable = new Runnable() {
             @Override
-            public void onNativeLoad(@NonNull final NativeAd nativeAd) {
-                // This can be null if the ad source was cleared as the AsyncTask is posting
-                // back to the UI handler. Drop this response.
-                if (mMoPubNative == null) {
-                    return;
-                }
-
-                mRequestInFlight = false;
-                mSequenceNumber++;
-                resetRetryTime();
-
-                mNativeAdCache.add(new TimestampWrapper<NativeAd>(nativeAd));
-                if (mNativeAdCache.size() == 1 && mAdSourceListener != null) {
-                    mAdSourceListener.onAdsAvailable();
-                }
-
+            public void run() {
+                evictExpiringAds();
+                scheduleEviction();
                 replenishCache();
             }
+        };
 
-            @Override
-            public void onNativeFail(final NativeErrorCode errorCode) {
-                // Reset the retry time for the next time we dequeue.
-                mRequestInFlight = false;
+        mAdRendererRegistry = adRendererRegistry;
 
-                // Stopping requests after the max retry count prevents us from using battery when
-                // the user is not interacting with the stream, eg. the app is backgrounded.
-                if (mCurrentRetries >= RETRY_TIME_ARRAY_MILLISECONDS.length - 1) {
-                    resetRetryTime();
-                    return;
-                }
-
-                updateRetryTime();
-                mRetryInFlight = true;
-                mReplenishCacheHandler.postDelayed(mReplenishCacheRunnable, getRetryTime());
-            }
-        };
+        mPrimaryAdFiller = new AdFiller();
+        mAdFillers = new ArrayList<>(MAX_REQUESTS_IN_FLIGHT);
+        mAdFillers.add(mPrimaryAdFiller);
 
+        mMaxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+        mTargetCacheSize = MIN_CACHE_SIZE;
         mSequenceNumber = 0;
         resetRetryTime();
     }
@@ -153,8 +235,10 @@ class NativeAdSource {
      */
     void registerAdRenderer(@NonNull final MoPubAdRenderer moPubNativeAdRenderer) {
         mAdRendererRegistry.registerAdRenderer(moPubNativeAdRenderer);
-        if (mMoPubNative != null) {
-            mMoPubNative.registerAdRenderer(moPubNativeAdRenderer);
+        for (final AdFiller adFiller : mAdFillers) {
+            if (adFiller.mMoPubNative != null) {
+                adFiller.mMoPubNative.registerAdRenderer(moPubNativeAdRenderer);
+            }
         }
     }
 
@@ -171,12 +255,42 @@ class NativeAdSource {
         mAdSourceListener = adSourceListener;
     }
 
+    /**
+     * Sets the largest number of ads to cache while the user scrolls quickly.
+     */
+    void setMaxCacheSize(final int maxCacheSize) {
+        mMaxCacheSize = Math.max(MIN_CACHE_SIZE, maxCacheSize);
+        mTargetCacheSize = Math.min(mTargetCacheSize, mMaxCacheSize);
+    }
+
     void loadAds(@NonNull final Activity activity,
             @NonNull final String adUnitId,
             final RequestParameters requestParameters) {
-        loadAds(requestParameters, new MoPubNative(activity, adUnitId, mMoPubNativeNetworkListener));
+        loadAds(requestParameters, new MoPubNativeFactory() {
+            @NonNull
+            @Override
+            public MoPubNative create(
+                    @NonNull final MoPubNativeNetworkListener moPubNativeNetworkListener) {
+                return new MoPubNative(activity, adUnitId, moPubNativeNetworkListener);
+            }
+        });
+    }
+
+    @VisibleForTesting
+    void loadAds(final RequestParameters requestParameters,
+            @NonNull final MoPubNativeFactory moPubNativeFactory) {
+        clear();
+
+        mRequestParameters = requestParameters;
+        mMoPubNativeFactory = moPubNativeFactory;
+        mPrimaryAdFiller.mMoPubNative = createMoPubNative(moPubNativeFactory, mPrimaryAdFiller);
+
+        replenishCache();
     }
 
+    /**
+     * Loads ads with a single {@link MoPubNative}, one request at a time.
+     */
     @VisibleForTesting
     void loadAds(final RequestParameters requestParameters,
              final MoPubNative moPubNative) {
@@ -187,7 +301,7 @@ class NativeAdSource {
         }
 
         mRequestParameters = requestParameters;
-        mMoPubNative = moPubNative;
+        mPrimaryAdFiller.mMoPubNative = moPubNative;
 
         replenishCache();
     }
@@ -197,10 +311,12 @@ class NativeAdSource {
      */
     void clear() {
         // This will cleanup listeners to stop callbacks from handling old ad units
-        if (mMoPubNative != null) {
-            mMoPubNative.destroy();
-            mMoPubNative = null;
+        for (final AdFiller adFiller : mAdFillers) {
+            adFiller.destroy();
         }
+        mAdFillers.clear();
+        mAdFillers.add(mPrimaryAdFiller);
+        mMoPubNativeFactory = null;
 
         mRequestParameters = null;
 
@@ -210,8 +326,12 @@ class NativeAdSource {
         mNativeAdCache.clear();
 
         mReplenishCacheHandler.removeMessages(0);
-        mRequestInFlight = false;
+        mRetryInFlight = false;
+        mRequestsInFlight = 0;
         mSequenceNumber = 0;
+        mTargetCacheSize = MIN_CACHE_SIZE;
+        mItemsPerSecond = 0;
+        mHasScrollPosition = false;
         resetRetryTime();
     }
 
@@ -230,24 +350,63 @@ class NativeAdSource {
         final long now = SystemClock.uptimeMillis();
 
         // Starting an ad request takes several millis. Post for performance reasons.
-        if (!mRequestInFlight && !mRetryInFlight) {
+        if (mRequestsInFlight < Math.min(mTargetCacheSize, MAX_REQUESTS_IN_FLIGHT)
+                && !mRetryInFlight) {
             mReplenishCacheHandler.post(mReplenishCacheRunnable);
         }
 
-        // Dequeue the first ad that hasn't expired.
+        // Dequeue the first ad that hasn't expired. Ads are cached in the order they were
+        // loaded, so every ad after it is newer.
         while (!mNativeAdCache.isEmpty()) {
-            TimestampWrapper<NativeAd> responseWrapper = mNativeAdCache.remove(0);
+            TimestampWrapper<NativeAd> responseWrapper = mNativeAdCache.poll();
 
             if (now - responseWrapper.mCreatedTimestamp < EXPIRATION_TIME_MILLISECONDS) {
+                scheduleEviction();
                 return responseWrapper.mInstance;
             }
         }
         return null;
     }
 
+    /**
+     * Records the first visible position in the stream, so that the cache can grow while the
+     * user scrolls quickly and shrink when they stop.
+     */
+    void onScroll(final int position) {
+        final long now = SystemClock.uptimeMillis();
+        if (!mHasScrollPosition) {
+            mHasScrollPosition = true;
+            mLastScrollPosition = position;
+            mLastScrollTimeMillis = now;
+            return;
+        }
+
+        final long elapsedMillis = now - mLastScrollTimeMillis;
+        if (elapsedMillis <= 0) {
+            return;
+        }
+
+        // Average the scroll rate over roughly the last couple of seconds.
+        final double itemsPerSecond =
+                Math.abs(position - mLastScrollPosition) * 1000.0 / elapsedMillis;
+        final double weight = Math.min(1.0,
+                (double) elapsedMillis / SCROLL_RATE_WINDOW_MILLISECONDS);
+        mItemsPerSecond += weight * (itemsPerSecond - mItemsPerSecond);
+        mLastScrollTimeMillis = now;
+        mLastScrollPosition = position;
+
+        final int targetCacheSize = MIN_CACHE_SIZE
+                + (int) (mItemsPerSecond / ITEMS_PER_SECOND_PER_CACHED_AD);
+        final int previousTargetCacheSize = mTargetCacheSize;
+        mTargetCacheSize = Math.min(targetCacheSize, mMaxCacheSize);
+        if (mTargetCacheSize > previousTargetCacheSize) {
+            replenishCache();
+        }
+    }
+
     @VisibleForTesting
     void updateRetryTime() {
-        if (mCurrentRetries < RETRY_TIME_ARRAY_MILLISECONDS.length - 1) {
+        if (mCurrentRetries < MAX_RETRIES) {
             mCurrentRetries++;
         }
     }
@@ -257,37 +416,93 @@ class NativeAdSource {
         mCurrentRetries = 0;
     }
 
+    /**
+     * @return the delay before the next retry, before jitter and the shared retry budget
+     */
     @VisibleForTesting
-    int getRetryTime() {
-        if (mCurrentRetries >= RETRY_TIME_ARRAY_MILLISECONDS.length) {
-            mCurrentRetries = RETRY_TIME_ARRAY_MILLISECONDS.length - 1;
-        }
-        return RETRY_TIME_ARRAY_MILLISECONDS[mCurrentRetries];
+    long getRetryTime() {
+        return RetryPolicyEngine.getInstance().getBackoffMs(RetryPolicyEngine.Endpoint.AD_REQUEST,
+                mCurrentRetries);
     }
 
     /**
-     * Replenish ads in the ad source cache.
+     * Replenish ads in the ad source cache, with up to {@link #MAX_REQUESTS_IN_FLIGHT} requests
+     * at once.
      *
      * Calling this method is useful for warming the cache without dequeueing an ad.
      */
     @VisibleForTesting
     void replenishCache() {
-        if (!mRequestInFlight && mMoPubNative != null && mNativeAdCache.size() < CACHE_LIMIT) {
-            mRequestInFlight = true;
-            mMoPubNative.makeRequest(mRequestParameters, mSequenceNumber);
+        if (mRetryInFlight) {
+            return;
         }
+
+        int adsNeeded = mTargetCacheSize - mNativeAdCache.size() - mRequestsInFlight;
+        for (int i = 0; adsNeeded > 0 && i < MAX_REQUESTS_IN_FLIGHT; i++) {
+            if (i == mAdFillers.size()) {
+                if (mMoPubNativeFactory == null) {
+                    return;
+                }
+                final AdFiller adFiller = new AdFiller();
+                adFiller.mMoPubNative = createMoPubNative(mMoPubNativeFactory, adFiller);
+                mAdFillers.add(adFiller);
+            }
+
+            final AdFiller adFiller = mAdFillers.get(i);
+            if (!adFiller.mRequestInFlight && adFiller.mMoPubNative != null) {
+                adFiller.makeRequest();
+                adsNeeded--;
+            }
+        }
+    }
+
+    @NonNull
+    private MoPubNative createMoPubNative(@NonNull final MoPubNativeFactory moPubNativeFactory,
+            @NonNull final AdFiller adFiller) {
+        final MoPubNative moPubNative = moPubNativeFactory.create(adFiller);
+        for (MoPubAdRenderer renderer : mAdRendererRegistry.getRendererIterable()) {
+            moPubNative.registerAdRenderer(renderer);
+        }
+        return moPubNative;
+    }
+
+    /**
+     * Removes the ads that will expire soon, so that they are replaced before they are needed.
+     */
+    private void evictExpiringAds() {
+        final long now = SystemClock.uptimeMillis();
+        while (!mNativeAdCache.isEmpty() && now - mNativeAdCache.peek().mCreatedTimestamp
+                >= EXPIRATION_TIME_MILLISECONDS - EXPIRATION_MARGIN_MILLISECONDS) {
+            mNativeAdCache.poll().mInstance.destroy();
+        }
+    }
+
+    /**
+     * Schedules the eviction of the oldest cached ad.
+     */
+    private void scheduleEviction() {
+        mReplenishCacheHandler.removeCallbacks(mEvictionRunnable);
+        final TimestampWrapper<NativeAd> oldestAd = mNativeAdCache.peek();
+        if (oldestAd == null) {
+            return;
+        }
+
+        final long evictionTime = oldestAd.mCreatedTimestamp + EXPIRATION_TIME_MILLISECONDS
+                - EXPIRATION_MARGIN_MILLISECONDS;
+        mReplenishCacheHandler.postDelayed(mEvictionRunnable,
+                Math.max(0, evictionTime - SystemClock.uptimeMillis()));
     }
 
     @Deprecated
     @VisibleForTesting
     void setMoPubNative(final MoPubNative moPubNative) {
-        mMoPubNative = moPubNative;
+        mPrimaryAdFiller.mMoPubNative = moPubNative;
     }
 
     @NonNull
     @Deprecated
     @VisibleForTesting
     MoPubNativeNetworkListener getMoPubNativeNetworkListener() {
-        return mMoPubNativeNetworkListener;
+        return mPrimaryAdFiller;
     }
 }
@@ -5,6 +5,7 @@
 package com.mopub.nativeads;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.text.TextUtils;
 import android.widget.ImageView;
 
@@ -15,15 +16,12 @@ import com.mopub.common.Preconditions;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.util.ImageUtils;
 import com.mopub.nativeads.CustomEventNative.CustomEventNativeListener;
-import com.mopub.network.MoPubImageLoader;
 import com.mopub.network.MoPubNetworkError;
-import com.mopub.network.Networking;
 
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
 import static com.mopub.common.logging.MoPubLog.SdkLogEvent.ERROR_WITH_THROWABLE;
 
 /**
@@ -55,28 +53,23 @@ public class NativeImageHelper {
     public static void preCacheImages(@NonNull final Context context,
             @NonNull final List<String> imageUrls,
             @NonNull final ImageListener imageListener) {
-        final MoPubImageLoader imageLoader = Networking.getImageLoader(context);
+        final NativeImageLoader imageLoader = NativeImageLoader.getInstance(context);
         // These Atomics are only accessed on the main thread.
         // We use Atomics here so we can change their values while keeping a reference for the inner class.
         final AtomicInteger imageCounter = new AtomicInteger(imageUrls.size());
         final AtomicBoolean anyFailures = new AtomicBoolean(false);
-        MoPubImageLoader.ImageListener moPubImageListener = new MoPubImageLoader.ImageListener() {
+        NativeImageLoader.Listener nativeImageListener = new NativeImageLoader.Listener() {
 
             @Override
-            public void onResponse(@NonNull final MoPubImageLoader.ImageContainer imageContainer,
-                                   final boolean isImmediate) {
-                // Image Loader returns a "default" response immediately. We want to ignore this
-                // unless the image is already cached.
-                if (imageContainer.getBitmap() != null) {
-                    final int count = imageCounter.decrementAndGet();
-                    if (count == 0 && !anyFailures.get()) {
-                        imageListener.onImagesCached();
-                    }
+            public void onImageLoaded(@NonNull final Bitmap bitmap, final boolean isImmediate) {
+                final int count = imageCounter.decrementAndGet();
+                if (count == 0 && !anyFailures.get()) {
+                    imageListener.onImagesCached();
                 }
             }
 
             @Override
-            public void onErrorResponse(@NonNull final MoPubNetworkError networkError) {
+            public void onImageFailed(@NonNull final MoPubNetworkError networkError) {
                 MoPubLog.log(ERROR_WITH_THROWABLE, "Failed to download a native ads image:", networkError);
                 boolean anyPreviousErrors = anyFailures.getAndSet(true);
                 imageCounter.decrementAndGet();
@@ -92,12 +85,13 @@ public class NativeImageHelper {
                 imageListener.onImagesFailedToCache(NativeErrorCode.IMAGE_DOWNLOAD_FAILURE);
                 return;
             }
-            imageLoader.fetch(url, moPubImageListener, ImageUtils.getMaxImageWidth(context));
+            imageLoader.preCache(url, ImageUtils.getMaxImageWidth(context), 0, nativeImageListener);
         }
     }
 
     /**
-     * Helper method that takes an image url and loads the image into an image view.
+     * Helper method that takes an image url and loads the image into an image view, decoded at
+     * the size of the image view.
      *
      * @param url The image url
      * @param imageView The image view into which to load the image
@@ -117,23 +111,6 @@ public class NativeImageHelper {
             return;
         }
 
-        final MoPubImageLoader mImageLoader = Networking.getImageLoader(imageView.getContext());
-        mImageLoader.fetch(url, new MoPubImageLoader.ImageListener() {
-            @Override
-            public void onResponse(@NonNull final MoPubImageLoader.ImageContainer imageContainer,
-                                   final boolean isImmediate) {
-                if (!isImmediate) {
-                    MoPubLog.log(CUSTOM, "Image was not loaded immediately into your ad view. You should call " +
-                            "preCacheImages as part of your custom event loading process.");
-                }
-                imageView.setImageBitmap(imageContainer.getBitmap());
-            }
-
-            @Override
-            public void onErrorResponse(@NonNull final MoPubNetworkError networkError) {
-                MoPubLog.log(CUSTOM, "Failed to load image.", networkError);
-                imageView.setImageDrawable(null);
-            }
-        }, ImageUtils.getMaxImageWidth(imageView.getContext()));
+        NativeImageLoader.getInstance(imageView.getContext()).loadInto(url, imageView);
     }
 }
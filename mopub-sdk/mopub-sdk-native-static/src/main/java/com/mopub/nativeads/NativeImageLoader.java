@@ -0,0 +1,696 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.nativeads;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.collection.LruCache;
+
+import com.mopub.common.BitmapBudgetManager;
+import com.mopub.common.NativeImageCacheService;
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.DeviceUtils;
+import com.mopub.common.util.ImageUtils;
+import com.mopub.network.MoPubNetworkError;
+import com.mopub.network.MoPubResponse;
+import com.mopub.network.Networking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
+
+/**
+ * Loads native ad images through a memory cache, a disk cache and the network. Images are
+ * decoded off the main thread, downsampled to the size they are shown at, and decoded into
+ * bitmaps pooled by {@link BitmapBudgetManager} when possible. An image decoded for a larger
+ * size is used for smaller ones, so images precached at the screen width are hits when bound to a
+ * view. The memory cache counts against the SDK's bitmap budget. Concurrent loads of the same
+ * image share one download and one decode.
+ *
+ * Apart from the decoding, this class should only be called from the UI thread.
+ */
+public class NativeImageLoader {
+    private static final int DECODE_THREADS = 2;
+
+    public interface Listener {
+        /**
+         * @param isImmediate true if the image came from the memory cache, during the call to
+         *                    load it
+         */
+        void onImageLoaded(@NonNull Bitmap bitmap, boolean isImmediate);
+
+        void onImageFailed(@NonNull MoPubNetworkError networkError);
+    }
+
+    /**
+     * The listeners waiting for one image at one size.
+     */
+    private static class PendingDecode {
+        final int mTargetWidth;
+        final int mTargetHeight;
+        @NonNull final List<Listener> mListeners = new ArrayList<>(1);
+
+        PendingDecode(final int targetWidth, final int targetHeight) {
+            mTargetWidth = targetWidth;
+            mTargetHeight = targetHeight;
+        }
+    }
+
+    /**
+     * Counts image loads, to log how well the caches serve a feed. A session counts every load
+     * made while it is open, whichever feed made it.
+     */
+    public static class Session {
+        @NonNull private final AtomicInteger mMemoryHits = new AtomicInteger();
+        @NonNull private final AtomicInteger mDiskHits = new AtomicInteger();
+        @NonNull private final AtomicInteger mNetworkFetches = new AtomicInteger();
+        @NonNull private final AtomicLong mDecodedBytes = new AtomicLong();
+
+        private Session() {
+        }
+
+        /**
+         * @return the share of image loads served from the memory or disk cache
+         */
+        public double getHitRate() {
+            final int hits = mMemoryHits.get() + mDiskHits.get();
+            final int loads = hits + mNetworkFetches.get();
+            return loads == 0 ? 0 : (double) hits / loads;
+        }
+
+        /**
+         * @return the number of bytes of bitmaps decoded
+         */
+        public long getDecodedBytes() {
+            return mDecodedBytes.get();
+        }
+
+        /**
+         * Stops counting, and logs the hit rate and the decoded bytes of the session.
+         */
+        public void close() {
+            sOpenSessions.remove(this);
+            MoPubLog.log(CUSTOM, String.format("Native image cache hit rate %.2f (%d memory, "
+                            + "%d disk, %d network), %d bytes decoded",
+                    getHitRate(), mMemoryHits.get(), mDiskHits.get(), mNetworkFetches.get(),
+                    mDecodedBytes.get()));
+        }
+    }
+
+    @Nullable private static volatile NativeImageLoader sInstance;
+    @NonNull private static final Set<Session> sOpenSessions = new CopyOnWriteArraySet<>();
+
+    @NonNull private final Context mContext;
+    @NonNull private final Handler mMainHandler;
+    @NonNull private final ExecutorService mDecodeExecutor;
+    @NonNull private final LruCache<String, Bitmap> mMemoryCache;
+    @NonNull private final BitmapBudgetManager mBitmapBudgetManager;
+
+    // Guarded by this
+    @NonNull private final Map<String, PendingDecode> mPendingDecodes = new HashMap<>();
+    @NonNull private final Map<String, List<String>> mPendingFetches = new HashMap<>();
+
+    // Main thread only
+    @NonNull private final WeakHashMap<ImageView, Bitmap> mDisplayedBitmaps = new WeakHashMap<>();
+    @NonNull private final WeakHashMap<ImageView, String> mRequestedKeys = new WeakHashMap<>();
+
+    // Bitmaps given to load() listeners, which may still use them. Guarded by itself
+    @NonNull private final Set<Bitmap> mHandedOutBitmaps =
+            Collections.newSetFromMap(new WeakHashMap<Bitmap, Boolean>());
+
+    // The sizes in the memory cache for each url, to find other sizes of an image without
+    // copying the cache. Guarded by itself
+    @NonNull private final Map<String, Set<String>> mCachedSizes = new HashMap<>();
+
+    // All the loads since the loader was created
+    @NonNull private final Session mTotals = new Session();
+
+    private NativeImageLoader(@NonNull final Context context) {
+        this(context, createDecodeExecutor());
+    }
+
+    @VisibleForTesting
+    NativeImageLoader(@NonNull final Context context, @NonNull final ExecutorService decodeExecutor) {
+        mContext = context.getApplicationContext();
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mDecodeExecutor = decodeExecutor;
+        mBitmapBudgetManager = BitmapBudgetManager.getInstance(mContext);
+
+        mMemoryCache = new LruCache<String, Bitmap>(DeviceUtils.memoryCacheSizeBytes(mContext)) {
+            @Override
+            protected int sizeOf(@NonNull final String key, @NonNull final Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(final boolean evicted, @NonNull final String key,
+                    @NonNull final Bitmap oldValue, @Nullable final Bitmap newValue) {
+                // A replaced entry keeps its key
+                if (newValue == null) {
+                    removeCachedSize(key);
+                }
+                if (evicted) {
+                    addReusableBitmap(oldValue);
+                }
+            }
+        };
+        mBitmapBudgetManager.register("native-images", BitmapBudgetManager.Priority.NORMAL,
+                new BitmapBudgetManager.Consumer() {
+                    @Override
+                    public int getSizeBytes() {
+                        return mMemoryCache.size();
+                    }
+
+                    @Override
+                    public void trimToSize(final int maxSizeBytes) {
+                        mMemoryCache.trimToSize(maxSizeBytes);
+                    }
+                });
+    }
+
+    @NonNull
+    public static NativeImageLoader getInstance(@NonNull final Context context) {
+        Preconditions.checkNotNull(context);
+
+        NativeImageLoader instance = sInstance;
+        if (instance == null) {
+            synchronized (NativeImageLoader.class) {
+                instance = sInstance;
+                if (instance == null) {
+                    instance = new NativeImageLoader(context);
+                    sInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Starts counting image loads, until the session is closed.
+     */
+    @NonNull
+    public static Session openSession() {
+        final Session session = new Session();
+        sOpenSessions.add(session);
+        return session;
+    }
+
+    /**
+     * Loads an image no larger than needed to fill the target size. Pass 0 for a target
+     * dimension that does not limit the size. Bitmaps loaded this way are never reused for other
+     * images, since the listener may keep them. Use {@link #preCache} if it does not.
+     */
+    public void load(@NonNull final String url, final int targetWidth, final int targetHeight,
+            @NonNull final Listener listener) {
+        Preconditions.checkNotNull(url);
+        Preconditions.checkNotNull(listener);
+
+        loadBitmap(url, targetWidth, targetHeight, new Listener() {
+            @Override
+            public void onImageLoaded(@NonNull final Bitmap bitmap, final boolean isImmediate) {
+                synchronized (mHandedOutBitmaps) {
+                    mHandedOutBitmaps.add(bitmap);
+                }
+                listener.onImageLoaded(bitmap, isImmediate);
+            }
+
+            @Override
+            public void onImageFailed(@NonNull final MoPubNetworkError networkError) {
+                listener.onImageFailed(networkError);
+            }
+        });
+    }
+
+    /**
+     * Loads an image into the memory cache, like {@link #load}. The listener must not keep the
+     * bitmap, so that it can be reused for other images once it is evicted.
+     */
+    void preCache(@NonNull final String url, final int targetWidth, final int targetHeight,
+            @NonNull final Listener listener) {
+        Preconditions.checkNotNull(url);
+        Preconditions.checkNotNull(listener);
+
+        loadBitmap(url, targetWidth, targetHeight, listener);
+    }
+
+    private void loadBitmap(@NonNull final String url, final int targetWidth,
+            final int targetHeight, @NonNull final Listener listener) {
+        final String key = getKey(url, targetWidth, targetHeight);
+        final Bitmap bitmap = getCachedBitmap(url, targetWidth, targetHeight);
+        if (bitmap != null) {
+            for (final Session session : getCountingSessions()) {
+                session.mMemoryHits.incrementAndGet();
+            }
+            listener.onImageLoaded(bitmap, true);
+            return;
+        }
+
+        synchronized (this) {
+            final PendingDecode pendingDecode = mPendingDecodes.get(key);
+            if (pendingDecode != null) {
+                pendingDecode.mListeners.add(listener);
+                return;
+            }
+            final PendingDecode newPendingDecode = new PendingDecode(targetWidth, targetHeight);
+            newPendingDecode.mListeners.add(listener);
+            mPendingDecodes.put(key, newPendingDecode);
+
+            final List<String> pendingFetch = mPendingFetches.get(url);
+            if (pendingFetch != null) {
+                pendingFetch.add(key);
+                return;
+            }
+            final List<String> newPendingFetch = new ArrayList<>(1);
+            newPendingFetch.add(key);
+            mPendingFetches.put(url, newPendingFetch);
+        }
+
+        mDecodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                readFromDisk(url);
+            }
+        });
+    }
+
+    /**
+     * Loads an image into the view, sized to the view's bounds. If the view has not been laid
+     * out yet, the image is sized to the width of the screen. Unless the image is in memory, the
+     * view is cleared until it loads.
+     */
+    public void loadInto(@NonNull final String url, @NonNull final ImageView imageView) {
+        Preconditions.checkNotNull(url);
+        Preconditions.checkNotNull(imageView);
+
+        final int targetWidth = getTargetDimension(imageView.getWidth(),
+                imageView.getLayoutParams() != null ? imageView.getLayoutParams().width : 0,
+                ImageUtils.getMaxImageWidth(imageView.getContext()));
+        final int targetHeight = getTargetDimension(imageView.getHeight(),
+                imageView.getLayoutParams() != null ? imageView.getLayoutParams().height : 0,
+                0);
+        final String key = getKey(url, targetWidth, targetHeight);
+        mRequestedKeys.put(imageView, key);
+        mDisplayedBitmaps.remove(imageView);
+
+        loadBitmap(url, targetWidth, targetHeight, new Listener() {
+            @Override
+            public void onImageLoaded(@NonNull final Bitmap bitmap, final boolean isImmediate) {
+                // The view may have been bound to another image in the meantime
+                if (!key.equals(mRequestedKeys.get(imageView))) {
+                    return;
+                }
+                if (!isImmediate) {
+                    MoPubLog.log(CUSTOM, "Image was not loaded immediately into your ad view. You should call " +
+                            "preCacheImages as part of your custom event loading process.");
+                }
+                mDisplayedBitmaps.put(imageView, bitmap);
+                imageView.setImageBitmap(bitmap);
+            }
+
+            @Override
+            public void onImageFailed(@NonNull final MoPubNetworkError networkError) {
+                if (!key.equals(mRequestedKeys.get(imageView))) {
+                    return;
+                }
+                MoPubLog.log(CUSTOM, "Failed to load image.", networkError);
+                mDisplayedBitmaps.remove(imageView);
+                imageView.setImageDrawable(null);
+            }
+        });
+
+        // Don't leave the recycled view showing its previous image while this one loads
+        if (!mDisplayedBitmaps.containsKey(imageView)) {
+            imageView.setImageBitmap(null);
+        }
+    }
+
+    /**
+     * @return the bitmap cached for the target size, or else one cached for a size that covers
+     * it, or null
+     */
+    @Nullable
+    private Bitmap getCachedBitmap(@NonNull final String url, final int targetWidth,
+            final int targetHeight) {
+        final Bitmap bitmap = mMemoryCache.get(getKey(url, targetWidth, targetHeight));
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        String coveringSize = null;
+        synchronized (mCachedSizes) {
+            final Set<String> sizes = mCachedSizes.get(url);
+            if (sizes == null) {
+                return null;
+            }
+            for (final String size : sizes) {
+                final int separator = size.indexOf('x');
+                final int width = Integer.parseInt(size.substring(0, separator));
+                final int height = Integer.parseInt(size.substring(separator + 1));
+                if (covers(width, targetWidth) && covers(height, targetHeight)) {
+                    coveringSize = size;
+                    break;
+                }
+            }
+        }
+        // Also marks the entry as recently used
+        return coveringSize == null ? null : mMemoryCache.get(getKey(url, coveringSize));
+    }
+
+    private void addCachedSize(@NonNull final String key) {
+        // The url itself may contain '#'
+        final int separator = key.lastIndexOf('#');
+        final String url = key.substring(0, separator);
+        synchronized (mCachedSizes) {
+            Set<String> sizes = mCachedSizes.get(url);
+            if (sizes == null) {
+                sizes = new HashSet<>(1);
+                mCachedSizes.put(url, sizes);
+            }
+            sizes.add(key.substring(separator + 1));
+        }
+    }
+
+    private void removeCachedSize(@NonNull final String key) {
+        // The url itself may contain '#'
+        final int separator = key.lastIndexOf('#');
+        final String url = key.substring(0, separator);
+        synchronized (mCachedSizes) {
+            final Set<String> sizes = mCachedSizes.get(url);
+            if (sizes == null) {
+                return;
+            }
+            sizes.remove(key.substring(separator + 1));
+            if (sizes.isEmpty()) {
+                mCachedSizes.remove(url);
+            }
+        }
+    }
+
+    /**
+     * @return true if an image decoded for the size is at least as large as one decoded for the
+     * target size. 0 does not limit the size.
+     */
+    private static boolean covers(final int size, final int targetSize) {
+        return size <= 0 || (targetSize > 0 && size >= targetSize);
+    }
+
+    /**
+     * @return the share of image loads served from the memory or disk cache, since the loader
+     * was created
+     */
+    public double getHitRate() {
+        return mTotals.getHitRate();
+    }
+
+    /**
+     * @return the number of bytes of bitmaps decoded since the loader was created
+     */
+    public long getDecodedBytes() {
+        return mTotals.getDecodedBytes();
+    }
+
+    /**
+     * @return the sessions to count a load in
+     */
+    @NonNull
+    private List<Session> getCountingSessions() {
+        final List<Session> sessions = new ArrayList<>(sOpenSessions.size() + 1);
+        sessions.add(mTotals);
+        sessions.addAll(sOpenSessions);
+        return sessions;
+    }
+
+    @WorkerThread
+    private void readFromDisk(@NonNull final String url) {
+        byte[] bytes = null;
+        if (NativeImageCacheService.initializeCache(mContext)) {
+            bytes = NativeImageCacheService.get(url);
+        }
+        if (bytes != null) {
+            for (final Session session : getCountingSessions()) {
+                session.mDiskHits.incrementAndGet();
+            }
+            decodeAll(url, bytes);
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                fetchFromNetwork(url);
+            }
+        });
+    }
+
+    private void fetchFromNetwork(@NonNull final String url) {
+        for (final Session session : getCountingSessions()) {
+            session.mNetworkFetches.incrementAndGet();
+        }
+        Networking.getRequestQueue(mContext).add(new NativeImageRequest(mContext, url,
+                new MoPubResponse.Listener<byte[]>() {
+                    @Override
+                    public void onResponse(@NonNull final byte[] bytes) {
+                        mDecodeExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                NativeImageCacheService.put(url, bytes);
+                                decodeAll(url, bytes);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onErrorResponse(@NonNull final MoPubNetworkError networkError) {
+                        final List<PendingDecode> pendingDecodes = new ArrayList<>();
+                        synchronized (NativeImageLoader.this) {
+                            for (final String key : removePendingFetch(url)) {
+                                pendingDecodes.add(mPendingDecodes.remove(key));
+                            }
+                        }
+                        for (final PendingDecode pendingDecode : pendingDecodes) {
+                            for (final Listener listener : pendingDecode.mListeners) {
+                                listener.onImageFailed(networkError);
+                            }
+                        }
+                    }
+                }));
+    }
+
+    /**
+     * Decodes the image once for each size it was requested at.
+     */
+    @WorkerThread
+    private void decodeAll(@NonNull final String url, @NonNull final byte[] bytes) {
+        final List<String> keys;
+        final List<PendingDecode> pendingDecodes = new ArrayList<>();
+        synchronized (this) {
+            keys = removePendingFetch(url);
+            for (final String key : keys) {
+                pendingDecodes.add(mPendingDecodes.get(key));
+            }
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            final String key = keys.get(i);
+            final PendingDecode pendingDecode = pendingDecodes.get(i);
+            final Bitmap bitmap = decode(bytes, pendingDecode.mTargetWidth,
+                    pendingDecode.mTargetHeight);
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(key, bitmap);
+                }
+            });
+        }
+    }
+
+    private void deliver(@NonNull final String key, @Nullable final Bitmap bitmap) {
+        final PendingDecode pendingDecode;
+        synchronized (this) {
+            pendingDecode = mPendingDecodes.remove(key);
+        }
+        if (pendingDecode == null) {
+            return;
+        }
+
+        if (bitmap == null) {
+            final MoPubNetworkError error = new MoPubNetworkError.Builder("Unable to decode image")
+                    .reason(MoPubNetworkError.Reason.BAD_BODY)
+                    .build();
+            for (final Listener listener : pendingDecode.mListeners) {
+                listener.onImageFailed(error);
+            }
+            return;
+        }
+
+        // Indexed first, so that an eviction during the put also removes it from the index
+        addCachedSize(key);
+        mMemoryCache.put(key, bitmap);
+        mBitmapBudgetManager.enforceBudget();
+        for (final Listener listener : pendingDecode.mListeners) {
+            listener.onImageLoaded(bitmap, false);
+        }
+    }
+
+    @NonNull
+    private List<String> removePendingFetch(@NonNull final String url) {
+        final List<String> keys = mPendingFetches.remove(url);
+        return keys == null ? new ArrayList<String>() : keys;
+    }
+
+    @Nullable
+    @WorkerThread
+    @VisibleForTesting
+    Bitmap decode(@NonNull final byte[] bytes, final int targetWidth, final int targetHeight) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                targetWidth, targetHeight);
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inBitmap = mBitmapBudgetManager.getReusableBitmap(
+                divideRoundingUp(options.outWidth, options.inSampleSize),
+                divideRoundingUp(options.outHeight, options.inSampleSize),
+                Bitmap.Config.ARGB_8888);
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        } catch (IllegalArgumentException e) {
+            // The reused bitmap did not fit after all
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        }
+
+        if (bitmap != null) {
+            for (final Session session : getCountingSessions()) {
+                session.mDecodedBytes.addAndGet(bitmap.getAllocationByteCount());
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return the largest power of two to divide the image size by, that keeps it at least as
+     * large as the target size
+     */
+    @VisibleForTesting
+    static int calculateInSampleSize(final int width, final int height,
+            final int targetWidth, final int targetHeight) {
+        if (targetWidth <= 0 && targetHeight <= 0) {
+            return 1;
+        }
+
+        int inSampleSize = 1;
+        while ((targetWidth <= 0 || width / (inSampleSize * 2) >= targetWidth)
+                && (targetHeight <= 0 || height / (inSampleSize * 2) >= targetHeight)) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Gives an evicted bitmap to the pool to decode into, unless a view still shows it or it was
+     * handed out to a load() listener.
+     */
+    private void addReusableBitmap(@NonNull final Bitmap bitmap) {
+        if (mDisplayedBitmaps.containsValue(bitmap)) {
+            return;
+        }
+        synchronized (mHandedOutBitmaps) {
+            if (mHandedOutBitmaps.contains(bitmap)) {
+                return;
+            }
+        }
+        mBitmapBudgetManager.putReusableBitmap(bitmap);
+    }
+
+    @NonNull
+    private static ExecutorService createDecodeExecutor() {
+        final ThreadPoolExecutor decodeExecutor = new ThreadPoolExecutor(DECODE_THREADS,
+                DECODE_THREADS, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "mopub-image-decode");
+                    }
+                });
+        decodeExecutor.allowCoreThreadTimeOut(true);
+        return decodeExecutor;
+    }
+
+    private static int divideRoundingUp(final int dividend, final int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    /**
+     * @return the laid out size, or else the size from the layout params, or else the fallback
+     */
+    private static int getTargetDimension(final int size, final int layoutParamsSize,
+            final int fallbackSize) {
+        if (size > 0) {
+            return size;
+        }
+        if (layoutParamsSize > 0 && layoutParamsSize != ViewGroup.LayoutParams.WRAP_CONTENT
+                && layoutParamsSize != ViewGroup.LayoutParams.MATCH_PARENT) {
+            return layoutParamsSize;
+        }
+        return fallbackSize;
+    }
+
+    @NonNull
+    private static String getKey(@NonNull final String url, final int targetWidth,
+            final int targetHeight) {
+        return getKey(url, targetWidth + "x" + targetHeight);
+    }
+
+    @NonNull
+    private static String getKey(@NonNull final String url, @NonNull final String size) {
+        return url + "#" + size;
+    }
+
+    @VisibleForTesting
+    public static void setInstanceForTesting(@Nullable final NativeImageLoader instance) {
+        sInstance = instance;
+    }
+}
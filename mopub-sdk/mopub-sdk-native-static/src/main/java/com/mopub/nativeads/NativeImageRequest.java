@@ -0,0 +1,56 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.nativeads;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.mopub.network.MoPubNetworkError;
+import com.mopub.network.MoPubNetworkResponse;
+import com.mopub.network.MoPubRequest;
+import com.mopub.network.MoPubResponse;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Downloads the encoded bytes of a native ad image. {@link NativeImageLoader} keeps them in its
+ * own disk cache, so the response is not also kept in the Volley cache.
+ */
+class NativeImageRequest extends MoPubRequest<byte[]> {
+    @NonNull private final MoPubResponse.Listener<byte[]> mListener;
+
+    NativeImageRequest(@NonNull final Context context,
+            @NonNull final String url,
+            @NonNull final MoPubResponse.Listener<byte[]> listener) {
+        super(context, url, url, Method.GET, listener);
+
+        mListener = listener;
+        setShouldCache(false);
+    }
+
+    @Override
+    protected void deliverResponse(@NonNull final byte[] response) {
+        mListener.onResponse(response);
+    }
+
+    @Override
+    protected MoPubResponse<byte[]> parseNetworkResponse(final MoPubNetworkResponse response) {
+        if (response == null) {
+            return MoPubResponse.error(new MoPubNetworkError.Builder("Empty network response").build());
+        }
+
+        if (response.getStatusCode() != HttpURLConnection.HTTP_OK) {
+            return MoPubResponse.error(new MoPubNetworkError.Builder().networkResponse(response).build());
+        }
+
+        final byte[] data = response.getData();
+        if (data == null || data.length == 0) {
+            return MoPubResponse.error(new MoPubNetworkError.Builder("Empty image response").build());
+        }
+
+        return MoPubResponse.success(data, response);
+    }
+}
@@ -10,6 +10,7 @@ import androidx.annotation.Nullable;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.nativeads.MoPubNativeAdPositioning.MoPubClientPositioning;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
@@ -18,7 +19,7 @@ import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
  * A data that represents placed ads in a {@link com.mopub.nativeads.MoPubStreamAdPlacer},
  * useful for tracking insertion and placed ad positions.
  *
- * It maintains four lists of integers
+ * It tracks four lists of integers
  * 1) Desired insertion positions - positions to place ads
  * 2) Desired original positions - original position for each ad to place
  * 2) Adjusted ad positions - ad positions that were placed
@@ -119,10 +120,20 @@ import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
  * originalPositions: {3}
  * adjustedPositions: {3}
  *
- * Some runtime guarantees in terms of number of insertion ads:
+ * These lists are not stored as such. Every ad position, desired or placed, keeps its place in
+ * one sequence ordered by original position. Two Fenwick trees over that sequence hold the
+ * differences between consecutive original positions, and which positions hold placed ads. The
+ * original position of an ad is then a prefix sum of the differences, and its insertion or
+ * adjusted position adds the number of placed ads before it. Inserting or removing an item
+ * changes a single difference, and placing or clearing an ad changes a single flag.
+ *
+ * Repeating positions are added as the list is used, so there is no limit on the number of ads.
+ *
+ * Some runtime guarantees in terms of number of ad positions:
  * - Finds the next or previous insertion position in O(logN)
  * - Maps from adjusted to original positions and vice versa in O(logN)
- * - Places an ad (moves positions from desired to placed) in O(N)
+ * - Places or clears an ad in O(logN)
+ * - Inserts, removes or moves an item in O(logN)
  */
 class PlacementData {
     /**
@@ -130,27 +141,37 @@ class PlacementData {
      */
     public final static int NOT_FOUND = -1;
 
-    // Cap the number of ads to avoid unrestrained memory usage. 200 allows the 5 positioning
-    // arrays to fit in less than 4K.
-    private final static int MAX_ADS = 200;
-
-    // Initialize all of these to their max capacity. This prevents garbage collection when
-    // reallocating the list, which causes noticeable stuttering when scrolling on some devices.
-    @NonNull private final int[] mDesiredOriginalPositions = new int[MAX_ADS];
-    @NonNull private final int[] mDesiredInsertionPositions = new int[MAX_ADS];
-    private int mDesiredCount = 0;
-    @NonNull private final int[] mOriginalAdPositions = new int[MAX_ADS];
-    @NonNull private final int[] mAdjustedAdPositions = new int[MAX_ADS];
-    @NonNull private final NativeAd[] mNativeAds = new NativeAd[MAX_ADS];
+    private final static int MIN_CAPACITY = 16;
+
+    /**
+     * The interval between repeating positions, or {@link MoPubClientPositioning#NO_REPEAT}.
+     */
+    private final int mRepeatingInterval;
+
+    @NonNull private final FenwickTree mOriginalPositionGaps;
+    @NonNull private final FenwickTree mPlacedFlags;
+    @NonNull private NativeAd[] mNativeAds;
     private int mPlacedCount = 0;
 
     /**
      * @param desiredInsertionPositions Insertion positions, expressed as original positions
+     * @param repeatingInterval The interval between the positions added after the given ones
      */
-    private PlacementData(@NonNull final int[] desiredInsertionPositions) {
-        mDesiredCount = Math.min(desiredInsertionPositions.length, MAX_ADS);
-        System.arraycopy(desiredInsertionPositions, 0, mDesiredInsertionPositions, 0, mDesiredCount);
-        System.arraycopy(desiredInsertionPositions, 0, mDesiredOriginalPositions, 0, mDesiredCount);
+    private PlacementData(@NonNull final int[] desiredInsertionPositions,
+            final int repeatingInterval) {
+        mRepeatingInterval = repeatingInterval;
+
+        final int capacity = Math.max(desiredInsertionPositions.length, MIN_CAPACITY);
+        mOriginalPositionGaps = new FenwickTree(capacity);
+        mPlacedFlags = new FenwickTree(capacity);
+        mNativeAds = new NativeAd[capacity];
+
+        int lastPosition = 0;
+        for (final int position : desiredInsertionPositions) {
+            mOriginalPositionGaps.append(position - lastPosition);
+            mPlacedFlags.append(0);
+            lastPosition = position;
+        }
     }
 
     @NonNull
@@ -158,37 +179,33 @@ class PlacementData {
         final List<Integer> fixed = adPositioning.getFixedPositions();
         final int interval = adPositioning.getRepeatingInterval();
 
-        final int size = (interval == MoPubClientPositioning.NO_REPEAT ? fixed.size() : MAX_ADS);
-        final int[] desiredInsertionPositions = new int[size];
+        final int[] desiredInsertionPositions = new int[fixed.size()];
 
         // Fixed positions are in terms of final positions. Calculate current insertion positions
         // by decrementing numAds at each index.
         int numAds = 0;
-        int lastPos = 0;
         for (final Integer position : fixed) {
-            lastPos = position - numAds;
-            desiredInsertionPositions[numAds++] = lastPos;
+            desiredInsertionPositions[numAds] = position - numAds;
+            numAds++;
         }
 
-        // Expand the repeating positions, if there are any
-        while (numAds < size) {
-            lastPos = lastPos + interval - 1;
-            desiredInsertionPositions[numAds++] = lastPos;
-        }
-        return new PlacementData(desiredInsertionPositions);
+        // Repeating positions follow the fixed ones, and are added as they are needed
+        return new PlacementData(desiredInsertionPositions, interval);
     }
 
     @NonNull
     static PlacementData empty() {
-        return new PlacementData(new int[] {});
+        return new PlacementData(new int[] {}, MoPubClientPositioning.NO_REPEAT);
     }
 
     /**
      * Whether the given position should be an ad.
      */
     boolean shouldPlaceAd(final int position) {
-        final int index = binarySearch(mDesiredInsertionPositions, 0, mDesiredCount, position);
-        return index >= 0;
+        addRepeatingPositionsThrough(position);
+
+        final int index = findFirstDesiredFrom(findFirstCombinedAtLeast(position));
+        return index < mOriginalPositionGaps.size() && getPositionAt(index) == position;
     }
 
     /**
@@ -196,12 +213,13 @@ class PlacementData {
      * more ads.
      */
     int nextInsertionPosition(final int position) {
-        final int index = binarySearchGreaterThan(
-                mDesiredInsertionPositions, mDesiredCount, position);
-        if (index == mDesiredCount) {
+        addRepeatingPositionsThrough(position);
+
+        final int index = findFirstDesiredFrom(findFirstCombinedAtLeast(position + 1));
+        if (index == mOriginalPositionGaps.size()) {
             return NOT_FOUND;
         }
-        return mDesiredInsertionPositions[index];
+        return getPositionAt(index);
     }
 
     /**
@@ -209,67 +227,38 @@ class PlacementData {
      * are no more ads.
      */
     int previousInsertionPosition(final int position) {
-        final int index = binarySearchFirstEquals(
-                mDesiredInsertionPositions,  mDesiredCount, position);
-        if (index == 0) {
+        addRepeatingPositionsThrough(position);
+
+        final int index = findLastDesiredBefore(findFirstCombinedAtLeast(position));
+        if (index == NOT_FOUND) {
             return NOT_FOUND;
         }
-        return mDesiredInsertionPositions[index - 1];
+        return getPositionAt(index);
     }
 
     /**
      * Sets ad data at the given position.
      */
     void placeAd(final int adjustedPosition, final NativeAd nativeAd) {
+        addRepeatingPositionsThrough(adjustedPosition);
+
         // See if this is a insertion ad
-        final int desiredIndex = binarySearchFirstEquals(
-                mDesiredInsertionPositions, mDesiredCount, adjustedPosition);
-        if (desiredIndex == mDesiredCount
-                || mDesiredInsertionPositions[desiredIndex] != adjustedPosition) {
+        final int index = findFirstDesiredFrom(findFirstCombinedAtLeast(adjustedPosition));
+        if (index == mOriginalPositionGaps.size() || getPositionAt(index) != adjustedPosition) {
             MoPubLog.log(CUSTOM, "Attempted to insert an ad at an invalid position");
             return;
         }
 
-        // Add to placed array
-        final int originalPosition = mDesiredOriginalPositions[desiredIndex];
-        int placeIndex = binarySearchGreaterThan(
-                mOriginalAdPositions, mPlacedCount, originalPosition);
-        if (placeIndex < mPlacedCount) {
-            final int num = mPlacedCount - placeIndex;
-            System.arraycopy(mOriginalAdPositions, placeIndex,
-                    mOriginalAdPositions, placeIndex + 1, num);
-            System.arraycopy(mAdjustedAdPositions, placeIndex,
-                    mAdjustedAdPositions, placeIndex + 1, num);
-            System.arraycopy(mNativeAds, placeIndex, mNativeAds, placeIndex + 1, num);
-        }
-        mOriginalAdPositions[placeIndex] = originalPosition;
-        mAdjustedAdPositions[placeIndex] = adjustedPosition;
-        mNativeAds[placeIndex] = nativeAd;
+        mPlacedFlags.add(index, 1);
+        mNativeAds[index] = nativeAd;
         mPlacedCount++;
-
-        // Remove desired index
-        final int num = mDesiredCount - desiredIndex - 1;
-        System.arraycopy(mDesiredInsertionPositions, desiredIndex + 1,
-                mDesiredInsertionPositions, desiredIndex, num);
-        System.arraycopy(mDesiredOriginalPositions, desiredIndex + 1,
-                mDesiredOriginalPositions, desiredIndex, num);
-        mDesiredCount--;
-
-        // Increment adjusted positions
-        for (int i = desiredIndex; i < mDesiredCount; ++i) {
-            mDesiredInsertionPositions[i]++;
-        }
-        for (int i = placeIndex + 1; i < mPlacedCount; ++i) {
-            mAdjustedAdPositions[i]++;
-        }
     }
 
     /**
      * @see {@link com.mopub.nativeads.MoPubStreamAdPlacer#isAd(int)}
      */
     boolean isPlacedAd(final int position) {
-        final int index = binarySearch(mAdjustedAdPositions, 0, mPlacedCount, position);
-        return index >= 0;
+        return findPlacedAd(position) != NOT_FOUND;
     }
 
     /**
@@ -278,8 +267,8 @@ class PlacementData {
      */
     @Nullable
     NativeAd getPlacedAd(final int position) {
-        final int index = binarySearch(mAdjustedAdPositions, 0, mPlacedCount, position);
-        if (index < 0) {
+        final int index = findPlacedAd(position);
+        if (index == NOT_FOUND) {
             return null;
         }
         return mNativeAds[index];
@@ -292,7 +281,9 @@ class PlacementData {
     @NonNull
     int[] getPlacedAdPositions() {
         int[] positions = new int[mPlacedCount];
-        System.arraycopy(mAdjustedAdPositions, 0, positions, 0, mPlacedCount);
+        for (int i = 0; i < mPlacedCount; ++i) {
+            positions[i] = getPositionAt(findNthPlaced(i + 1));
+        }
         return positions;
     }
 
@@ -300,24 +291,25 @@ class PlacementData {
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#getOriginalPosition(int)
      */
     int getOriginalPosition(final int position) {
-        final int index = binarySearch(mAdjustedAdPositions, 0, mPlacedCount, position);
+        final int index = findFirstCombinedAtLeast(position + 1);
+        final int placedIndex = findFirstPlacedFrom(index);
 
-        // No match, ~index is the number of ads before this pos.
-        if (index < 0) {
-            return position - ~index;
+        // This is an ad - there is no original position
+        if (placedIndex < mOriginalPositionGaps.size() && getPositionAt(placedIndex) == position) {
+            return NOT_FOUND;
         }
 
-        // This is an ad - there is no original position
-        return NOT_FOUND;
+        // The ads before index are the ones before this position.
+        return position - mPlacedFlags.prefixSum(index);
     }
 
     /**
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#getAdjustedPosition(int)
      */
     int getAdjustedPosition(final int originalPosition) {
-        // This is an ad. Since binary search doesn't properly handle dups, find the first non-ad.
-        int index = binarySearchGreaterThan(mOriginalAdPositions, mPlacedCount, originalPosition);
-        return originalPosition + index;
+        // Ads share the original position of the item after them, so count those as well.
+        final int index = findFirstOriginalAtLeast(originalPosition + 1);
+        return originalPosition + mPlacedFlags.prefixSum(index);
     }
 
     /**
@@ -349,62 +341,20 @@ class PlacementData {
      * positions.
      */
     int clearAdsInRange(final int adjustedStartRange, final int adjustedEndRange) {
-        // Temporary arrays to store the cleared positions. Using temporary arrays makes it
-        // easy to debug what positions are being cleared.
-        int[] clearOriginalPositions = new int[mPlacedCount];
-        int[] clearAdjustedPositions = new int[mPlacedCount];
-        int clearCount = 0;
-
-        // Add to the clear position arrays any positions that fall inside
-        // [adjustedRangeStart, adjustedRangeEnd).
-        for (int i = 0; i < mPlacedCount; ++i) {
-            int originalPosition = mOriginalAdPositions[i];
-            int adjustedPosition = mAdjustedAdPositions[i];
-            if (adjustedStartRange <= adjustedPosition && adjustedPosition < adjustedEndRange) {
-                // When copying adjusted positions, subtract the current clear count because there
-                // is no longer an ad incrementing the desired insertion position.
-                clearOriginalPositions[clearCount] = originalPosition;
-                clearAdjustedPositions[clearCount] = adjustedPosition - clearCount;
-
-                // Destroying and nulling out the ad objects to avoids a memory leak.
-                mNativeAds[i].destroy();
-                mNativeAds[i] = null;
-                clearCount++;
-            } else if (clearCount > 0) {
-                // The position is not in the range; shift it by the number of cleared ads.
-                int newIndex = i - clearCount;
-                mOriginalAdPositions[newIndex] = originalPosition;
-                mAdjustedAdPositions[newIndex] = adjustedPosition - clearCount;
-                mNativeAds[newIndex] = mNativeAds[i];
-            }
-        }
-
-        // If we have cleared nothing, this method was a no-op.
-        if (clearCount == 0) {
-            return 0;
-        }
-
-        // Modify the desired positions arrays in order to make space to put back the
-        // cleared ad positions. For example if the desired array was {1, 10,
-        // 15} and we need to insert {3, 7} we'll shift the desired array to be {1, ?, ? , 10, 15}.
-        int firstCleared = clearAdjustedPositions[0];
-        int desiredIndex = binarySearchFirstEquals(
-                mDesiredInsertionPositions, mDesiredCount, firstCleared);
-        for (int i = mDesiredCount - 1; i >= desiredIndex; --i) {
-            mDesiredOriginalPositions[i + clearCount] = mDesiredOriginalPositions[i];
-            mDesiredInsertionPositions[i + clearCount] = mDesiredInsertionPositions[i] - clearCount;
+        final int firstCleared = countPlacedAdsBefore(adjustedStartRange);
+        final int lastCleared = countPlacedAdsBefore(adjustedEndRange);
+
+        // Clear from the end, so that the ads not yet cleared keep their rank.
+        for (int rank = lastCleared; rank > firstCleared; --rank) {
+            final int index = findNthPlaced(rank);
+
+            // Destroying and nulling out the ad objects to avoids a memory leak.
+            mNativeAds[index].destroy();
+            mNativeAds[index] = null;
+            mPlacedFlags.add(index, -1);
+            mPlacedCount--;
         }
-
-        // Copy the cleared ad positions into the desired arrays.
-        for (int i = 0; i < clearCount; ++i) {
-            mDesiredOriginalPositions[desiredIndex + i] = clearOriginalPositions[i];
-            mDesiredInsertionPositions[desiredIndex + i] = clearAdjustedPositions[i];
-        }
-
-        // Update the array counts, and we're done.
-        mDesiredCount = mDesiredCount + clearCount;
-        mPlacedCount = mPlacedCount - clearCount;
-        return clearCount;
+        return Math.max(0, lastCleared - firstCleared);
     }
 
     /**
@@ -416,28 +366,19 @@ class PlacementData {
             return;
         }
 
-        clearAdsInRange(0, mAdjustedAdPositions[mPlacedCount - 1] + 1);
+        clearAdsInRange(0, getPositionAt(findNthPlaced(mPlacedCount)) + 1);
     }
 
     /**
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#insertItem(int)
      */
     void insertItem(final int originalPosition) {
+        addRepeatingPositionsAfterOriginal(originalPosition);
 
-        // Increment desired arrays.
-        int indexToIncrement = binarySearchFirstEquals(
-                mDesiredOriginalPositions, mDesiredCount, originalPosition);
-        for (int i = indexToIncrement; i < mDesiredCount; ++i) {
-            mDesiredOriginalPositions[i]++;
-            mDesiredInsertionPositions[i]++;
-        }
-
-        // Increment placed arrays.
-        indexToIncrement = binarySearchFirstEquals(
-                mOriginalAdPositions, mPlacedCount, originalPosition);
-        for (int i = indexToIncrement; i < mPlacedCount; ++i) {
-            mOriginalAdPositions[i]++;
-            mAdjustedAdPositions[i]++;
+        // Increment the first ad at or after the position, which moves every ad after it too.
+        final int index = findFirstOriginalAtLeast(originalPosition);
+        if (index < mOriginalPositionGaps.size()) {
+            mOriginalPositionGaps.add(index, 1);
         }
     }
 
@@ -445,25 +386,15 @@ class PlacementData {
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#removeItem(int)
      */
     void removeItem(final int originalPosition) {
+        addRepeatingPositionsAfterOriginal(originalPosition);
+
         // When removing items, we only decrement ad position values *greater* than the original
         // position we're removing. The original position associated with an ad is the original
         // position of the first content item after the ad, so we shouldn't change the original
         // position of an ad that matches the original position removed.
-        int indexToDecrement = binarySearchGreaterThan(
-                mDesiredOriginalPositions, mDesiredCount, originalPosition);
-
-        // Decrement desired arrays.
-        for (int i = indexToDecrement; i < mDesiredCount; ++i) {
-            mDesiredOriginalPositions[i]--;
-            mDesiredInsertionPositions[i]--;
-        }
-
-        indexToDecrement = binarySearchGreaterThan(
-                mOriginalAdPositions, mPlacedCount, originalPosition);
-
-        for (int i = indexToDecrement; i < mPlacedCount; ++i) {
-            mOriginalAdPositions[i]--;
-            mAdjustedAdPositions[i]--;
+        final int index = findFirstOriginalAtLeast(originalPosition + 1);
+        if (index < mOriginalPositionGaps.size()) {
+            mOriginalPositionGaps.add(index, -1);
         }
     }
 
@@ -475,59 +406,210 @@ class PlacementData {
         insertItem(newPosition);
     }
 
-    private static int binarySearchFirstEquals(int[] array, int count, int value) {
-        int index = binarySearch(array, 0, count, value);
+    /**
+     * @return the insertion position of a desired ad, or the adjusted position of a placed ad
+     */
+    private int getPositionAt(final int index) {
+        return mOriginalPositionGaps.prefixSum(index + 1) + mPlacedFlags.prefixSum(index);
+    }
 
-        // If not found, binarySearch returns the 2's complement of the index of the nearest
-        // value higher than the target value, which is also the insertion index.
-        if (index < 0) {
-            return ~index;
+    /**
+     * @return the index of the placed ad at the given adjusted position, or NOT_FOUND
+     */
+    private int findPlacedAd(final int position) {
+        final int index = findFirstPlacedFrom(findFirstCombinedAtLeast(position + 1));
+        if (index < mOriginalPositionGaps.size() && getPositionAt(index) == position) {
+            return index;
         }
+        return NOT_FOUND;
+    }
 
-        int duplicateValue = array[index];
-        while (index >= 0 && array[index] == duplicateValue) {
-            index--;
-        }
+    private int countPlacedAdsBefore(final int adjustedPosition) {
+        return mPlacedFlags.prefixSum(findFirstCombinedAtLeast(adjustedPosition + 1));
+    }
+
+    private int findFirstDesiredFrom(final int index) {
+        return findNthDesired(index - mPlacedFlags.prefixSum(index) + 1);
+    }
+
+    private int findLastDesiredBefore(final int index) {
+        final int desiredCount = index - mPlacedFlags.prefixSum(index);
+        return desiredCount == 0 ? NOT_FOUND : findNthDesired(desiredCount);
+    }
 
-        return index + 1;
+    private int findFirstPlacedFrom(final int index) {
+        return findNthPlaced(mPlacedFlags.prefixSum(index) + 1);
     }
 
-    private static int binarySearchGreaterThan(int[] array, int count, int value) {
-        int index = binarySearch(array, 0, count, value);
+    /**
+     * Finds the first index at which the original position plus the number of placed ads up to
+     * and including the index reaches the value. That sum is the insertion position of a desired
+     * ad, and one more than the adjusted position of a placed ad.
+     *
+     * @return the index, or the number of ad positions if there is none
+     */
+    private int findFirstCombinedAtLeast(final int value) {
+        final int[] gaps = mOriginalPositionGaps.mTree;
+        final int[] placedFlags = mPlacedFlags.mTree;
+        final int size = mOriginalPositionGaps.size();
+
+        int index = 0;
+        int sum = 0;
+        for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+            final int next = index + step;
+            if (next <= size && sum + gaps[next] + placedFlags[next] < value) {
+                index = next;
+                sum += gaps[next] + placedFlags[next];
+            }
+        }
+        return index;
+    }
 
-        // If not found, binarySearch returns the 2's complement of the index of the nearest
-        // value higher than the target value, which is also the insertion index.
-        if (index < 0) {
-            return ~index;
+    /**
+     * @return the first index with at least the given original position, or the number of ad
+     * positions if there is none
+     */
+    private int findFirstOriginalAtLeast(final int originalPosition) {
+        final int[] gaps = mOriginalPositionGaps.mTree;
+        final int size = mOriginalPositionGaps.size();
+
+        int index = 0;
+        int sum = 0;
+        for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+            final int next = index + step;
+            if (next <= size && sum + gaps[next] < originalPosition) {
+                index = next;
+                sum += gaps[next];
+            }
         }
+        return index;
+    }
 
-        int duplicateValue = array[index];
-        while (index < count && array[index] == duplicateValue) {
-            index++;
+    /**
+     * @param n counts from 1
+     * @return the index of the nth placed ad, or the number of ad positions if there is none
+     */
+    private int findNthPlaced(final int n) {
+        final int[] placedFlags = mPlacedFlags.mTree;
+        final int size = mPlacedFlags.size();
+
+        int index = 0;
+        int count = 0;
+        for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+            final int next = index + step;
+            if (next <= size && count + placedFlags[next] < n) {
+                index = next;
+                count += placedFlags[next];
+            }
         }
+        return index;
+    }
 
+    /**
+     * @param n counts from 1
+     * @return the index of the nth desired ad, or the number of ad positions if there is none
+     */
+    private int findNthDesired(final int n) {
+        final int[] placedFlags = mPlacedFlags.mTree;
+        final int size = mPlacedFlags.size();
+
+        int index = 0;
+        int count = 0;
+        for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+            final int next = index + step;
+            if (next > size) {
+                continue;
+            }
+            // Each tree node covers step positions, of which the rest are desired
+            final int desired = step - placedFlags[next];
+            if (count + desired < n) {
+                index = next;
+                count += desired;
+            }
+        }
         return index;
     }
 
     /**
-     * Copied from Arrays.java, which isn't available until Gingerbread.
+     * Adds repeating positions until a desired one comes after the given insertion position.
+     */
+    private void addRepeatingPositionsThrough(final int position) {
+        if (mRepeatingInterval == MoPubClientPositioning.NO_REPEAT) {
+            return;
+        }
+
+        while (true) {
+            final int size = mOriginalPositionGaps.size();
+            if (size > 0 && mPlacedFlags.prefixSum(size) == mPlacedFlags.prefixSum(size - 1)
+                    && getPositionAt(size - 1) > position) {
+                return;
+            }
+            addRepeatingPosition();
+        }
+    }
+
+    /**
+     * Adds repeating positions until one comes after the given original position, so that
+     * changes to the items reach the positions added later.
+     */
+    private void addRepeatingPositionsAfterOriginal(final int originalPosition) {
+        if (mRepeatingInterval == MoPubClientPositioning.NO_REPEAT) {
+            return;
+        }
+
+        while (mOriginalPositionGaps.size() == 0
+                || mOriginalPositionGaps.prefixSum(mOriginalPositionGaps.size()) <= originalPosition) {
+            addRepeatingPosition();
+        }
+    }
+
+    private void addRepeatingPosition() {
+        mOriginalPositionGaps.append(mRepeatingInterval - 1);
+        mPlacedFlags.append(0);
+        if (mNativeAds.length < mPlacedFlags.size()) {
+            mNativeAds = Arrays.copyOf(mNativeAds, mNativeAds.length * 2);
+        }
+    }
+
+    /**
+     * A Fenwick tree of ints, which can be appended to.
      */
-    private static int binarySearch(int[] array, int startIndex, int endIndex, int value) {
-        int lo = startIndex;
-        int hi = endIndex - 1;
-
-        while (lo <= hi) {
-            int mid = (lo + hi) >>> 1;
-            int midVal = array[mid];
-
-            if (midVal < value) {
-                lo = mid + 1;
-            } else if (midVal > value) {
-                hi = mid - 1;
-            } else {
-                return mid;  // value found
+    private static class FenwickTree {
+        // Counts from 1. Node i holds the sum of the (i & -i) values ending at i.
+        @NonNull private int[] mTree;
+        private int mSize;
+
+        FenwickTree(final int capacity) {
+            mTree = new int[capacity + 1];
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        void append(final int value) {
+            if (mSize + 1 == mTree.length) {
+                mTree = Arrays.copyOf(mTree, mTree.length * 2);
+            }
+            final int node = ++mSize;
+            mTree[node] = value + prefixSum(node - 1) - prefixSum(node - (node & -node));
+        }
+
+        void add(final int index, final int delta) {
+            for (int node = index + 1; node <= mSize; node += node & -node) {
+                mTree[node] += delta;
+            }
+        }
+
+        /**
+         * @return the sum of the first count values
+         */
+        int prefixSum(final int count) {
+            int sum = 0;
+            for (int node = count; node > 0; node -= node & -node) {
+                sum += mTree[node];
             }
+            return sum;
         }
-        return ~lo;  // value not present
     }
 }
@@ -0,0 +1,218 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.nativeads;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.BatchingListUpdateCallback;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.mopub.common.Preconditions;
+
+/**
+ * Computes the fine-grained changes to a stream with ads when its content changes while the ads
+ * keep their positions, so that a RecyclerView only rebinds the rows that actually changed.
+ *
+ * Each change is reported in two steps. First the content change is applied as if the ads moved
+ * with the content. Then every ad that ended up in the wrong place is moved back to its position,
+ * and ads that start or stop being followed by content are inserted or removed. Ads that move
+ * are not rebound.
+ *
+ * Ad positions are given as returned by {@link PlacementData#getPlacedAdPositions()}. An ad is
+ * part of the stream only if at least one content item follows it.
+ */
+class PlacementDiff {
+    private PlacementDiff() {
+    }
+
+    /**
+     * Reports that {@code itemCount} content items were inserted at {@code originalStart}.
+     *
+     * @param adPositions The placed ad positions, which are the same before and after the change.
+     * @param originalCount The number of content items after the change.
+     */
+    static void dispatchItemRangeInserted(@NonNull final int[] adPositions, final int originalCount,
+            final int originalStart, final int itemCount,
+            @NonNull final ListUpdateCallback callback) {
+        Preconditions.checkNotNull(adPositions);
+        Preconditions.checkNotNull(callback);
+
+        final int[] contentBefore = getContentBefore(adPositions);
+        final int oldOriginalCount = originalCount - itemCount;
+        final int oldVisibleAds = countLessThan(contentBefore, oldOriginalCount);
+
+        // Content inserted right after an ad goes after it, so that the ad doesn't have to move
+        final int[] contentBeforeWithAds = new int[oldVisibleAds];
+        for (int i = 0; i < oldVisibleAds; i++) {
+            contentBeforeWithAds[i] = contentBefore[i] <= originalStart
+                    ? contentBefore[i]
+                    : contentBefore[i] + itemCount;
+        }
+
+        final BatchingListUpdateCallback batchingCallback = new BatchingListUpdateCallback(callback);
+        batchingCallback.onInserted(originalStart
+                + Math.min(countLessThan(contentBefore, originalStart + 1), oldVisibleAds),
+                itemCount);
+        dispatchAdChanges(contentBeforeWithAds, contentBefore,
+                countLessThan(contentBefore, originalCount), batchingCallback);
+        batchingCallback.dispatchLastEvent();
+    }
+
+    /**
+     * Reports that {@code itemCount} content items were removed from {@code originalStart}.
+     *
+     * @param adPositions The placed ad positions, which are the same before and after the change.
+     * @param originalCount The number of content items after the change.
+     */
+    static void dispatchItemRangeRemoved(@NonNull final int[] adPositions, final int originalCount,
+            final int originalStart, final int itemCount,
+            @NonNull final ListUpdateCallback callback) {
+        Preconditions.checkNotNull(adPositions);
+        Preconditions.checkNotNull(callback);
+
+        final int[] contentBefore = getContentBefore(adPositions);
+        final int oldOriginalCount = originalCount + itemCount;
+        final int oldVisibleAds = countLessThan(contentBefore, oldOriginalCount);
+        final int originalEnd = originalStart + itemCount;
+
+        final int[] contentBeforeWithAds = new int[oldVisibleAds];
+        for (int i = 0; i < oldVisibleAds; i++) {
+            if (contentBefore[i] <= originalStart) {
+                contentBeforeWithAds[i] = contentBefore[i];
+            } else if (contentBefore[i] <= originalEnd) {
+                contentBeforeWithAds[i] = originalStart;
+            } else {
+                contentBeforeWithAds[i] = contentBefore[i] - itemCount;
+            }
+        }
+
+        final BatchingListUpdateCallback batchingCallback = new BatchingListUpdateCallback(callback);
+        // Ads between the removed items stay, so remove the runs of content between them, last
+        // run first
+        int runEnd = originalEnd;
+        for (int i = oldVisibleAds - 1; i >= 0 && contentBefore[i] > originalStart; i--) {
+            if (contentBefore[i] < runEnd) {
+                batchingCallback.onRemoved(contentBefore[i] + i + 1, runEnd - contentBefore[i]);
+                runEnd = contentBefore[i];
+            }
+        }
+        batchingCallback.onRemoved(
+                originalStart + countLessThan(contentBefore, originalStart + 1),
+                runEnd - originalStart);
+        dispatchAdChanges(contentBeforeWithAds, contentBefore,
+                countLessThan(contentBefore, originalCount), batchingCallback);
+        batchingCallback.dispatchLastEvent();
+    }
+
+    /**
+     * Reports that the content item at {@code fromOriginal} was moved to {@code toOriginal}.
+     *
+     * @param adPositions The placed ad positions, which are the same before and after the change.
+     * @param originalCount The number of content items.
+     */
+    static void dispatchItemMoved(@NonNull final int[] adPositions, final int originalCount,
+            final int fromOriginal, final int toOriginal,
+            @NonNull final ListUpdateCallback callback) {
+        Preconditions.checkNotNull(adPositions);
+        Preconditions.checkNotNull(callback);
+
+        if (fromOriginal == toOriginal) {
+            return;
+        }
+
+        final int[] contentBefore = getContentBefore(adPositions);
+        final int visibleAds = countLessThan(contentBefore, originalCount);
+
+        // Take the item out, then put it back in after any ad at its new position
+        final int[] contentBeforeWithAds = new int[visibleAds];
+        int adsBeforeTo = 0;
+        for (int i = 0; i < visibleAds; i++) {
+            int withoutItem = contentBefore[i];
+            if (withoutItem == fromOriginal + 1) {
+                withoutItem = fromOriginal;
+            } else if (withoutItem > fromOriginal + 1) {
+                withoutItem--;
+            }
+            if (withoutItem <= toOriginal) {
+                adsBeforeTo++;
+                contentBeforeWithAds[i] = withoutItem;
+            } else {
+                contentBeforeWithAds[i] = withoutItem + 1;
+            }
+        }
+
+        final BatchingListUpdateCallback batchingCallback = new BatchingListUpdateCallback(callback);
+        batchingCallback.onMoved(
+                fromOriginal + countLessThan(contentBefore, fromOriginal + 1),
+                toOriginal + adsBeforeTo);
+        dispatchAdChanges(contentBeforeWithAds, contentBefore, visibleAds, batchingCallback);
+        batchingCallback.dispatchLastEvent();
+    }
+
+    /**
+     * Moves the ads from where the content change left them back to their positions. Ads keep
+     * their order throughout, so an ad's position is always the content before it plus its index.
+     *
+     * @param contentBeforeWithAds The content before each ad in the stream after the content
+     * change, for every ad in that stream.
+     * @param contentBefore The content before each ad at its position.
+     * @param visibleAds The number of ads in the stream once the change is done.
+     */
+    private static void dispatchAdChanges(@NonNull final int[] contentBeforeWithAds,
+            @NonNull final int[] contentBefore, final int visibleAds,
+            @NonNull final ListUpdateCallback callback) {
+        final int keptAds = Math.min(contentBeforeWithAds.length, visibleAds);
+
+        // Ads no longer followed by content are last, so removing them doesn't shift other ads
+        for (int i = contentBeforeWithAds.length - 1; i >= keptAds; i--) {
+            callback.onRemoved(contentBeforeWithAds[i] + i, 1);
+        }
+
+        // Move ads up in order and then ads down in reverse order, so that they never pass each
+        // other
+        for (int i = 0; i < keptAds; i++) {
+            if (contentBeforeWithAds[i] > contentBefore[i]) {
+                callback.onMoved(contentBeforeWithAds[i] + i, contentBefore[i] + i);
+            }
+        }
+        for (int i = keptAds - 1; i >= 0; i--) {
+            if (contentBeforeWithAds[i] < contentBefore[i]) {
+                callback.onMoved(contentBeforeWithAds[i] + i, contentBefore[i] + i);
+            }
+        }
+
+        for (int i = keptAds; i < visibleAds; i++) {
+            callback.onInserted(contentBefore[i] + i, 1);
+        }
+    }
+
+    /**
+     * @return the number of content items before each ad
+     */
+    @NonNull
+    private static int[] getContentBefore(@NonNull final int[] adPositions) {
+        final int[] contentBefore = new int[adPositions.length];
+        for (int i = 0; i < adPositions.length; i++) {
+            contentBefore[i] = adPositions[i] - i;
+        }
+        return contentBefore;
+    }
+
+    /**
+     * @return the number of values less than {@code value} in the sorted {@code values}
+     */
+    private static int countLessThan(@NonNull final int[] values, final int value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
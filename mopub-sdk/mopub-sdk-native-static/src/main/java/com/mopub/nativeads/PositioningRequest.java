@@ -17,8 +17,7 @@ import com.mopub.network.MoPubNetworkUtils;
 import com.mopub.network.MoPubRequest;
 import com.mopub.network.MoPubRequestUtils;
 import com.mopub.network.MoPubResponse;
-import com.mopub.network.MoPubUrlRewriter;
-import com.mopub.network.Networking;
+import com.mopub.network.RetryPolicyEngine;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -52,6 +51,7 @@ public class PositioningRequest extends MoPubRequest<MoPubClientPositioning> {
                 listener);
 
         mListener = listener;
+        setEndpoint(RetryPolicyEngine.Endpoint.POSITIONING);
     }
 
     @Override
@@ -153,12 +153,10 @@ public class PositioningRequest extends MoPubRequest<MoPubClientPositioning> {
     @Nullable
     @Override
     protected Map<String, String> getParams() {
-        MoPubUrlRewriter rewriter = Networking.getUrlRewriter();
-        if (!MoPubRequestUtils.isMoPubRequest(getUrl()) || rewriter == null) {
+        if (!MoPubRequestUtils.isMoPubRequest(getUrl())) {
             return null;
         }
-
-        return MoPubNetworkUtils.convertQueryToMap(rewriter.rewriteUrl(getOriginalUrl()));
+        return super.getParams();
     }
 
     @NonNull
@@ -169,14 +167,4 @@ public class PositioningRequest extends MoPubRequest<MoPubClientPositioning> {
         }
         return super.getBodyContentType();
     }
-
-    @Override
-    public byte[] getBody() {
-        final String body = !MoPubRequestUtils.isMoPubRequest(getUrl()) ? null
-                : MoPubNetworkUtils.generateBodyFromParams(getParams());
-        if (body == null) {
-            return null;
-        }
-        return body.getBytes();
-    }
 }
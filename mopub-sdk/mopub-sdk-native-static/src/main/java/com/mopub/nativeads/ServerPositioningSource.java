@@ -20,6 +20,7 @@ import com.mopub.network.MoPubNetworkError;
 import com.mopub.network.MoPubRequestQueue;
 import com.mopub.network.MoPubResponse;
 import com.mopub.network.Networking;
+import com.mopub.network.RetryPolicyEngine;
 
 import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
 import static com.mopub.common.logging.MoPubLog.SdkLogEvent.ERROR_WITH_THROWABLE;
@@ -144,9 +145,10 @@ class ServerPositioningSource implements PositioningSource {
     }
 
     private void handleFailure() {
+        // The engine's backoff stops growing at its maximum delay, so give up based on the
+        // uncapped exponential delay instead.
         double multiplier = Math.pow(EXPONENTIAL_BACKOFF_FACTOR, mRetryCount + 1);
-        int delay = (int) (DEFAULT_RETRY_TIME_MILLISECONDS * multiplier);
-        if (delay >= mMaximumRetryTimeMillis) {
+        if (DEFAULT_RETRY_TIME_MILLISECONDS * multiplier >= mMaximumRetryTimeMillis) {
             MoPubLog.log(CUSTOM, "Error downloading positioning information");
             if (mListener != null) {
                 mListener.onFailed();
@@ -155,6 +157,8 @@ class ServerPositioningSource implements PositioningSource {
             return;
         }
 
+        final long delay = RetryPolicyEngine.getInstance().getRetryDelayMs(
+                RetryPolicyEngine.Endpoint.POSITIONING, mRetryCount);
         mRetryCount++;
         mRetryHandler.postDelayed(mRetryRunnable, delay);
     }
@@ -0,0 +1,49 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Connection timings for a [MoPubRequestQueue]. Time to first byte runs from the start of a
+ * request to the arrival of its response headers, so it includes any DNS lookup, TCP connect and
+ * TLS handshake the request had to do. Values are -1 until they have been measured.
+ */
+class ConnectionStats {
+    @Volatile
+    var dnsResolutionMs: Long = -1
+        internal set
+    @Volatile
+    var warmUpTimeToFirstByteMs: Long = -1
+        internal set
+    @Volatile
+    var firstRequestTimeToFirstByteMs: Long = -1
+        private set
+
+    private val requestCount = AtomicLong()
+    private val totalTimeToFirstByteMs = AtomicLong()
+
+    /**
+     * The number of requests sent by the request queue. Warm-up requests are not counted.
+     */
+    fun getRequestCount() = requestCount.get()
+
+    fun getAverageTimeToFirstByteMs(): Long {
+        val count = requestCount.get()
+        return if (count == 0L) -1 else totalTimeToFirstByteMs.get() / count
+    }
+
+    /**
+     * @return true if this was the first request
+     */
+    internal fun recordRequest(timeToFirstByteMs: Long): Boolean {
+        totalTimeToFirstByteMs.addAndGet(timeToFirstByteMs)
+        if (requestCount.getAndIncrement() == 0L) {
+            firstRequestTimeToFirstByteMs = timeToFirstByteMs
+            return true
+        }
+        return false
+    }
+}
@@ -0,0 +1,88 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network
+
+import android.os.AsyncTask
+import android.os.SystemClock
+
+import com.mopub.common.Constants
+import com.mopub.common.logging.MoPubLog
+import com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM
+import com.mopub.volley.AuthFailureError
+import com.mopub.volley.NetworkResponse
+import com.mopub.volley.Request
+import com.mopub.volley.Response
+import com.mopub.volley.toolbox.BaseHttpStack
+
+import java.io.IOException
+import java.net.UnknownHostException
+import java.util.concurrent.Executor
+
+/**
+ * Resolves a host and sends a HEAD request to it through the request queue's HTTP stack. The
+ * response is read to the end, which leaves the connection idle in the stack's connection pool
+ * for the next request to the same host.
+ */
+internal class ConnectionWarmer(
+    private val httpStack: BaseHttpStack,
+    private val connectionStats: ConnectionStats,
+    private val executor: Executor = AsyncTask.THREAD_POOL_EXECUTOR
+) {
+
+    fun warmUp(host: String) {
+        executor.execute {
+            if (resolve(host)) {
+                connect(host)
+            }
+        }
+    }
+
+    private fun resolve(host: String): Boolean {
+        val startMs = SystemClock.elapsedRealtime()
+        return try {
+            InetAddressUtils.getInetAddressByName(host)
+            connectionStats.dnsResolutionMs = SystemClock.elapsedRealtime() - startMs
+            true
+        } catch (e: UnknownHostException) {
+            MoPubLog.log(CUSTOM, "Unable to resolve $host to warm up the connection.")
+            false
+        }
+    }
+
+    private fun connect(host: String) {
+        val startMs = SystemClock.elapsedRealtime()
+        try {
+            val response = httpStack.executeRequest(WarmUpRequest("${Constants.HTTPS}://$host/"),
+                    emptyMap())
+            connectionStats.warmUpTimeToFirstByteMs = SystemClock.elapsedRealtime() - startMs
+            response.content?.use { content ->
+                val buffer = ByteArray(BUFFER_SIZE)
+                while (content.read(buffer) != -1) {
+                    // Read to the end so that the connection can be reused
+                }
+            }
+            MoPubLog.log(CUSTOM, "Warmed up the connection to $host in " +
+                    "${connectionStats.warmUpTimeToFirstByteMs} ms.")
+        } catch (e: IOException) {
+            MoPubLog.log(CUSTOM, "Unable to warm up the connection to $host.", e)
+        } catch (e: AuthFailureError) {
+            MoPubLog.log(CUSTOM, "Unable to warm up the connection to $host.", e)
+        }
+    }
+
+    private class WarmUpRequest(url: String) : Request<Unit>(Method.HEAD, url, null) {
+        init {
+            setShouldCache(false)
+        }
+
+        override fun parseNetworkResponse(response: NetworkResponse?): Response<Unit>? = null
+
+        override fun deliverResponse(response: Unit?) {}
+    }
+
+    companion object {
+        private const val BUFFER_SIZE = 1024
+    }
+}
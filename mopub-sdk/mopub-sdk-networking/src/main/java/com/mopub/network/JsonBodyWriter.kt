@@ -0,0 +1,85 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network
+
+import android.net.Uri
+
+import org.json.JSONObject
+
+/**
+ * Collects request parameters for a JSON object body. The [MoPubUrlRewriter] substitutes
+ * identifier macros in each value as it is written, so the url is never rewritten as a whole.
+ */
+class JsonBodyWriter(private val urlRewriter: MoPubUrlRewriter?) {
+    private val _params = LinkedHashMap<String, String>()
+
+    /**
+     * The parameters written so far, in the order they were first written
+     */
+    val params: Map<String, String>
+        get() = _params
+
+    /**
+     * Adds a parameter. Values for a repeated key are joined with commas, the same as
+     * [MoPubNetworkUtils.getQueryParamMap].
+     */
+    fun writeParam(key: String, value: String) {
+        val rewrittenValue = if (urlRewriter == null) {
+            value
+        } else {
+            urlRewriter.rewriteParam(key, value) ?: return
+        }
+        _params[key] = _params[key]?.let { "$it,$rewrittenValue" } ?: rewrittenValue
+    }
+
+    /**
+     * Adds each query parameter of the url, in a single pass over the string.
+     */
+    fun writeQuery(url: String) {
+        val queryStart = url.indexOf('?')
+        if (queryStart == -1) {
+            return
+        }
+        val queryEnd = url.indexOf('#', queryStart).let { if (it == -1) url.length else it }
+
+        var start = queryStart + 1
+        while (start < queryEnd) {
+            var end = url.indexOf('&', start)
+            if (end == -1 || end > queryEnd) {
+                end = queryEnd
+            }
+            if (end > start) {
+                val separator = url.indexOf('=', start)
+                if (separator in start until end) {
+                    writeParam(
+                        Uri.decode(url.substring(start, separator)),
+                        Uri.decode(url.substring(separator + 1, end))
+                    )
+                } else {
+                    writeParam(Uri.decode(url.substring(start, end)), "")
+                }
+            }
+            start = end + 1
+        }
+    }
+
+    companion object {
+        /**
+         * Serializes the parameters as a JSON object of strings, the same as [JSONObject.toString].
+         */
+        @JvmStatic
+        fun toBody(params: Map<String, String>): String {
+            val body = StringBuilder()
+            body.append('{')
+            for ((key, value) in params) {
+                if (body.length > 1) {
+                    body.append(',')
+                }
+                body.append(JSONObject.quote(key)).append(':').append(JSONObject.quote(value))
+            }
+            return body.append('}').toString()
+        }
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network
+
+import java.io.IOException
+import java.io.InputStream
+import javax.net.ssl.SSLSocketFactory
+
+/**
+ * Sends the HTTP requests made through [MoPubRequestQueue]. Requests go over HttpURLConnection
+ * unless a [Factory] is set with [Networking.transportFactory], for example one for a client that
+ * multiplexes requests over HTTP/2 on a shared connection pool.
+ *
+ * The request queue adds the user agent and applies the [MoPubUrlRewriter] before calling the
+ * transport, so every transport sends the same url and headers.
+ */
+interface MoPubHttpTransport {
+    /**
+     * Sends a request and returns once the response headers have arrived. This is called on
+     * the request queue's network threads.
+     *
+     * @throws IOException if no response was received
+     */
+    @Throws(IOException::class)
+    fun execute(request: Request): Response
+
+    class Request(
+        val url: String,
+        val method: String,
+        val headers: Map<String, String>,
+        val body: ByteArray?,
+        val timeoutMs: Int
+    )
+
+    /**
+     * @param content The response body, or null if there is none. The request queue reads it
+     * fully and closes it.
+     */
+    class Response @JvmOverloads constructor(
+        val statusCode: Int,
+        val headers: Map<String, List<String>>,
+        val contentLength: Int = -1,
+        val content: InputStream? = null
+    )
+
+    interface Factory {
+        /**
+         * @param sslSocketFactory The SDK's socket factory. It enables every supported TLS
+         * version and does SNI on versions of Android where it is broken. Transports should open
+         * their TLS connections with it.
+         */
+        fun create(sslSocketFactory: SSLSocketFactory): MoPubHttpTransport
+    }
+}
@@ -7,9 +7,6 @@ package com.mopub.network
 import android.net.Uri
 import android.text.TextUtils
 
-import com.mopub.common.logging.MoPubLog
-
-import org.json.JSONException
 import org.json.JSONObject
 
 /**
@@ -55,22 +52,25 @@ object MoPubNetworkUtils {
         return params
     }
 
+    /**
+     * Reads the query parameters of the url in a single pass, without building a [Uri]. The
+     * [MoPubUrlRewriter] substitutes identifier macros in each value as it is read, rather than
+     * rewriting the whole url first.
+     */
+    @JvmStatic
+    fun convertQueryToMap(url: String, urlRewriter: MoPubUrlRewriter?): Map<String, String> {
+        return JsonBodyWriter(urlRewriter).apply { writeQuery(url) }.params
+    }
+
+    /**
+     * Writes the parameters straight into a JSON body, without building a [JSONObject].
+     */
     @JvmStatic
     fun generateBodyFromParams(params: Map<String, String>?): String? {
         if (params == null || params.isEmpty()) {
             return null
         }
 
-        val jsonBody = JSONObject()
-
-        for (queryName in params.keys) {
-            try {
-                jsonBody.put(queryName, params[queryName])
-            } catch (e: JSONException) {
-                MoPubLog.log(MoPubLog.SdkLogEvent.CUSTOM, "Unable to add $queryName to JSON body.")
-            }
-        }
-
-        return jsonBody.toString()
+        return JsonBodyWriter.toBody(params)
     }
 }
@@ -5,6 +5,7 @@
 package com.mopub.network
 
 import android.content.Context
+import android.net.Uri
 import android.os.Build
 import android.text.TextUtils
 
@@ -34,6 +35,9 @@ abstract class MoPubRequest<T: Any>(val context: Context,
 
     private var volleyRequest : VolleyRequest<T>
 
+    private var body : ByteArray? = null
+    private var isBodyGenerated = false
+
     var shouldCache : Boolean = false
         set(value) {
             field = value
@@ -50,6 +54,22 @@ abstract class MoPubRequest<T: Any>(val context: Context,
             )
         }
 
+    /**
+     * The kind of endpoint this request goes to. Setting it takes the timeout from
+     * [RetryPolicyEngine], and records the request's latency there once it completes.
+     */
+    var endpoint : RetryPolicyEngine.Endpoint? = null
+        set(value) {
+            field = value
+            volleyRequest.endpoint = value
+            value?.let {
+                val host = Uri.parse(truncatedUrl).host
+                retryPolicy = retryPolicy.copy(
+                    initialTimeoutMs = RetryPolicyEngine.getInstance().getTimeoutMs(host, it)
+                )
+            }
+        }
+
     companion object {
         const val JSON_CONTENT_TYPE = "application/json; charset=UTF-8"
         const val DEFAULT_CONTENT_TYPE = "application/x-www-form-urlencoded; charset=UTF-8"
@@ -122,14 +142,28 @@ abstract class MoPubRequest<T: Any>(val context: Context,
     protected open fun getParams() : Map<String, String>? {
         // Checks for isMoPubRequest are moved out of the networking module
         return Networking.urlRewriter?.let {
-            MoPubNetworkUtils.convertQueryToMap(it.rewriteUrl(originalUrl))
+            MoPubNetworkUtils.convertQueryToMap(originalUrl, it)
         }
     }
 
+    /**
+     * Volley asks for the body on every attempt, so it is generated once and reused for retries.
+     */
+    @Synchronized
     open fun getBody() : ByteArray? {
-        // Checks for isMoPubRequest are moved out of the networking module
-        val body = MoPubNetworkUtils.generateBodyFromParams(getParams()) ?: return null
-        return body.toByteArray()
+        if (!isBodyGenerated) {
+            body = generateBody()
+            isBodyGenerated = true
+        }
+        return body
+    }
+
+    protected open fun generateBody() : ByteArray? {
+        // Only requests to the ad server are sent as POST
+        if (method != Method.POST) {
+            return null
+        }
+        return MoPubNetworkUtils.generateBodyFromParams(getParams())?.toByteArray()
     }
 
     protected open fun getBodyContentType() : String {
@@ -148,6 +182,9 @@ abstract class MoPubRequest<T: Any>(val context: Context,
         listener: Response.ErrorListener?
     ) : Request<T>(getVolleyMethod(method), url, listener) {
 
+        @Volatile
+        var endpoint: RetryPolicyEngine.Endpoint? = null
+
         companion object {
             @JvmStatic
             fun getVolleyMethod(method: MoPubRequest.Method) : Int  {
@@ -11,6 +11,7 @@ import com.mopub.common.util.ResponseHeader
 import com.mopub.volley.AuthFailureError
 import com.mopub.volley.Request
 import com.mopub.volley.RequestQueue
+import com.mopub.volley.toolbox.BaseHttpStack
 import com.mopub.volley.toolbox.BasicNetwork
 import com.mopub.volley.toolbox.DiskBasedCache
 import com.mopub.volley.toolbox.HttpResponse
@@ -29,14 +30,35 @@ class MoPubRequestQueue internal constructor(
     userAgent: String?,
     sslSocketFactory: SSLSocketFactory,
     moPubUrlRewriter: MoPubUrlRewriter,
-    volleyCacheDir: File
+    volleyCacheDir: File,
+    transport: MoPubHttpTransport? = null
 ) {
+    val connectionStats = ConnectionStats()
     private val volleyRequestQueue: RequestQueue
+    private val connectionWarmer: ConnectionWarmer
 
     init {
+        val httpStack = if (transport != null) {
+            TransportHttpStack(transport, userAgent, moPubUrlRewriter)
+        } else {
+            createHurlStack(userAgent, sslSocketFactory, moPubUrlRewriter)
+        }
+
+        connectionWarmer = ConnectionWarmer(httpStack, connectionStats)
+
+        val network = BasicNetwork(TimedHttpStack(httpStack, connectionStats))
+        val cache = DiskBasedCache(volleyCacheDir,
+                DeviceUtils.diskCacheSizeBytes(volleyCacheDir, Constants.TEN_MB.toLong()).toInt())
+
+        volleyRequestQueue = RequestQueue(cache, network)
+    }
+
+    private fun createHurlStack(userAgent: String?,
+                                sslSocketFactory: SSLSocketFactory,
+                                moPubUrlRewriter: MoPubUrlRewriter): BaseHttpStack {
         val volleyUrlRewriter = HurlStack.UrlRewriter { url -> moPubUrlRewriter.rewriteUrl(url) }
 
-        val volleyHurlStack = object : HurlStack(volleyUrlRewriter, sslSocketFactory) {
+        return object : HurlStack(volleyUrlRewriter, sslSocketFactory) {
             @Throws(IOException::class, AuthFailureError::class)
             override fun executeRequest(request: Request<*>?,
                                         additionalHeaders: MutableMap<String, String?>?): HttpResponse {
@@ -48,12 +70,6 @@ class MoPubRequestQueue internal constructor(
                 return super.executeRequest(request, newAdditionalHeaders)
             }
         }
-
-        val network = BasicNetwork(volleyHurlStack)
-        val cache = DiskBasedCache(volleyCacheDir,
-                DeviceUtils.diskCacheSizeBytes(volleyCacheDir, Constants.TEN_MB.toLong()).toInt())
-
-        volleyRequestQueue = RequestQueue(cache, network)
     }
 
     fun start() {
@@ -77,6 +93,16 @@ class MoPubRequestQueue internal constructor(
         volleyRequestQueue.cancelAll(tag)
     }
 
+    /**
+     * Resolves the host and connects to it in the background, so that the next request to it
+     * can skip the DNS lookup and the TLS handshake. The timings are in [connectionStats].
+     *
+     * @param host The host to connect to over https.
+     */
+    fun warmUp(host: String) {
+        connectionWarmer.warmUp(host)
+    }
+
     internal fun getVolleyRequestQueue() : RequestQueue {
         return volleyRequestQueue
     }
@@ -11,4 +11,13 @@ interface MoPubUrlRewriter {
     fun rewriteUrl(url: String) : String {
         return url
     }
+
+    /**
+     * Rewrites a single parameter as it is written into a request body.
+     *
+     * @return the value to send, or null to leave the parameter out
+     */
+    fun rewriteParam(key: String, value: String) : String? {
+        return value
+    }
 }
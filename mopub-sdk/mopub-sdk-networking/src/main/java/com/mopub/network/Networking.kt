@@ -11,6 +11,7 @@ import android.webkit.WebSettings
 
 import androidx.collection.LruCache
 
+import com.mopub.common.BitmapBudgetManager
 import com.mopub.common.Constants
 import com.mopub.common.VisibleForTesting
 import com.mopub.common.logging.MoPubLog
@@ -48,6 +49,15 @@ object Networking {
     @JvmStatic
     var urlRewriter : MoPubUrlRewriter? = null
 
+    /**
+     * Creates the transport used by the request queue. This is read once, when the request queue
+     * is created, so it needs to be set before the first request. If null, requests go over
+     * HttpURLConnection.
+     */
+    @JvmStatic
+    @Volatile
+    var transportFactory: MoPubHttpTransport.Factory? = null
+
     /**
      * Gets the previously cached WebView user agent. This returns the default userAgent if the
      * WebView user agent has not been initialized yet.
@@ -81,7 +91,8 @@ object Networking {
                         userAgent,
                         socketFactory,
                         moPubUrlRewriter,
-                        volleyCacheDir
+                        volleyCacheDir,
+                        transportFactory?.create(socketFactory)
                     ).also {
                         requestQueue = it
                         it.start()
@@ -107,10 +118,21 @@ object Networking {
                         return value.rowBytes * value.height
                     }
                 }
+                // Images loaded here are already shown by their views, so the cache only saves
+                // fetching them again.
+                val bitmapBudgetManager = BitmapBudgetManager.getInstance(context)
+                bitmapBudgetManager.register("image-loader", BitmapBudgetManager.Priority.LOW,
+                    object : BitmapBudgetManager.Consumer {
+                        override fun getSizeBytes() = imageCache.size()
+                        override fun trimToSize(maxSizeBytes: Int) {
+                            imageCache.trimToSize(maxSizeBytes)
+                        }
+                    })
                 MoPubImageLoader(queue, object : MoPubImageLoader.ImageCache {
                     override fun getBitmap(key: String) = imageCache.get(key)
                     override fun putBitmap(key: String, bitmap: Bitmap) {
                         imageCache.put(key, bitmap)
+                        bitmapBudgetManager.enforceBudget()
                     }
                 }).also {
                     imageLoader = it
@@ -160,6 +182,7 @@ object Networking {
         requestQueue = null
         imageLoader = null
         userAgent = null
+        transportFactory = null
     }
 
     @VisibleForTesting
@@ -0,0 +1,153 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network
+
+import android.os.SystemClock
+
+import com.mopub.common.VisibleForTesting
+
+import java.util.Random
+import kotlin.math.ceil
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Chooses request timeouts and retry delays. Recent latencies are kept for each host and
+ * [Endpoint], and the timeout is a multiple of their 95th percentile. Retry delays grow
+ * exponentially with jitter. Every retry also spends from a retry budget shared by all endpoints:
+ * once it runs out, retries are spaced out at the rate the budget refills, so that many requests
+ * failing together are not all retried together.
+ */
+class RetryPolicyEngine @VisibleForTesting constructor(private val random: Random) {
+
+    enum class Endpoint(
+        internal val defaultTimeoutMs: Int,
+        internal val initialRetryDelayMs: Long,
+        internal val maxRetryDelayMs: Long
+    ) {
+        AD_REQUEST(MoPubRetryPolicy.DEFAULT_TIMEOUT_MS, 1000, FIVE_MINUTES_MS),
+        TRACKING(MoPubRetryPolicy.DEFAULT_TIMEOUT_MS, 1000, ONE_MINUTE_MS),
+        POSITIONING(MoPubRetryPolicy.DEFAULT_TIMEOUT_MS, 2000, FIVE_MINUTES_MS),
+        SYNC(MoPubRetryPolicy.DEFAULT_TIMEOUT_MS, 1000, FIVE_MINUTES_MS),
+        REWARDED_COMPLETION(4000, 5000, ONE_MINUTE_MS)
+    }
+
+    private class LatencyWindow {
+        val samples = LongArray(WINDOW_SIZE)
+        var count = 0
+        var next = 0
+
+        fun add(latencyMs: Long) {
+            samples[next] = latencyMs
+            next = (next + 1) % WINDOW_SIZE
+            count = min(count + 1, WINDOW_SIZE)
+        }
+
+        fun percentile(percentile: Double): Long {
+            val sorted = samples.copyOf(count)
+            sorted.sort()
+            return sorted[max(0, ceil(percentile * count).toInt() - 1)]
+        }
+    }
+
+    private val latencyWindows = HashMap<String, LatencyWindow>()
+    private var retryTokens = RETRY_BUDGET.toDouble()
+    private var lastRefillMs = SystemClock.elapsedRealtime()
+
+    /**
+     * Records the time to first byte of a request. Requests that timed out are recorded as
+     * taking their whole timeout, since they took at least that long.
+     */
+    fun recordLatency(host: String?, endpoint: Endpoint, latencyMs: Long) {
+        synchronized(latencyWindows) {
+            latencyWindows.getOrPut(getKey(host, endpoint)) { LatencyWindow() }.add(latencyMs)
+        }
+    }
+
+    /**
+     * @return the endpoint's default timeout until enough latencies have been recorded for the
+     * host, then twice their 95th percentile, between the default timeout and [MAX_TIMEOUT_MS]
+     */
+    fun getTimeoutMs(host: String?, endpoint: Endpoint): Int {
+        val p95 = synchronized(latencyWindows) {
+            val window = latencyWindows[getKey(host, endpoint)]
+            if (window == null || window.count < MIN_SAMPLES) {
+                return endpoint.defaultTimeoutMs
+            }
+            window.percentile(0.95)
+        }
+        return (p95 * TIMEOUT_MULTIPLIER)
+            .coerceIn(endpoint.defaultTimeoutMs.toLong(), MAX_TIMEOUT_MS.toLong())
+            .toInt()
+    }
+
+    /**
+     * @param retryCount The number of retries already made.
+     * @return the retry delay before jitter and the retry budget
+     */
+    fun getBackoffMs(endpoint: Endpoint, retryCount: Int): Long {
+        val shift = retryCount.coerceIn(0, MAX_BACKOFF_SHIFT)
+        return min(endpoint.initialRetryDelayMs shl shift, endpoint.maxRetryDelayMs)
+    }
+
+    /**
+     * Spends one retry from the shared budget and returns how long to wait before retrying.
+     * This is the backoff times a random factor in [0.5, 1.5), or longer if the budget has run
+     * out.
+     *
+     * @param retryCount The number of retries already made.
+     */
+    fun getRetryDelayMs(endpoint: Endpoint, retryCount: Int): Long {
+        val jitteredDelayMs = (getBackoffMs(endpoint, retryCount) * (0.5 + random.nextDouble()))
+            .toLong()
+        return max(jitteredDelayMs, reserveRetry())
+    }
+
+    /**
+     * @return how long until the budget covers this retry
+     */
+    @Synchronized
+    private fun reserveRetry(): Long {
+        val nowMs = SystemClock.elapsedRealtime()
+        retryTokens = min(RETRY_BUDGET.toDouble(),
+            retryTokens + (nowMs - lastRefillMs).toDouble() / RETRY_BUDGET_REFILL_MS)
+        lastRefillMs = nowMs
+        // Tokens go negative while retries wait for the budget, so each waits a little longer
+        retryTokens -= 1
+        return if (retryTokens >= 0) 0 else ceil(-retryTokens * RETRY_BUDGET_REFILL_MS).toLong()
+    }
+
+    private fun getKey(host: String?, endpoint: Endpoint) = "${endpoint.name} ${host ?: ""}"
+
+    companion object {
+        private const val ONE_MINUTE_MS = 60 * 1000L
+        private const val FIVE_MINUTES_MS = 5 * ONE_MINUTE_MS
+        private const val MAX_BACKOFF_SHIFT = 20
+
+        private const val WINDOW_SIZE = 32
+        const val MIN_SAMPLES = 8
+        const val TIMEOUT_MULTIPLIER = 2
+        const val MAX_TIMEOUT_MS = 10000
+
+        const val RETRY_BUDGET = 10
+        const val RETRY_BUDGET_REFILL_MS = 1000L
+
+        @Volatile
+        private var instance: RetryPolicyEngine? = null
+
+        @JvmStatic
+        fun getInstance(): RetryPolicyEngine {
+            return instance ?: synchronized(RetryPolicyEngine::class) {
+                instance ?: RetryPolicyEngine(Random()).also { instance = it }
+            }
+        }
+
+        @JvmStatic
+        @VisibleForTesting
+        fun setInstanceForTesting(engine: RetryPolicyEngine?) {
+            instance = engine
+        }
+    }
+}
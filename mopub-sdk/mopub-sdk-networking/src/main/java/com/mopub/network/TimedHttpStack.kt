@@ -0,0 +1,69 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network
+
+import android.net.Uri
+import android.os.SystemClock
+
+import com.mopub.common.logging.MoPubLog
+import com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM
+import com.mopub.volley.AuthFailureError
+import com.mopub.volley.Request
+import com.mopub.volley.toolbox.BaseHttpStack
+import com.mopub.volley.toolbox.HttpResponse
+
+import java.io.IOException
+import java.net.ConnectException
+import java.net.NoRouteToHostException
+import java.net.SocketTimeoutException
+import java.net.UnknownHostException
+import kotlin.math.max
+
+/**
+ * Records the time to first byte of every request in [ConnectionStats], and in
+ * [RetryPolicyEngine] for requests to a known endpoint. Requests that time out are recorded in
+ * [RetryPolicyEngine] at their timeout and other failed exchanges at the time they took.
+ * Failures that never reached the server, such as DNS or connection errors while offline, say
+ * nothing about its latency and are not recorded.
+ */
+internal class TimedHttpStack(
+    private val httpStack: BaseHttpStack,
+    private val connectionStats: ConnectionStats
+) : BaseHttpStack() {
+
+    @Throws(IOException::class, AuthFailureError::class)
+    override fun executeRequest(request: Request<*>,
+                                additionalHeaders: Map<String, String>?): HttpResponse {
+        val startMs = SystemClock.elapsedRealtime()
+        val response = try {
+            httpStack.executeRequest(request, additionalHeaders)
+        } catch (e: IOException) {
+            val elapsedMs = SystemClock.elapsedRealtime() - startMs
+            when (e) {
+                // Only a lower bound is known for a request that timed out
+                is SocketTimeoutException ->
+                    recordLatency(request, max(elapsedMs, request.timeoutMs.toLong()))
+                is UnknownHostException, is ConnectException, is NoRouteToHostException -> Unit
+                else -> recordLatency(request, elapsedMs)
+            }
+            throw e
+        }
+
+        val timeToFirstByteMs = SystemClock.elapsedRealtime() - startMs
+        recordLatency(request, timeToFirstByteMs)
+        if (connectionStats.recordRequest(timeToFirstByteMs)) {
+            MoPubLog.log(CUSTOM, "First request took $timeToFirstByteMs ms to first byte " +
+                    "(warm-up: ${connectionStats.warmUpTimeToFirstByteMs} ms).")
+        }
+        return response
+    }
+
+    private fun recordLatency(request: Request<*>, latencyMs: Long) {
+        (request as? MoPubRequest.VolleyRequest<*>)?.endpoint?.let {
+            RetryPolicyEngine.getInstance().recordLatency(Uri.parse(request.url).host, it,
+                    latencyMs)
+        }
+    }
+}
@@ -0,0 +1,73 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network
+
+import com.mopub.common.util.ResponseHeader
+import com.mopub.volley.AuthFailureError
+import com.mopub.volley.Header
+import com.mopub.volley.Request
+import com.mopub.volley.toolbox.BaseHttpStack
+import com.mopub.volley.toolbox.HttpResponse
+
+import java.io.IOException
+
+/**
+ * Lets Volley send requests through a [MoPubHttpTransport]. Headers, body and url rewriting
+ * match what [MoPubRequestQueue] does over HttpURLConnection.
+ */
+internal class TransportHttpStack(
+    private val transport: MoPubHttpTransport,
+    private val userAgent: String?,
+    private val urlRewriter: MoPubUrlRewriter
+) : BaseHttpStack() {
+
+    @Throws(IOException::class, AuthFailureError::class)
+    override fun executeRequest(request: Request<*>,
+                                additionalHeaders: Map<String, String>?): HttpResponse {
+        val headers = HashMap<String, String>(request.headers)
+        additionalHeaders?.let { headers.putAll(it) }
+        userAgent?.let { headers[ResponseHeader.USER_AGENT.key] = it }
+
+        val body = request.body
+        if (body != null) {
+            headers[HEADER_CONTENT_TYPE] = request.bodyContentType
+        }
+
+        val response = transport.execute(MoPubHttpTransport.Request(
+            urlRewriter.rewriteUrl(request.url),
+            getMethodName(request.method, body),
+            headers,
+            body,
+            request.timeoutMs
+        ))
+
+        val responseHeaders = ArrayList<Header>()
+        for ((name, values) in response.headers) {
+            values.forEach { responseHeaders.add(Header(name, it)) }
+        }
+        return response.content?.let {
+            HttpResponse(response.statusCode, responseHeaders, response.contentLength, it)
+        } ?: HttpResponse(response.statusCode, responseHeaders)
+    }
+
+    companion object {
+        private const val HEADER_CONTENT_TYPE = "Content-Type"
+
+        private fun getMethodName(method: Int, body: ByteArray?): String {
+            return when (method) {
+                Request.Method.DEPRECATED_GET_OR_POST -> if (body != null) "POST" else "GET"
+                Request.Method.GET -> "GET"
+                Request.Method.POST -> "POST"
+                Request.Method.PUT -> "PUT"
+                Request.Method.DELETE -> "DELETE"
+                Request.Method.HEAD -> "HEAD"
+                Request.Method.OPTIONS -> "OPTIONS"
+                Request.Method.TRACE -> "TRACE"
+                Request.Method.PATCH -> "PATCH"
+                else -> throw IllegalStateException("Unknown method type.")
+            }
+        }
+    }
+}
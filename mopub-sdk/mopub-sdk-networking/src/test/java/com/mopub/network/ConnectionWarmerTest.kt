@@ -0,0 +1,192 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network
+
+import android.content.Context
+
+import com.mopub.test.support.NetworkingTestRunner
+import com.mopub.volley.DefaultRetryPolicy
+import com.mopub.volley.NetworkResponse
+import com.mopub.volley.Request
+import com.mopub.volley.toolbox.BaseHttpStack
+import com.mopub.volley.toolbox.HttpResponse
+
+import org.fest.assertions.api.Assertions.assertThat
+import org.junit.Assert.fail
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.robolectric.Robolectric
+
+import java.io.ByteArrayInputStream
+import java.io.IOException
+import java.net.ConnectException
+import java.net.InetAddress
+import java.net.SocketException
+import java.net.SocketTimeoutException
+import java.net.UnknownHostException
+import java.util.Random
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+
+@RunWith(NetworkingTestRunner::class)
+class ConnectionWarmerTest {
+    private lateinit var httpStack: FakeHttpStack
+    private lateinit var connectionStats: ConnectionStats
+    private lateinit var subject: ConnectionWarmer
+    @Mock
+    private lateinit var inetAddress: InetAddress
+    @Mock
+    private lateinit var context: Context
+
+    @Before
+    fun setup() {
+        @Suppress("DEPRECATION")
+        InetAddressUtils.setMockInetAddress(inetAddress)
+        httpStack = FakeHttpStack()
+        connectionStats = ConnectionStats()
+        subject = ConnectionWarmer(httpStack, connectionStats, Executor { it.run() })
+    }
+
+    @After
+    fun tearDown() {
+        @Suppress("DEPRECATION")
+        InetAddressUtils.setMockInetAddress(null)
+        RetryPolicyEngine.setInstanceForTesting(null)
+    }
+
+    @Test
+    fun warmUp_shouldSendHeadRequest_shouldReadResponseToEnd() {
+        subject.warmUp("ads.mopub.com")
+
+        val request = httpStack.requests.single()
+        assertThat(request.url).isEqualTo("https://ads.mopub.com/")
+        assertThat(request.method).isEqualTo(Request.Method.HEAD)
+        assertThat(request.shouldCache()).isFalse()
+        assertThat(httpStack.content.available()).isEqualTo(0)
+    }
+
+    @Test
+    fun warmUp_shouldRecordTimings_shouldNotCountAsRequest() {
+        httpStack.delayMs = 120
+
+        subject.warmUp("ads.mopub.com")
+
+        assertThat(connectionStats.dnsResolutionMs).isEqualTo(0)
+        assertThat(connectionStats.warmUpTimeToFirstByteMs).isEqualTo(120)
+        assertThat(connectionStats.getRequestCount()).isEqualTo(0)
+    }
+
+    @Test
+    fun warmUp_withIOException_shouldNotRecordTimeToFirstByte() {
+        httpStack.exception = IOException("no connection")
+
+        subject.warmUp("ads.mopub.com")
+
+        assertThat(connectionStats.warmUpTimeToFirstByteMs).isEqualTo(-1)
+    }
+
+    @Test
+    fun timedHttpStack_shouldRecordTimeToFirstByte() {
+        val timedHttpStack = TimedHttpStack(httpStack, connectionStats)
+        val request = object : Request<Unit>(Method.GET, "https://ads.mopub.com/m/ad", null) {
+            override fun parseNetworkResponse(response: NetworkResponse?) = null
+            override fun deliverResponse(response: Unit?) {}
+        }
+
+        httpStack.delayMs = 300
+        timedHttpStack.executeRequest(request, emptyMap())
+        httpStack.delayMs = 100
+        timedHttpStack.executeRequest(request, emptyMap())
+
+        assertThat(connectionStats.getRequestCount()).isEqualTo(2)
+        assertThat(connectionStats.firstRequestTimeToFirstByteMs).isEqualTo(300)
+        assertThat(connectionStats.getAverageTimeToFirstByteMs()).isEqualTo(200)
+    }
+
+    @Test
+    fun timedHttpStack_withTimedOutRequest_shouldRecordTimeoutInRetryPolicyEngine() {
+        val retryPolicyEngine = RetryPolicyEngine(Random())
+        RetryPolicyEngine.setInstanceForTesting(retryPolicyEngine)
+        httpStack.delayMs = 100
+        httpStack.exception = SocketTimeoutException("timed out")
+
+        executeFailingAdRequests()
+
+        // Each timeout counts as taking the whole 4 s timeout, not the 100 ms until it failed
+        assertThat(retryPolicyEngine.getTimeoutMs("ads.mopub.com", RetryPolicyEngine.Endpoint.AD_REQUEST))
+            .isEqualTo(8000)
+        assertThat(connectionStats.getRequestCount()).isEqualTo(0)
+    }
+
+    @Test
+    fun timedHttpStack_withDroppedConnection_shouldRecordElapsedTimeInRetryPolicyEngine() {
+        val retryPolicyEngine = RetryPolicyEngine(Random())
+        RetryPolicyEngine.setInstanceForTesting(retryPolicyEngine)
+        httpStack.delayMs = 3000
+        httpStack.exception = SocketException("Connection reset")
+
+        executeFailingAdRequests()
+
+        assertThat(retryPolicyEngine.getTimeoutMs("ads.mopub.com", RetryPolicyEngine.Endpoint.AD_REQUEST))
+            .isEqualTo(6000)
+    }
+
+    @Test
+    fun timedHttpStack_withRequestThatNeverReachedServer_shouldNotRecordInRetryPolicyEngine() {
+        val retryPolicyEngine = RetryPolicyEngine(Random())
+        RetryPolicyEngine.setInstanceForTesting(retryPolicyEngine)
+        httpStack.delayMs = 3000
+
+        httpStack.exception = UnknownHostException("ads.mopub.com")
+        executeFailingAdRequests()
+        httpStack.exception = ConnectException("Connection refused")
+        executeFailingAdRequests()
+
+        assertThat(retryPolicyEngine.getTimeoutMs("ads.mopub.com", RetryPolicyEngine.Endpoint.AD_REQUEST))
+            .isEqualTo(RetryPolicyEngine.Endpoint.AD_REQUEST.defaultTimeoutMs)
+    }
+
+    private fun executeFailingAdRequests() {
+        val timedHttpStack = TimedHttpStack(httpStack, connectionStats)
+        val request = object : MoPubRequest.VolleyRequest<Unit>(
+            context,
+            MoPubRequest.Method.GET,
+            "https://ads.mopub.com/m/ad",
+            null
+        ) {
+            override fun parseNetworkResponse(response: NetworkResponse?) = null
+            override fun deliverResponse(response: Unit) {}
+        }
+        request.endpoint = RetryPolicyEngine.Endpoint.AD_REQUEST
+        request.setRetryPolicy(DefaultRetryPolicy(4000, 0, 1f))
+
+        repeat(RetryPolicyEngine.MIN_SAMPLES) {
+            try {
+                timedHttpStack.executeRequest(request, emptyMap())
+                fail("Expected the request to fail")
+            } catch (e: IOException) {
+                // expected
+            }
+        }
+    }
+
+    private class FakeHttpStack : BaseHttpStack() {
+        val requests = ArrayList<Request<*>>()
+        val content = ByteArrayInputStream(ByteArray(4096))
+        var delayMs = 0L
+        var exception: IOException? = null
+
+        override fun executeRequest(request: Request<*>,
+                                    additionalHeaders: Map<String, String>?): HttpResponse {
+            requests.add(request)
+            Robolectric.getForegroundThreadScheduler().advanceBy(delayMs, TimeUnit.MILLISECONDS)
+            exception?.let { throw it }
+            return HttpResponse(200, emptyList(), content.available(), content)
+        }
+    }
+}
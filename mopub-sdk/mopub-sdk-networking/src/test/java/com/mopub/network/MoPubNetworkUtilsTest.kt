@@ -6,6 +6,7 @@ package com.mopub.network
 
 import com.mopub.test.support.NetworkingTestRunner
 import org.fest.assertions.api.Assertions.assertThat
+import org.json.JSONObject
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -100,4 +101,46 @@ class MoPubNetworkUtilsTest {
 
         assertThat(result).isNull()
     }
+
+    @Test
+    fun generateBodyFromParams_shouldMatchJSONObject() {
+        val result = MoPubNetworkUtils.generateBodyFromParams(
+            mapOf("id" to "a/b", "q" to "\"quoted\"", "nl" to "line\nbreak")
+        )
+
+        assertThat(result).isEqualTo(
+            JSONObject().put("id", "a/b").put("q", "\"quoted\"").put("nl", "line\nbreak")
+                .toString()
+        )
+    }
+
+    @Test
+    fun convertQueryToMap_withUrlRewriter_shouldMatchUriParsing() {
+        val url =
+            "https://ads.mopub.com/m/ad?query1=abc&query2=def%20ghi&query3=jkl&query1=mno&query4&query4&query4#fragment"
+
+        val result = MoPubNetworkUtils.convertQueryToMap(url, object : MoPubUrlRewriter {})
+
+        assertThat(result).isEqualTo(MoPubNetworkUtils.convertQueryToMap(url))
+    }
+
+    @Test
+    fun convertQueryToMap_withUrlRewriter_shouldRewriteEachParam() {
+        val urlRewriter = object : MoPubUrlRewriter {
+            override fun rewriteParam(key: String, value: String): String? {
+                return when (value) {
+                    "template" -> "rewritten"
+                    "drop" -> null
+                    else -> value
+                }
+            }
+        }
+
+        val result = MoPubNetworkUtils.convertQueryToMap(
+            "https://ads.mopub.com/m/ad?id=template&ifa=drop&q=%22quoted%22",
+            urlRewriter
+        )
+
+        assertThat(result).isEqualTo(mapOf("id" to "rewritten", "q" to "\"quoted\""))
+    }
 }
@@ -23,7 +23,9 @@ import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
 import org.junit.runner.RunWith
+import org.mockito.Mockito.any
 import org.mockito.Mockito.anyString
+import org.mockito.Mockito.times
 import org.powermock.api.mockito.PowerMockito
 import org.powermock.api.mockito.PowerMockito.`when`
 import org.powermock.api.mockito.PowerMockito.verifyStatic
@@ -43,6 +45,7 @@ class MoPubRequestTest {
     private var responseReceived: String? = null
     private var errorReceived: MoPubNetworkError? = null
     private val url = "$HTTPS://$HOST/m/ad?query1=abc&query2=def&query3=ghi"
+    private val params = mapOf("query1" to "abc", "query2" to "def", "query3" to "ghi")
 
     @get:Rule
     val rule = PowerMockRule()
@@ -65,9 +68,9 @@ class MoPubRequestTest {
         PowerMockito.mockStatic(MoPubNetworkUtils::class.java)
         `when`(MoPubNetworkUtils.parseCharsetFromContentType(mutableMapOf()))
             .thenReturn("ISO-8859-1")
-        `when`(MoPubNetworkUtils.convertQueryToMap(url))
-            .thenReturn(mapOf("query1" to "abc", "query2" to "def", "query3" to "ghi"))
         Networking.urlRewriter = object : MoPubUrlRewriter {}
+        `when`(MoPubNetworkUtils.convertQueryToMap(url, Networking.urlRewriter))
+            .thenReturn(params)
     }
 
     @Test
@@ -122,15 +125,15 @@ class MoPubRequestTest {
         subject.getParamsFromRequest()
 
         verifyStatic(MoPubNetworkUtils::class.java)
-        MoPubNetworkUtils.convertQueryToMap(anyString())
+        MoPubNetworkUtils.convertQueryToMap(anyString(), any(MoPubUrlRewriter::class.java))
     }
 
     @Test
     fun volleyGetBody_shouldCallMoPubRequestGetBody() {
-        subject.getBody()
+        subject.getVolleyRequest().body
 
         verifyStatic(MoPubNetworkUtils::class.java)
-        MoPubNetworkUtils.generateBodyFromParams(subject.getParamsFromRequest())
+        MoPubNetworkUtils.generateBodyFromParams(params)
     }
 
     @Test
@@ -213,11 +216,8 @@ class MoPubRequestTest {
         val result = subject.getParamsFromRequest()
 
         verifyStatic(MoPubNetworkUtils::class.java)
-        MoPubNetworkUtils.convertQueryToMap(url)
-        assertEquals(
-            mapOf("query1" to "abc", "query2" to "def", "query3" to "ghi"),
-            result
-        )
+        MoPubNetworkUtils.convertQueryToMap(url, Networking.urlRewriter)
+        assertEquals(params, result)
     }
 
     @Test
@@ -237,21 +237,28 @@ class MoPubRequestTest {
 
     @Test
     fun getBody_withParams_shouldReturnBody() {
-        `when`(
-            MoPubNetworkUtils.generateBodyFromParams(
-                mapOf("query1" to "abc", "query2" to "def", "query3" to "ghi")
-            )
-        ).thenReturn("test")
+        `when`(MoPubNetworkUtils.generateBodyFromParams(params)).thenReturn("test")
 
         val result = subject.getBody()
 
         assertTrue(result.contentEquals("test".toByteArray()))
     }
 
+    @Test
+    fun getBody_calledTwice_shouldGenerateBodyOnce() {
+        `when`(MoPubNetworkUtils.generateBodyFromParams(params)).thenReturn("test")
+
+        val first = subject.getBody()
+        val second = subject.getBody()
+
+        assertSame(first, second)
+        verifyStatic(MoPubNetworkUtils::class.java, times(1))
+        MoPubNetworkUtils.generateBodyFromParams(params)
+    }
+
     @Test
     fun getBody_withEmptyParams_shouldReturnNull() {
-        `when`(MoPubNetworkUtils.generateBodyFromParams(emptyMap()))
-            .thenReturn(null)
+        `when`(MoPubNetworkUtils.generateBodyFromParams(emptyMap())).thenReturn(null)
         val request = TestMoPubRequest(context, listener, "https://ads.mopub.com/m/ad")
 
         val result = request.getBody()
@@ -260,14 +267,17 @@ class MoPubRequestTest {
     }
 
     @Test
-    fun getBody_withNullParams_shouldReturnNull() {
-        `when`(MoPubNetworkUtils.generateBodyFromParams(null))
-            .thenReturn(null)
-        val request = TestMoPubRequest(context, listener, "https://ads.mopub.com/m/ad")
+    fun getBody_whenUrlRewriterIsNull_shouldReturnNull() {
+        Networking.urlRewriter = null
 
-        val result = request.getBody()
+        assertNull(subject.getBody())
+    }
 
-        assertNull(result)
+    @Test
+    fun getBody_withGetRequest_shouldReturnNull() {
+        val request = TestMoPubRequest(context, listener, url, MoPubRequest.Method.GET)
+
+        assertNull(request.getBody())
     }
 
     @Test
@@ -323,12 +333,13 @@ class MoPubRequestTest {
     class TestMoPubRequest(
         context: Context,
         listener: MoPubResponse.Listener<String>,
-        url: String
+        url: String,
+        method: Method = Method.POST
     ) : MoPubRequest<String>(
         context,
         url,
         "https://ads.mopub.com/m/ad",
-        Method.POST,
+        method,
         listener
     ) {
         override fun deliverResponse(response: String) {
@@ -0,0 +1,116 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network
+
+import com.mopub.network.RetryPolicyEngine.Endpoint
+import com.mopub.test.support.NetworkingTestRunner
+
+import org.fest.assertions.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+@RunWith(NetworkingTestRunner::class)
+class RetryPolicyEngineTest {
+    private lateinit var random: FixedRandom
+    private lateinit var subject: RetryPolicyEngine
+
+    @Before
+    fun setup() {
+        random = FixedRandom()
+        subject = RetryPolicyEngine(random)
+    }
+
+    @Test
+    fun getTimeoutMs_withTooFewSamples_shouldReturnDefaultTimeout() {
+        repeat(RetryPolicyEngine.MIN_SAMPLES - 1) {
+            subject.recordLatency(HOST, Endpoint.AD_REQUEST, 100)
+        }
+
+        assertThat(subject.getTimeoutMs(HOST, Endpoint.AD_REQUEST))
+            .isEqualTo(MoPubRetryPolicy.DEFAULT_TIMEOUT_MS)
+        assertThat(subject.getTimeoutMs(HOST, Endpoint.REWARDED_COMPLETION)).isEqualTo(4000)
+    }
+
+    @Test
+    fun getTimeoutMs_shouldUseTwiceThe95thPercentile() {
+        for (latencyMs in 1..20) {
+            subject.recordLatency(HOST, Endpoint.AD_REQUEST, latencyMs * 100L)
+        }
+
+        // The 95th percentile of 100..2000 is 1900
+        assertThat(subject.getTimeoutMs(HOST, Endpoint.AD_REQUEST)).isEqualTo(3800)
+    }
+
+    @Test
+    fun getTimeoutMs_shouldKeepHostsAndEndpointsApart_shouldClampTimeout() {
+        repeat(RetryPolicyEngine.MIN_SAMPLES) {
+            subject.recordLatency(HOST, Endpoint.TRACKING, 50)
+            subject.recordLatency("tracker.example.com", Endpoint.TRACKING, 60000)
+        }
+
+        // Never below the endpoint's default
+        assertThat(subject.getTimeoutMs(HOST, Endpoint.TRACKING))
+            .isEqualTo(MoPubRetryPolicy.DEFAULT_TIMEOUT_MS)
+        assertThat(subject.getTimeoutMs("tracker.example.com", Endpoint.TRACKING))
+            .isEqualTo(RetryPolicyEngine.MAX_TIMEOUT_MS)
+        assertThat(subject.getTimeoutMs(HOST, Endpoint.AD_REQUEST))
+            .isEqualTo(MoPubRetryPolicy.DEFAULT_TIMEOUT_MS)
+    }
+
+    @Test
+    fun getBackoffMs_shouldDoubleUntilMaxDelay() {
+        assertThat(subject.getBackoffMs(Endpoint.REWARDED_COMPLETION, 0)).isEqualTo(5000)
+        assertThat(subject.getBackoffMs(Endpoint.REWARDED_COMPLETION, 1)).isEqualTo(10000)
+        assertThat(subject.getBackoffMs(Endpoint.REWARDED_COMPLETION, 3)).isEqualTo(40000)
+        assertThat(subject.getBackoffMs(Endpoint.REWARDED_COMPLETION, 4)).isEqualTo(60000)
+        assertThat(subject.getBackoffMs(Endpoint.REWARDED_COMPLETION, 1000)).isEqualTo(60000)
+    }
+
+    @Test
+    fun getRetryDelayMs_shouldApplyJitter() {
+        random.value = 0.0
+        assertThat(subject.getRetryDelayMs(Endpoint.AD_REQUEST, 1)).isEqualTo(1000)
+
+        random.value = 0.75
+        assertThat(subject.getRetryDelayMs(Endpoint.AD_REQUEST, 1)).isEqualTo(2500)
+    }
+
+    @Test
+    fun getRetryDelayMs_afterBudgetRunsOut_shouldSpaceOutRetries() {
+        random.value = 0.0
+        repeat(RetryPolicyEngine.RETRY_BUDGET) {
+            assertThat(subject.getRetryDelayMs(Endpoint.TRACKING, 0)).isEqualTo(500)
+        }
+
+        // Every endpoint shares the budget
+        assertThat(subject.getRetryDelayMs(Endpoint.POSITIONING, 0)).isEqualTo(1000)
+        assertThat(subject.getRetryDelayMs(Endpoint.TRACKING, 0)).isEqualTo(2000)
+        assertThat(subject.getRetryDelayMs(Endpoint.TRACKING, 0)).isEqualTo(3000)
+
+        Robolectric.getForegroundThreadScheduler().advanceBy(10 * RetryPolicyEngine.RETRY_BUDGET_REFILL_MS,
+            TimeUnit.MILLISECONDS)
+
+        // Three of the refilled retries went to the retries that were waiting
+        repeat(7) {
+            assertThat(subject.getRetryDelayMs(Endpoint.TRACKING, 0)).isEqualTo(500)
+        }
+        assertThat(subject.getRetryDelayMs(Endpoint.TRACKING, 0)).isEqualTo(1000)
+    }
+
+    private class FixedRandom : Random() {
+        var value = 0.5
+
+        override fun nextDouble() = value
+    }
+
+    companion object {
+        private const val HOST = "ads.mopub.com"
+    }
+}
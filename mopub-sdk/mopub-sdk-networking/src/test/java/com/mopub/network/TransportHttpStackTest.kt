@@ -0,0 +1,108 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network
+
+import com.mopub.common.util.ResponseHeader
+import com.mopub.test.support.NetworkingTestRunner
+import com.mopub.volley.NetworkResponse
+import com.mopub.volley.Request
+import com.mopub.volley.Response
+import com.mopub.volley.toolbox.BasicNetwork
+
+import org.fest.assertions.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+import java.io.ByteArrayInputStream
+
+@RunWith(NetworkingTestRunner::class)
+class TransportHttpStackTest {
+    private lateinit var transport: RecordingTransport
+    private lateinit var subject: TransportHttpStack
+
+    @Before
+    fun setup() {
+        transport = RecordingTransport()
+        val urlRewriter = object : MoPubUrlRewriter {
+            override fun rewriteUrl(url: String) = "$url&rewritten=1"
+        }
+        subject = TransportHttpStack(transport, "user-agent", urlRewriter)
+    }
+
+    @Test
+    fun executeRequest_shouldRewriteUrl_shouldAddUserAgent() {
+        subject.executeRequest(TestVolleyRequest(Request.Method.GET, null), mapOf("extra" to "header"))
+
+        val request = transport.requests.single()
+        assertThat(request.url).isEqualTo("$URL&rewritten=1")
+        assertThat(request.method).isEqualTo("GET")
+        assertThat(request.headers[ResponseHeader.USER_AGENT.key]).isEqualTo("user-agent")
+        assertThat(request.headers["request"]).isEqualTo("header")
+        assertThat(request.headers["extra"]).isEqualTo("header")
+        assertThat(request.headers.containsKey("Content-Type")).isFalse()
+        assertThat(request.body).isNull()
+    }
+
+    @Test
+    fun executeRequest_withBody_shouldSendBodyAndContentType() {
+        val body = "{}".toByteArray()
+
+        subject.executeRequest(TestVolleyRequest(Request.Method.POST, body), emptyMap())
+
+        val request = transport.requests.single()
+        assertThat(request.method).isEqualTo("POST")
+        assertThat(request.body).isEqualTo(body)
+        assertThat(request.headers["Content-Type"]).isEqualTo(CONTENT_TYPE)
+    }
+
+    @Test
+    fun executeRequest_shouldConvertResponseForVolley() {
+        transport.response = MoPubHttpTransport.Response(
+            200,
+            mapOf("X-Multi" to listOf("a", "b")),
+            5,
+            ByteArrayInputStream("hello".toByteArray())
+        )
+
+        val networkResponse: NetworkResponse =
+            BasicNetwork(subject).performRequest(TestVolleyRequest(Request.Method.GET, null))
+
+        assertThat(networkResponse.statusCode).isEqualTo(200)
+        assertThat(String(networkResponse.data)).isEqualTo("hello")
+        assertThat(networkResponse.allHeaders!!.filter { it.name == "X-Multi" }.map { it.value })
+            .containsExactly("a", "b")
+    }
+
+    private class RecordingTransport : MoPubHttpTransport {
+        val requests = ArrayList<MoPubHttpTransport.Request>()
+        var response = MoPubHttpTransport.Response(204, emptyMap())
+
+        override fun execute(request: MoPubHttpTransport.Request): MoPubHttpTransport.Response {
+            requests.add(request)
+            return response
+        }
+    }
+
+    private class TestVolleyRequest(
+        method: Int,
+        private val requestBody: ByteArray?
+    ) : Request<String>(method, URL, null) {
+        override fun getHeaders(): MutableMap<String, String> = mutableMapOf("request" to "header")
+
+        override fun getBody(): ByteArray? = requestBody
+
+        override fun getBodyContentType() = CONTENT_TYPE
+
+        override fun parseNetworkResponse(response: NetworkResponse?): Response<String>? = null
+
+        override fun deliverResponse(response: String?) {}
+    }
+
+    companion object {
+        private const val URL = "https://ads.mopub.com/m/ad?id=1"
+        private const val CONTENT_TYPE = "application/json; charset=UTF-8"
+    }
+}
@@ -0,0 +1,349 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.common;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.DeviceUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static com.mopub.common.logging.MoPubLog.SdkLogEvent.CUSTOM;
+
+/**
+ * Keeps the bitmaps held across the SDK within one memory budget. Image caches and other holders
+ * of bitmaps register as consumers with a priority. When the budget is exceeded, or the system
+ * asks apps to trim memory, the consumers with the lowest priority are shrunk first.
+ *
+ * Also pools bitmaps that are no longer used, so that they can be decoded into again.
+ */
+public class BitmapBudgetManager implements ComponentCallbacks2 {
+    /**
+     * The order in which consumers are shrunk, lowest first.
+     */
+    public enum Priority {
+        /**
+         * Bitmaps that are cheap to get again.
+         */
+        LOW,
+        /**
+         * Bitmaps that are likely to be shown soon.
+         */
+        NORMAL,
+        /**
+         * Bitmaps that are on screen.
+         */
+        HIGH
+    }
+
+    public interface Consumer {
+        /**
+         * @return the number of bytes of the bitmaps this consumer holds
+         */
+        int getSizeBytes();
+
+        /**
+         * Releases bitmaps until this consumer holds at most the given number of bytes.
+         */
+        void trimToSize(int maxSizeBytes);
+    }
+
+    private static class Registration {
+        @NonNull final String mName;
+        @NonNull final Priority mPriority;
+        @NonNull final Consumer mConsumer;
+
+        Registration(@NonNull final String name, @NonNull final Priority priority,
+                @NonNull final Consumer consumer) {
+            mName = name;
+            mPriority = priority;
+            mConsumer = consumer;
+        }
+    }
+
+    /**
+     * The share of the budget that unused bitmaps may take.
+     */
+    private static final int POOL_BUDGET_DIVISOR = 8;
+
+    @Nullable private static volatile BitmapBudgetManager sInstance;
+
+    private final int mBudgetBytes;
+    private final int mMaxPoolBytes;
+
+    // Guarded by this
+    @NonNull private final List<Registration> mRegistrations = new ArrayList<>();
+    @NonNull private final ArrayDeque<Bitmap> mPool = new ArrayDeque<>();
+    private int mPoolBytes;
+
+    @VisibleForTesting
+    BitmapBudgetManager(final int budgetBytes) {
+        mBudgetBytes = budgetBytes;
+        mMaxPoolBytes = budgetBytes / POOL_BUDGET_DIVISOR;
+    }
+
+    @NonNull
+    public static BitmapBudgetManager getInstance(@NonNull final Context context) {
+        Preconditions.checkNotNull(context);
+
+        BitmapBudgetManager instance = sInstance;
+        if (instance == null) {
+            synchronized (BitmapBudgetManager.class) {
+                instance = sInstance;
+                if (instance == null) {
+                    final Context applicationContext = context.getApplicationContext();
+                    instance = new BitmapBudgetManager(
+                            DeviceUtils.memoryCacheSizeBytes(applicationContext));
+                    applicationContext.registerComponentCallbacks(instance);
+                    sInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Counts the consumer's bitmaps against the budget until it is unregistered.
+     *
+     * @param name identifies the consumer in {@link #getFootprintBytesByConsumer()}
+     */
+    public synchronized void register(@NonNull final String name,
+            @NonNull final Priority priority, @NonNull final Consumer consumer) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkNotNull(priority);
+        Preconditions.checkNotNull(consumer);
+
+        unregister(consumer);
+        mRegistrations.add(new Registration(name, priority, consumer));
+    }
+
+    public synchronized void unregister(@NonNull final Consumer consumer) {
+        final Iterator<Registration> iterator = mRegistrations.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().mConsumer == consumer) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Shrinks consumers, lowest priority first, until the footprint fits in the budget.
+     * Consumers should call this after they grow.
+     */
+    public void enforceBudget() {
+        int excessBytes = getFootprintBytes() - mBudgetBytes;
+        if (excessBytes <= 0) {
+            return;
+        }
+
+        trimPool(Math.max(0, getPoolBytes() - excessBytes));
+        for (final Registration registration : getRegistrationsByPriority()) {
+            excessBytes = getFootprintBytes() - mBudgetBytes;
+            if (excessBytes <= 0) {
+                return;
+            }
+            final int sizeBytes = registration.mConsumer.getSizeBytes();
+            registration.mConsumer.trimToSize(Math.max(0, sizeBytes - excessBytes));
+        }
+
+        // Trimmed consumers may have given their bitmaps to the pool
+        excessBytes = getFootprintBytes() - mBudgetBytes;
+        if (excessBytes > 0) {
+            trimPool(Math.max(0, getPoolBytes() - excessBytes));
+        }
+    }
+
+    /**
+     * Keeps a bitmap that is no longer shown to decode into later. Only mutable bitmaps can be
+     * reused.
+     */
+    public synchronized void putReusableBitmap(@NonNull final Bitmap bitmap) {
+        Preconditions.checkNotNull(bitmap);
+
+        final int sizeBytes = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || bitmap.isRecycled() || sizeBytes > mMaxPoolBytes
+                || mPool.contains(bitmap)) {
+            return;
+        }
+
+        mPool.add(bitmap);
+        mPoolBytes += sizeBytes;
+        trimPool(mMaxPoolBytes);
+    }
+
+    /**
+     * Takes a pooled bitmap of the given size and config, or else one with the same config that
+     * is large enough to be reconfigured to it.
+     *
+     * @return a bitmap to set as {@code BitmapFactory.Options#inBitmap}, or null if none fits
+     */
+    @Nullable
+    public synchronized Bitmap getReusableBitmap(final int width, final int height,
+            @NonNull final Bitmap.Config config) {
+        Preconditions.checkNotNull(config);
+
+        Bitmap reusable = null;
+        final long sizeBytes = (long) width * height * getBytesPerPixel(config);
+        for (final Bitmap bitmap : mPool) {
+            if (bitmap.getConfig() != config) {
+                continue;
+            }
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                reusable = bitmap;
+                break;
+            }
+            if (reusable == null && bitmap.getAllocationByteCount() >= sizeBytes) {
+                reusable = bitmap;
+            }
+        }
+
+        if (reusable != null) {
+            mPool.remove(reusable);
+            mPoolBytes -= reusable.getAllocationByteCount();
+        }
+        return reusable;
+    }
+
+    /**
+     * @return the number of bytes of the bitmaps held by the consumers and the pool
+     */
+    public int getFootprintBytes() {
+        int footprintBytes = getPoolBytes();
+        for (final Registration registration : getRegistrationsByPriority()) {
+            footprintBytes += registration.mConsumer.getSizeBytes();
+        }
+        return footprintBytes;
+    }
+
+    /**
+     * @return the number of bytes held by each consumer name, and by the pool under "pool"
+     */
+    @NonNull
+    public Map<String, Integer> getFootprintBytesByConsumer() {
+        final Map<String, Integer> footprint = new HashMap<>();
+        footprint.put("pool", getPoolBytes());
+        for (final Registration registration : getRegistrationsByPriority()) {
+            final Integer sizeBytes = footprint.get(registration.mName);
+            footprint.put(registration.mName, registration.mConsumer.getSizeBytes()
+                    + (sizeBytes == null ? 0 : sizeBytes));
+        }
+        return footprint;
+    }
+
+    public int getBudgetBytes() {
+        return mBudgetBytes;
+    }
+
+    @Override
+    public void onTrimMemory(final int level) {
+        MoPubLog.log(CUSTOM, "Trimming bitmaps at memory level " + level + ", footprint "
+                + getFootprintBytes() + " bytes");
+
+        trimPool(0);
+        for (final Registration registration : getRegistrationsByPriority()) {
+            final int sizeBytes = registration.mConsumer.getSizeBytes();
+            final int keptSizeBytes = getKeptSizeBytes(level, registration.mPriority, sizeBytes);
+            if (keptSizeBytes < sizeBytes) {
+                registration.mConsumer.trimToSize(keptSizeBytes);
+            }
+        }
+        // Trimmed consumers may have given their bitmaps to the pool
+        trimPool(0);
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull final Configuration newConfig) {
+    }
+
+    /**
+     * @return how much of a consumer to keep at the trim level. The more pressing the level, the
+     * higher the priorities it reaches.
+     */
+    @VisibleForTesting
+    static int getKeptSizeBytes(final int level, @NonNull final Priority priority,
+            final int sizeBytes) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0;
+        }
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            return priority == Priority.HIGH ? sizeBytes / 2 : 0;
+        }
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            switch (priority) {
+                case LOW:
+                    return 0;
+                case NORMAL:
+                    return sizeBytes / 2;
+                default:
+                    return sizeBytes;
+            }
+        }
+        return priority == Priority.LOW ? sizeBytes / 2 : sizeBytes;
+    }
+
+    /**
+     * Drops the oldest pooled bitmaps until the pool holds at most the given number of bytes.
+     */
+    private synchronized void trimPool(final int maxPoolBytes) {
+        while (mPoolBytes > maxPoolBytes && !mPool.isEmpty()) {
+            mPoolBytes -= mPool.poll().getAllocationByteCount();
+        }
+    }
+
+    private synchronized int getPoolBytes() {
+        return mPoolBytes;
+    }
+
+    /**
+     * Consumers are called outside the lock, since trimming them can give bitmaps to the pool.
+     */
+    @NonNull
+    private synchronized List<Registration> getRegistrationsByPriority() {
+        final List<Registration> registrations = new ArrayList<>(mRegistrations);
+        Collections.sort(registrations, new Comparator<Registration>() {
+            @Override
+            public int compare(final Registration lhs, final Registration rhs) {
+                return lhs.mPriority.compareTo(rhs.mPriority);
+            }
+        });
+        return registrations;
+    }
+
+    private static int getBytesPerPixel(@NonNull final Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    @VisibleForTesting
+    public static void clearForTesting() {
+        sInstance = null;
+    }
+}
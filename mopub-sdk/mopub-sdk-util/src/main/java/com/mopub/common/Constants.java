@@ -77,6 +77,8 @@ public class Constants {
     public static final String VAST_URL_CLICKTHROUGH = "clickthrough_url";
     public static final String VAST_URL_NETWORK_MEDIA_FILE = "network_media_file_url";
     public static final String VAST_URL_DISK_MEDIA_FILE = "disk_media_file_url";
+    public static final String VAST_PROGRESSIVE_DOWNLOAD_KEY = "progressive_download_key";
+    public static final String VAST_MEDIA_FILE_BITRATE = "media_file_bitrate_kbps";
     public static final String VAST_SKIP_OFFSET_MS = "skip_offset_ms";
     public static final String VAST_DURATION_MS = "duration_ms";
     public static final String VAST_COMPANION_ADS = "companion_ads";
@@ -0,0 +1,119 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.common.logging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps another MoPubLogger and hands events to it on a dedicated background thread. Use this
+ * for sinks that do I/O, such as file loggers, so they never run on ad loading threads:
+ *
+ * <pre>
+ *     MoPubLog.addLogger(new MoPubAsyncLogger(fileLogger), LogLevel.DEBUG);
+ * </pre>
+ *
+ * Events are buffered in a fixed-size ring buffer. When the buffer is full new events are dropped
+ * rather than blocking the caller, and the number of dropped events is available through
+ * {@link #getDroppedCount()}.
+ */
+public class MoPubAsyncLogger implements MoPubLogger {
+
+    static final int DEFAULT_CAPACITY = 256;
+
+    private static final String THREAD_NAME = "MoPubAsyncLogger";
+
+    @NonNull private final MoPubLogger mDelegate;
+    @NonNull private final BlockingQueue<LogRecord> mBuffer;
+    @NonNull private final AtomicLong mDroppedCount = new AtomicLong();
+    @NonNull private final Thread mWorker;
+
+    public MoPubAsyncLogger(@NonNull final MoPubLogger delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    public MoPubAsyncLogger(@NonNull final MoPubLogger delegate, final int capacity) {
+        Preconditions.checkNotNull(delegate);
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+
+        mDelegate = delegate;
+        mBuffer = new ArrayBlockingQueue<>(capacity);
+        mWorker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, THREAD_NAME);
+        mWorker.setDaemon(true);
+        mWorker.start();
+    }
+
+    @Override
+    public void log(@Nullable final String className, @Nullable final String methodName,
+                    @Nullable final String identifier, @Nullable final String message) {
+        if (!mBuffer.offer(new LogRecord(className, methodName, identifier, message))) {
+            mDroppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return The number of events discarded because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * Stops the background thread. Events still in the buffer are discarded.
+     */
+    public void shutdown() {
+        mWorker.interrupt();
+    }
+
+    @VisibleForTesting
+    int getPendingCount() {
+        return mBuffer.size();
+    }
+
+    private void drainLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            final LogRecord record;
+            try {
+                record = mBuffer.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                mDelegate.log(record.mClassName, record.mMethodName, record.mIdentifier,
+                        record.mMessage);
+            } catch (RuntimeException e) {
+                // A misbehaving sink must not take down the logging thread
+            }
+        }
+    }
+
+    private static final class LogRecord {
+        @Nullable final String mClassName;
+        @Nullable final String mMethodName;
+        @Nullable final String mIdentifier;
+        @Nullable final String mMessage;
+
+        LogRecord(@Nullable final String className, @Nullable final String methodName,
+                  @Nullable final String identifier, @Nullable final String message) {
+            mClassName = className;
+            mMethodName = methodName;
+            mIdentifier = identifier;
+            mMessage = message;
+        }
+    }
+}
@@ -11,11 +11,10 @@ import androidx.annotation.Nullable;
 import androidx.core.util.Pair;
 
 import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
 
 import java.text.MessageFormat;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 
 import static com.mopub.common.util.Strings.getDelimitedString;
 import static java.text.MessageFormat.format;
@@ -84,10 +83,16 @@ public class MoPubLog {
     }
 
     @NonNull private static final MoPubLog sInstance = new MoPubLog();
-    @NonNull private LogLevel sLogLevel = LogLevel.INFO;
-    @NonNull private Map<MoPubLogger, LogLevel> mLoggers = new HashMap<>();
+    @NonNull private volatile LogLevel sLogLevel = LogLevel.INFO;
     @NonNull private MoPubLogger mDefaultLogger = new MoPubDefaultLogger();
 
+    /**
+     * Copy-on-write registry of loggers. Log calls read the current snapshot without locking, and
+     * registration swaps in a new snapshot while holding mLoggersLock.
+     */
+    @NonNull private volatile LoggerSnapshot mLoggers = LoggerSnapshot.EMPTY;
+    @NonNull private final Object mLoggersLock = new Object();
+
     private MoPubLog() {
     }
 
@@ -96,8 +101,15 @@ public class MoPubLog {
                 ? throwable.getMessage() : "");
     }
 
-    private static void removeLogger(@Nullable MoPubLogger logger) {
-        sInstance.mLoggers.remove(logger);
+    @VisibleForTesting
+    static void removeLogger(@Nullable MoPubLogger logger) {
+        if (logger == null) {
+            return;
+        }
+
+        synchronized (sInstance.mLoggersLock) {
+            sInstance.mLoggers = sInstance.mLoggers.without(logger);
+        }
     }
 
     public static void addLogger(@Nullable MoPubLogger logger) {
@@ -105,7 +117,25 @@ public class MoPubLog {
     }
 
     public static void addLogger(@Nullable MoPubLogger logger, @Nullable LogLevel logLevel) {
-        sInstance.mLoggers.put(logger, logLevel);
+        if (logger == null) {
+            return;
+        }
+
+        synchronized (sInstance.mLoggersLock) {
+            sInstance.mLoggers = sInstance.mLoggers.with(logger, logLevel);
+        }
+    }
+
+    /**
+     * Whether at least one registered logger will emit events of the given type. This is cheap
+     * enough to be checked before doing any work on behalf of a log call.
+     *
+     * @param logEventType The event type about to be logged.
+     * @return true if the event would reach a logger, false otherwise.
+     */
+    static boolean isLoggable(@Nullable final MPLogEventType logEventType) {
+        return logEventType != null
+                && sInstance.mLoggers.mMinLevel <= logEventType.getLogLevel().intValue();
     }
 
     public static void setLogLevel(@NonNull LogLevel logLevel) {
@@ -121,12 +151,18 @@ public class MoPubLog {
     }
 
     public static void log(@Nullable final MPLogEventType logEventType, @Nullable final Object... args) {
+        if (!isLoggable(logEventType)) {
+            return;
+        }
         Pair<String, String> classAndMethodNames = getClassAndMethod();
         log(classAndMethodNames, null, logEventType, args);  // null identifiers are omitted
     }
 
     public static void log(@Nullable final String identifier, @Nullable final MPLogEventType logEventType,
                            @Nullable final Object... args) {
+        if (!isLoggable(logEventType)) {
+            return;
+        }
         Pair<String, String> classAndMethodNames = getClassAndMethod();
         log(classAndMethodNames, identifier, logEventType, args);  // null identifiers are omitted
     }
@@ -139,12 +175,84 @@ public class MoPubLog {
             return;
         }
 
-        for (MoPubLogger logger : sInstance.mLoggers.keySet()) {
-            if (sInstance.mLoggers.get(logger) != null
-                    && sInstance.mLoggers.get(logger).intValue() <= logEventType.getLogLevel().intValue()) {
-                logger.log(classAndMethodNames.first, classAndMethodNames.second, identifier,
-                        logEventType.getMessage(args));
+        // Format at most once, and only after a logger has asked for this event
+        String message = null;
+        final int eventLevel = logEventType.getLogLevel().intValue();
+        for (final LoggerEntry entry : sInstance.mLoggers.mEntries) {
+            if (entry.mLogLevel != null && entry.mLogLevel.intValue() <= eventLevel) {
+                if (message == null) {
+                    message = logEventType.getMessage(args);
+                }
+                entry.mLogger.log(classAndMethodNames.first, classAndMethodNames.second,
+                        identifier, message);
+            }
+        }
+    }
+
+    private static final class LoggerEntry {
+        @NonNull final MoPubLogger mLogger;
+        @Nullable final LogLevel mLogLevel;
+
+        LoggerEntry(@NonNull final MoPubLogger logger, @Nullable final LogLevel logLevel) {
+            mLogger = logger;
+            mLogLevel = logLevel;
+        }
+    }
+
+    /**
+     * Immutable array of registered loggers along with the lowest LogLevel int value among them,
+     * so the level check and the iteration always agree with each other.
+     */
+    private static final class LoggerSnapshot {
+        static final LoggerSnapshot EMPTY = new LoggerSnapshot(new LoggerEntry[0]);
+
+        @NonNull final LoggerEntry[] mEntries;
+        final int mMinLevel;
+
+        LoggerSnapshot(@NonNull final LoggerEntry[] entries) {
+            int minLevel = Integer.MAX_VALUE;
+            for (final LoggerEntry entry : entries) {
+                if (entry.mLogLevel != null) {
+                    minLevel = Math.min(minLevel, entry.mLogLevel.intValue());
+                }
+            }
+            mEntries = entries;
+            mMinLevel = minLevel;
+        }
+
+        @NonNull
+        LoggerSnapshot with(@NonNull final MoPubLogger logger, @Nullable final LogLevel logLevel) {
+            final int index = indexOf(logger);
+            final LoggerEntry[] entries;
+            if (index >= 0) {
+                entries = mEntries.clone();
+                entries[index] = new LoggerEntry(logger, logLevel);
+            } else {
+                entries = Arrays.copyOf(mEntries, mEntries.length + 1);
+                entries[mEntries.length] = new LoggerEntry(logger, logLevel);
+            }
+            return new LoggerSnapshot(entries);
+        }
+
+        @NonNull
+        LoggerSnapshot without(@NonNull final MoPubLogger logger) {
+            final int index = indexOf(logger);
+            if (index < 0) {
+                return this;
+            }
+            final LoggerEntry[] entries = new LoggerEntry[mEntries.length - 1];
+            System.arraycopy(mEntries, 0, entries, 0, index);
+            System.arraycopy(mEntries, index + 1, entries, index, entries.length - index);
+            return new LoggerSnapshot(entries);
+        }
+
+        private int indexOf(@NonNull final MoPubLogger logger) {
+            for (int i = 0; i < mEntries.length; i++) {
+                if (mEntries[i].mLogger.equals(logger)) {
+                    return i;
+                }
             }
+            return -1;
         }
     }
 
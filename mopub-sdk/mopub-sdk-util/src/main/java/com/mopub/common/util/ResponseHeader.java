@@ -38,6 +38,11 @@ public enum ResponseHeader {
     LOCATION("location"),
     USER_AGENT("user-agent"),
     ACCEPT_LANGUAGE("accept-language"),
+    RANGE("range"),
+    IF_RANGE("if-range"),
+    CONTENT_RANGE("content-range"),
+    ETAG("etag"),
+    LAST_MODIFIED("last-modified"),
 
     BROWSER_AGENT("x-browser-agent"),
 
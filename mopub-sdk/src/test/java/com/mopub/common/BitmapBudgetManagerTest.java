@@ -0,0 +1,158 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.common;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+
+import com.mopub.common.BitmapBudgetManager.Priority;
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(SdkTestRunner.class)
+public class BitmapBudgetManagerTest {
+    private static final int BUDGET_BYTES = 8000;
+
+    private BitmapBudgetManager subject;
+    private FakeConsumer lowConsumer;
+    private FakeConsumer normalConsumer;
+    private FakeConsumer highConsumer;
+
+    @Before
+    public void setUp() {
+        subject = new BitmapBudgetManager(BUDGET_BYTES);
+        lowConsumer = new FakeConsumer(2000);
+        normalConsumer = new FakeConsumer(2000);
+        highConsumer = new FakeConsumer(2000);
+        subject.register("low", Priority.LOW, lowConsumer);
+        subject.register("normal", Priority.NORMAL, normalConsumer);
+        subject.register("high", Priority.HIGH, highConsumer);
+    }
+
+    @Test
+    public void enforceBudget_whenWithinBudget_shouldNotTrim() {
+        subject.enforceBudget();
+
+        assertThat(lowConsumer.mSizeBytes).isEqualTo(2000);
+        assertThat(normalConsumer.mSizeBytes).isEqualTo(2000);
+        assertThat(highConsumer.mSizeBytes).isEqualTo(2000);
+    }
+
+    @Test
+    public void enforceBudget_whenOverBudget_shouldTrimLowestPriorityFirst() {
+        highConsumer.mSizeBytes = 6500;
+
+        subject.enforceBudget();
+
+        assertThat(lowConsumer.mSizeBytes).isEqualTo(0);
+        assertThat(normalConsumer.mSizeBytes).isEqualTo(1500);
+        assertThat(highConsumer.mSizeBytes).isEqualTo(6500);
+        assertThat(subject.getFootprintBytes()).isEqualTo(BUDGET_BYTES);
+    }
+
+    @Test
+    public void onTrimMemory_withRunningLow_shouldDropLow_shouldHalveNormal_shouldKeepHigh() {
+        subject.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+
+        assertThat(lowConsumer.mSizeBytes).isEqualTo(0);
+        assertThat(normalConsumer.mSizeBytes).isEqualTo(1000);
+        assertThat(highConsumer.mSizeBytes).isEqualTo(2000);
+    }
+
+    @Test
+    public void onTrimMemory_withComplete_shouldFlushEverything() {
+        subject.putReusableBitmap(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+
+        subject.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+
+        assertThat(subject.getFootprintBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void unregister_shouldStopCountingConsumer() {
+        subject.unregister(highConsumer);
+
+        assertThat(subject.getFootprintBytes()).isEqualTo(4000);
+        assertThat(subject.getFootprintBytesByConsumer()).doesNotContainKey("high");
+    }
+
+    @Test
+    public void getFootprintBytesByConsumer_shouldIncludePool() {
+        subject.putReusableBitmap(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+
+        assertThat(subject.getFootprintBytesByConsumer().get("pool")).isEqualTo(400);
+        assertThat(subject.getFootprintBytesByConsumer().get("low")).isEqualTo(2000);
+        assertThat(subject.getFootprintBytes()).isEqualTo(6400);
+    }
+
+    @Test
+    public void getReusableBitmap_shouldPreferSameSize_shouldRemoveFromPool() {
+        final Bitmap larger = Bitmap.createBitmap(15, 10, Bitmap.Config.ARGB_8888);
+        final Bitmap sameSize = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        subject.putReusableBitmap(larger);
+        subject.putReusableBitmap(sameSize);
+
+        assertThat(subject.getReusableBitmap(10, 10, Bitmap.Config.ARGB_8888)).isSameAs(sameSize);
+        assertThat(subject.getReusableBitmap(10, 10, Bitmap.Config.ARGB_8888)).isSameAs(larger);
+        assertThat(subject.getReusableBitmap(10, 10, Bitmap.Config.ARGB_8888)).isNull();
+    }
+
+    @Test
+    public void getReusableBitmap_withDifferentConfigOrTooSmall_shouldReturnNull() {
+        subject.putReusableBitmap(Bitmap.createBitmap(10, 10, Bitmap.Config.RGB_565));
+        subject.putReusableBitmap(Bitmap.createBitmap(5, 5, Bitmap.Config.ARGB_8888));
+
+        assertThat(subject.getReusableBitmap(10, 10, Bitmap.Config.ARGB_8888)).isNull();
+    }
+
+    @Test
+    public void putReusableBitmap_withImmutableBitmap_shouldNotPool() {
+        final Bitmap immutable = mock(Bitmap.class);
+        when(immutable.isMutable()).thenReturn(false);
+
+        subject.putReusableBitmap(immutable);
+
+        assertThat(subject.getFootprintBytesByConsumer().get("pool")).isEqualTo(0);
+    }
+
+    @Test
+    public void getKeptSizeBytes_shouldReachHigherPrioritiesAtMorePressingLevels() {
+        assertThat(BitmapBudgetManager.getKeptSizeBytes(
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, Priority.LOW, 100)).isEqualTo(50);
+        assertThat(BitmapBudgetManager.getKeptSizeBytes(
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, Priority.NORMAL, 100)).isEqualTo(100);
+        assertThat(BitmapBudgetManager.getKeptSizeBytes(
+                ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, Priority.NORMAL, 100)).isEqualTo(0);
+        assertThat(BitmapBudgetManager.getKeptSizeBytes(
+                ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, Priority.HIGH, 100)).isEqualTo(50);
+        assertThat(BitmapBudgetManager.getKeptSizeBytes(
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, Priority.HIGH, 100)).isEqualTo(0);
+    }
+
+    private static class FakeConsumer implements BitmapBudgetManager.Consumer {
+        int mSizeBytes;
+
+        FakeConsumer(final int sizeBytes) {
+            mSizeBytes = sizeBytes;
+        }
+
+        @Override
+        public int getSizeBytes() {
+            return mSizeBytes;
+        }
+
+        @Override
+        public void trimToSize(final int maxSizeBytes) {
+            mSizeBytes = Math.min(mSizeBytes, maxSizeBytes);
+        }
+    }
+}
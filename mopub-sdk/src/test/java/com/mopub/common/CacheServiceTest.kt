@@ -32,6 +32,8 @@ import org.robolectric.Robolectric
 
 import java.io.File
 import java.io.InputStream
+import java.nio.ByteBuffer
+import java.util.concurrent.CountDownLatch
 import java.util.concurrent.Semaphore
 
 @RunWith(SdkTestRunner::class)
@@ -136,6 +138,27 @@ class CacheServiceTest {
         assertEquals(diskLruCache, testCacheService.diskLruCache)
     }
 
+    @Test
+    fun initializeDiskCache_whileClassLockIsHeld_shouldNotBlock() {
+        val locked = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        val holder = Thread {
+            synchronized(CacheService::class) {
+                locked.countDown()
+                release.await()
+            }
+        }
+        holder.start()
+        locked.await()
+
+        try {
+            assertTrue(testCacheService.initializeDiskCache(context))
+        } finally {
+            release.countDown()
+            holder.join()
+        }
+    }
+
     @Test
     fun getDiskCacheDirectory_withNullContext_shouldReturnNull() {
         val file = testCacheService.getDiskCacheDirectory(null)
@@ -359,6 +382,68 @@ class CacheServiceTest {
         )
     }
 
+    @Test
+    fun putToDiskCache_beforeJournalFlush_shouldBeReadable() {
+        testCacheService.initialize(context)
+
+        testCacheService.putToDiskCache(key1, data1.toByteArray())
+
+        assertTrue(testCacheService.containsKeyDiskCache(key1))
+        testCacheService.flushJournal()
+        assertTrue(data1.toByteArray().contentEquals(testCacheService.getFromDiskCache(key1)))
+    }
+
+    @Test
+    fun flushJournal_afterCacheIsCleared_shouldNotThrow() {
+        testCacheService.initialize(context)
+        val diskLruCache = testCacheService.diskLruCache
+        testCacheService.putToDiskCache(key1, data1.toByteArray())
+        diskLruCache?.close()
+
+        testCacheService.flushJournal()
+    }
+
+    @Test
+    fun readFromDiskCache_whenPopulated_shouldPassChannelAndLengthToReader() {
+        testCacheService.initialize(context)
+        testCacheService.putToDiskCache(key1, data1.toByteArray())
+
+        val result = testCacheService.readFromDiskCache(key1) { channel, length ->
+            val buffer = ByteBuffer.allocate(length.toInt())
+            channel.read(buffer)
+            String(buffer.array())
+        }
+
+        assertEquals(data1, result)
+    }
+
+    @Test
+    fun readFromDiskCache_whenMissing_shouldNotCallReader_shouldReturnNull() {
+        testCacheService.initialize(context)
+        var readerCalled = false
+
+        val result = testCacheService.readFromDiskCache(key1) { _, _ ->
+            readerCalled = true
+        }
+
+        assertNull(result)
+        assertFalse(readerCalled)
+    }
+
+    @Test
+    fun mapFromDiskCache_whenPopulated_shouldReturnReadOnlyBufferWithValue() {
+        testCacheService.initialize(context)
+        testCacheService.putToDiskCache(key1, data1.toByteArray())
+
+        val buffer = testCacheService.mapFromDiskCache(key1)
+
+        assertNotNull(buffer)
+        assertTrue(buffer!!.isReadOnly)
+        val bytes = ByteArray(buffer.remaining())
+        buffer.get(bytes)
+        assertTrue(data1.toByteArray().contentEquals(bytes))
+    }
+
     @Test
     fun getFromDiskCacheAsync_whenCacheIsEmpty_shouldCallOnGetCompleteWithNullValue() {
         testCacheService.getFromDiskCacheAsync(
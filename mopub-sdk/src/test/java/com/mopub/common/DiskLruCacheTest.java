@@ -0,0 +1,185 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.common;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+public class DiskLruCacheTest {
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private File directory;
+    private DiskLruCache subject;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("disk-lru-cache", "");
+        directory.delete();
+        subject = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        subject.delete();
+    }
+
+    @Test
+    public void close_shouldWriteIndex() throws Exception {
+        set("a", "hello");
+
+        subject.close();
+
+        assertThat(new File(directory, DiskLruCache.INDEX_FILE).exists()).isTrue();
+        assertThat(new File(directory, DiskLruCache.INDEX_FILE_TEMP).exists()).isFalse();
+    }
+
+    @Test
+    public void open_withIndex_shouldRestoreEntries() throws Exception {
+        set("a", "hello");
+        set("b", "world!");
+        subject.close();
+
+        subject = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE);
+
+        assertThat(get("a")).isEqualTo("hello");
+        assertThat(get("b")).isEqualTo("world!");
+        assertThat(subject.size()).isEqualTo(11);
+    }
+
+    @Test
+    public void open_withJournalLinesAfterIndex_shouldReplayThem() throws Exception {
+        set("a", "hello");
+        set("b", "world!");
+        subject.writeIndex();
+        subject.remove("a");
+        set("c", "again");
+        subject.flush();
+
+        final DiskLruCache reopened = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE);
+
+        assertThat(reopened.get("a")).isNull();
+        assertThat(reopened.get("b").getString(0)).isEqualTo("world!");
+        assertThat(reopened.get("c").getString(0)).isEqualTo("again");
+        assertThat(reopened.size()).isEqualTo(11);
+        reopened.close();
+    }
+
+    @Test
+    public void flushAndRefreshIndex_shouldOnlyWriteIndexOnceJournalHasGrownPastIt()
+            throws Exception {
+        final File index = new File(directory, DiskLruCache.INDEX_FILE);
+        final File journal = new File(directory, DiskLruCache.JOURNAL_FILE);
+        set("a", "hello");
+
+        subject.flushAndRefreshIndex();
+
+        assertThat(index.exists()).isFalse();
+
+        for (int i = 0; journal.length() < DiskLruCache.INDEX_REFRESH_JOURNAL_BYTES; i++) {
+            set("key" + i, "value");
+            subject.flush();
+        }
+        subject.flushAndRefreshIndex();
+
+        assertThat(index.exists()).isTrue();
+    }
+
+    @Test
+    public void open_withIndexNotMatchingJournal_shouldReplayWholeJournal() throws Exception {
+        set("a", "hello");
+        subject.close();
+        final File journal = new File(directory, DiskLruCache.JOURNAL_FILE);
+        final String contents = new String(Files.readAllBytes(journal.toPath()), US_ASCII);
+        assertThat(contents).contains("CLEAN a 5\n");
+        Files.write(journal.toPath(),
+                contents.replace("CLEAN a 5\n", "CLEAN a 6\n").getBytes(US_ASCII));
+
+        subject = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE);
+
+        // Only the journal has the new length
+        assertThat(subject.size()).isEqualTo(6);
+    }
+
+    @Test
+    public void open_withCorruptIndex_shouldReplayWholeJournal() throws Exception {
+        set("a", "hello");
+        subject.close();
+        Files.write(new File(directory, DiskLruCache.INDEX_FILE).toPath(),
+                "not an index".getBytes(US_ASCII));
+
+        subject = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE);
+
+        assertThat(get("a")).isEqualTo("hello");
+        assertThat(subject.size()).isEqualTo(5);
+    }
+
+    @Test
+    public void open_withIndexForDifferentAppVersion_shouldCreateEmptyCache() throws Exception {
+        set("a", "hello");
+        subject.close();
+
+        subject = DiskLruCache.open(directory, 2, 1, Long.MAX_VALUE);
+
+        assertThat(subject.get("a")).isNull();
+        assertThat(subject.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void open_withIndexAndEditInProgress_shouldDropUnfinishedEntry() throws Exception {
+        set("a", "hello");
+        final DiskLruCache.Editor editor = subject.edit("b");
+        editor.set(0, "unfinished");
+        subject.writeIndex();
+
+        final DiskLruCache reopened = DiskLruCache.open(directory, 1, 1, Long.MAX_VALUE);
+
+        assertThat(reopened.get("a").getString(0)).isEqualTo("hello");
+        assertThat(reopened.get("b")).isNull();
+        assertThat(reopened.size()).isEqualTo(5);
+        reopened.close();
+        editor.abort();
+    }
+
+    @Test
+    public void editorSetFile_shouldMoveFileIntoCache_shouldCountItsLength() throws Exception {
+        final File file = new File(directory.getParentFile(), directory.getName() + ".partial");
+        Files.write(file.toPath(), "moved value".getBytes(US_ASCII));
+
+        final DiskLruCache.Editor editor = subject.edit("a");
+        editor.setFile(0, file);
+        editor.commit();
+
+        assertThat(file.exists()).isFalse();
+        assertThat(get("a")).isEqualTo("moved value");
+        assertThat(subject.size()).isEqualTo(11);
+    }
+
+    private void set(final String key, final String value) throws IOException {
+        final DiskLruCache.Editor editor = subject.edit(key);
+        editor.set(0, value);
+        editor.commit();
+    }
+
+    private String get(final String key) throws IOException {
+        final DiskLruCache.Snapshot snapshot = subject.get(key);
+        try {
+            return snapshot.getString(0);
+        } finally {
+            snapshot.close();
+        }
+    }
+}
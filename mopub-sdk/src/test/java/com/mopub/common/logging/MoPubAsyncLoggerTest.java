@@ -0,0 +1,105 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.common.logging;
+
+import androidx.annotation.Nullable;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+public class MoPubAsyncLoggerTest {
+
+    private MoPubAsyncLogger subject;
+
+    @After
+    public void tearDown() {
+        if (subject != null) {
+            subject.shutdown();
+        }
+    }
+
+    @Test
+    public void log_shouldDeliverEventsToDelegateOffTheCallingThread() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        subject = new MoPubAsyncLogger(new MoPubLogger() {
+            @Override
+            public void log(@Nullable String className, @Nullable String methodName,
+                            @Nullable String identifier, @Nullable String message) {
+                messages.add(message);
+                threads.add(Thread.currentThread());
+                latch.countDown();
+            }
+        });
+
+        subject.log("class", "method", null, "first");
+        subject.log("class", "method", "id", "second");
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(messages).containsExactly("first", "second");
+        assertThat(threads).doesNotContain(Thread.currentThread());
+    }
+
+    @Test
+    public void log_withFullBuffer_shouldDropEventsWithoutBlocking() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        subject = new MoPubAsyncLogger(new MoPubLogger() {
+            @Override
+            public void log(@Nullable String className, @Nullable String methodName,
+                            @Nullable String identifier, @Nullable String message) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 2);
+
+        // The first event occupies the worker, the next two fill the buffer
+        subject.log(null, null, null, "1");
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        subject.log(null, null, null, "2");
+        subject.log(null, null, null, "3");
+        subject.log(null, null, null, "4");
+        subject.log(null, null, null, "5");
+
+        assertThat(subject.getPendingCount()).isEqualTo(2);
+        assertThat(subject.getDroppedCount()).isEqualTo(2);
+        release.countDown();
+    }
+
+    @Test
+    public void log_withThrowingDelegate_shouldKeepDelivering() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        subject = new MoPubAsyncLogger(new MoPubLogger() {
+            @Override
+            public void log(@Nullable String className, @Nullable String methodName,
+                            @Nullable String identifier, @Nullable String message) {
+                latch.countDown();
+                throw new IllegalStateException("sink failure");
+            }
+        });
+
+        subject.log(null, null, null, "1");
+        subject.log(null, null, null, "2");
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,192 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.common.logging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mopub.common.logging.MoPubLog.LogLevel;
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+public class MoPubLogTest {
+
+    private MoPubLogger mockLogger;
+    private MoPubLogger mockLogger2;
+    private CountingLogEvent debugEvent;
+    private CountingLogEvent infoEvent;
+
+    @Before
+    public void setUp() {
+        mockLogger = mock(MoPubLogger.class);
+        mockLogger2 = mock(MoPubLogger.class);
+        debugEvent = new CountingLogEvent(LogLevel.DEBUG);
+        infoEvent = new CountingLogEvent(LogLevel.INFO);
+        MoPubLog.setLogLevel(LogLevel.NONE);
+    }
+
+    @After
+    public void tearDown() {
+        MoPubLog.removeLogger(mockLogger);
+        MoPubLog.removeLogger(mockLogger2);
+        MoPubLog.setLogLevel(LogLevel.INFO);
+    }
+
+    @Test
+    public void log_withEventBelowAllLoggerLevels_shouldNotFormatMessage() {
+        MoPubLog.addLogger(mockLogger, LogLevel.INFO);
+
+        MoPubLog.log(debugEvent, "arg");
+
+        assertThat(debugEvent.messageCount).isEqualTo(0);
+        verify(mockLogger, never()).log(anyString(), anyString(), any(String.class), anyString());
+    }
+
+    @Test
+    public void log_withNullLogLevelLogger_shouldNotFormatMessage() {
+        MoPubLog.addLogger(mockLogger, null);
+
+        MoPubLog.log(infoEvent);
+
+        assertThat(infoEvent.messageCount).isEqualTo(0);
+    }
+
+    @Test
+    public void log_withMultipleInterestedLoggers_shouldFormatMessageOnce() {
+        MoPubLog.addLogger(mockLogger, LogLevel.DEBUG);
+        MoPubLog.addLogger(mockLogger2, LogLevel.INFO);
+
+        MoPubLog.log("identifier", infoEvent);
+
+        assertThat(infoEvent.messageCount).isEqualTo(1);
+        verify(mockLogger).log(eq(MoPubLogTest.class.getName()),
+                eq("log_withMultipleInterestedLoggers_shouldFormatMessageOnce"),
+                eq("identifier"), eq("message"));
+        verify(mockLogger2, times(1)).log(anyString(), anyString(), eq("identifier"),
+                eq("message"));
+    }
+
+    @Test
+    public void log_afterLoggerRemoved_shouldStopFormattingMessages() {
+        MoPubLog.addLogger(mockLogger, LogLevel.DEBUG);
+        MoPubLog.log(debugEvent);
+        MoPubLog.removeLogger(mockLogger);
+
+        MoPubLog.log(debugEvent);
+
+        assertThat(debugEvent.messageCount).isEqualTo(1);
+    }
+
+    @Test
+    public void isLoggable_shouldTrackLowestRegisteredLevel() {
+        assertThat(MoPubLog.isLoggable(infoEvent)).isFalse();
+
+        MoPubLog.addLogger(mockLogger, LogLevel.INFO);
+        assertThat(MoPubLog.isLoggable(infoEvent)).isTrue();
+        assertThat(MoPubLog.isLoggable(debugEvent)).isFalse();
+
+        MoPubLog.addLogger(mockLogger2, LogLevel.DEBUG);
+        assertThat(MoPubLog.isLoggable(debugEvent)).isTrue();
+        assertThat(MoPubLog.isLoggable(null)).isFalse();
+    }
+
+    @Test
+    public void addLogger_withSameLoggerTwice_shouldReplaceLogLevel() {
+        MoPubLog.addLogger(mockLogger, LogLevel.DEBUG);
+        MoPubLog.addLogger(mockLogger, LogLevel.INFO);
+
+        MoPubLog.log(debugEvent);
+        MoPubLog.log(infoEvent);
+
+        assertThat(debugEvent.messageCount).isEqualTo(0);
+        verify(mockLogger, times(1)).log(anyString(), anyString(), any(String.class), anyString());
+    }
+
+    @Test
+    public void addLogger_withNullLogger_shouldBeIgnored() {
+        MoPubLog.addLogger(null, LogLevel.DEBUG);
+
+        MoPubLog.log(debugEvent);
+
+        assertThat(debugEvent.messageCount).isEqualTo(0);
+    }
+
+    @Test
+    public void addLogger_whileLoggingFromOtherThreads_shouldNotThrow() throws Exception {
+        final int threadCount = 4;
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final MoPubLogger[] loggers = new MoPubLogger[50];
+        for (int i = 0; i < loggers.length; i++) {
+            loggers[i] = mock(MoPubLogger.class);
+        }
+
+        for (int t = 0; t < threadCount; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 1000; i++) {
+                            MoPubLog.log(debugEvent);
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        for (MoPubLogger logger : loggers) {
+            MoPubLog.addLogger(logger, LogLevel.DEBUG);
+        }
+        done.await(10, TimeUnit.SECONDS);
+        for (MoPubLogger logger : loggers) {
+            MoPubLog.removeLogger(logger);
+        }
+
+        assertThat(failure.get()).isNull();
+    }
+
+    private static class CountingLogEvent implements MoPubLog.MPLogEventType {
+        @NonNull private final LogLevel logLevel;
+        volatile int messageCount;
+
+        CountingLogEvent(@NonNull final LogLevel logLevel) {
+            this.logLevel = logLevel;
+        }
+
+        @NonNull
+        @Override
+        public String getMessage(@Nullable final Object... args) {
+            messageCount++;
+            return "message";
+        }
+
+        @NonNull
+        @Override
+        public LogLevel getLogLevel() {
+            return logLevel;
+        }
+    }
+}
@@ -6,9 +6,11 @@ package com.mopub.common.test.support;
 
 import androidx.annotation.NonNull;
 
+import com.mopub.common.BitmapBudgetManager;
 import com.mopub.common.CESettingsCacheService;
 import com.mopub.common.ClientMetadata;
 import com.mopub.common.MoPub;
+import com.mopub.common.NativeImageCacheService;
 import com.mopub.common.Preconditions;
 import com.mopub.common.VideoCacheService;
 import com.mopub.common.factories.MethodBuilderFactory;
@@ -19,6 +21,9 @@ import com.mopub.common.util.test.support.ShadowMoPubHttpUrlConnection;
 import com.mopub.common.util.test.support.ShadowReflection;
 import com.mopub.common.util.test.support.TestDateAndTime;
 import com.mopub.common.util.test.support.TestMethodBuilderFactory;
+import com.mopub.mobileads.VastManager;
+import com.mopub.mobileads.VastXmlManagerAggregator;
+import com.mopub.mobileads.VideoDownloader;
 import com.mopub.mobileads.factories.AdViewControllerFactory;
 import com.mopub.mobileads.factories.BaseAdFactory;
 import com.mopub.mobileads.factories.FullscreenAdAdapterFactory;
@@ -35,8 +40,14 @@ import com.mopub.mobileads.test.support.TestMoPubViewFactory;
 import com.mopub.mobileads.test.support.TestMraidControllerFactory;
 import com.mopub.mobileads.test.support.TestVastManagerFactory;
 import com.mopub.mobileads.test.support.TestVideoViewFactory;
+import com.mopub.nativeads.NativeImageLoader;
 import com.mopub.nativeads.factories.CustomEventNativeFactory;
 import com.mopub.nativeads.test.support.TestCustomEventNativeFactory;
+import com.mopub.network.AdRequestCoalescer;
+import com.mopub.network.AdResponsePrefetcher;
+import com.mopub.network.RequestRateTracker;
+import com.mopub.network.RetryPolicyEngine;
+import com.mopub.network.TrackingDispatcher;
 
 import org.junit.runners.model.InitializationError;
 import org.mockito.MockitoAnnotations;
@@ -90,8 +101,19 @@ public class SdkTestRunner extends RobolectricTestRunner {
             MockitoAnnotations.initMocks(test);
 
             AsyncTasks.setExecutor(new RoboExecutorService());
+            VideoDownloader.setDownloadExecutor(new RoboExecutorService());
             VideoCacheService.clearAndNullVideoCache();
             CESettingsCacheService.clearCESettingsCache();
+            NativeImageCacheService.clearAndNullNativeImageCache();
+            VastXmlManagerAggregator.clearWrapperResponseCache();
+            VastManager.setProgressivePlaybackSettings(null);
+            TrackingDispatcher.clearForTesting();
+            RetryPolicyEngine.setInstanceForTesting(null);
+            AdResponsePrefetcher.clearForTesting();
+            RequestRateTracker.clearForTesting();
+            AdRequestCoalescer.clearForTesting();
+            NativeImageLoader.setInstanceForTesting(null);
+            BitmapBudgetManager.clearForTesting();
         }
     }
 }
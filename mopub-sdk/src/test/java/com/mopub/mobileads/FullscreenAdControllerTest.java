@@ -927,6 +927,7 @@ public class FullscreenAdControllerTest {
         subject.destroy();
 
         verify(mockBlurLastVideoFrameTask).cancel(anyBoolean());
+        verify(mockBlurLastVideoFrameTask).release();
     }
 
     private void setShowCd(JSONObject ceSettings,
@@ -0,0 +1,51 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+public class ProgressivePlaybackSettingsTest {
+
+    @Test
+    public void getPrefixBytes_withBitrate_shouldConvertSecondsToBytes() {
+        final ProgressivePlaybackSettings subject = new ProgressivePlaybackSettings.Builder()
+                .withPrefixSeconds(4)
+                .build();
+
+        // 4 seconds at 800 kbps
+        assertThat(subject.getPrefixBytes(800)).isEqualTo(400 * 1000);
+    }
+
+    @Test
+    public void getPrefixBytes_withoutBitrate_shouldUsePrefixBytes() {
+        final ProgressivePlaybackSettings subject = new ProgressivePlaybackSettings.Builder()
+                .withPrefixBytes(12345)
+                .build();
+
+        assertThat(subject.getPrefixBytes(null)).isEqualTo(12345);
+        assertThat(subject.getPrefixBytes(0)).isEqualTo(12345);
+    }
+
+    @Test
+    public void getPrefixBytes_withZeroPrefixSeconds_shouldIgnoreBitrate() {
+        final ProgressivePlaybackSettings subject = new ProgressivePlaybackSettings.Builder()
+                .withPrefixBytes(12345)
+                .withPrefixSeconds(0)
+                .build();
+
+        assertThat(subject.getPrefixBytes(800)).isEqualTo(12345);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withPrefixBytes_withZero_shouldThrowIllegalArgumentException() {
+        new ProgressivePlaybackSettings.Builder().withPrefixBytes(0);
+    }
+}
@@ -0,0 +1,182 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+
+import static com.mopub.mobileads.ProgressiveVideoDownload.ReadState.AVAILABLE;
+import static com.mopub.mobileads.ProgressiveVideoDownload.ReadState.END_OF_FILE;
+import static com.mopub.mobileads.ProgressiveVideoDownload.ReadState.FAILED;
+import static com.mopub.mobileads.ProgressiveVideoDownload.ReadState.STALLED;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+public class ProgressiveVideoDownloadTest {
+    private static final String URL = "https://video_url";
+    private static final long PREFIX_BYTES = 100;
+    private static final long STALL_TIMEOUT_MILLIS = 50;
+
+    @Mock private ProgressiveVideoDownload.PrefixListener mockPrefixListener;
+    @Mock private ProgressiveVideoDownload.FinishedListener mockFinishedListener;
+    private ProgressiveVideoDownload subject;
+
+    @Before
+    public void setUp() {
+        subject = ProgressiveVideoDownload.register(URL, new File("video.partial"), PREFIX_BYTES,
+                STALL_TIMEOUT_MILLIS, mockPrefixListener);
+    }
+
+    @After
+    public void tearDown() {
+        ProgressiveVideoDownload.clearDownloads();
+    }
+
+    @Test
+    public void onProgress_beforePrefix_shouldNotNotifyListener() {
+        subject.onProgress(PREFIX_BYTES - 1, 1000);
+        ShadowLooper.runUiThreadTasks();
+
+        verify(mockPrefixListener, never()).onPrefixAvailable();
+    }
+
+    @Test
+    public void onProgress_afterPrefix_shouldNotifyListenerOnce() {
+        subject.onProgress(PREFIX_BYTES, 1000);
+        subject.onProgress(PREFIX_BYTES * 2, 1000);
+        ShadowLooper.runUiThreadTasks();
+
+        verify(mockPrefixListener).onPrefixAvailable();
+    }
+
+    @Test
+    public void onProgress_withVideoSmallerThanPrefix_shouldNotifyListenerWhenComplete() {
+        subject.onProgress(10, 10);
+        ShadowLooper.runUiThreadTasks();
+
+        verify(mockPrefixListener).onPrefixAvailable();
+    }
+
+    @Test
+    public void get_shouldReturnDownloadAfterFinished_untilReleased() {
+        subject.onFinished(false);
+
+        assertThat(ProgressiveVideoDownload.get(subject.getKey())).isSameAs(subject);
+        assertThat(subject.hasFailed()).isTrue();
+
+        ProgressiveVideoDownload.release(subject.getKey());
+
+        assertThat(ProgressiveVideoDownload.get(subject.getKey())).isNull();
+    }
+
+    @Test
+    public void register_withSameUrl_shouldKeepBothDownloads_shouldReleaseIndependently() {
+        final ProgressiveVideoDownload other = ProgressiveVideoDownload.register(URL,
+                new File("video.partial"), PREFIX_BYTES, STALL_TIMEOUT_MILLIS,
+                mockPrefixListener);
+
+        assertThat(other.getKey()).isNotEqualTo(subject.getKey());
+        assertThat(ProgressiveVideoDownload.get(subject.getKey())).isSameAs(subject);
+        assertThat(ProgressiveVideoDownload.get(other.getKey())).isSameAs(other);
+
+        other.release();
+
+        assertThat(ProgressiveVideoDownload.get(subject.getKey())).isSameAs(subject);
+        assertThat(ProgressiveVideoDownload.get(other.getKey())).isNull();
+    }
+
+    @Test
+    public void onProgress_afterRelease_shouldNotNotifyListener() {
+        subject.release();
+
+        subject.onProgress(PREFIX_BYTES, 1000);
+        ShadowLooper.runUiThreadTasks();
+
+        verify(mockPrefixListener, never()).onPrefixAvailable();
+    }
+
+    @Test
+    public void addFinishedListener_beforeFinished_shouldNotifyOnceFinished() {
+        subject.addFinishedListener(mockFinishedListener);
+        ShadowLooper.runUiThreadTasks();
+        verify(mockFinishedListener, never()).onFinished(true);
+
+        subject.onFinished(true);
+        ShadowLooper.runUiThreadTasks();
+
+        verify(mockFinishedListener).onFinished(true);
+        assertThat(subject.hasSucceeded()).isTrue();
+    }
+
+    @Test
+    public void addFinishedListener_afterFinished_shouldNotifyRightAway() {
+        subject.onFinished(false);
+
+        subject.addFinishedListener(mockFinishedListener);
+        ShadowLooper.runUiThreadTasks();
+
+        verify(mockFinishedListener).onFinished(false);
+    }
+
+    @Test
+    public void awaitByte_withByteOnDisk_shouldNotStall() throws Exception {
+        subject.onProgress(10, 1000);
+
+        assertThat(subject.awaitByte(9)).isEqualTo(AVAILABLE);
+        assertThat(subject.getStallCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void awaitByte_pastEndOfVideo_shouldReturnEndOfFile() throws Exception {
+        subject.onProgress(1000, 1000);
+
+        assertThat(subject.awaitByte(1000)).isEqualTo(END_OF_FILE);
+    }
+
+    @Test
+    public void awaitByte_whenDownloadDoesNotCatchUp_shouldReturnStalled() throws Exception {
+        subject.onProgress(10, 1000);
+
+        assertThat(subject.awaitByte(10)).isEqualTo(STALLED);
+        assertThat(subject.getStallCount()).isEqualTo(1);
+        assertThat(subject.getStalledMillis()).isGreaterThanOrEqualTo(STALL_TIMEOUT_MILLIS - 1);
+    }
+
+    @Test
+    public void awaitByte_whenDownloadCatchesUp_shouldReturnAvailable() throws Exception {
+        subject = new ProgressiveVideoDownload(URL, new File("video.partial"), PREFIX_BYTES,
+                10 * 1000, mockPrefixListener);
+        subject.onProgress(10, 1000);
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                subject.onProgress(20, 1000);
+            }
+        });
+
+        writer.start();
+
+        assertThat(subject.awaitByte(15)).isEqualTo(AVAILABLE);
+        writer.join();
+    }
+
+    @Test
+    public void awaitByte_whenDownloadFails_shouldReturnFailed() throws Exception {
+        subject.onProgress(10, 1000);
+        subject.onFinished(false);
+
+        assertThat(subject.awaitByte(10)).isEqualTo(FAILED);
+    }
+}
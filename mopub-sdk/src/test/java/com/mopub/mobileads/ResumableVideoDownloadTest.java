@@ -0,0 +1,333 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(SdkTestRunner.class)
+public class ResumableVideoDownloadTest {
+    private static final int VIDEO_SIZE = ResumableVideoDownload.CHUNK_SIZE_BYTES * 2 + 1000;
+
+    private byte[] video;
+    private File partialFile;
+    private RangeServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        video = new byte[VIDEO_SIZE];
+        for (int i = 0; i < video.length; i++) {
+            video[i] = (byte) (i % 251);
+        }
+        partialFile = File.createTempFile("video", ".partial");
+        partialFile.delete();
+        server = new RangeServer(video);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        new ResumableVideoDownload(server.getUrl(), partialFile, VIDEO_SIZE).discard();
+    }
+
+    @Test
+    public void download_shouldFetchVideoInRangeChunks() throws Exception {
+        final ResumableVideoDownload subject = createSubject(VIDEO_SIZE);
+
+        assertThat(subject.download()).isTrue();
+
+        assertThat(readFile(partialFile)).isEqualTo(video);
+        assertThat(server.getRequestedRanges()).containsExactly(
+                "bytes=0-2097151", "bytes=2097152-4194303", "bytes=4194304-4195303");
+    }
+
+    @Test
+    public void download_withDroppedConnections_shouldResumeFromLastByteWritten() throws Exception {
+        server.dropAfter(1000, 1000);
+        final ResumableVideoDownload subject = createSubject(VIDEO_SIZE);
+
+        assertThat(subject.download()).isTrue();
+
+        assertThat(readFile(partialFile)).isEqualTo(video);
+        assertThat(server.getRequestedRanges()).containsExactly(
+                "bytes=0-2097151", "bytes=1000-2098151", "bytes=2000-2099151",
+                "bytes=2099152-4195303");
+    }
+
+    @Test
+    public void download_whenEveryAttemptFails_shouldThrowAndKeepPartialFile() throws Exception {
+        server.dropAfter(500, 0, 0, 0);
+        final ResumableVideoDownload subject = createSubject(VIDEO_SIZE);
+
+        try {
+            subject.download();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertThat(partialFile.length()).isEqualTo(500);
+    }
+
+    @Test
+    public void download_withPartialFileFromEarlierAttempt_shouldResumeWithIfRange() throws Exception {
+        server.dropAfter(1234, 0, 0, 0);
+        try {
+            createSubject(VIDEO_SIZE).download();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+
+        final ResumableVideoDownload subject = createSubject(VIDEO_SIZE);
+        assertThat(subject.download()).isTrue();
+
+        assertThat(readFile(partialFile)).isEqualTo(video);
+        assertThat(server.getRequestedRanges()).contains("bytes=1234-2098385");
+        assertThat(server.getIfRangeHeaders()).contains(RangeServer.ETAG);
+    }
+
+    @Test
+    public void download_withPartialFileWithoutValidator_shouldRestartFromFirstByte() throws Exception {
+        server.setValidatorSent(false);
+        server.dropAfter(1234, 0, 0, 0);
+        try {
+            createSubject(VIDEO_SIZE).download();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+
+        final ResumableVideoDownload subject = createSubject(VIDEO_SIZE);
+        assertThat(subject.download()).isTrue();
+
+        assertThat(readFile(partialFile)).isEqualTo(video);
+        assertThat(server.getRequestedRanges()).containsExactly(
+                "bytes=0-2097151", "bytes=1234-2098385", "bytes=1234-2098385",
+                "bytes=1234-2098385",
+                // The second attempt cannot validate the 1234 bytes on disk
+                "bytes=0-2097151", "bytes=2097152-4194303", "bytes=4194304-4195303");
+        assertThat(server.getIfRangeHeaders()).isEmpty();
+    }
+
+    @Test
+    public void download_withCompletePartialFile_shouldNotRequestAgain() throws Exception {
+        assertThat(createSubject(VIDEO_SIZE).download()).isTrue();
+        final int requestCount = server.getRequestedRanges().size();
+
+        assertThat(createSubject(VIDEO_SIZE).download()).isTrue();
+
+        assertThat(server.getRequestedRanges()).hasSize(requestCount);
+    }
+
+    @Test
+    public void download_withTotalLargerThanCap_shouldReturnFalseAndTruncate() throws Exception {
+        final ResumableVideoDownload subject = createSubject(VIDEO_SIZE - 1);
+
+        assertThat(subject.download()).isFalse();
+
+        assertThat(partialFile.length()).isEqualTo(0);
+    }
+
+    @Test
+    public void download_withServerIgnoringRanges_shouldCapStreamedBytes() throws Exception {
+        // The server neither honors Range nor sends a Content-Length
+        server.setRangesSupported(false);
+        final ResumableVideoDownload subject = createSubject(VIDEO_SIZE - 1);
+
+        assertThat(subject.download()).isFalse();
+
+        assertThat(partialFile.length()).isEqualTo(0);
+    }
+
+    @Test
+    public void download_withServerIgnoringRanges_shouldDownloadWholeBody() throws Exception {
+        server.setRangesSupported(false);
+        final ResumableVideoDownload subject = createSubject(VIDEO_SIZE);
+
+        assertThat(subject.download()).isTrue();
+
+        assertThat(readFile(partialFile)).isEqualTo(video);
+    }
+
+    private ResumableVideoDownload createSubject(final long maxSizeBytes) {
+        return new ResumableVideoDownload(server.getUrl(), partialFile, maxSizeBytes);
+    }
+
+    private static byte[] readFile(final File file) throws IOException {
+        final byte[] bytes = new byte[(int) file.length()];
+        final FileInputStream inputStream = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += inputStream.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * Minimal HTTP stand-in that serves a byte array with Range support and can drop connections
+     * part way through a response.
+     */
+    private static class RangeServer implements Runnable {
+        static final String ETAG = "\"video-etag\"";
+        private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+        private final byte[] mContent;
+        private final ServerSocket mServerSocket;
+        private final Thread mThread;
+        private final Queue<Integer> mDropAfterBytes = new ConcurrentLinkedQueue<>();
+        private final List<String> mRequestedRanges =
+                Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> mIfRangeHeaders =
+                Collections.synchronizedList(new ArrayList<String>());
+        private volatile boolean mRangesSupported = true;
+        private volatile boolean mValidatorSent = true;
+
+        RangeServer(final byte[] content) throws IOException {
+            mContent = content;
+            mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            mThread = new Thread(this);
+            mThread.setDaemon(true);
+            mThread.start();
+        }
+
+        String getUrl() {
+            return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/video.mp4";
+        }
+
+        /**
+         * Each value applies to one response, in order: the connection is closed after that many
+         * body bytes. Zero drops the connection before any bytes are sent.
+         */
+        void dropAfter(final Integer... bytes) {
+            Collections.addAll(mDropAfterBytes, bytes);
+        }
+
+        void setRangesSupported(final boolean rangesSupported) {
+            mRangesSupported = rangesSupported;
+        }
+
+        void setValidatorSent(final boolean validatorSent) {
+            mValidatorSent = validatorSent;
+        }
+
+        List<String> getRequestedRanges() {
+            return new ArrayList<>(mRequestedRanges);
+        }
+
+        List<String> getIfRangeHeaders() {
+            return new ArrayList<>(mIfRangeHeaders);
+        }
+
+        void close() throws IOException {
+            mServerSocket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!mServerSocket.isClosed()) {
+                try {
+                    final Socket socket = mServerSocket.accept();
+                    try {
+                        serve(socket);
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // Closed by the test or dropped on purpose
+                }
+            }
+        }
+
+        private void serve(final Socket socket) throws IOException {
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            String range = null;
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                final int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                final String name = line.substring(0, colon).trim();
+                final String value = line.substring(colon + 1).trim();
+                if ("Range".equalsIgnoreCase(name)) {
+                    range = value;
+                } else if ("If-Range".equalsIgnoreCase(name)) {
+                    mIfRangeHeaders.add(value);
+                }
+            }
+            if (range != null) {
+                mRequestedRanges.add(range);
+            }
+
+            int first = 0;
+            int last = mContent.length - 1;
+            final StringBuilder headers = new StringBuilder();
+            final Matcher matcher = range == null ? null : RANGE_PATTERN.matcher(range);
+            if (mRangesSupported && matcher != null && matcher.matches()) {
+                first = Integer.parseInt(matcher.group(1));
+                if (!matcher.group(2).isEmpty()) {
+                    last = Math.min(last, Integer.parseInt(matcher.group(2)));
+                }
+                if (first >= mContent.length) {
+                    headers.append("HTTP/1.1 416 Range Not Satisfiable\r\n")
+                            .append("Content-Range: bytes */").append(mContent.length)
+                            .append("\r\nContent-Length: 0\r\n");
+                    last = first - 1;
+                } else {
+                    headers.append("HTTP/1.1 206 Partial Content\r\n")
+                            .append("Content-Range: bytes ").append(first).append('-')
+                            .append(last).append('/').append(mContent.length).append("\r\n")
+                            .append("Content-Length: ").append(last - first + 1).append("\r\n");
+                }
+            } else {
+                headers.append("HTTP/1.1 200 OK\r\n");
+            }
+            if (mValidatorSent) {
+                headers.append("ETag: ").append(ETAG).append("\r\n");
+            }
+            headers.append("Connection: close\r\n\r\n");
+
+            final OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(headers.toString().getBytes("US-ASCII"));
+            final Integer dropAfter = mDropAfterBytes.poll();
+            int length = last - first + 1;
+            if (dropAfter != null) {
+                length = Math.min(length, dropAfter);
+            }
+            outputStream.write(mContent, first, Math.max(0, length));
+            outputStream.flush();
+        }
+    }
+}
@@ -15,14 +15,17 @@ import com.mopub.network.MoPubNetworkError;
 import com.mopub.network.MoPubNetworkResponse;
 import com.mopub.network.MoPubRequestQueue;
 import com.mopub.network.Networking;
+import com.mopub.network.RetryPolicyEngine;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.robolectric.Robolectric;
 
 import java.util.Collections;
+import java.util.Random;
 
 import static com.mopub.common.MoPubRequestMatcher.isUrl;
 import static org.fest.assertions.api.Assertions.assertThat;
@@ -30,6 +33,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
@@ -166,27 +170,25 @@ public class RewardedAdCompletionRequestHandlerTest {
     }
 
     @Test
-    public void getTimeout_shouldReturnCorrectTimeoutBasedOnRetry() {
-        final int maxTimeout = RewardedAdCompletionRequestHandler.RETRY_TIMES[RewardedAdCompletionRequestHandler.RETRY_TIMES.length - 1];
-
-        assertThat(RewardedAdCompletionRequestHandler.getTimeout(-1)).isEqualTo(maxTimeout);
-
-        assertThat(RewardedAdCompletionRequestHandler.getTimeout(0)).isEqualTo(
-                RewardedAdCompletionRequestHandler.RETRY_TIMES[0]);
-
-        assertThat(RewardedAdCompletionRequestHandler.getTimeout(1)).isEqualTo(
-                RewardedAdCompletionRequestHandler.RETRY_TIMES[1]);
+    public void makeRewardedAdCompletionRequest_shouldTimeOutBeforeNextRetry() {
+        Handler mockHandler = mock(Handler.class);
+        RewardedAdCompletionRequestHandler subject =
+                new RewardedAdCompletionRequestHandler(context, url, customerId, rewardName,
+                        rewardAmount, className, customData, mockHandler);
+        final ArgumentCaptor<RewardedAdCompletionRequest> requestCaptor =
+                ArgumentCaptor.forClass(RewardedAdCompletionRequest.class);
+        final ArgumentCaptor<Long> delayCaptor = ArgumentCaptor.forClass(Long.class);
 
-        assertThat(RewardedAdCompletionRequestHandler.getTimeout(1234567)).isEqualTo(
-                maxTimeout);
-    }
+        for (int i = 0; i < 10; i++) {
+            subject.makeRewardedAdCompletionRequest();
+        }
 
-    @Test
-    public void retryTimes_shouldAllBeGreaterThanRequestTimeoutDelay() {
-        for (int retryTime : RewardedAdCompletionRequestHandler.RETRY_TIMES) {
-            assertThat(
-                    retryTime - RewardedAdCompletionRequestHandler.REQUEST_TIMEOUT_DELAY)
-                    .isGreaterThanOrEqualTo(0);
+        verify(mockRequestQueue, times(10)).add(requestCaptor.capture());
+        verify(mockHandler, times(10)).postDelayed(any(Runnable.class), delayCaptor.capture());
+        for (int i = 0; i < 10; i++) {
+            assertThat((long) requestCaptor.getAllValues().get(i).getRetryPolicy().getInitialTimeoutMs())
+                    .isLessThanOrEqualTo(delayCaptor.getAllValues().get(i)
+                            - RewardedAdCompletionRequestHandler.REQUEST_TIMEOUT_DELAY);
         }
     }
 
@@ -277,11 +279,19 @@ public class RewardedAdCompletionRequestHandlerTest {
                 new RewardedAdCompletionRequestHandler(context, url, customerId, rewardName,
                         rewardAmount, className, customData, mockHandler);
 
+        final RetryPolicyEngine retryPolicyEngine = new RetryPolicyEngine(new Random() {
+            @Override
+            public double nextDouble() {
+                return 0.5;
+            }
+        });
+        RetryPolicyEngine.setInstanceForTesting(retryPolicyEngine);
+
         subject.makeRewardedAdCompletionRequest();
 
         assertThat(subject.getRetryCount()).isEqualTo(1);
         verify(mockHandler).postDelayed(any(Runnable.class),
-                eq((long) RewardedAdCompletionRequestHandler.RETRY_TIMES[0]));
+                eq(retryPolicyEngine.getBackoffMs(RetryPolicyEngine.Endpoint.REWARDED_COMPLETION, 0)));
     }
 
     @Test
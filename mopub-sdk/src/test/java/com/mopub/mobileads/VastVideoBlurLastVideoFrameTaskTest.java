@@ -8,12 +8,14 @@ import android.graphics.Bitmap;
 import android.media.MediaMetadataRetriever;
 import android.widget.ImageView;
 
+import com.mopub.common.BitmapBudgetManager;
 import com.mopub.common.test.support.SdkTestRunner;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.robolectric.RuntimeEnvironment;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -42,6 +44,7 @@ public class VastVideoBlurLastVideoFrameTaskTest {
         videoDuration = 10000;
 
         when(mockMediaMetadataRetriever.getFrameAtTime(anyLong(), anyInt())).thenReturn(mockBitmap);
+        when(mockBlurredLastVideoFrameImageView.getContext()).thenReturn(RuntimeEnvironment.application);
 
         subject = new VastVideoBlurLastVideoFrameTask(mockMediaMetadataRetriever,
                 mockBlurredLastVideoFrameImageView, videoDuration);
@@ -110,6 +113,27 @@ public class VastVideoBlurLastVideoFrameTaskTest {
         verify(mockBlurredLastVideoFrameImageView).setImageBitmap(subject.getBlurredLastVideoFrame());
     }
 
+    @Test
+    public void onPostExecute_whenBlurringSucceeded_shouldCountFrameAgainstBitmapBudget() throws Exception {
+        subject.doInBackground(videoPath);
+
+        subject.onPostExecute(true);
+
+        assertThat(BitmapBudgetManager.getInstance(RuntimeEnvironment.application)
+                .getFootprintBytesByConsumer()).containsKey("vast-blurred-last-frame");
+    }
+
+    @Test
+    public void release_shouldStopCountingFrameAgainstBitmapBudget() throws Exception {
+        subject.doInBackground(videoPath);
+        subject.onPostExecute(true);
+
+        subject.release();
+
+        assertThat(BitmapBudgetManager.getInstance(RuntimeEnvironment.application)
+                .getFootprintBytesByConsumer()).doesNotContainKey("vast-blurred-last-frame");
+    }
+
     @Test
     public void onPostExecute_whenBlurringFailed_shouldNotSetImageBitmap() throws Exception {
         subject.onPostExecute(false);
@@ -0,0 +1,74 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+public class VastWrapperResponseCacheTest {
+    private static final long TTL_MILLIS = 1000;
+
+    private VastWrapperResponseCache subject;
+
+    @Before
+    public void setUp() {
+        subject = new VastWrapperResponseCache(TTL_MILLIS, 2);
+    }
+
+    @Test
+    public void get_beforeTtl_shouldReturnResponse() {
+        subject.put("https://wrapper", "<VAST/>", 100);
+
+        assertThat(subject.get("https://wrapper", 100 + TTL_MILLIS - 1)).isEqualTo("<VAST/>");
+    }
+
+    @Test
+    public void get_afterTtl_shouldReturnNullAndRemoveEntry() {
+        subject.put("https://wrapper", "<VAST/>", 100);
+
+        assertThat(subject.get("https://wrapper", 100 + TTL_MILLIS)).isNull();
+        assertThat(subject.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void get_withUnknownUrl_shouldReturnNull() {
+        assertThat(subject.get("https://unknown", 0)).isNull();
+    }
+
+    @Test
+    public void put_withEmptyResponse_shouldNotCache() {
+        subject.put("https://wrapper", "", 0);
+
+        assertThat(subject.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void put_whenFull_shouldEvictLeastRecentlyUsedEntry() {
+        subject.put("https://first", "first", 0);
+        subject.put("https://second", "second", 0);
+        subject.get("https://first", 0);
+
+        subject.put("https://third", "third", 0);
+
+        assertThat(subject.get("https://first", 0)).isEqualTo("first");
+        assertThat(subject.get("https://second", 0)).isNull();
+        assertThat(subject.get("https://third", 0)).isEqualTo("third");
+    }
+
+    @Test
+    public void clear_shouldRemoveAllEntries() {
+        subject.put("https://first", "first", 0);
+
+        subject.clear();
+
+        assertThat(subject.size()).isEqualTo(0);
+    }
+}
@@ -32,7 +32,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import static com.mopub.common.MoPubRequestMatcher.isUrl;
 import static com.mopub.mobileads.VastXmlManagerAggregator.VastXmlManagerAggregatorListener;
@@ -382,6 +384,8 @@ public class VastXmlManagerAggregatorTest {
         context = Robolectric.buildActivity(Activity.class).create().get();
 
         Networking.setRequestQueueForTesting(mockRequestQueue);
+        // Run speculative wrapper fetches inline so pending responses are consumed in order
+        VastXmlManagerAggregator.setWrapperFetchExecutor(new DirectExecutorService());
 
         semaphore = new Semaphore(0);
         vastXmlManagerAggregatorListener = mock(VastXmlManagerAggregatorListener.class);
@@ -1010,6 +1014,103 @@ public class VastXmlManagerAggregatorTest {
                 .containsOnly("viewTrackingUri1", "viewTrackingUri2");
     }
 
+    @Test
+    public void evaluateVastXmlManager_withStreamingParser_withInline_shouldMatchDomParser() {
+        subject.setStreamingParserEnabled(false);
+        final VastVideoConfig domConfig = subject.evaluateVastXmlManager(
+                VastXmlPullParserTest.INLINE_VAST_XML_STRING, new ArrayList<VastTracker>());
+        subject.setStreamingParserEnabled(true);
+        final VastVideoConfig pullConfig = subject.evaluateVastXmlManager(
+                VastXmlPullParserTest.INLINE_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        assertThat(pullConfig.getNetworkMediaFileUrl()).isEqualTo("https://video.mp4");
+        assertThat(pullConfig.toJsonString()).isEqualTo(domConfig.toJsonString());
+    }
+
+    @Test
+    public void evaluateVastXmlManager_withStreamingParser_withWrapperChain_shouldMatchDomParser() {
+        final String secondWrapper = VastXmlPullParserTest.WRAPPER_VAST_XML_STRING
+                .replace("https://wrapper/", "https://wrapper2/");
+
+        subject.setStreamingParserEnabled(false);
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, secondWrapper);
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200,
+                VastXmlPullParserTest.INLINE_VAST_XML_STRING);
+        final VastVideoConfig domConfig = subject.evaluateVastXmlManager(
+                VastXmlPullParserTest.WRAPPER_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        subject.setStreamingParserEnabled(true);
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, secondWrapper);
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200,
+                VastXmlPullParserTest.INLINE_VAST_XML_STRING);
+        final VastVideoConfig pullConfig = subject.evaluateVastXmlManager(
+                VastXmlPullParserTest.WRAPPER_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        assertThat(VastUtils.vastTrackersToStrings(pullConfig.getImpressionTrackers()))
+                .contains("https://wrapper/impression", "https://wrapper2/impression",
+                        "https://impression1");
+        assertThat(pullConfig.toJsonString()).isEqualTo(domConfig.toJsonString());
+    }
+
+    @Test
+    public void evaluateVastXmlManager_withSiblingWrappers_shouldPrefetchAndPickFirstValidAdInDocumentOrder() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_JUST_ERROR_XML_STRING);
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200,
+                VastXmlPullParserTest.INLINE_VAST_XML_STRING);
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200,
+                VastXmlPullParserTest.INLINE_VAST_XML_STRING.replace("https://video.mp4",
+                        "https://third.mp4"));
+
+        final VastVideoConfig vastVideoConfig = subject.evaluateVastXmlManager(
+                createSiblingWrappersXml("https://first/vast", "https://second/vast",
+                        "https://third/vast"), new ArrayList<VastTracker>());
+
+        // All three wrappers were requested up front, but the second Ad is the first valid one
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).isEmpty();
+        assertThat(vastVideoConfig.getNetworkMediaFileUrl()).isEqualTo("https://video.mp4");
+        assertThat(VastUtils.vastTrackersToStrings(vastVideoConfig.getImpressionTrackers()))
+                .contains("https://second/impression")
+                .doesNotContain("https://first/impression", "https://third/impression");
+    }
+
+    @Test
+    public void evaluateVastXmlManager_withSingleWrapper_shouldNotPrefetch() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_NESTED_VAST_XML_STRING);
+
+        subject.evaluateVastXmlManager(TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).isEmpty();
+        assertThat(ShadowMoPubHttpUrlConnection.getLatestRequestUrl())
+                .isEqualTo("https://dsp.x-team.staging.mopub.com/xml");
+    }
+
+    @Test
+    public void evaluateVastXmlManager_withCachedWrapperResponse_shouldNotMakeRequest() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_NESTED_VAST_XML_STRING);
+        subject.evaluateVastXmlManager(TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        final VastXmlManagerAggregator reloadedSubject = new VastXmlManagerAggregator(
+                vastXmlManagerAggregatorListener, 1.0, DIM_LONG, context);
+        final VastVideoConfig vastVideoConfig = reloadedSubject.evaluateVastXmlManager(
+                TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        assertThat(vastVideoConfig.getNetworkMediaFileUrl()).isEqualTo("https://s3" +
+                ".amazonaws.com/mopub-vast/tapad-video.mp4");
+    }
+
+    @Test
+    public void evaluateVastXmlManager_afterResolutionDeadline_shouldFireWrapperTimeoutAndReturnNull() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_NESTED_VAST_XML_STRING);
+        subject.setResolutionDeadlineMillis(0);
+
+        final VastVideoConfig vastVideoConfig = subject.evaluateVastXmlManager(
+                TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        assertThat(vastVideoConfig).isNull();
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).hasSize(1);
+        verify(mockRequestQueue).add(argThat(isUrl("https://wrapperErrorOne?errorcode=301")));
+    }
+
     @Test
     public void evaluateVastXmlManager_withAWrapperToAnInline_shouldReturnValidVastVideoConfiguration() throws Exception {
         ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_NESTED_VAST_XML_STRING);
@@ -1480,4 +1581,46 @@ public class VastXmlManagerAggregatorTest {
         return mockResourceXmlManager;
     }
 
+    private static String createSiblingWrappersXml(final String... vastAdTagUris) {
+        final StringBuilder xml = new StringBuilder("<VAST version=\"3.0\">");
+        for (final String vastAdTagUri : vastAdTagUris) {
+            final String host = vastAdTagUri.substring("https://".length(),
+                    vastAdTagUri.indexOf('/', "https://".length()));
+            xml.append("<Ad><Wrapper><VASTAdTagURI>").append(vastAdTagUri)
+                    .append("</VASTAdTagURI><Impression>https://").append(host)
+                    .append("/impression</Impression></Wrapper></Ad>");
+        }
+        return xml.append("</VAST>").toString();
+    }
+
+    private static class DirectExecutorService extends AbstractExecutorService {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+            return true;
+        }
+    }
 }
@@ -0,0 +1,224 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.test.support.VastUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+public class VastXmlPullParserTest {
+    private static final String XML_HEADER_TAG = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    static final String INLINE_VAST_XML_STRING = "<VAST version=\"3.0\">" +
+            "    <Ad id=\"1\" sequence=\"1\">" +
+            "        <InLine>" +
+            "            <AdSystem>MoPub</AdSystem>" +
+            "            <Impression><![CDATA[ https://impression1 ]]></Impression>" +
+            "            <Impression>https://impression2</Impression>" +
+            "            <Impression></Impression>" +
+            "            <Error><![CDATA[https://error?code=[ERRORCODE]]]></Error>" +
+            "            <Creatives>" +
+            "                <Creative>" +
+            "                    <Linear skipoffset=\" 00:00:05 \">" +
+            "                        <Duration>00:00:30</Duration>" +
+            "                        <TrackingEvents>" +
+            "                            <Tracking event=\"creativeView\">https://creativeView</Tracking>" +
+            "                            <Tracking event=\"start\">https://start</Tracking>" +
+            "                            <Tracking event=\"firstQuartile\">https://firstQuartile</Tracking>" +
+            "                            <Tracking event=\"midpoint\">https://midpoint</Tracking>" +
+            "                            <Tracking event=\"thirdQuartile\">https://thirdQuartile</Tracking>" +
+            "                            <Tracking event=\"complete\">https://complete</Tracking>" +
+            "                            <Tracking event=\"pause\">https://pause</Tracking>" +
+            "                            <Tracking event=\"resume\">https://resume</Tracking>" +
+            "                            <Tracking event=\"close\">https://close</Tracking>" +
+            "                            <Tracking event=\"closeLinear\">https://closeLinear</Tracking>" +
+            "                            <Tracking event=\"skip\">https://skip</Tracking>" +
+            "                            <Tracking event=\"progress\" offset=\"10%\">https://progress10</Tracking>" +
+            "                            <Tracking event=\"progress\" offset=\"00:00:07.500\">https://progress7500</Tracking>" +
+            "                            <Tracking event=\"mute\">https://mute</Tracking>" +
+            "                        </TrackingEvents>" +
+            "                        <VideoClicks>" +
+            "                            <ClickThrough><![CDATA[https://clickthrough]]></ClickThrough>" +
+            "                            <ClickTracking>https://click1</ClickTracking>" +
+            "                            <ClickTracking>https://click2</ClickTracking>" +
+            "                        </VideoClicks>" +
+            "                        <MediaFiles>" +
+            "                            <MediaFile delivery=\"progressive\" type=\"video/mp4\" width=\"640\" height=\"360\" minBitrate=\"500\" maxBitrate=\"1000\">" +
+            "                                <![CDATA[https://video.mp4]]>" +
+            "                            </MediaFile>" +
+            "                            <MediaFile delivery=\"progressive\" type=\"video/webm\" width=\"abc\" height=\"360\">https://video.webm</MediaFile>" +
+            "                        </MediaFiles>" +
+            "                    </Linear>" +
+            "                </Creative>" +
+            "            </Creatives>" +
+            "        </InLine>" +
+            "    </Ad>" +
+            "</VAST>" +
+            "<MP_TRACKING_URLS>" +
+            "    <MP_TRACKING_URL>https://www.mopub.com/imp1</MP_TRACKING_URL>" +
+            "    <MP_TRACKING_URL>https://www.mopub.com/imp2</MP_TRACKING_URL>" +
+            "</MP_TRACKING_URLS>" +
+            "<MoPubCtaText>Learn More</MoPubCtaText>" +
+            "<MoPubSkipText>this skip text is too long</MoPubSkipText>" +
+            "<MoPubCloseIcon>https://closeIcon</MoPubCloseIcon>";
+
+    static final String WRAPPER_VAST_XML_STRING = XML_HEADER_TAG +
+            "<VAST version=\"3.0\">" +
+            "    <Ad id=\"2\">" +
+            "        <Wrapper>" +
+            "            <AdSystem>MoPub</AdSystem>" +
+            "            <VASTAdTagURI><![CDATA[ https://next.wrapper/vast ]]></VASTAdTagURI>" +
+            "            <Impression>https://wrapper/impression</Impression>" +
+            "            <Error>https://wrapper/error</Error>" +
+            "            <Creatives>" +
+            "                <Creative>" +
+            "                    <Linear>" +
+            "                        <TrackingEvents>" +
+            "                            <Tracking event=\"start\">https://wrapper/start</Tracking>" +
+            "                        </TrackingEvents>" +
+            "                        <VideoClicks>" +
+            "                            <ClickTracking>https://wrapper/click</ClickTracking>" +
+            "                        </VideoClicks>" +
+            "                    </Linear>" +
+            "                </Creative>" +
+            "            </Creatives>" +
+            "        </Wrapper>" +
+            "    </Ad>" +
+            "</VAST>";
+
+    @Test
+    public void parse_withInLine_shouldReadAllSupportedValues() throws Exception {
+        final VastXmlPullParser.Document document =
+                VastXmlPullParser.parse(INLINE_VAST_XML_STRING);
+
+        assertThat(document).isNotNull();
+        assertThat(document.getAdXmlManagers()).hasSize(1);
+        final VastXmlPullParser.Ad ad = document.getAdXmlManagers().get(0);
+        assertThat(ad.getSequence()).isEqualTo("1");
+        assertThat(ad.getWrapperXmlManager()).isNull();
+
+        final VastXmlPullParser.AdBody inLine = ad.getInLineXmlManager();
+        assertThat(VastUtils.vastTrackersToStrings(inLine.getImpressionTrackers()))
+                .containsExactly("https://impression1", "https://impression2");
+        assertThat(VastUtils.vastTrackersToStrings(inLine.getErrorTrackers()))
+                .containsExactly("https://error?code=[ERRORCODE]");
+        assertThat(inLine.getErrorTrackers().get(0).isRepeatable()).isTrue();
+        assertThat(inLine.getLinearXmlManagers()).hasSize(1);
+
+        final VastXmlPullParser.Linear linear = inLine.getLinearXmlManagers().get(0);
+        assertThat(linear.getClickThroughUrl()).isEqualTo("https://clickthrough");
+        assertThat(VastUtils.vastTrackersToStrings(linear.getClickTrackers()))
+                .containsExactly("https://click1", "https://click2");
+        assertThat(VastUtils.vastTrackersToStrings(linear.getVideoCompleteTrackers()))
+                .containsExactly("https://complete");
+        assertThat(VastUtils.vastTrackersToStrings(linear.getVideoCloseTrackers()))
+                .containsExactly("https://close", "https://closeLinear");
+        assertThat(VastUtils.vastTrackersToStrings(linear.getVideoSkipTrackers()))
+                .containsExactly("https://skip");
+        assertThat(linear.getPauseTrackers().get(0).isRepeatable()).isTrue();
+        assertThat(linear.getResumeTrackers().get(0).isRepeatable()).isTrue();
+
+        final List<VastAbsoluteProgressTracker> absoluteTrackers =
+                linear.getAbsoluteProgressTrackers();
+        assertThat(absoluteTrackers).hasSize(3);
+        assertThat(absoluteTrackers.get(0).getContent()).isEqualTo("https://start");
+        assertThat(absoluteTrackers.get(1).getContent()).isEqualTo("https://creativeView");
+        assertThat(absoluteTrackers.get(2).getTrackingMilliseconds()).isEqualTo(7500);
+
+        final List<VastFractionalProgressTracker> fractionalTrackers =
+                linear.getFractionalProgressTrackers();
+        assertThat(fractionalTrackers).hasSize(4);
+        assertThat(fractionalTrackers.get(0).getContent()).isEqualTo("https://progress10");
+        assertThat(fractionalTrackers.get(0).getTrackingFraction()).isEqualTo(0.1f);
+        assertThat(fractionalTrackers.get(3).getContent()).isEqualTo("https://thirdQuartile");
+
+        final List<VastXmlPullParser.MediaFile> mediaFiles = linear.getMediaXmlManagers();
+        assertThat(mediaFiles).hasSize(2);
+        assertThat(mediaFiles.get(0).mMediaUrl).isEqualTo("https://video.mp4");
+        assertThat(mediaFiles.get(0).mWidth).isEqualTo(640);
+        assertThat(mediaFiles.get(0).mBitrate).isEqualTo(750);
+        assertThat(mediaFiles.get(1).mWidth).isNull();
+    }
+
+    @Test
+    public void parse_withSiblingCustomElements_shouldReadMoPubExtensions() throws Exception {
+        final VastXmlPullParser.Document document =
+                VastXmlPullParser.parse(INLINE_VAST_XML_STRING);
+
+        assertThat(VastUtils.vastTrackersToStrings(document.getMoPubImpressionTrackers()))
+                .containsExactly("https://www.mopub.com/imp1", "https://www.mopub.com/imp2");
+        assertThat(document.getCustomCtaText()).isEqualTo("Learn More");
+        assertThat(document.getCustomSkipText()).isNull();
+        assertThat(document.getCustomCloseIconUrl()).isEqualTo("https://closeIcon");
+    }
+
+    @Test
+    public void parse_withWrapperAndXmlDeclaration_shouldReadRedirect() throws Exception {
+        final VastXmlPullParser.Document document =
+                VastXmlPullParser.parse(WRAPPER_VAST_XML_STRING);
+
+        final VastXmlPullParser.AdBody wrapper = document.getAdXmlManagers().get(0).getWrapperXmlManager();
+        assertThat(wrapper.getVastAdTagURI()).isEqualTo("https://next.wrapper/vast");
+        assertThat(VastUtils.vastTrackersToStrings(wrapper.getImpressionTrackers()))
+                .containsExactly("https://wrapper/impression");
+        assertThat(wrapper.getLinearXmlManagers()).hasSize(1);
+        assertThat(wrapper.getLinearXmlManagers().get(0).getMediaXmlManagers()).isEmpty();
+        assertThat(wrapper.getLinearXmlManagers().get(0).getClickThroughUrl()).isNull();
+    }
+
+    @Test
+    public void parse_withNoAds_shouldReturnErrorTracker() throws Exception {
+        final VastXmlPullParser.Document document = VastXmlPullParser.parse(
+                "<VAST version=\"3.0\"><Error><![CDATA[https://noads]]></Error></VAST>");
+
+        assertThat(document.getAdXmlManagers()).isEmpty();
+        assertThat(document.getErrorTracker().getContent()).isEqualTo("https://noads");
+    }
+
+    @Test
+    public void parse_withCompanionAds_shouldReturnNull() throws Exception {
+        final String xml = INLINE_VAST_XML_STRING.replace("</Creatives>",
+                "<Creative><CompanionAds><Companion width=\"300\" height=\"250\"/></CompanionAds></Creative></Creatives>");
+
+        assertThat(VastXmlPullParser.parse(xml)).isNull();
+    }
+
+    @Test
+    public void parse_withIcons_shouldReturnNull() throws Exception {
+        final String xml = INLINE_VAST_XML_STRING.replace("<VideoClicks>",
+                "<Icons><Icon width=\"40\" height=\"40\"/></Icons><VideoClicks>");
+
+        assertThat(VastXmlPullParser.parse(xml)).isNull();
+    }
+
+    @Test
+    public void parse_withExtensions_shouldReturnNull() throws Exception {
+        final String xml = WRAPPER_VAST_XML_STRING.replace("</Creatives>",
+                "</Creatives><Extensions><Extension type=\"MoPub\"/></Extensions>");
+
+        assertThat(VastXmlPullParser.parse(xml)).isNull();
+    }
+
+    @Test
+    public void parse_withAdVerifications_shouldReturnNull() throws Exception {
+        final String xml = WRAPPER_VAST_XML_STRING.replace("</Creatives>",
+                "</Creatives><AdVerifications><Verification vendor=\"v\"/></AdVerifications>");
+
+        assertThat(VastXmlPullParser.parse(xml)).isNull();
+    }
+
+    @Test(expected = XmlPullParserException.class)
+    public void parse_withMalformedXml_shouldThrowXmlPullParserException() throws Exception {
+        VastXmlPullParser.parse("<VAST><Ad><InLine></Ad></VAST>");
+    }
+}
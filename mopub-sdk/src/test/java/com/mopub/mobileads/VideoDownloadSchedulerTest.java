@@ -0,0 +1,291 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.mobileads;
+
+import androidx.annotation.NonNull;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.VideoDownloader.VideoDownloaderListener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static com.mopub.mobileads.VideoDownloadScheduler.NO_EXPIRATION;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+public class VideoDownloadSchedulerTest {
+    private static final String URL_A1 = "https://a.example.com/1.mp4";
+    private static final String URL_A2 = "https://a.example.com/2.mp4";
+    private static final String URL_A3 = "https://a.example.com/3.mp4";
+    private static final String URL_B1 = "https://b.example.com/1.mp4";
+
+    @Mock private VideoDownloaderListener mockListener1;
+    @Mock private VideoDownloaderListener mockListener2;
+    @Mock private VideoDownloaderListener mockListener3;
+    @Mock private ResumableVideoDownload.ProgressListener mockProgressListener1;
+    @Mock private ResumableVideoDownload.ProgressListener mockProgressListener2;
+
+    private ManualExecutor downloadExecutor;
+    private FakeDownloader downloader;
+    private VideoDownloadScheduler subject;
+
+    @Before
+    public void setUp() {
+        downloadExecutor = new ManualExecutor();
+        downloader = new FakeDownloader();
+        subject = new VideoDownloadScheduler(downloader, downloadExecutor, new DirectExecutor(),
+                2, 1);
+    }
+
+    @Test
+    public void enqueue_shouldRespectPerHostLimit() {
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+        subject.enqueue(URL_A2, mockListener2, null, null, NO_EXPIRATION);
+        subject.enqueue(URL_B1, mockListener3, null, null, NO_EXPIRATION);
+
+        assertThat(subject.getRunningJobCount()).isEqualTo(2);
+        assertThat(subject.getPendingJobCount()).isEqualTo(1);
+
+        downloadExecutor.runAll();
+
+        assertThat(downloader.urls).containsExactly(URL_A1, URL_B1, URL_A2);
+        verify(mockListener1).onComplete(true);
+        verify(mockListener2).onComplete(true);
+        verify(mockListener3).onComplete(true);
+    }
+
+    @Test
+    public void enqueue_shouldRespectGlobalLimit() {
+        subject = new VideoDownloadScheduler(downloader, downloadExecutor, new DirectExecutor(),
+                1, 1);
+
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+        subject.enqueue(URL_B1, mockListener2, null, null, NO_EXPIRATION);
+
+        assertThat(subject.getRunningJobCount()).isEqualTo(1);
+        assertThat(subject.getPendingJobCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void enqueue_withSameUrl_shouldShareOneDownload() {
+        subject.enqueue(URL_A1, mockListener1, mockProgressListener1, null, NO_EXPIRATION);
+        subject.enqueue(URL_A1, mockListener2, mockProgressListener2, null, NO_EXPIRATION);
+
+        downloadExecutor.runAll();
+
+        assertThat(downloader.urls).containsExactly(URL_A1);
+        verify(mockListener1).onComplete(true);
+        verify(mockListener2).onComplete(true);
+        verify(mockProgressListener1).onProgress(1, 1);
+        verify(mockProgressListener2).onProgress(1, 1);
+    }
+
+    @Test
+    public void enqueue_shouldStartHigherAdUnitPriorityFirst() {
+        subject.setAdUnitPriority("rewarded", 10);
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+
+        subject.enqueue(URL_A2, mockListener2, null, null, NO_EXPIRATION);
+        subject.enqueue(URL_A3, mockListener3, null, "rewarded", NO_EXPIRATION);
+        downloadExecutor.runAll();
+
+        assertThat(downloader.urls).containsExactly(URL_A1, URL_A3, URL_A2);
+    }
+
+    @Test
+    public void enqueue_withEqualPriority_shouldStartEarliestExpirationFirst() {
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+
+        subject.enqueue(URL_A2, mockListener2, null, null, 2000);
+        subject.enqueue(URL_A3, mockListener3, null, null, 1000);
+        downloadExecutor.runAll();
+
+        assertThat(downloader.urls).containsExactly(URL_A1, URL_A3, URL_A2);
+    }
+
+    @Test
+    public void cancelLast_withPendingJob_shouldNotDownloadAndShouldCallOnCompleteFalse() {
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+        subject.enqueue(URL_A2, mockListener2, null, null, NO_EXPIRATION);
+
+        subject.cancelLast();
+        downloadExecutor.runAll();
+
+        verify(mockListener2).onComplete(false);
+        verify(mockListener1).onComplete(true);
+        assertThat(downloader.urls).containsExactly(URL_A1);
+    }
+
+    @Test
+    public void cancelLast_withSharedJob_shouldKeepDownloadingForRemainingRequest() {
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+        subject.enqueue(URL_A1, mockListener2, null, null, NO_EXPIRATION);
+
+        subject.cancelLast();
+        downloadExecutor.runAll();
+
+        verify(mockListener2).onComplete(false);
+        verify(mockListener1).onComplete(true);
+        assertThat(downloader.urls).containsExactly(URL_A1);
+    }
+
+    @Test
+    public void cancelAll_withStartedJob_shouldSkipDownloadAndFreeSlot() {
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+
+        subject.cancelAll();
+        downloadExecutor.runAll();
+
+        verify(mockListener1).onComplete(false);
+        assertThat(downloader.urls).isEmpty();
+        assertThat(subject.getRunningJobCount()).isEqualTo(0);
+        assertThat(subject.getRequestCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void enqueue_afterCancellingStartedJob_shouldRestartDownload() {
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+        subject.cancelAll();
+
+        subject.enqueue(URL_A1, mockListener2, null, null, NO_EXPIRATION);
+        downloadExecutor.runAll();
+
+        verify(mockListener1).onComplete(false);
+        verify(mockListener2).onComplete(true);
+        assertThat(downloader.urls).containsExactly(URL_A1);
+    }
+
+    @Test
+    public void enqueue_whileCancelledDownloadIsStopping_shouldJoinIt_shouldResumeIt() {
+        downloader.onDownload = new Runnable() {
+            @Override
+            public void run() {
+                subject.cancelAll();
+                subject.enqueue(URL_A1, mockListener2, mockProgressListener2, null,
+                        NO_EXPIRATION);
+            }
+        };
+
+        subject.enqueue(URL_A1, mockListener1, mockProgressListener1, null, NO_EXPIRATION);
+        downloadExecutor.runAll();
+
+        verify(mockListener1).onComplete(false);
+        // Once on joining, from the bytes the cancelled download wrote, and once on resuming
+        verify(mockProgressListener2, times(2)).onProgress(1, 1);
+        verify(mockListener2).onComplete(true);
+        assertThat(downloader.urls).containsExactly(URL_A1, URL_A1);
+        assertThat(subject.getRunningJobCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void download_whenFinished_shouldFreeSlotBeforeCallbacksRun() {
+        final ManualExecutor callbackExecutor = new ManualExecutor();
+        subject = new VideoDownloadScheduler(downloader, downloadExecutor, callbackExecutor, 1, 1);
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+        subject.enqueue(URL_A2, mockListener2, null, null, NO_EXPIRATION);
+
+        downloadExecutor.runAll();
+
+        assertThat(downloader.urls).containsExactly(URL_A1, URL_A2);
+        assertThat(subject.getRunningJobCount()).isEqualTo(0);
+        verify(mockListener1, never()).onComplete(anyBoolean());
+
+        callbackExecutor.runAll();
+
+        verify(mockListener1).onComplete(true);
+        verify(mockListener2).onComplete(true);
+    }
+
+    @Test
+    public void enqueue_withFailedDownload_shouldCallOnCompleteFalse() {
+        downloader.result = false;
+
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+        downloadExecutor.runAll();
+
+        verify(mockListener1).onComplete(false);
+        verify(mockListener1, never()).onComplete(true);
+    }
+
+    @Test
+    public void enqueue_withDownloadException_shouldCallOnCompleteFalse() {
+        downloader.exception = new RuntimeException("failed");
+
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+        downloadExecutor.runAll();
+
+        verify(mockListener1).onComplete(false);
+        assertThat(subject.getRunningJobCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void enqueue_shouldNotCallListenerBeforeDownloadRuns() {
+        subject.enqueue(URL_A1, mockListener1, null, null, NO_EXPIRATION);
+
+        verify(mockListener1, never()).onComplete(anyBoolean());
+        assertThat(subject.getRequestCount()).isEqualTo(1);
+    }
+
+    private static class FakeDownloader implements VideoDownloadScheduler.Downloader {
+        final List<String> urls = new ArrayList<String>();
+        boolean result = true;
+        RuntimeException exception;
+        // Runs once, in the middle of the next download
+        Runnable onDownload;
+
+        @Override
+        public boolean download(@NonNull final String url,
+                @NonNull final ResumableVideoDownload.ProgressListener progressListener) {
+            if (exception != null) {
+                throw exception;
+            }
+            urls.add(url);
+            progressListener.onProgress(1, 1);
+            if (onDownload != null) {
+                final Runnable runnable = onDownload;
+                onDownload = null;
+                runnable.run();
+            }
+            // A cancelled download stops early
+            return result && !Thread.interrupted();
+        }
+    }
+
+    /**
+     * Holds tasks until the test runs them, including tasks submitted while running.
+     */
+    private static class ManualExecutor implements Executor {
+        private final List<Runnable> mTasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(@NonNull final Runnable runnable) {
+            mTasks.add(runnable);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.remove(0).run();
+            }
+        }
+    }
+
+    private static class DirectExecutor implements Executor {
+        @Override
+        public void execute(@NonNull final Runnable runnable) {
+            runnable.run();
+        }
+    }
+}
@@ -9,12 +9,9 @@ import android.content.Context;
 
 import com.mopub.common.VideoCacheService;
 import com.mopub.common.test.support.SdkTestRunner;
-import com.mopub.common.util.test.support.ShadowAsyncTasks;
 import com.mopub.common.util.test.support.ShadowMoPubHttpUrlConnection;
 import com.mopub.mobileads.VideoDownloader.VideoDownloaderListener;
-import com.mopub.mobileads.VideoDownloader.VideoDownloaderTask;
 
-import org.fest.util.Arrays;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -22,8 +19,10 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.robolectric.Robolectric;
 import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
 
-import java.lang.ref.WeakReference;
+import java.io.File;
+import java.io.FileOutputStream;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyBoolean;
@@ -32,7 +31,7 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 @RunWith(SdkTestRunner.class)
-@Config(shadows = {ShadowAsyncTasks.class, ShadowMoPubHttpUrlConnection.class})
+@Config(shadows = {ShadowMoPubHttpUrlConnection.class})
 public class VideoDownloaderTest {
     @Mock VideoDownloaderListener mockListener;
     private final static String expectedUrl1 = "https://video_url";
@@ -46,22 +45,22 @@ public class VideoDownloaderTest {
 
     @After
     public void tearDown() {
-        VideoDownloader.clearDownloaderTasks();
+        VideoDownloader.cancelAllDownloaderTasks();
         VideoCacheService.clearAndNullVideoCache();
     }
 
     @Test
-    public void cache_shouldExecuteVideoDownloaderTask() {
+    public void cache_shouldDownloadOnSchedulerAndCallOnCompleteTrue() {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "response");
+
         VideoDownloader.cache(expectedUrl1, mockListener);
+        verify(mockListener, never()).onComplete(anyBoolean());
 
-        assertThat(ShadowAsyncTasks.wasCalled()).isTrue();
-        assertThat(ShadowAsyncTasks.getLatestAsyncTask()).isInstanceOf(VideoDownloaderTask.class);
-        assertThat(ShadowAsyncTasks.getLatestParams()).hasSize(1);
-        assertThat(ShadowAsyncTasks.getLatestParams().contains(expectedUrl1)).isTrue();
+        Robolectric.getBackgroundThreadScheduler().advanceBy(0);
+        ShadowLooper.runUiThreadTasks();
 
-        // In the success case, the listener will not be modified until after the AsyncTask is
-        // actually executed
-        verify(mockListener, never()).onComplete(anyBoolean());
+        verify(mockListener).onComplete(true);
+        assertThat(VideoCacheService.get(expectedUrl1)).isEqualTo("response".getBytes());
     }
 
     @Test(expected = NullPointerException.class)
@@ -70,77 +69,59 @@ public class VideoDownloaderTest {
     }
 
     @Test
-    public void cache_withNullUrl_shouldCallOnCompleteFalse_shouldNotExecuteAsyncTask() {
+    public void cache_withNullUrl_shouldCallOnCompleteFalse() {
         VideoDownloader.cache(null, mockListener);
 
         verify(mockListener).onComplete(false);
-        assertThat(ShadowAsyncTasks.wasCalled()).isFalse();
     }
 
     @Test
-    public void cache_shouldAddVideoDownloaderTaskToStaticCollection() {
-        assertThat(VideoDownloader.getDownloaderTasks()).isEmpty();
+    public void cache_withSameUrlTwice_shouldDownloadOnce() {
+        final VideoDownloaderListener mockListener2 = mock(VideoDownloaderListener.class);
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "response");
 
         VideoDownloader.cache(expectedUrl1, mockListener);
+        VideoDownloader.cache(expectedUrl1, mockListener2);
+        Robolectric.getBackgroundThreadScheduler().advanceBy(0);
+        ShadowLooper.runUiThreadTasks();
 
-        VideoDownloaderTask expectedTask =
-                (VideoDownloaderTask) ShadowAsyncTasks.getLatestAsyncTask();
-
-        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(1);
-        assertThat(VideoDownloader.getDownloaderTasks().pop().get()).isEqualTo(expectedTask);
+        verify(mockListener).onComplete(true);
+        verify(mockListener2).onComplete(true);
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).isEmpty();
     }
 
     @Test
-    public void cache_shouldAddMultipleVideoDownloaderTasksToStaticCollection() {
+    public void cancelAllDownloaderTasks_shouldCallOnCompleteFalse() {
+        final VideoDownloaderListener mockListener2 = mock(VideoDownloaderListener.class);
         VideoDownloader.cache(expectedUrl1, mockListener);
-        VideoDownloaderTask expectedTask1 =
-                (VideoDownloaderTask) ShadowAsyncTasks.getLatestAsyncTask();
-
-        VideoDownloader.cache(expectedUrl2, mockListener);
-        VideoDownloaderTask expectedTask2 =
-                (VideoDownloaderTask) ShadowAsyncTasks.getLatestAsyncTask();
-
-        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(2);
-        assertThat(VideoDownloader.getDownloaderTasks().pop().get()).isEqualTo(expectedTask1);
-        assertThat(VideoDownloader.getDownloaderTasks().pop().get()).isEqualTo(expectedTask2);
-    }
-
-    @Test
-    public void cancelAllDownloaderTasks_shouldCancelAllTasksAndRemoveFromStaticCollection() {
-        final VideoDownloaderTask task1 = mock(VideoDownloaderTask.class);
-        final VideoDownloaderTask task2 = mock(VideoDownloaderTask.class);
-        VideoDownloader.getDownloaderTasks().add(new WeakReference<VideoDownloaderTask>(task1));
-        VideoDownloader.getDownloaderTasks().add(new WeakReference<VideoDownloaderTask>(task2));
+        VideoDownloader.cache(expectedUrl2, mockListener2);
 
         VideoDownloader.cancelAllDownloaderTasks();
+        ShadowLooper.runUiThreadTasks();
 
-        verify(task1).cancel(true);
-        verify(task2).cancel(true);
-        assertThat(VideoDownloader.getDownloaderTasks()).isEmpty();
+        verify(mockListener).onComplete(false);
+        verify(mockListener2).onComplete(false);
     }
 
     @Test
-    public void cancelLastDownloaderTasks_shouldCancelTasksAndRemoveFromStaticCollection() {
-        final VideoDownloaderTask task1 = mock(VideoDownloaderTask.class);
-        final VideoDownloaderTask task2 = mock(VideoDownloaderTask.class);
-        VideoDownloader.getDownloaderTasks().add(new WeakReference<VideoDownloaderTask>(task1));
-        VideoDownloader.getDownloaderTasks().add(new WeakReference<VideoDownloaderTask>(task2));
+    public void cancelLastDownloadTask_shouldOnlyCancelMostRecentRequest() {
+        final VideoDownloaderListener mockListener2 = mock(VideoDownloaderListener.class);
+        VideoDownloader.cache(expectedUrl1, mockListener);
+        VideoDownloader.cache(expectedUrl2, mockListener2);
 
         VideoDownloader.cancelLastDownloadTask();
+        ShadowLooper.runUiThreadTasks();
 
-        verify(task1, never()).cancel(anyBoolean());
-        verify(task2).cancel(true);
-        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(1);
-        assertThat(VideoDownloader.getDownloaderTasks().pop().get()).isEqualTo(task1);
+        verify(mockListener, never()).onComplete(anyBoolean());
+        verify(mockListener2).onComplete(false);
     }
 
     @Test
-    public void doInBackground_shouldReturnTrue_shouldUpdateCache() throws Exception {
+    public void downloadToCache_shouldReturnTrue_shouldUpdateCache() throws Exception {
         String expectedResponse = "response";
         ShadowMoPubHttpUrlConnection.addPendingResponse(200, expectedResponse);
-        final VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
 
-        final Boolean result = videoDownloaderTask.doInBackground(expectedUrl1);
+        final boolean result = VideoDownloader.downloadToCache(expectedUrl1, null);
 
         assertThat(result).isTrue();
         assertThat(VideoCacheService.getVideoCache().size()).isEqualTo(expectedResponse.length());
@@ -149,115 +130,98 @@ public class VideoDownloaderTest {
     }
 
     @Test
-    public void doInBackground_withNullArguments_shouldReturnFalse_shouldNotUpdateCache() throws Exception {
-        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "response");
-        final VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
-
-        final Boolean result = videoDownloaderTask.doInBackground((String) null);
-
-        assertThat(result).isFalse();
-        assertThat(VideoCacheService.getVideoCache().size()).isEqualTo(0);
-    }
-
-    @Test
-    public void doInBackground_withEmptyArrayArguments_shouldReturnFalse_shouldNotUpdateCache() throws Exception {
+    public void downloadToCache_withNullArguments_shouldReturnFalse_shouldNotUpdateCache() throws Exception {
         ShadowMoPubHttpUrlConnection.addPendingResponse(200, "response");
-        final VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
 
-        final Boolean result = videoDownloaderTask.doInBackground(Arrays.<String>array());
+        final boolean result = VideoDownloader.downloadToCache(null, null);
 
         assertThat(result).isFalse();
         assertThat(VideoCacheService.getVideoCache().size()).isEqualTo(0);
     }
 
     @Test
-    public void doInBackground_withArrayStartingWithNull_shouldReturnFalse_shouldNotUpdateCache() throws Exception {
-        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "response");
-        final VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
-
-        final String[] parameters = {null};
-        final Boolean result = videoDownloaderTask.doInBackground(parameters);
-
-        assertThat(result).isFalse();
-        assertThat(VideoCacheService.getVideoCache().size()).isEqualTo(0);
-    }
-
-    @Test
-    public void doInBackground_withStatusCodeLessThan200_shouldReturnFalse_shouldNotUpdateCache() throws Exception {
+    public void downloadToCache_withStatusCodeLessThan200_shouldReturnFalse_shouldNotUpdateCache() throws Exception {
         ShadowMoPubHttpUrlConnection.addPendingResponse(199, "response");
-        VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
 
-        final Boolean result = videoDownloaderTask.doInBackground(expectedUrl1);
+        final boolean result = VideoDownloader.downloadToCache(expectedUrl1, null);
 
         assertThat(result).isFalse();
         assertThat(VideoCacheService.getVideoCache().size()).isEqualTo(0);
     }
 
     @Test
-    public void doInBackground_withStatusCodeGreaterThan299_shouldReturnFalse_shouldNotUpdateCache() throws Exception {
+    public void downloadToCache_withStatusCodeGreaterThan299_shouldReturnFalse_shouldNotUpdateCache() throws Exception {
         ShadowMoPubHttpUrlConnection.addPendingResponse(300, "response");
-        VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
 
-        final Boolean result = videoDownloaderTask.doInBackground(expectedUrl1);
+        final boolean result = VideoDownloader.downloadToCache(expectedUrl1, null);
 
         assertThat(result).isFalse();
         assertThat(VideoCacheService.getVideoCache().size()).isEqualTo(0);
     }
 
     @Test
-    public void doInBackground_withResponseGreaterThan25Mb_shouldReturnFalse_shouldNotUpdateCache() throws Exception {
+    public void downloadToCache_withResponseGreaterThan25Mb_shouldReturnFalse_shouldNotUpdateCache() throws Exception {
         String longString = createLongString(25 * 1024 * 1024 + 1);
         ShadowMoPubHttpUrlConnection.addPendingResponse(200, longString);
-        VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
 
-        final Boolean result = videoDownloaderTask.doInBackground(expectedUrl1);
+        final boolean result = VideoDownloader.downloadToCache(expectedUrl1, null);
 
         assertThat(result).isFalse();
         assertThat(VideoCacheService.getVideoCache().size()).isEqualTo(0);
     }
 
     @Test
-    public void onPostExecute_withSuccessTrue_shouldCallOnCompleteTrue_shouldRemoveDownloadTaskFromQueue() {
-        VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
-        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(1);
-
-        videoDownloaderTask.onPostExecute(true);
+    public void downloadToCache_withPurgeWhileDownloading_shouldKeepPartialFile_shouldUpdateCache() throws Exception {
+        String expectedResponse = "response";
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, expectedResponse);
+        final File partialFile = VideoCacheService.getPartialFile(expectedUrl1);
+
+        final boolean result = VideoDownloader.downloadToCache(expectedUrl1,
+                new ResumableVideoDownload.ProgressListener() {
+                    @Override
+                    public void onProgress(final long availableBytes, final long totalBytes) {
+                        // Another download starting now purges everything it is allowed to
+                        VideoCacheService.purgePartialFiles(0, 0);
+                        if (availableBytes > 0) {
+                            assertThat(partialFile.length()).isEqualTo(availableBytes);
+                        }
+                    }
+                });
 
-        verify(mockListener).onComplete(true);
-        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(0);
+        assertThat(result).isTrue();
+        assertThat(VideoCacheService.get(expectedUrl1))
+                .isEqualTo(expectedResponse.getBytes());
     }
 
     @Test
-    public void onPostExecute_withSuccessFalse_shouldCallOnCompleteFalse_shouldRemoveDownloadTaskFromQueue() {
-        VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
-        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(1);
+    public void purgePartialFiles_shouldDeleteOnlyPartialFilesWithoutActiveDownload() throws Exception {
+        final File activeFile = VideoCacheService.getPartialFile(expectedUrl1);
+        final File staleFile = VideoCacheService.getPartialFile(expectedUrl2);
+        activeFile.getParentFile().mkdirs();
+        writeFile(activeFile, "active");
+        writeFile(new File(activeFile.getPath() + ".meta"), "6");
+        writeFile(staleFile, "stale");
+        VideoCacheService.acquirePartialFile(expectedUrl1);
 
-        videoDownloaderTask.onPostExecute(false);
-
-        verify(mockListener).onComplete(false);
-        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(0);
-    }
+        VideoCacheService.purgePartialFiles(0, 0);
 
-    @Test
-    public void onPostExecute_withSuccessNull_shouldCallOnCompleteFalse_shouldRemoveDownloadTaskFromQueue() {
-        VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
-        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(1);
+        assertThat(activeFile.exists()).isTrue();
+        assertThat(new File(activeFile.getPath() + ".meta").exists()).isTrue();
+        assertThat(staleFile.exists()).isFalse();
 
-        videoDownloaderTask.onPostExecute(null);
+        VideoCacheService.releasePartialFile(expectedUrl1);
+        VideoCacheService.purgePartialFiles(0, 0);
 
-        verify(mockListener).onComplete(false);
-        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(0);
+        assertThat(activeFile.exists()).isFalse();
     }
 
-    @Test
-    public void cancelledTask_shouldCallOnCompleteFalse_shouldRemoveDownloadTaskFromQueue() {
-        VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
-        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(1);
-
-        videoDownloaderTask.cancel(true);
-
-        verify(mockListener).onComplete(false);
-        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(0);
+    private static void writeFile(File file, String content) throws Exception {
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content.getBytes());
+        } finally {
+            outputStream.close();
+        }
     }
 
     private static String createLongString(int size) {
@@ -82,6 +82,8 @@ public class MoPubRecyclerAdapterTest {
         // emulates a content item followed by an ad item, then another content item.
         when(mockStreamAdPlacer.getAdData(AD_POSITION_1)).thenReturn(mMockNativeAd);
         when(mockStreamAdPlacer.getAdData(AD_POSITION_7)).thenReturn(mMockNativeAd2);
+        when(mockStreamAdPlacer.getPlacedAdPositions())
+                .thenReturn(new int[] {AD_POSITION_1, AD_POSITION_7});
         when(mockStreamAdPlacer.getAdRendererForViewType(MoPubRecyclerAdapter.NATIVE_AD_VIEW_TYPE_BASE))
                 .thenReturn(mockAdRenderer);
         when(mockAdRenderer.createAdView(any(Activity.class), any(ViewGroup.class)))
@@ -457,7 +459,7 @@ public class MoPubRecyclerAdapterTest {
     }
 
     @Test
-    public void onItemRangeInsertedAtEnd_withInsertAtEndStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedAtEnd_withInsertAtEndStrategy_shouldNotifyItemRangeInserted() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(INSERT_AT_END);
 
@@ -465,10 +467,11 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount + 3);
         originalAdapter.notifyItemRangeInserted(originalItemCount, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeInserted(originalItemCount + 2, 3);
         verifyNoMoreInteractions(mockObserver);
         verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount);
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
+        verify(mockStreamAdPlacer).getPlacedAdPositions();
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
 
@@ -490,7 +493,7 @@ public class MoPubRecyclerAdapterTest {
     }
 
     @Test
-    public void onItemRangeInsertedAtEnd_withKeepAdsPlacedStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedAtEnd_withKeepAdsPlacedStrategy_shouldNotifyItemRangeInserted() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -498,10 +501,11 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount + 3);
         originalAdapter.notifyItemRangeInserted(originalItemCount, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeInserted(originalItemCount + 2, 3);
         verifyNoMoreInteractions(mockObserver);
         verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount);
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
+        verify(mockStreamAdPlacer).getPlacedAdPositions();
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
 
@@ -540,7 +544,7 @@ public class MoPubRecyclerAdapterTest {
     }
 
     @Test
-    public void onItemRangeInsertedInMiddle_withKeepAdsStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedInMiddle_withKeepAdsStrategy_shouldNotifyItemRangeInserted() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -548,15 +552,31 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount + 3);
         originalAdapter.notifyItemRangeInserted(originalItemCount - 7, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeInserted(originalItemCount - 5, 3);
         verifyNoMoreInteractions(mockObserver);
         verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount - 7);
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
+        verify(mockStreamAdPlacer).getPlacedAdPositions();
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
 
     @Test
-    public void onItemRangeRemovedFromEnd_withInsertAtEndStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedBeforeAd_withKeepAdsStrategy_shouldInsertItems_shouldMoveAdBack() {
+        subject.registerAdapterDataObserver(mockObserver);
+        subject.setContentChangeStrategy(KEEP_ADS_FIXED);
+
+        final int originalItemCount = originalAdapter.getItemCount();
+        originalAdapter.setItemCount(originalItemCount + 2);
+        originalAdapter.notifyItemRangeInserted(3, 2);
+
+        verify(mockObserver).onItemRangeInserted(4, 2);
+        verify(mockObserver).onItemRangeMoved(AD_POSITION_7 + 2, AD_POSITION_7, 1);
+        verifyNoMoreInteractions(mockObserver);
+        verify(mockStreamAdPlacer, never()).insertItem(anyInt());
+    }
+
+    @Test
+    public void onItemRangeRemovedFromEnd_withInsertAtEndStrategy_shouldNotifyItemRangeRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(INSERT_AT_END);
 
@@ -564,10 +584,11 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount - 3);
         originalAdapter.notifyItemRangeRemoved(originalItemCount - 4, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeRemoved(originalItemCount - 2, 3);
         verifyNoMoreInteractions(mockObserver);
         verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount - 4);
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
+        verify(mockStreamAdPlacer).getPlacedAdPositions();
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
 
@@ -607,7 +628,7 @@ public class MoPubRecyclerAdapterTest {
     }
 
     @Test
-    public void onItemRangeRemovedFromEnd_withKeepAdsStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeRemovedFromEnd_withKeepAdsStrategy_shouldNotifyItemRangeRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -615,12 +636,29 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount - 3);
         originalAdapter.notifyItemRangeRemoved(originalItemCount - 4, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeRemoved(originalItemCount - 2, 3);
         verifyNoMoreInteractions(mockObserver);
 
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
     }
 
+    @Test
+    public void onItemRangeRemovedAroundAd_withKeepAdsStrategy_shouldRemoveItems_shouldMoveAdBack() {
+        subject.registerAdapterDataObserver(mockObserver);
+        subject.setContentChangeStrategy(KEEP_ADS_FIXED);
+
+        final int originalItemCount = originalAdapter.getItemCount();
+        originalAdapter.setItemCount(originalItemCount - 2);
+        originalAdapter.notifyItemRangeRemoved(5, 2);
+
+        // The items on either side of the ad are removed separately
+        verify(mockObserver).onItemRangeRemoved(AD_POSITION_7 + 1, 1);
+        verify(mockObserver).onItemRangeRemoved(AD_POSITION_7 - 1, 1);
+        verify(mockObserver).onItemRangeMoved(AD_POSITION_7 - 1, AD_POSITION_7, 1);
+        verifyNoMoreInteractions(mockObserver);
+        verify(mockStreamAdPlacer, never()).removeItem(anyInt());
+    }
+
     @Test
     public void onItemRangeRemovedFromMiddle_withInsertAtEndStrategy_shouldNotifyItemRangeRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
@@ -654,7 +692,7 @@ public class MoPubRecyclerAdapterTest {
     }
 
     @Test
-    public void onItemRangeRemovedFromMiddle_withKeepAdsStrategy_shouldNotifyChanged() {
+    public void onItemRangeRemovedFromMiddle_withKeepAdsStrategy_shouldNotifyItemRangeRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -662,13 +700,26 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount - 3);
         originalAdapter.notifyItemRangeRemoved(originalItemCount - 8, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeRemoved(originalItemCount - 6, 3);
         verifyNoMoreInteractions(mockObserver);
         verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount - 8);
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
+        verify(mockStreamAdPlacer).getPlacedAdPositions();
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
 
+    @Test
+    public void onItemRangeMoved_pastAd_shouldMoveItem_shouldKeepAdInPlace() {
+        subject.registerAdapterDataObserver(mockObserver);
+
+        originalAdapter.notifyItemMoved(0, 3);
+
+        verify(mockObserver).onItemRangeMoved(0, 4, 1);
+        verify(mockObserver).onItemRangeMoved(0, AD_POSITION_1, 1);
+        verifyNoMoreInteractions(mockObserver);
+        verify(mockStreamAdPlacer, never()).moveItem(anyInt(), anyInt());
+    }
+
     private class TestAdapter extends RecyclerView.Adapter<TestHolder> {
         private int mItems = 18;
 
@@ -52,14 +52,14 @@ public class MoPubStaticNativeAdRendererTest {
     @Mock private TextView sponsoredView;
     @Mock private ImageView badView;
     @Mock private MoPubRequestQueue mockRequestQueue;
-    @Mock private MoPubImageLoader mockImageLoader;
+    @Mock private NativeImageLoader mockImageLoader;
     @Mock private MoPubImageLoader.ImageContainer mockImageContainer;
     @Mock private Context context;
 
     @Before
     public void setUp() throws Exception {
         Networking.setRequestQueueForTesting(mockRequestQueue);
-        Networking.setImageLoaderForTesting(mockImageLoader);
+        NativeImageLoader.setInstanceForTesting(mockImageLoader);
         when(mockImageContainer.getBitmap()).thenReturn(mock(Bitmap.class));
 
         when(relativeLayout.getId()).thenReturn(View.generateViewId());
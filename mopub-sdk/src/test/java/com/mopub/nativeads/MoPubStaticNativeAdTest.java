@@ -7,7 +7,6 @@ package com.mopub.nativeads;
 import android.app.Activity;
 import android.graphics.Bitmap;
 import android.view.View;
-import android.widget.ImageView;
 
 import com.mopub.common.ExternalViewabilitySessionManager;
 import com.mopub.common.test.support.SdkTestRunner;
@@ -16,7 +15,6 @@ import com.mopub.nativeads.CustomEventNative.CustomEventNativeListener;
 import com.mopub.nativeads.MoPubCustomEventNative.MoPubStaticNativeAd;
 import com.mopub.nativeads.test.support.MoPubShadowBitmap;
 import com.mopub.nativeads.test.support.MoPubShadowDisplay;
-import com.mopub.network.MoPubImageLoader;
 import com.mopub.network.MoPubNetworkError;
 import com.mopub.network.MoPubRequestQueue;
 import com.mopub.network.Networking;
@@ -40,8 +38,6 @@ import java.util.Map;
 import java.util.Set;
 
 import static com.mopub.nativeads.MoPubCustomEventNative.MoPubStaticNativeAd.Parameter;
-import static com.mopub.network.MoPubImageLoader.ImageListener;
-import static com.mopub.network.MoPubImageLoader.ImageContainer;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.fest.assertions.api.Assertions.fail;
 import static org.mockito.Matchers.any;
@@ -53,7 +49,6 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
 @RunWith(SdkTestRunner.class)
 @Config(shadows={MoPubShadowBitmap.class, MoPubShadowDisplay.class})
@@ -69,8 +64,7 @@ public class MoPubStaticNativeAdTest {
     @Mock private CustomEventNativeListener mockCustomEventNativeListener;
     @Mock private NativeEventListener mockNativeEventListener;
     @Mock private MoPubRequestQueue mockRequestQueue;
-    @Mock private MoPubImageLoader mockImageLoader;
-    @Mock private ImageContainer mockImageContainer;
+    @Mock private NativeImageLoader mockImageLoader;
     @Mock private ExternalViewabilitySessionManager mockViewabilityManager;
 
     @Before
@@ -84,8 +78,7 @@ public class MoPubStaticNativeAdTest {
         subject.setNativeEventListener(mockNativeEventListener);
 
         Networking.setRequestQueueForTesting(mockRequestQueue);
-        Networking.setImageLoaderForTesting(mockImageLoader);
-        when(mockImageContainer.getBitmap()).thenReturn(mock(Bitmap.class));
+        NativeImageLoader.setInstanceForTesting(mockImageLoader);
 
         ExternalViewabilitySessionManager.setCreator(() -> mockViewabilityManager);
     }
@@ -280,22 +273,22 @@ public class MoPubStaticNativeAdTest {
         fakeJsonObject.put("extraimage", "extraimageurl");
 
         doAnswer((Answer<Void>) invocationOnMock -> {
-            ImageListener listener = ((ImageListener) invocationOnMock.getArguments()[1]);
-            listener.onResponse(mockImageContainer, false);
+            NativeImageLoader.Listener listener = ((NativeImageLoader.Listener) invocationOnMock.getArguments()[3]);
+            listener.onImageLoaded(mock(Bitmap.class), false);
             return null;
         }).when(mockImageLoader)
-                .fetch(anyString(), any(ImageListener.class), anyInt(), anyInt(), any(ImageView.ScaleType.class));
+                .preCache(anyString(), anyInt(), anyInt(), any(NativeImageLoader.Listener.class));
 
         subject = new MoPubStaticNativeAd(context, fakeJsonObject, mockImpressionTracker, mMockNativeClickHandler,
                 mockCustomEventNativeListener);
         subject.loadAd();
 
-        verify(mockImageLoader).fetch(eq("mainimageurl"), any(ImageListener.class), anyInt(), anyInt(),
-                any(ImageView.ScaleType.class));
-        verify(mockImageLoader).fetch(eq("iconimageurl"), any(ImageListener.class), anyInt(), anyInt(),
-                any(ImageView.ScaleType.class));
-        verify(mockImageLoader).fetch(eq("extraimageurl"), any(ImageListener.class), anyInt(), anyInt(),
-                any(ImageView.ScaleType.class));
+        verify(mockImageLoader).preCache(eq("mainimageurl"), anyInt(), anyInt(),
+                any(NativeImageLoader.Listener.class));
+        verify(mockImageLoader).preCache(eq("iconimageurl"), anyInt(), anyInt(),
+                any(NativeImageLoader.Listener.class));
+        verify(mockImageLoader).preCache(eq("extraimageurl"), anyInt(), anyInt(),
+                any(NativeImageLoader.Listener.class));
 
         verify(mockCustomEventNativeListener).onNativeAdLoaded(subject);
         verify(mockCustomEventNativeListener, never()).onNativeAdFailed(any(NativeErrorCode.class));
@@ -308,11 +301,11 @@ public class MoPubStaticNativeAdTest {
         fakeJsonObject.put("extraimage", "extraimageurl");
 
         doAnswer((Answer<Void>) invocationOnMock -> {
-            ImageListener listener = ((ImageListener) invocationOnMock.getArguments()[1]);
-            listener.onErrorResponse(new MoPubNetworkError.Builder().build());
+            NativeImageLoader.Listener listener = ((NativeImageLoader.Listener) invocationOnMock.getArguments()[3]);
+            listener.onImageFailed(new MoPubNetworkError.Builder().build());
             return null;
         }).when(mockImageLoader)
-                .fetch(anyString(), any(ImageListener.class), anyInt(), anyInt(), any(ImageView.ScaleType.class));
+                .preCache(anyString(), anyInt(), anyInt(), any(NativeImageLoader.Listener.class));
 
         subject = new MoPubStaticNativeAd(context, fakeJsonObject, mockImpressionTracker,
                 mMockNativeClickHandler, mockCustomEventNativeListener);
@@ -265,6 +265,20 @@ public class MoPubStreamAdPlacerTest {
         assertThat(subject.isAd(54)).isTrue();
     }
 
+    @Test
+    public void placeAdsInRange_shouldReportScrollPositionToAdSource() {
+        subject.placeAdsInRange(50, 54);
+
+        verify(mockAdSource).onScroll(50);
+    }
+
+    @Test
+    public void setMaxCachedAds_shouldSetAdSourceMaxCacheSize() {
+        subject.setMaxCachedAds(3);
+
+        verify(mockAdSource).setMaxCacheSize(3);
+    }
+
     @Test
     public void placeAdsInRange_shouldCallListener() {
         when(mockAdSource.dequeueAd()).thenReturn(mStubNativeAd);
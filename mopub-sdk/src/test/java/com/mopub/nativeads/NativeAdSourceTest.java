@@ -7,21 +7,33 @@ package com.mopub.nativeads;
 import android.os.Handler;
 import android.os.SystemClock;
 
+import androidx.annotation.NonNull;
+
 import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.network.RetryPolicyEngine;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.robolectric.Robolectric;
 import org.robolectric.shadows.ShadowSystemClock;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
+import static com.mopub.common.Constants.AD_EXPIRATION_DELAY;
+import static com.mopub.nativeads.MoPubNative.MoPubNativeNetworkListener;
 import static com.mopub.nativeads.NativeAdSource.AdSourceListener;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -30,10 +42,10 @@ import static org.mockito.Mockito.when;
 @RunWith(SdkTestRunner.class)
 public class NativeAdSourceTest {
     private NativeAdSource subject;
-    private ArrayList<TimestampWrapper<NativeAd>> nativeAdCache;
+    private ArrayDeque<TimestampWrapper<NativeAd>> nativeAdCache;
     private RequestParameters requestParameters;
-    private int defaultRetryTime;
-    private int maxRetryTime;
+    private long defaultRetryTime;
+    private long maxRetryTime;
     private int maxRetries;
 
     @Mock private AdSourceListener mockAdSourceListener;
@@ -45,14 +57,22 @@ public class NativeAdSourceTest {
 
     @Before
     public void setUp() {
-        nativeAdCache = new ArrayList<TimestampWrapper<NativeAd>>(2);
+        nativeAdCache = new ArrayDeque<TimestampWrapper<NativeAd>>(2);
         subject = new NativeAdSource(nativeAdCache, mockReplenishCacheHandler, mockAdRendererRegistry);
         subject.setAdSourceListener(mockAdSourceListener);
 
         requestParameters = new RequestParameters.Builder().build();
 
+        // Makes retry delays land exactly on the backoff
+        RetryPolicyEngine.setInstanceForTesting(new RetryPolicyEngine(new Random() {
+            @Override
+            public double nextDouble() {
+                return 0.5;
+            }
+        }));
+
         defaultRetryTime = 1000;
-        maxRetryTime = 5*60*1000;
+        maxRetryTime = 32*1000;
         maxRetries = 5;
 
         // XXX We need this to ensure that our SystemClock starts
@@ -65,7 +85,8 @@ public class NativeAdSourceTest {
 
     @Test
     public void constructor_shouldInitializeCorrectly() {
-        assertThat(subject.mRequestInFlight).isFalse();
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
+        assertThat(subject.mTargetCacheSize).isEqualTo(NativeAdSource.MIN_CACHE_SIZE);
         assertThat(subject.mSequenceNumber).isEqualTo(0);
         assertThat(subject.getRetryTime()).isEqualTo(defaultRetryTime);
     }
@@ -110,7 +131,7 @@ public class NativeAdSourceTest {
     @Test
     public void loadAds_shouldReplenishCache() {
         subject.loadAds(requestParameters, mockMoPubNative);
-        assertThat(subject.mRequestInFlight).isTrue();
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
         verify(mockMoPubNative).makeRequest(requestParameters, 0);
     }
 
@@ -127,7 +148,7 @@ public class NativeAdSourceTest {
         TimestampWrapper<NativeAd> timestampWrapper =
                 new TimestampWrapper<NativeAd>(mock(NativeAd.class));
         nativeAdCache.add(timestampWrapper);
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         subject.mSequenceNumber = 5;
         subject.mCurrentRetries = maxRetries;
 
@@ -142,7 +163,7 @@ public class NativeAdSourceTest {
         assertThat(subject.getRetryTime()).isEqualTo(defaultRetryTime);
 
         // new request has been kicked off
-        assertThat(subject.mRequestInFlight).isTrue();
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
     }
 
     @Test
@@ -159,7 +180,7 @@ public class NativeAdSourceTest {
         subject.setMoPubNative(mockMoPubNative);
         TimestampWrapper<NativeAd> timestampWrapper = new TimestampWrapper<NativeAd>(mock(NativeAd.class));
         nativeAdCache.add(timestampWrapper);
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         subject.mSequenceNumber = 5;
         subject.mCurrentRetries = maxRetries;
 
@@ -169,7 +190,7 @@ public class NativeAdSourceTest {
         assertThat(nativeAdCache).isEmpty();
         verify(mockMoPubNative).destroy();
         verify(mockReplenishCacheHandler).removeMessages(0);
-        assertThat(subject.mRequestInFlight).isFalse();
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
         assertThat(subject.mSequenceNumber).isEqualTo(0);
         assertThat(subject.getRetryTime()).isEqualTo(defaultRetryTime);
     }
@@ -214,7 +235,7 @@ public class NativeAdSourceTest {
 
         nativeAdCache.add(new TimestampWrapper<NativeAd>(mMockNativeAd));
 
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         assertThat(subject.dequeueAd()).isEqualTo(mMockNativeAd);
 
         assertThat(nativeAdCache).isEmpty();
@@ -222,8 +243,8 @@ public class NativeAdSourceTest {
     }
 
     @Test
-    public void updateRetryTime_shouldUpdateRetryTimeUntilAt10Minutes() {
-        int retryTime = 0;
+    public void updateRetryTime_shouldUpdateRetryTimeUntilMaxRetries() {
+        long retryTime = 0;
         while (subject.mCurrentRetries < maxRetries) {
             subject.updateRetryTime();
             retryTime = subject.getRetryTime();
@@ -254,18 +275,18 @@ public class NativeAdSourceTest {
         subject.replenishCache();
 
         verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(0));
-        assertThat(subject.mRequestInFlight).isTrue();
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
     }
 
     @Test
     public void replenishCache_withRequestInFlight_shouldNotLoadNativeAd() {
-        subject.mRequestInFlight = true;
         subject.setMoPubNative(mockMoPubNative);
+        subject.replenishCache();
 
         subject.replenishCache();
 
-        verify(mockMoPubNative, never()).makeRequest(requestParameters, 0);
-        assertThat(subject.mRequestInFlight).isTrue();
+        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(0));
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
     }
 
     @SuppressWarnings("unchecked")
@@ -281,7 +302,7 @@ public class NativeAdSourceTest {
         subject.replenishCache();
 
         verify(mockMoPubNative, never()).makeRequest(any(RequestParameters.class), any(Integer.class));
-        assertThat(subject.mRequestInFlight).isFalse();
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
     }
 
     @Test
@@ -290,7 +311,7 @@ public class NativeAdSourceTest {
         subject.getMoPubNativeNetworkListener().onNativeLoad(mMockNativeAd);
 
         assertThat(nativeAdCache).hasSize(1);
-        assertThat(nativeAdCache.get(0).mInstance).isEqualTo(mMockNativeAd);
+        assertThat(nativeAdCache.peek().mInstance).isEqualTo(mMockNativeAd);
     }
 
     @Test
@@ -333,7 +354,7 @@ public class NativeAdSourceTest {
     public void moPubNativeNetworkListener_onNativeLoad_withFullCache_shouldResetRequestInFlight() {
         subject.setMoPubNative(mockMoPubNative);
 
-        subject.mRequestInFlight = true;
+        subject.replenishCache();
 
         // fill cache
         nativeAdCache.add(mock(TimestampWrapper.class));
@@ -342,44 +363,203 @@ public class NativeAdSourceTest {
 
         subject.getMoPubNativeNetworkListener().onNativeLoad(mMockNativeAd);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(false);
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
     }
 
     @Test
     public void moPubNativeNetworkListener_onNativeLoad_withCacheFilled_shouldNotReplenishCache() {
         subject.setMoPubNative(mockMoPubNative);
 
-        subject.mRequestInFlight = true;
+        subject.replenishCache();
 
         subject.getMoPubNativeNetworkListener().onNativeLoad(mMockNativeAd);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(false);
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
+        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), any(Integer.class));
     }
 
     @Test
     public void
     moPubNativeNetworkListener_onNativeFail_shouldResetInFlight_shouldUpdateRetryTime_shouldPostDelayedRunnable() {
-        subject.mRequestInFlight = true;
+        subject.setMoPubNative(mockMoPubNative);
+        subject.replenishCache();
 
         subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(false);
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
         assertThat(subject.mRetryInFlight).isEqualTo(true);
         assertThat(subject.getRetryTime()).isGreaterThan(defaultRetryTime);
-        verify(mockReplenishCacheHandler).postDelayed(any(Runnable.class), eq((long)subject.getRetryTime()));
+        // The first retry waits one second
+        verify(mockReplenishCacheHandler).postDelayed(any(Runnable.class), eq(defaultRetryTime));
     }
 
     @Test
     public void
     moPubNativeNetworkListener_onNativeFail_maxRetryTime_shouldResetInflight_shouldResetRetryTime_shouldNotPostDelayedRunnable() {
-        subject.mRequestInFlight = true;
+        subject.setMoPubNative(mockMoPubNative);
+        subject.replenishCache();
         subject.mCurrentRetries = maxRetries;
 
         subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(false);
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
         assertThat(subject.mRetryInFlight).isEqualTo(false);
         assertThat(subject.getRetryTime()).isEqualTo(defaultRetryTime);
         verify(mockReplenishCacheHandler, never()).postDelayed(any(Runnable.class), anyLong());
     }
+
+    @Test
+    public void replenishCache_withLargerTargetCacheSize_shouldRequestAdsInParallel() {
+        final List<MoPubNative> moPubNatives = new ArrayList<MoPubNative>();
+        subject.loadAds(requestParameters, new MockMoPubNativeFactory(moPubNatives));
+        subject.mTargetCacheSize = NativeAdSource.DEFAULT_MAX_CACHE_SIZE;
+
+        subject.replenishCache();
+
+        assertThat(moPubNatives).hasSize(NativeAdSource.MAX_REQUESTS_IN_FLIGHT);
+        verify(moPubNatives.get(0)).makeRequest(requestParameters, 0);
+        verify(moPubNatives.get(1)).makeRequest(requestParameters, 1);
+        verify(moPubNatives.get(2)).makeRequest(requestParameters, 2);
+        verify(moPubNatives.get(2)).registerAdRenderer(mockRenderer);
+        assertThat(subject.mRequestsInFlight).isEqualTo(NativeAdSource.MAX_REQUESTS_IN_FLIGHT);
+    }
+
+    @Test
+    public void onScroll_whileScrollingQuickly_shouldGrowCache_thenShrinkWhenStopped() {
+        final List<MoPubNative> moPubNatives = new ArrayList<MoPubNative>();
+        subject.loadAds(requestParameters, new MockMoPubNativeFactory(moPubNatives));
+
+        int position = 0;
+        for (int i = 0; i < 50; i++) {
+            subject.onScroll(position);
+            position += 2;
+            advanceBy(100);
+        }
+
+        assertThat(subject.mTargetCacheSize).isEqualTo(NativeAdSource.DEFAULT_MAX_CACHE_SIZE);
+        assertThat(subject.mRequestsInFlight).isEqualTo(NativeAdSource.MAX_REQUESTS_IN_FLIGHT);
+
+        for (int i = 0; i < 100; i++) {
+            subject.onScroll(position);
+            advanceBy(100);
+        }
+
+        assertThat(subject.mTargetCacheSize).isEqualTo(NativeAdSource.MIN_CACHE_SIZE);
+    }
+
+    @Test
+    public void onScroll_shouldNotGrowCachePastMaxCacheSize() {
+        subject.setMaxCacheSize(2);
+
+        int position = 0;
+        for (int i = 0; i < 50; i++) {
+            subject.onScroll(position);
+            position += 10;
+            advanceBy(100);
+        }
+
+        assertThat(subject.mTargetCacheSize).isEqualTo(2);
+    }
+
+    @Test
+    public void moPubNativeNetworkListener_onNativeLoad_shouldEvictAdBeforeItExpires_shouldReplaceIt() {
+        subject.loadAds(requestParameters, mockMoPubNative);
+        subject.getMoPubNativeNetworkListener().onNativeLoad(mMockNativeAd);
+
+        final ArgumentCaptor<Runnable> evictionCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockReplenishCacheHandler).postDelayed(evictionCaptor.capture(),
+                eq((long) (AD_EXPIRATION_DELAY - NativeAdSource.EXPIRATION_MARGIN_MILLISECONDS)));
+        advanceBy(AD_EXPIRATION_DELAY - NativeAdSource.EXPIRATION_MARGIN_MILLISECONDS);
+        evictionCaptor.getValue().run();
+
+        verify(mMockNativeAd).destroy();
+        assertThat(nativeAdCache).isEmpty();
+        verify(mockMoPubNative).makeRequest(requestParameters, 1);
+    }
+
+    @Test
+    public void moPubNativeNetworkListener_onNativeFail_withRetryInFlight_shouldNotPostAnotherRetry() {
+        subject.loadAds(requestParameters, new MockMoPubNativeFactory(new ArrayList<MoPubNative>()));
+        subject.mTargetCacheSize = 2;
+        subject.replenishCache();
+
+        subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
+        subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
+
+        verify(mockReplenishCacheHandler).postDelayed(any(Runnable.class), anyLong());
+        assertThat(subject.mCurrentRetries).isEqualTo(1);
+    }
+
+    @Test
+    public void scrollSimulation_withAdaptiveCache_shouldFillMoreAdPositionsPerMinute() {
+        // Run posted tasks when the clock advances, as the UI thread would
+        Robolectric.getForegroundThreadScheduler().pause();
+        final NativeAdSource singleAdSource = new NativeAdSource(
+                new ArrayDeque<TimestampWrapper<NativeAd>>(), new Handler(), mockAdRendererRegistry);
+        singleAdSource.setMaxCacheSize(1);
+        final NativeAdSource adaptiveAdSource = new NativeAdSource(
+                new ArrayDeque<TimestampWrapper<NativeAd>>(), new Handler(), mockAdRendererRegistry);
+
+        final int singleFilledPerMinute = simulateScrollingForAMinute(singleAdSource);
+        final int adaptiveFilledPerMinute = simulateScrollingForAMinute(adaptiveAdSource);
+
+        assertThat(singleFilledPerMinute).isLessThanOrEqualTo(60);
+        assertThat(adaptiveFilledPerMinute).isGreaterThan(singleFilledPerMinute * 3 / 2);
+    }
+
+    /**
+     * Scrolls through a stream at 10 items per second for a minute, with an ad position every 5
+     * items and ads that take a second to load.
+     *
+     * @return the number of ad positions that got an ad
+     */
+    private int simulateScrollingForAMinute(final NativeAdSource adSource) {
+        final Handler handler = new Handler();
+        adSource.loadAds(requestParameters, new NativeAdSource.MoPubNativeFactory() {
+            @NonNull
+            @Override
+            public MoPubNative create(
+                    @NonNull final MoPubNativeNetworkListener moPubNativeNetworkListener) {
+                final MoPubNative moPubNative = mock(MoPubNative.class);
+                doAnswer(invocation -> {
+                    handler.postDelayed(() -> moPubNativeNetworkListener.onNativeLoad(
+                            mock(NativeAd.class)), 1000);
+                    return null;
+                }).when(moPubNative).makeRequest(any(RequestParameters.class), any(Integer.class));
+                return moPubNative;
+            }
+        });
+
+        int filledAdPositions = 0;
+        for (int position = 0; position < 600; position++) {
+            adSource.onScroll(position);
+            if (position % 5 == 0 && adSource.dequeueAd() != null) {
+                filledAdPositions++;
+            }
+            advanceBy(100);
+        }
+        adSource.clear();
+        return filledAdPositions;
+    }
+
+    private static void advanceBy(final long millis) {
+        Robolectric.getForegroundThreadScheduler().advanceBy(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private static class MockMoPubNativeFactory implements NativeAdSource.MoPubNativeFactory {
+        @NonNull private final List<MoPubNative> mMoPubNatives;
+
+        MockMoPubNativeFactory(@NonNull final List<MoPubNative> moPubNatives) {
+            mMoPubNatives = moPubNatives;
+        }
+
+        @NonNull
+        @Override
+        public MoPubNative create(
+                @NonNull final MoPubNativeNetworkListener moPubNativeNetworkListener) {
+            final MoPubNative moPubNative = mock(MoPubNative.class);
+            mMoPubNatives.add(moPubNative);
+            return moPubNative;
+        }
+    }
 }
@@ -0,0 +1,175 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.nativeads;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.ImageUtils;
+import com.mopub.nativeads.test.support.MoPubShadowBitmap;
+import com.mopub.network.MoPubNetworkError;
+import com.mopub.network.MoPubRequestQueue;
+import com.mopub.network.Networking;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.robolectric.Robolectric;
+import org.robolectric.android.util.concurrent.RoboExecutorService;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+@Config(shadows={MoPubShadowBitmap.class})
+public class NativeImageLoaderTest {
+    private static final String IMAGE_URL = "https://www.mopub.com/image.png";
+
+    @Mock private MoPubRequestQueue mockRequestQueue;
+    @Mock private NativeImageLoader.Listener mockListener1;
+    @Mock private NativeImageLoader.Listener mockListener2;
+
+    private Activity activity;
+    private NativeImageLoader subject;
+
+    @Before
+    public void setUp() {
+        activity = Robolectric.buildActivity(Activity.class).create().get();
+        Networking.setRequestQueueForTesting(mockRequestQueue);
+
+        subject = new NativeImageLoader(activity, new RoboExecutorService());
+    }
+
+    @Test
+    public void load_withSameUrlTwice_shouldSendOneRequest() {
+        subject.load(IMAGE_URL, 100, 0, mockListener1);
+        subject.load(IMAGE_URL, 200, 0, mockListener2);
+        ShadowLooper.runUiThreadTasks();
+
+        verify(mockRequestQueue).add(any(NativeImageRequest.class));
+    }
+
+    @Test
+    public void load_whenRequestFails_shouldNotifyEachListener() {
+        subject.load(IMAGE_URL, 100, 0, mockListener1);
+        subject.load(IMAGE_URL, 200, 0, mockListener2);
+        ShadowLooper.runUiThreadTasks();
+        final MoPubNetworkError error = new MoPubNetworkError.Builder().build();
+
+        captureRequest().getMoPubListener().onErrorResponse(error);
+
+        verify(mockListener1).onImageFailed(error);
+        verify(mockListener2).onImageFailed(error);
+        verify(mockListener1, never()).onImageLoaded(any(Bitmap.class), anyBoolean());
+    }
+
+    @Test
+    public void load_afterImageIsDecoded_shouldDeliverFromMemoryImmediately_shouldCountHit() {
+        subject.load(IMAGE_URL, 100, 0, mockListener1);
+        ShadowLooper.runUiThreadTasks();
+        captureRequest().deliverResponse("image".getBytes());
+        ShadowLooper.runUiThreadTasks();
+        verify(mockListener1).onImageLoaded(any(Bitmap.class), eq(false));
+
+        subject.load(IMAGE_URL, 100, 0, mockListener2);
+
+        verify(mockListener2).onImageLoaded(any(Bitmap.class), eq(true));
+        assertThat(subject.getHitRate()).isEqualTo(0.5);
+        assertThat(subject.getDecodedBytes()).isGreaterThan(0);
+    }
+
+    @Test
+    public void loadInto_afterPreCachingAtScreenWidth_shouldShowCachedBitmapImmediately() {
+        final ArgumentCaptor<Bitmap> bitmapCaptor = ArgumentCaptor.forClass(Bitmap.class);
+        subject.load(IMAGE_URL, ImageUtils.getMaxImageWidth(activity), 0, mockListener1);
+        ShadowLooper.runUiThreadTasks();
+        captureRequest().deliverResponse("image".getBytes());
+        ShadowLooper.runUiThreadTasks();
+        verify(mockListener1).onImageLoaded(bitmapCaptor.capture(), eq(false));
+        final ImageView imageView = new ImageView(activity);
+        imageView.setLayoutParams(new ViewGroup.LayoutParams(1, 1));
+
+        subject.loadInto(IMAGE_URL, imageView);
+
+        assertThat(((BitmapDrawable) imageView.getDrawable()).getBitmap())
+                .isSameAs(bitmapCaptor.getValue());
+        assertThat(subject.getHitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void openSession_shouldCountOnlyLoadsMadeWhileOpen() {
+        subject.load(IMAGE_URL, 100, 0, mockListener1);
+        ShadowLooper.runUiThreadTasks();
+        captureRequest().deliverResponse("image".getBytes());
+        ShadowLooper.runUiThreadTasks();
+        final NativeImageLoader.Session session = NativeImageLoader.openSession();
+
+        subject.load(IMAGE_URL, 100, 0, mockListener2);
+        session.close();
+        subject.load(IMAGE_URL, 50, 0, mockListener2);
+
+        assertThat(session.getHitRate()).isEqualTo(1.0);
+        assertThat(session.getDecodedBytes()).isEqualTo(0);
+        assertThat(subject.getHitRate()).isEqualTo(2.0 / 3);
+    }
+
+    @Test
+    public void closeSession_shouldNotResetOtherSessions() {
+        final NativeImageLoader.Session session1 = NativeImageLoader.openSession();
+        final NativeImageLoader.Session session2 = NativeImageLoader.openSession();
+        subject.load(IMAGE_URL, 100, 0, mockListener1);
+        ShadowLooper.runUiThreadTasks();
+        captureRequest().deliverResponse("image".getBytes());
+        ShadowLooper.runUiThreadTasks();
+
+        session1.close();
+        subject.load(IMAGE_URL, 100, 0, mockListener2);
+        session2.close();
+
+        assertThat(session1.getHitRate()).isEqualTo(0.0);
+        assertThat(session2.getHitRate()).isEqualTo(0.5);
+        assertThat(session2.getDecodedBytes()).isEqualTo(session1.getDecodedBytes());
+        assertThat(session2.getDecodedBytes()).isGreaterThan(0);
+    }
+
+    @Test
+    public void loadInto_withImageNotInMemory_shouldClearViewRightAway() {
+        final ImageView imageView = new ImageView(activity);
+        imageView.setImageBitmap(Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888));
+
+        subject.loadInto(IMAGE_URL, imageView);
+
+        assertThat(((BitmapDrawable) imageView.getDrawable()).getBitmap()).isNull();
+    }
+
+    @Test
+    public void calculateInSampleSize_shouldKeepImageAtLeastAsLargeAsTarget() {
+        assertThat(NativeImageLoader.calculateInSampleSize(1000, 500, 0, 0)).isEqualTo(1);
+        assertThat(NativeImageLoader.calculateInSampleSize(1000, 500, 1000, 0)).isEqualTo(1);
+        assertThat(NativeImageLoader.calculateInSampleSize(1000, 500, 500, 0)).isEqualTo(2);
+        assertThat(NativeImageLoader.calculateInSampleSize(1000, 500, 300, 0)).isEqualTo(2);
+        assertThat(NativeImageLoader.calculateInSampleSize(1000, 500, 200, 0)).isEqualTo(4);
+        assertThat(NativeImageLoader.calculateInSampleSize(1000, 500, 200, 200)).isEqualTo(2);
+        assertThat(NativeImageLoader.calculateInSampleSize(1000, 500, 2000, 2000)).isEqualTo(1);
+    }
+
+    private NativeImageRequest captureRequest() {
+        final ArgumentCaptor<NativeImageRequest> requestCaptor = ArgumentCaptor.forClass(NativeImageRequest.class);
+        verify(mockRequestQueue).add(requestCaptor.capture());
+        return requestCaptor.getValue();
+    }
+}
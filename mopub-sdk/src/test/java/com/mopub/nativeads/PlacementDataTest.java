@@ -16,6 +16,7 @@ import org.mockito.Mock;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static com.mopub.nativeads.PlacementData.NOT_FOUND;
 import static org.fest.assertions.api.Assertions.assertThat;
@@ -797,6 +798,74 @@ public class PlacementDataTest {
         checkPlacedPositions(20, adsAt15repeating);
     }
 
+    @Test
+    public void placeAd_withRepeating_shouldNotLimitNumberOfAds() {
+        int position = adsRepeating.nextInsertionPosition(-1);
+        for (int i = 0; i < 1000; i++) {
+            adsRepeating.placeAd(position, mMockNativeAd);
+            position = adsRepeating.nextInsertionPosition(position);
+        }
+
+        assertThat(adsRepeating.getPlacedAdPositions().length).isEqualTo(1000);
+        assertThat(adsRepeating.getPlacedAdPositions()[999]).isEqualTo(3 * 999 + 2);
+        assertThat(position).isEqualTo(3 * 1000 + 2);
+        assertThat(adsRepeating.getAdjustedPosition(2000)).isEqualTo(3000);
+        assertThat(adsRepeating.getOriginalPosition(3000)).isEqualTo(2000);
+    }
+
+    @Test
+    public void mixedMutations_withLargeFeed_shouldKeepPositionsConsistent() {
+        final Random random = new Random(42);
+        int itemCount = 10000;
+
+        for (int i = 0; i < 100000; i++) {
+            final int adjustedCount = adsAt15repeating.getAdjustedCount(itemCount);
+            switch (random.nextInt(5)) {
+                case 0:
+                    final int position = adsAt15repeating.nextInsertionPosition(
+                            random.nextInt(adjustedCount + 1));
+                    if (position != NOT_FOUND && position <= adjustedCount) {
+                        adsAt15repeating.placeAd(position, mMockNativeAd);
+                    }
+                    break;
+                case 1:
+                    final int start = random.nextInt(adjustedCount + 1);
+                    adsAt15repeating.clearAdsInRange(start, start + random.nextInt(10));
+                    break;
+                case 2:
+                    adsAt15repeating.insertItem(random.nextInt(itemCount + 1));
+                    itemCount++;
+                    break;
+                case 3:
+                    adsAt15repeating.removeItem(random.nextInt(itemCount));
+                    itemCount--;
+                    break;
+                default:
+                    adsAt15repeating.moveItem(random.nextInt(itemCount), random.nextInt(itemCount));
+                    break;
+            }
+        }
+
+        final int[] placedPositions = adsAt15repeating.getPlacedAdPositions();
+        for (int i = 1; i < placedPositions.length; i++) {
+            assertThat(placedPositions[i] > placedPositions[i - 1]).isTrue();
+        }
+        for (int i = 0; i < itemCount; i++) {
+            final int adjustedPosition = adsAt15repeating.getAdjustedPosition(i);
+            assertThat(adsAt15repeating.isPlacedAd(adjustedPosition)).isFalse();
+            assertThat(adsAt15repeating.getOriginalPosition(adjustedPosition)).isEqualTo(i);
+        }
+        final int lastItemPosition = adsAt15repeating.getAdjustedPosition(itemCount - 1);
+        int adsBeforeLastItem = 0;
+        for (final int position : placedPositions) {
+            if (position < lastItemPosition) {
+                adsBeforeLastItem++;
+            }
+        }
+        assertThat(adsAt15repeating.getAdjustedCount(itemCount))
+                .isEqualTo(itemCount + adsBeforeLastItem);
+    }
+
     void checkInsertionPositions(int maxValue, PlacementData placementData, Integer... positions) {
         List<Integer> expected = Arrays.asList(positions);
         List<Integer> actual = new ArrayList<Integer>();
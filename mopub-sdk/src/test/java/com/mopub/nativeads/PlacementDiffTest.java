@@ -0,0 +1,212 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.nativeads;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+public class PlacementDiffTest {
+    private static final String INSERTED = "inserted";
+
+    private List<String> stream;
+    private RecordingCallback callback;
+
+    @Before
+    public void setUp() {
+        callback = new RecordingCallback();
+    }
+
+    @Test
+    public void dispatchItemRangeInserted_beforeAd_shouldInsertBeforeAd_shouldMoveAdBack() {
+        // Item0 Ad0 Item1 Item2 Ad1 Item3
+        final int[] adPositions = new int[] {1, 4};
+        stream = buildStream(4, adPositions);
+
+        PlacementDiff.dispatchItemRangeInserted(adPositions, 6, 1, 2, callback);
+
+        assertThat(callback.mOperations).containsExactly(
+                "insert 2 2", "move 6 4");
+        assertThat(stream).containsExactly(
+                "Item0", "Ad0", INSERTED, INSERTED, "Ad1", "Item1", "Item2", "Item3");
+    }
+
+    @Test
+    public void dispatchItemRangeInserted_atEnd_shouldInsertAdThatNowHasContentAfterIt() {
+        // Item0 Ad0 Item1, with Ad1 waiting after the last item
+        final int[] adPositions = new int[] {1, 3};
+        stream = buildStream(2, adPositions);
+
+        PlacementDiff.dispatchItemRangeInserted(adPositions, 3, 2, 1, callback);
+
+        // The item and the ad now followed by it are inserted together
+        assertThat(callback.mOperations).containsExactly("insert 3 2");
+        assertThat(stream).containsExactly("Item0", "Ad0", "Item1", INSERTED, INSERTED);
+    }
+
+    @Test
+    public void dispatchItemRangeRemoved_aroundAd_shouldRemoveContentOnly_shouldMoveAdBack() {
+        // Item0 Ad0 Item1 Item2 Ad1 Item3 Item4 Item5
+        final int[] adPositions = new int[] {1, 4};
+        stream = buildStream(6, adPositions);
+
+        PlacementDiff.dispatchItemRangeRemoved(adPositions, 4, 2, 2, callback);
+
+        assertThat(callback.mOperations).containsExactly(
+                "remove 5 1", "remove 3 1", "move 3 4");
+        assertThat(stream).containsExactly("Item0", "Ad0", "Item1", "Item4", "Ad1", "Item5");
+    }
+
+    @Test
+    public void dispatchItemRangeRemoved_atEnd_shouldRemoveAdsWithNoContentAfter() {
+        // Item0 Ad0 Item1 Ad1 Item2
+        final int[] adPositions = new int[] {1, 3};
+        stream = buildStream(3, adPositions);
+
+        PlacementDiff.dispatchItemRangeRemoved(adPositions, 1, 1, 2, callback);
+
+        assertThat(callback.mOperations).containsExactly("remove 4 1", "remove 1 3");
+        assertThat(stream).containsExactly("Item0");
+    }
+
+    @Test
+    public void dispatchItemMoved_pastAd_shouldMoveItem_shouldKeepAdInPlace() {
+        // Item0 Ad0 Item1 Item2
+        final int[] adPositions = new int[] {1};
+        stream = buildStream(3, adPositions);
+
+        PlacementDiff.dispatchItemMoved(adPositions, 3, 0, 2, callback);
+
+        assertThat(callback.mOperations).containsExactly("move 0 3", "move 0 1");
+        assertThat(stream).containsExactly("Item1", "Ad0", "Item2", "Item0");
+    }
+
+    @Test
+    public void dispatch_withBenchmarkFeed_shouldOnlyRebindInsertedContent() {
+        final Random random = new Random(7);
+        List<String> content = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            content.add("Item" + i);
+        }
+        // An ad every 5 rows, the way a repeating client positioning places them
+        final int[] adPositions = new int[200];
+        for (int i = 0; i < adPositions.length; i++) {
+            adPositions[i] = 4 + 5 * i;
+        }
+        stream = buildStream(content, adPositions);
+        int insertedCount = 0;
+
+        for (int update = 0; update < 300; update++) {
+            final List<String> newContent = new ArrayList<>(content);
+            switch (random.nextInt(3)) {
+                case 0:
+                    final int insertStart = random.nextInt(content.size() + 1);
+                    final int insertCount = 1 + random.nextInt(5);
+                    for (int i = 0; i < insertCount; i++) {
+                        newContent.add(insertStart, "New" + update + "_" + i);
+                    }
+                    insertedCount += insertCount;
+                    PlacementDiff.dispatchItemRangeInserted(adPositions, newContent.size(),
+                            insertStart, insertCount, callback);
+                    break;
+                case 1:
+                    final int removeStart = random.nextInt(content.size() - 5);
+                    final int removeCount = 1 + random.nextInt(5);
+                    newContent.subList(removeStart, removeStart + removeCount).clear();
+                    PlacementDiff.dispatchItemRangeRemoved(adPositions, newContent.size(),
+                            removeStart, removeCount, callback);
+                    break;
+                default:
+                    final int from = random.nextInt(content.size());
+                    final int to = random.nextInt(content.size());
+                    newContent.add(to, newContent.remove(from));
+                    PlacementDiff.dispatchItemMoved(adPositions, newContent.size(), from, to,
+                            callback);
+                    break;
+            }
+
+            // Rows that were only moved keep their view holders
+            final List<String> expected = buildStream(newContent, adPositions);
+            assertThat(stream.size()).isEqualTo(expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                if (!INSERTED.equals(stream.get(i))) {
+                    assertThat(stream.get(i)).isEqualTo(expected.get(i));
+                }
+            }
+            stream = expected;
+            content = newContent;
+        }
+
+        // notifyDataSetChanged() would rebind every row on screen for each of the 300 updates
+        assertThat(callback.mReboundRows).isEqualTo(insertedCount);
+    }
+
+    private List<String> buildStream(final int contentCount, final int[] adPositions) {
+        final List<String> content = new ArrayList<>();
+        for (int i = 0; i < contentCount; i++) {
+            content.add("Item" + i);
+        }
+        return buildStream(content, adPositions);
+    }
+
+    private static List<String> buildStream(final List<String> content, final int[] adPositions) {
+        final List<String> stream = new ArrayList<>();
+        int ad = 0;
+        for (final String item : content) {
+            while (ad < adPositions.length && adPositions[ad] <= stream.size()) {
+                stream.add("Ad" + ad);
+                ad++;
+            }
+            stream.add(item);
+        }
+        return stream;
+    }
+
+    /**
+     * Applies the operations to {@link #stream} and records them.
+     */
+    private class RecordingCallback implements ListUpdateCallback {
+        final List<String> mOperations = new ArrayList<>();
+        int mReboundRows;
+
+        @Override
+        public void onInserted(final int position, final int count) {
+            mOperations.add("insert " + position + " " + count);
+            mReboundRows += count;
+            for (int i = 0; i < count; i++) {
+                stream.add(position, INSERTED);
+            }
+        }
+
+        @Override
+        public void onRemoved(final int position, final int count) {
+            mOperations.add("remove " + position + " " + count);
+            stream.subList(position, position + count).clear();
+        }
+
+        @Override
+        public void onMoved(final int fromPosition, final int toPosition) {
+            mOperations.add("move " + fromPosition + " " + toPosition);
+            stream.add(toPosition, stream.remove(fromPosition));
+        }
+
+        @Override
+        public void onChanged(final int position, final int count, final Object payload) {
+            mOperations.add("change " + position + " " + count);
+            mReboundRows += count;
+        }
+    }
+}
@@ -45,7 +45,7 @@ public class StaticNativeViewHolderTest {
     private TextView sponsoredTextView;
 
     @Mock private MoPubRequestQueue mockRequestQueue;
-    @Mock private MoPubImageLoader mockImageLoader;
+    @Mock private NativeImageLoader mockImageLoader;
     @Mock private MoPubImageLoader.ImageContainer mockImageContainer;
     @Mock private Bitmap mockBitmap;
 
@@ -56,7 +56,7 @@ public class StaticNativeViewHolderTest {
     public void setUp() throws Exception {
 
         Networking.setRequestQueueForTesting(mockRequestQueue);
-        Networking.setImageLoaderForTesting(mockImageLoader);
+        NativeImageLoader.setInstanceForTesting(mockImageLoader);
         context = Robolectric.buildActivity(Activity.class).create().get();
         relativeLayout = new RelativeLayout(context);
         relativeLayout.setId(View.generateViewId());
@@ -0,0 +1,261 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network;
+
+import android.app.Activity;
+
+import com.mopub.common.AdFormat;
+import com.mopub.common.MoPub;
+import com.mopub.common.SdkConfiguration;
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.Reflection;
+import com.mopub.common.util.ResponseHeader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+public class AdRequestCoalescerTest {
+    private static final String AD_UNIT_ID = "adUnitId";
+    private static final String URL = "https://ads.mopub.com/m/ad?id=adUnitId&q=keywords";
+    private static final String FAIL_URL = "https://ads.mopub.com/m/ad?id=adUnitId&fail=1";
+
+    @Mock
+    private MoPubRequestQueue mockRequestQueue;
+    @Mock
+    private MultiAdRequest.Listener mockListener1;
+    @Mock
+    private MultiAdRequest.Listener mockListener2;
+    @Mock
+    private MultiAdRequest.Listener mockListener3;
+    @Mock
+    private AdLoader.Listener mockAdLoaderListener1;
+    @Mock
+    private AdLoader.Listener mockAdLoaderListener2;
+
+    private Activity activity;
+    private AdRequestCoalescer subject;
+
+    @Before
+    public void setup() throws Exception {
+        activity = Robolectric.buildActivity(Activity.class).create().get();
+        MoPub.initializeSdk(activity, new SdkConfiguration.Builder(AD_UNIT_ID).build(), null);
+        ShadowLooper.runUiThreadTasks();
+        Reflection.getPrivateField(MoPub.class, "sSdkInitialized").setBoolean(null, true);
+        Networking.setRequestQueueForTesting(mockRequestQueue);
+
+        subject = AdRequestCoalescer.getInstance();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        new Reflection.MethodBuilder(null, "resetMoPub")
+                .setStatic(MoPub.class)
+                .setAccessible()
+                .execute();
+    }
+
+    @Test
+    public void add_withIdenticalRequests_shouldSendOneRequest_shouldDealAdsToEach() throws Exception {
+        final MultiAdRequest request1 = createRequest(URL, mockListener1);
+        final MultiAdRequest request2 = createRequest(URL + "&llf=123", mockListener2);
+
+        subject.add(request1, activity);
+        subject.add(request2, activity);
+        captureRequest().mListener.onResponse(createMultiAdResponse(2));
+
+        final ArgumentCaptor<MultiAdResponse> responseCaptor1 = ArgumentCaptor.forClass(MultiAdResponse.class);
+        final ArgumentCaptor<MultiAdResponse> responseCaptor2 = ArgumentCaptor.forClass(MultiAdResponse.class);
+        verify(mockListener1).onResponse(responseCaptor1.capture());
+        verify(mockListener2).onResponse(responseCaptor2.capture());
+        assertThat(responseCaptor1.getValue().next().getStringBody()).isEqualTo("content0");
+        assertThat(responseCaptor1.getValue().getFailURL()).isEqualTo(FAIL_URL);
+        assertThat(responseCaptor2.getValue().next().getStringBody()).isEqualTo("content1");
+        assertThat(responseCaptor2.getValue().getFailURL()).isEqualTo(FAIL_URL);
+    }
+
+    @Test
+    public void adLoaders_withIdenticalRequests_whenTheirAdsRunOut_shouldEachFailOverToFailUrl() throws Exception {
+        final AdLoader adLoader1 = new AdLoader(URL, AdFormat.BANNER, AD_UNIT_ID, activity,
+                mockAdLoaderListener1);
+        final AdLoader adLoader2 = new AdLoader(URL, AdFormat.BANNER, AD_UNIT_ID, activity,
+                mockAdLoaderListener2);
+
+        adLoader1.loadNextAd(null);
+        adLoader2.loadNextAd(null);
+        captureRequest().mListener.onResponse(createMultiAdResponse(2));
+
+        verify(mockAdLoaderListener1).onResponse(any(AdResponse.class));
+        verify(mockAdLoaderListener2).onResponse(any(AdResponse.class));
+        assertThat(adLoader1.hasMoreAds()).isTrue();
+        assertThat(adLoader2.hasMoreAds()).isTrue();
+
+        adLoader1.loadNextAd(null);
+        adLoader2.loadNextAd(null);
+
+        // Both follow the fail URL, and wait on one request for it
+        final ArgumentCaptor<MultiAdRequest> requestCaptor = ArgumentCaptor.forClass(MultiAdRequest.class);
+        verify(mockRequestQueue, times(2)).add(requestCaptor.capture());
+        assertThat(requestCaptor.getAllValues().get(1).getOriginalUrl()).isEqualTo(FAIL_URL);
+        requestCaptor.getAllValues().get(1).mListener.onResponse(createMultiAdResponse(2));
+
+        verify(mockAdLoaderListener1, times(2)).onResponse(any(AdResponse.class));
+        verify(mockAdLoaderListener2, times(2)).onResponse(any(AdResponse.class));
+    }
+
+    @Test
+    public void add_whenResponseHasTooFewAds_shouldSendLeftOverRequestOnItsOwn() throws Exception {
+        final MultiAdRequest request1 = createRequest(URL, mockListener1);
+        final MultiAdRequest request2 = createRequest(URL, mockListener2);
+
+        subject.add(request1, activity);
+        subject.add(request2, activity);
+        captureRequest().mListener.onResponse(createMultiAdResponse(1));
+
+        verify(mockListener1).onResponse(any(MultiAdResponse.class));
+        verify(mockListener2, never()).onResponse(any(MultiAdResponse.class));
+        verify(mockRequestQueue).add(request2);
+    }
+
+    @Test
+    public void add_withFullGroup_shouldSendAnotherRequest() {
+        for (int i = 0; i <= AdRequestCoalescer.MAX_REQUESTS_PER_GROUP; i++) {
+            subject.add(createRequest(URL, mockListener1), activity);
+        }
+
+        verify(mockRequestQueue, times(2)).add(any(MultiAdRequest.class));
+    }
+
+    @Test
+    public void add_withDifferentTargeting_shouldSendEachRequest() {
+        subject.add(createRequest(URL, mockListener1), activity);
+        subject.add(createRequest(URL + "&user_data_q=other", mockListener2), activity);
+
+        verify(mockRequestQueue, times(2)).add(any(MultiAdRequest.class));
+    }
+
+    @Test
+    public void add_withCanceledRequest_shouldNotDeliverToIt() throws Exception {
+        final MultiAdRequest request1 = createRequest(URL, mockListener1);
+        final MultiAdRequest request2 = createRequest(URL, mockListener2);
+
+        subject.add(request1, activity);
+        subject.add(request2, activity);
+        request1.cancel();
+        captureRequest().mListener.onResponse(createMultiAdResponse(2));
+
+        verify(mockListener1, never()).onResponse(any(MultiAdResponse.class));
+        verify(mockListener2).onResponse(any(MultiAdResponse.class));
+    }
+
+    @Test
+    public void add_whenSharedRequestFails_shouldDeliverErrorToEach() {
+        subject.add(createRequest(URL, mockListener1), activity);
+        subject.add(createRequest(URL, mockListener2), activity);
+        subject.add(createRequest(URL, mockListener3), activity);
+        final MoPubNetworkError error = new MoPubNetworkError.Builder()
+                .reason(MoPubNetworkError.Reason.NO_FILL)
+                .build();
+
+        captureRequest().mListener.onErrorResponse(error);
+
+        verify(mockListener1).onErrorResponse(error);
+        verify(mockListener2).onErrorResponse(error);
+        verify(mockListener3).onErrorResponse(error);
+    }
+
+    @Test
+    public void add_afterResponse_shouldSendNewRequest() throws Exception {
+        subject.add(createRequest(URL, mockListener1), activity);
+        captureRequest().mListener.onResponse(createMultiAdResponse(1));
+
+        subject.add(createRequest(URL, mockListener2), activity);
+
+        verify(mockRequestQueue, times(2)).add(any(MultiAdRequest.class));
+    }
+
+    @Test
+    public void getKey_shouldIgnoreVolatileParams_shouldIgnoreParamOrder() {
+        final String key = AdRequestCoalescer.getKey(createRequest(URL, mockListener1));
+
+        assertThat(key).isNotNull();
+        assertThat(AdRequestCoalescer.getKey(createRequest(
+                "https://ads.mopub.com/m/ad?q=keywords&backoff_ms=100&id=adUnitId&llf=5",
+                mockListener1))).isEqualTo(key);
+    }
+
+    @Test
+    public void getKey_withNonMoPubUrl_shouldReturnNull() {
+        assertThat(AdRequestCoalescer.getKey(createRequest("https://www.example.com/ad",
+                mockListener1))).isNull();
+    }
+
+    @Test
+    public void split_shouldDealAdsInWaterfallOrder_shouldEmptySource() throws Exception {
+        final MultiAdResponse response = createMultiAdResponse(3);
+
+        final List<MultiAdResponse> parts = response.split(2);
+
+        assertThat(parts).hasSize(2);
+        assertThat(parts.get(0).next().getStringBody()).isEqualTo("content0");
+        assertThat(parts.get(0).next().getStringBody()).isEqualTo("content2");
+        assertThat(parts.get(0).hasNext()).isFalse();
+        assertThat(parts.get(1).next().getStringBody()).isEqualTo("content1");
+        assertThat(parts.get(1).hasNext()).isFalse();
+        assertThat(parts.get(0).getFailURL()).isEqualTo(FAIL_URL);
+        assertThat(parts.get(1).getFailURL()).isEqualTo(FAIL_URL);
+        assertThat(response.hasNext()).isFalse();
+        assertThat(response.isWaterfallFinished()).isTrue();
+    }
+
+    private MultiAdRequest createRequest(final String url, final MultiAdRequest.Listener listener) {
+        return new MultiAdRequest(url, AdFormat.BANNER, AD_UNIT_ID, activity, listener);
+    }
+
+    private MultiAdRequest captureRequest() {
+        final ArgumentCaptor<MultiAdRequest> requestCaptor = ArgumentCaptor.forClass(MultiAdRequest.class);
+        verify(mockRequestQueue).add(requestCaptor.capture());
+        return requestCaptor.getValue();
+    }
+
+    private MultiAdResponse createMultiAdResponse(final int adCount) throws JSONException, MoPubNetworkError {
+        final JSONArray adResponses = new JSONArray();
+        for (int i = 0; i < adCount; i++) {
+            final JSONObject metadata = new JSONObject();
+            metadata.put(ResponseHeader.CONTENT_TYPE.getKey(), "text/html; charset=UTF-8");
+            metadata.put(ResponseHeader.AD_TYPE.getKey(), "html");
+            final JSONObject adResponse = new JSONObject();
+            adResponse.put(ResponseHeader.CONTENT.getKey(), "content" + i);
+            adResponse.put(ResponseHeader.METADATA.getKey(), metadata);
+            adResponses.put(adResponse);
+        }
+        final JSONObject body = new JSONObject();
+        body.put(ResponseHeader.AD_RESPONSES.getKey(), adResponses);
+        body.put(ResponseHeader.FAIL_URL.getKey(), FAIL_URL);
+
+        return new MultiAdResponse(activity,
+                new MoPubNetworkResponse(200, body.toString().getBytes(),
+                        Collections.<String, String>emptyMap()),
+                AdFormat.BANNER, AD_UNIT_ID);
+    }
+}
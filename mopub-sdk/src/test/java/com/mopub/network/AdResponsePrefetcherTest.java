@@ -0,0 +1,208 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network;
+
+import android.app.Activity;
+
+import com.mopub.common.AdFormat;
+import com.mopub.common.Constants;
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.ResponseHeader;
+import com.mopub.common.util.test.support.TestDateAndTime;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.robolectric.Robolectric;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+public class AdResponsePrefetcherTest {
+    private static final String AD_UNIT_ID = "adUnitId";
+    private static final String URL = "https://ads.mopub.com/m/ad?id=adUnitId&q=sports";
+
+    @Mock
+    private MoPubRequestQueue mockRequestQueue;
+    @Mock
+    private AdLoader.Listener mockListener;
+    @Mock
+    private MultiAdRequest.Listener mockRequestListener;
+
+    private Activity activity;
+    private AdResponsePrefetcher subject;
+
+    @Before
+    public void setup() {
+        activity = Robolectric.buildActivity(Activity.class).create().get();
+        Networking.setRequestQueueForTesting(mockRequestQueue);
+        TestDateAndTime.getInstance().setNow(new Date(1000000000L));
+
+        subject = AdResponsePrefetcher.getInstance();
+    }
+
+    @After
+    public void tearDown() {
+        subject.setMaxResponsesPerAdUnit(0);
+        subject.setTtlMillis(AdResponsePrefetcher.DEFAULT_TTL_MILLIS);
+        RequestRateTrackerTest.clearRequestRateTracker();
+    }
+
+    @Test
+    public void prefetch_whenDisabled_shouldNotSendRequest_shouldNotCountMisses() {
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+
+        verify(mockRequestQueue, never()).add(any(MoPubRequest.class));
+        assertThat(subject.take(createRequest(URL))).isNull();
+        assertThat(subject.getMissCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void take_afterPrefetch_shouldReturnResponseOnce_shouldCountHitsAndMisses() throws Exception {
+        subject.setMaxResponsesPerAdUnit(1);
+        final MultiAdResponse response = createMultiAdResponse();
+
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+        captureRequest().mListener.onResponse(response);
+
+        assertThat(subject.take(createRequest(URL))).isSameAs(response);
+        assertThat(subject.take(createRequest(URL))).isNull();
+        assertThat(subject.getHitCount()).isEqualTo(1);
+        assertThat(subject.getMissCount()).isEqualTo(1);
+        assertThat(subject.getHitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void prefetch_whileInFlightOrFull_shouldNotSendAnotherRequest() throws Exception {
+        subject.setMaxResponsesPerAdUnit(1);
+
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+        captureRequest().mListener.onResponse(createMultiAdResponse());
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+
+        verify(mockRequestQueue, times(1)).add(any(MoPubRequest.class));
+    }
+
+    @Test
+    public void prefetch_afterError_shouldSendAnotherRequest() {
+        subject.setMaxResponsesPerAdUnit(1);
+
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+        captureRequest().mListener.onErrorResponse(new MoPubNetworkError.Builder()
+                .reason(MoPubNetworkError.Reason.NO_FILL)
+                .build());
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+
+        verify(mockRequestQueue, times(2)).add(any(MoPubRequest.class));
+    }
+
+    @Test
+    public void prefetch_whenRateLimited_shouldNotSendRequest() {
+        subject.setMaxResponsesPerAdUnit(1);
+        RequestRateTrackerTest.prepareRequestRateTracker(AD_UNIT_ID, 100, "reason");
+
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+
+        verify(mockRequestQueue, never()).add(any(MoPubRequest.class));
+    }
+
+    @Test
+    public void take_withDifferentTargeting_shouldNotReturnResponse() throws Exception {
+        subject.setMaxResponsesPerAdUnit(1);
+        final MultiAdResponse response = createMultiAdResponse();
+
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+        captureRequest().mListener.onResponse(response);
+
+        assertThat(subject.take(createRequest(
+                "https://ads.mopub.com/m/ad?id=adUnitId&q=news"))).isNull();
+        // Volatile params do not change the targeting
+        assertThat(subject.take(createRequest(URL + "&backoff_ms=1000"))).isSameAs(response);
+    }
+
+    @Test
+    public void take_afterTtl_shouldEvictResponse_shouldCountMiss() throws Exception {
+        subject.setMaxResponsesPerAdUnit(1);
+
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+        captureRequest().mListener.onResponse(createMultiAdResponse());
+        TestDateAndTime.getInstance().setNow(
+                new Date(1000000000L + AdResponsePrefetcher.DEFAULT_TTL_MILLIS));
+
+        assertThat(subject.take(createRequest(URL))).isNull();
+        assertThat(subject.getHitCount()).isEqualTo(0);
+        assertThat(subject.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void take_withTtlLongerThanAdExpiration_afterResponseExpires_shouldEvictResponse_shouldCountMiss() throws Exception {
+        subject.setMaxResponsesPerAdUnit(1);
+        subject.setTtlMillis(Constants.AD_EXPIRATION_DELAY * 2L);
+
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+        captureRequest().mListener.onResponse(createMultiAdResponse());
+        TestDateAndTime.getInstance().setNow(
+                new Date(1000000000L + Constants.AD_EXPIRATION_DELAY));
+
+        assertThat(subject.take(createRequest(URL))).isNull();
+        assertThat(subject.getHitCount()).isEqualTo(0);
+        assertThat(subject.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void adLoader_loadNextAd_withPrefetchedResponse_shouldDeliverIt_shouldNotSendRequest() throws Exception {
+        subject.setMaxResponsesPerAdUnit(1);
+        subject.prefetch(URL, AdFormat.BANNER, AD_UNIT_ID, activity);
+        captureRequest().mListener.onResponse(createMultiAdResponse());
+        final AdLoader adLoader = new AdLoader(URL, AdFormat.BANNER, AD_UNIT_ID, activity,
+                mockListener);
+
+        assertThat(adLoader.loadNextAd(null)).isNotNull();
+
+        verify(mockListener).onResponse(any(AdResponse.class));
+        verify(mockRequestQueue, times(1)).add(any(MoPubRequest.class));
+        assertThat(adLoader.hasMoreAds()).isFalse();
+    }
+
+    private MultiAdRequest createRequest(final String url) {
+        return new MultiAdRequest(url, AdFormat.BANNER, AD_UNIT_ID, activity, mockRequestListener);
+    }
+
+    private MultiAdRequest captureRequest() {
+        final ArgumentCaptor<MoPubRequest> requestCaptor = ArgumentCaptor.forClass(MoPubRequest.class);
+        verify(mockRequestQueue).add(requestCaptor.capture());
+        return (MultiAdRequest) requestCaptor.getValue();
+    }
+
+    private MultiAdResponse createMultiAdResponse() throws JSONException, MoPubNetworkError {
+        final JSONObject metadata = new JSONObject();
+        metadata.put(ResponseHeader.CONTENT_TYPE.getKey(), "text/html; charset=UTF-8");
+        metadata.put(ResponseHeader.AD_TYPE.getKey(), "html");
+        final JSONObject adResponse = new JSONObject();
+        adResponse.put(ResponseHeader.CONTENT.getKey(), "content");
+        adResponse.put(ResponseHeader.METADATA.getKey(), metadata);
+        final JSONObject body = new JSONObject();
+        body.put(ResponseHeader.AD_RESPONSES.getKey(), new JSONArray().put(adResponse));
+
+        return new MultiAdResponse(activity,
+                new MoPubNetworkResponse(200, body.toString().getBytes(),
+                        Collections.<String, String>emptyMap()),
+                AdFormat.BANNER, AD_UNIT_ID);
+    }
+}
@@ -1437,6 +1437,104 @@ public class MultiAdResponseTest {
                 .isEqualTo(CreativeExperienceSettings.getDefaultSettings(REWARDED));
     }
 
+    @Test
+    public void constructor_shouldDecodeAdResponsesOnlyWhenWaterfallReachesThem() throws Exception {
+        JSONObject secondResponse = new JSONObject(singleAdResponse.toString());
+        secondResponse.getJSONObject(ResponseHeader.METADATA.getKey())
+                .put(ResponseHeader.DISABLE_VIEWABILITY.getKey(), "1");
+        JSONObject jsonObject = createJsonBody(FAIL_URL, singleAdResponse);
+        jsonObject.getJSONArray(ResponseHeader.AD_RESPONSES.getKey()).put(secondResponse);
+        MoPubNetworkResponse testResponse = new MoPubNetworkResponse(200,
+                jsonObject.toString().getBytes(), Collections.emptyMap());
+        ViewabilityManager.setViewabilityEnabled(true);
+
+        MultiAdResponse subject = new MultiAdResponse(activity, testResponse, AdFormat.BANNER, adUnitId);
+        subject.next();
+
+        assertTrue(ViewabilityManager.isViewabilityEnabled());
+        assertTrue(subject.hasNext());
+        assertFalse(ViewabilityManager.isViewabilityEnabled());
+    }
+
+    @Test
+    public void constructor_withInvalidItems_shouldSkipThem() throws Exception {
+        JSONObject invalidResponse = new JSONObject(singleAdResponse.toString());
+        invalidResponse.getJSONObject(ResponseHeader.METADATA.getKey())
+                .put(ResponseHeader.CUSTOM_EVENT_DATA.getKey(), "{invalid");
+        JSONObject jsonObject = createJsonBody(FAIL_URL, null);
+        jsonObject.getJSONArray(ResponseHeader.AD_RESPONSES.getKey())
+                .put("not an ad response")
+                .put(invalidResponse)
+                .put(singleAdResponse);
+        MoPubNetworkResponse testResponse = new MoPubNetworkResponse(200,
+                jsonObject.toString().getBytes(), Collections.emptyMap());
+
+        MultiAdResponse subject = new MultiAdResponse(activity, testResponse, AdFormat.BANNER, adUnitId);
+
+        assertThat(subject.next().getRefreshTimeMillis()).isEqualTo(REFRESH_TIME * 1000);
+        assertFalse(subject.hasNext());
+    }
+
+    @Test
+    public void constructor_withInvalidLaterItem_shouldDeferErrorUntilItIsReached() throws Exception {
+        JSONObject invalidResponse = new JSONObject(singleAdResponse.toString());
+        invalidResponse.remove(ResponseHeader.METADATA.getKey());
+        JSONObject jsonObject = createJsonBody(FAIL_URL, singleAdResponse);
+        jsonObject.getJSONArray(ResponseHeader.AD_RESPONSES.getKey()).put(invalidResponse);
+        MoPubNetworkResponse testResponse = new MoPubNetworkResponse(200,
+                jsonObject.toString().getBytes(), Collections.emptyMap());
+
+        MultiAdResponse subject = new MultiAdResponse(activity, testResponse, AdFormat.BANNER, adUnitId);
+
+        assertThat(subject.next().getAdGroupId()).isEqualTo(AD_GROUP_ID);
+        assertFalse(subject.hasNext());
+        assertFalse(subject.isWaterfallFinished());
+    }
+
+    @Test(expected = JSONException.class)
+    public void constructor_withoutAdResponsesArray_shouldThrowException() throws Exception {
+        MoPubNetworkResponse testResponse = new MoPubNetworkResponse(200,
+                "{\"x-next-url\": \"fail_url\"}".getBytes(), Collections.emptyMap());
+
+        new MultiAdResponse(activity, testResponse, AdFormat.BANNER, adUnitId);
+    }
+
+    @Test
+    public void constructor_shouldKeepOnlyContentAndMetadataOfPendingItems() throws Exception {
+        JSONObject secondResponse = new JSONObject(singleAdResponse.toString());
+        secondResponse.put("debug", new JSONObject().put("trace", new JSONArray().put("a").put("b")));
+        JSONObject jsonObject = createJsonBody(FAIL_URL, singleAdResponse);
+        jsonObject.getJSONArray(ResponseHeader.AD_RESPONSES.getKey()).put(secondResponse);
+        jsonObject.put("debug", new JSONObject().put("trace", "unused"));
+        MoPubNetworkResponse testResponse = new MoPubNetworkResponse(200,
+                jsonObject.toString().getBytes(), Collections.emptyMap());
+
+        MultiAdResponse subject = new MultiAdResponse(activity, testResponse, AdFormat.BANNER, adUnitId);
+
+        final List<JSONObject> pendingItems = subject.getPendingItems();
+        assertThat(pendingItems).hasSize(1);
+        final JSONObject pendingItem = pendingItems.get(0);
+        assertThat(pendingItem.length()).isEqualTo(2);
+        assertThat(pendingItem.getString(ResponseHeader.CONTENT.getKey())).isEqualTo("content_text");
+        assertThat(pendingItem.getJSONObject(ResponseHeader.METADATA.getKey()).toString())
+                .isEqualTo(singleAdResponse.getJSONObject(ResponseHeader.METADATA.getKey()).toString());
+    }
+
+    @Test
+    public void constructor_withAdResponsesBeforeTopLevelHeaders_shouldReadHeaders() throws Exception {
+        final String body = "{\"" + ResponseHeader.AD_RESPONSES.getKey() + "\": ["
+                + singleAdResponse + "], \"unknown\": [1, {\"a\": null}], \""
+                + ResponseHeader.FAIL_URL.getKey() + "\": \"" + FAIL_URL + "\", \""
+                + ResponseHeader.REQUEST_ID.getKey() + "\": \"" + REQUEST_ID_VALUE + "\"}";
+        MoPubNetworkResponse testResponse = new MoPubNetworkResponse(200, body.getBytes(),
+                Collections.emptyMap());
+
+        MultiAdResponse subject = new MultiAdResponse(activity, testResponse, AdFormat.BANNER, adUnitId);
+
+        assertThat(subject.getFailURL()).isEqualTo(FAIL_URL);
+        assertThat(subject.next().getRequestId()).isEqualTo(REQUEST_ID_VALUE);
+    }
+
     // Utility functions
     private static byte[] createResponseBody(String failURL, JSONObject adResponse) throws JSONException {
         return createJsonBody(failURL, adResponse).toString().getBytes();
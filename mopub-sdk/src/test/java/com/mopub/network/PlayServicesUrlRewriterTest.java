@@ -79,4 +79,48 @@ public class PlayServicesUrlRewriterTest {
     public void rewriteUrl_noTemplates_shouldReturnIdentical() throws Exception {
         assertThat(subject.rewriteUrl("https://ads.mopub.com/m/ad")).isEqualTo("https://ads.mopub.com/m/ad");
     }
+
+    @Test
+    public void rewriteParam_shouldReplaceTemplates() {
+        when(mockPersonalInfoManager.canCollectPersonalInformation()).thenReturn(true);
+
+        AdvertisingId adId = ClientMetadata.getInstance().getMoPubIdentifier().getAdvertisingInfo();
+
+        assertThat(subject.rewriteParam("ifa", "mp_tmpl_advertising_id"))
+                .isEqualTo(adId.getIdentifier(true));
+        assertThat(subject.rewriteParam("dnt", "mp_tmpl_do_not_track")).isEqualTo("0");
+        assertThat(subject.rewriteParam("tas", "mp_tmpl_tas")).isEqualTo("authorized");
+        assertThat(subject.rewriteParam("mid", "mp_tmpl_mopub_id"))
+                .isEqualTo(adId.getIdentifier(false));
+    }
+
+    @Test
+    public void rewriteParam_whenCannotCollectPersonalInformation_shouldDropIfa() {
+        when(mockPersonalInfoManager.canCollectPersonalInformation()).thenReturn(false);
+
+        assertThat(subject.rewriteParam("ifa", "mp_tmpl_advertising_id")).isNull();
+    }
+
+    @Test
+    public void rewriteParam_withTemplateInsideValue_shouldReplaceIt() {
+        when(mockPersonalInfoManager.canCollectPersonalInformation()).thenReturn(true);
+
+        AdvertisingId adId = ClientMetadata.getInstance().getMoPubIdentifier().getAdvertisingInfo();
+
+        assertThat(subject.rewriteParam("abt", "ifa:mp_tmpl_advertising_id,dnt:mp_tmpl_do_not_track"))
+                .isEqualTo("ifa:" + adId.getIdentifier(true) + ",dnt:0");
+    }
+
+    @Test
+    public void rewriteParam_whenCannotCollectPersonalInformation_withIfaTemplateInOtherParam_shouldKeepParam() {
+        when(mockPersonalInfoManager.canCollectPersonalInformation()).thenReturn(false);
+
+        assertThat(subject.rewriteParam("abt", "mp_tmpl_advertising_id"))
+                .isEqualTo("mp_tmpl_advertising_id");
+    }
+
+    @Test
+    public void rewriteParam_noTemplate_shouldReturnIdentical() {
+        assertThat(subject.rewriteParam("id", "adunit")).isEqualTo("adunit");
+    }
 }
@@ -6,6 +6,7 @@ package com.mopub.network;
 
 import android.os.SystemClock;
 
+import com.mopub.common.DoubleTimeTracker;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.network.RequestRateTracker.TimeRecord;
 
@@ -203,6 +204,68 @@ public class RequestRateTrackerTest {
         assertThat(subject.isBlockedByRateLimit(AD_UNIT_1)).isFalse();
     }
 
+    @Test
+    public void tryAcquire_shouldAllowBurstPerAdUnit_thenRefill() {
+        final FakeClock clock = new FakeClock();
+        subject = new RequestRateTracker(clock);
+
+        for (int i = 0; i < RequestRateTracker.AD_UNIT_BUCKET_CAPACITY; i++) {
+            assertThat(subject.tryAcquire(AD_UNIT_1)).isTrue();
+        }
+        assertThat(subject.tryAcquire(AD_UNIT_1)).isFalse();
+        assertThat(subject.tryAcquire(AD_UNIT_2)).isTrue();
+
+        clock.nowMs += RequestRateTracker.AD_UNIT_REFILL_INTERVAL_MS;
+        assertThat(subject.tryAcquire(AD_UNIT_1)).isTrue();
+        assertThat(subject.tryAcquire(AD_UNIT_1)).isFalse();
+    }
+
+    @Test
+    public void tryAcquire_shouldLimitAllAdUnitsTogether_shouldNotSpendAdUnitTokenWhenGlobalLimitIsHit() {
+        final FakeClock clock = new FakeClock();
+        subject = new RequestRateTracker(clock);
+
+        for (int i = 0; i < RequestRateTracker.GLOBAL_BUCKET_CAPACITY; i++) {
+            assertThat(subject.tryAcquire("other_ad_unit_" + i)).isTrue();
+        }
+        assertThat(subject.tryAcquire(AD_UNIT_1)).isFalse();
+        assertThat(subject.tryAcquire(null)).isFalse();
+
+        clock.nowMs += RequestRateTracker.GLOBAL_REFILL_INTERVAL_MS;
+        assertThat(subject.tryAcquire(AD_UNIT_1)).isTrue();
+        for (int i = 1; i < RequestRateTracker.AD_UNIT_BUCKET_CAPACITY; i++) {
+            clock.nowMs += RequestRateTracker.GLOBAL_REFILL_INTERVAL_MS;
+            assertThat(subject.tryAcquire(AD_UNIT_1)).isTrue();
+        }
+    }
+
+    @Test
+    public void tryAcquire_withServerRateLimit_shouldFailUntilItEnds_thenAllowOneRequestAtATime() {
+        final FakeClock clock = new FakeClock();
+        subject = new RequestRateTracker(clock);
+
+        subject.registerRateLimit(AD_UNIT_1, BACKOFF_TIME, REASON);
+
+        assertThat(subject.tryAcquire(AD_UNIT_1)).isFalse();
+        clock.nowMs += BACKOFF_TIME;
+        assertThat(subject.tryAcquire(AD_UNIT_1)).isTrue();
+        assertThat(subject.tryAcquire(AD_UNIT_1)).isFalse();
+        clock.nowMs += RequestRateTracker.AD_UNIT_REFILL_INTERVAL_MS;
+        assertThat(subject.tryAcquire(AD_UNIT_1)).isTrue();
+    }
+
+    @Test
+    public void registerRateLimit_withZeroBackoff_shouldNotDrainTokenBucket() {
+        final FakeClock clock = new FakeClock();
+        subject = new RequestRateTracker(clock);
+
+        subject.registerRateLimit(AD_UNIT_1, 0, NO_BACKOFF);
+
+        for (int i = 0; i < RequestRateTracker.AD_UNIT_BUCKET_CAPACITY; i++) {
+            assertThat(subject.tryAcquire(AD_UNIT_1)).isTrue();
+        }
+    }
+
     /**
      * Utility functions
      */
@@ -213,4 +276,13 @@ public class RequestRateTrackerTest {
     public static void clearRequestRateTracker() {
         RequestRateTracker.setInstance(new RequestRateTracker());
     }
+
+    private static class FakeClock implements DoubleTimeTracker.Clock {
+        long nowMs = 1000;
+
+        @Override
+        public long elapsedRealTime() {
+            return nowMs;
+        }
+    }
 }
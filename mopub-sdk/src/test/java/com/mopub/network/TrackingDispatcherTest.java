@@ -0,0 +1,285 @@
+// Copyright 2018-2021 Twitter, Inc.
+// Licensed under the MoPub SDK License Agreement
+// https://www.mopub.com/legal/sdk-license-agreement/
+
+package com.mopub.network;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.test.support.TestDateAndTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+public class TrackingDispatcherTest {
+    private static final String URL_A = "https://a.example.com/impression";
+    private static final String URL_B = "https://b.example.com/impression";
+
+    @Mock private TrackingRequest.Listener mockListener;
+
+    private static final long INITIAL_RETRY_DELAY_MS = new RetryPolicyEngine(new Random())
+            .getBackoffMs(RetryPolicyEngine.Endpoint.TRACKING, 0);
+
+    private File storeFile;
+    private TrackingBeaconStore store;
+    private FlakySender sender;
+    private TrackingDispatcher subject;
+
+    @Before
+    public void setUp() throws Exception {
+        storeFile = File.createTempFile("tracking", ".beacons");
+        storeFile.delete();
+        store = new TrackingBeaconStore(storeFile);
+        sender = new FlakySender();
+        subject = createDispatcher();
+    }
+
+    @After
+    public void tearDown() {
+        storeFile.delete();
+    }
+
+    @Test
+    public void dispatch_shouldLimitRequestsPerHost() {
+        for (int i = 0; i <= TrackingDispatcher.MAX_REQUESTS_PER_HOST; i++) {
+            subject.dispatch(URL_A + "?i=" + i, null);
+        }
+        subject.dispatch(URL_B, null);
+
+        assertThat(sender.inFlight).hasSize(TrackingDispatcher.MAX_REQUESTS_PER_HOST + 1);
+
+        sender.respond(0, 200);
+
+        assertThat(sender.urls).contains(URL_A + "?i=" + TrackingDispatcher.MAX_REQUESTS_PER_HOST);
+        assertThat(subject.getSentCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void dispatch_withFailureWithoutResponse_shouldRetryAfterBackoff() {
+        subject.dispatch(URL_A, mockListener);
+        sender.fail(0);
+
+        assertThat(sender.urls).hasSize(1);
+        assertThat(subject.getRetriedCount()).isEqualTo(1);
+
+        advanceBy(INITIAL_RETRY_DELAY_MS);
+        assertThat(sender.urls).containsExactly(URL_A, URL_A);
+
+        sender.respond(0, 200);
+        verify(mockListener).onResponse(URL_A);
+        verify(mockListener, never()).onErrorResponse(any(MoPubNetworkError.class));
+        assertThat(subject.getSentCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void dispatch_withServerError_shouldDoubleBackoff() {
+        subject.dispatch(URL_A, null);
+        sender.respond(0, 503);
+        advanceBy(INITIAL_RETRY_DELAY_MS);
+        sender.respond(0, 503);
+
+        advanceBy(INITIAL_RETRY_DELAY_MS);
+        assertThat(sender.urls).hasSize(2);
+
+        advanceBy(INITIAL_RETRY_DELAY_MS);
+        assertThat(sender.urls).hasSize(3);
+        assertThat(subject.getRetriedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void dispatch_withClientError_shouldDropWithoutRetrying() {
+        subject.dispatch(URL_A, mockListener);
+
+        sender.respond(0, 404);
+        advanceBy(INITIAL_RETRY_DELAY_MS * 10);
+
+        assertThat(sender.urls).hasSize(1);
+        verify(mockListener).onErrorResponse(any(MoPubNetworkError.class));
+        assertThat(subject.getDroppedCount()).isEqualTo(1);
+        assertThat(subject.getPersistedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void dispatch_withListener_afterLastAttempt_shouldNotifyListenerAndDrop() {
+        subject.dispatch(URL_A, mockListener);
+
+        failAllAttempts();
+
+        verify(mockListener).onErrorResponse(any(MoPubNetworkError.class));
+        assertThat(subject.getDroppedCount()).isEqualTo(1);
+        assertThat(storeFile.exists()).isFalse();
+    }
+
+    @Test
+    public void dispatch_withListener_shouldNotifyListenerOutsideLock() {
+        final List<Boolean> heldLock = new ArrayList<Boolean>();
+        final TrackingRequest.Listener listener = new TrackingRequest.Listener() {
+            @Override
+            public void onResponse(@NonNull final String response) {
+                heldLock.add(Thread.holdsLock(subject));
+            }
+
+            @Override
+            public void onErrorResponse(@NonNull final MoPubNetworkError networkError) {
+                heldLock.add(Thread.holdsLock(subject));
+            }
+        };
+        subject.dispatch(URL_A, listener);
+        subject.dispatch(URL_B, listener);
+
+        sender.respond(0, 200);
+        sender.respond(0, 404);
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(heldLock).containsExactly(false, false);
+    }
+
+    @Test
+    public void dispatch_afterLastAttempt_shouldPersistBeacon_shouldSendOnNextLaunch() {
+        subject.dispatch(URL_A, null);
+
+        failAllAttempts();
+
+        assertThat(subject.getPersistedCount()).isEqualTo(1);
+        assertThat(storeFile.exists()).isTrue();
+
+        final FlakySender nextLaunchSender = new FlakySender();
+        sender = nextLaunchSender;
+        final TrackingDispatcher nextLaunch = createDispatcher();
+        nextLaunch.dispatch(URL_B, null);
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(nextLaunchSender.urls).containsOnly(URL_A, URL_B);
+        assertThat(storeFile.exists()).isFalse();
+    }
+
+    @Test
+    public void dispatch_afterPersistingBeacon_whenNextBeaconSucceeds_shouldSendPersistedBeacon() {
+        subject.dispatch(URL_A, null);
+        // Drains the empty store, as on launch
+        sender.respond(0, 200);
+        subject.dispatch(URL_B, null);
+        failAllAttempts();
+        assertThat(subject.getPersistedCount()).isEqualTo(1);
+
+        subject.dispatch(URL_A, null);
+        assertThat(sender.inFlight).hasSize(1);
+        sender.respond(0, 200);
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(sender.inFlight).hasSize(1);
+        assertThat(sender.urls.get(sender.urls.size() - 1)).isEqualTo(URL_B);
+    }
+
+    @Test
+    public void drain_shouldDiscardExpiredBeacons() {
+        final long now = 1000000000L;
+        store.add(URL_A, now - TrackingBeaconStore.MAX_BEACON_AGE_MS);
+        store.add(URL_B, now - 1);
+
+        final List<TrackingBeaconStore.PersistedBeacon> beacons = store.drain(now);
+
+        assertThat(beacons).hasSize(1);
+        assertThat(beacons.get(0).url).isEqualTo(URL_B);
+        assertThat(beacons.get(0).createdAtMillis).isEqualTo(now - 1);
+        assertThat(storeFile.exists()).isFalse();
+    }
+
+    @Test
+    public void add_withNewline_shouldNotPersist() {
+        assertThat(store.add(URL_A + "\n0 " + URL_B, 0)).isFalse();
+        assertThat(storeFile.exists()).isFalse();
+    }
+
+    private TrackingDispatcher createDispatcher() {
+        TestDateAndTime.getInstance().setNow(new Date(1000000000L));
+        return new TrackingDispatcher(sender, store, new DirectExecutor(),
+                new Handler(Looper.getMainLooper()), new RetryPolicyEngine(new MidpointRandom()));
+    }
+
+    private void failAllAttempts() {
+        for (int attempt = 1; attempt <= TrackingDispatcher.MAX_ATTEMPTS; attempt++) {
+            sender.fail(sender.inFlight.size() - 1);
+            advanceBy(INITIAL_RETRY_DELAY_MS << attempt);
+        }
+    }
+
+    private static void advanceBy(final long millis) {
+        Robolectric.getForegroundThreadScheduler().advanceBy(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stands in for a tracking server that fails on demand.
+     */
+    private static class FlakySender implements TrackingDispatcher.Sender {
+        final List<String> urls = new ArrayList<String>();
+        final List<TrackingRequest.Listener> inFlight = new ArrayList<TrackingRequest.Listener>();
+
+        @Override
+        public void send(@NonNull final String url,
+                @NonNull final TrackingRequest.Listener listener) {
+            urls.add(url);
+            inFlight.add(listener);
+        }
+
+        void respond(final int index, final int statusCode) {
+            final TrackingRequest.Listener listener = inFlight.remove(index);
+            if (statusCode == 200) {
+                listener.onResponse("200");
+                return;
+            }
+            listener.onErrorResponse(new MoPubNetworkError.Builder("status " + statusCode)
+                    .reason(MoPubNetworkError.Reason.TRACKING_FAILURE)
+                    .networkResponse(new MoPubNetworkResponse(statusCode, null,
+                            new HashMap<String, String>()))
+                    .build());
+        }
+
+        void fail(final int index) {
+            inFlight.remove(index).onErrorResponse(new MoPubNetworkError.Builder("no connection")
+                    .reason(MoPubNetworkError.Reason.NO_CONNECTION)
+                    .build());
+        }
+    }
+
+    /**
+     * Makes retry delays land exactly on the base delay.
+     */
+    private static class MidpointRandom extends Random {
+        @Override
+        public double nextDouble() {
+            return 0.5;
+        }
+    }
+
+    private static class DirectExecutor implements Executor {
+        @Override
+        public void execute(@NonNull final Runnable runnable) {
+            runnable.run();
+        }
+    }
+}